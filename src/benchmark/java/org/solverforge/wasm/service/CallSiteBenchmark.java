@@ -0,0 +1,137 @@
+package org.solverforge.wasm.service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.solverforge.wasm.service.classgen.CallSiteClassGenerator;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+
+/**
+ * Compares evaluating several WASM predicates through one shared lambda class, as
+ * constraint functions were before, with evaluating them through a dedicated class per
+ * predicate from {@link CallSiteClassGenerator}, bound to the instance's calls like the
+ * classes constraint functions reuse across solves. Each benchmark call evaluates every
+ * predicate on the same pairs of entities, so the shared lambda's call of the WASM
+ * function sees all of them, like it does in a model with several constraints. The
+ * predicates are Chicory-compiled exports, called the way generated constraint streams
+ * call them.
+ *
+ * No JMH results of this benchmark have been recorded yet, so the gain of dedicated call
+ * site classes is unmeasured. Run with
+ * {@code mvn -Pbenchmark test-compile exec:exec -Dbenchmark=CallSiteBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CallSiteBenchmark {
+    // Entities are 8 bytes: an id and a planning variable
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (func (export "sameValue") (param $a i32) (param $b i32) (result i32)
+                    (i32.eq (i32.load offset=4 (local.get $a)) (i32.load offset=4 (local.get $b)))
+                )
+                (func (export "lessValue") (param $a i32) (param $b i32) (result i32)
+                    (i32.lt_s (i32.load offset=4 (local.get $a)) (i32.load offset=4 (local.get $b)))
+                )
+                (func (export "greaterValue") (param $a i32) (param $b i32) (result i32)
+                    (i32.gt_s (i32.load offset=4 (local.get $a)) (i32.load offset=4 (local.get $b)))
+                )
+                (func (export "sameId") (param $a i32) (param $b i32) (result i32)
+                    (i32.eq (i32.load (local.get $a)) (i32.load (local.get $b)))
+                )
+            )
+            """;
+
+    private static final String[] PREDICATES = { "sameValue", "lessValue", "greaterValue", "sameId" };
+
+    private static final int ENTITY_COUNT = 1024;
+
+    private BiPredicate<Integer, Integer>[] sharedLambdas;
+    private BiPredicate<Integer, Integer>[] dedicatedClasses;
+    private Integer[] entities;
+    private int index;
+
+    @SuppressWarnings("unchecked")
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var instance = Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+
+        var isTrue = MethodHandles.lookup().findStatic(CallSiteBenchmark.class, "isTrue",
+                MethodType.methodType(boolean.class, long.class));
+        sharedLambdas = new BiPredicate[PREDICATES.length];
+        dedicatedClasses = new BiPredicate[PREDICATES.length];
+        for (int i = 0; i < PREDICATES.length; i++) {
+            var call = WasmCall.of(instance, PREDICATES[i]);
+            if (!call.isDirect()) {
+                throw new IllegalStateException(PREDICATES[i] + " is not called directly");
+            }
+            sharedLambdas[i] = sharedLambda(call);
+            dedicatedClasses[i] = CallSiteClassGenerator.define(BiPredicate.class,
+                    MethodHandles.filterReturnValue(call.asUnboundMethodHandle(2), isTrue), 1).newInstance(call);
+        }
+
+        entities = new Integer[ENTITY_COUNT];
+        var memory = instance.memory();
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            entities[i] = 16 + 8 * i;
+            memory.writeI32(entities[i], i);
+            memory.writeI32(entities[i] + 4, i % 8);
+        }
+    }
+
+    private static BiPredicate<Integer, Integer> sharedLambda(WasmCall call) {
+        return (a, b) -> call.call2(a, b) != 0;
+    }
+
+    private static boolean isTrue(long result) {
+        return result != 0;
+    }
+
+    private int nextIndex() {
+        index = (index + 1) % ENTITY_COUNT;
+        return index;
+    }
+
+    @Benchmark
+    public void sharedLambdaClass(Blackhole blackhole) {
+        int i = nextIndex();
+        var a = entities[i];
+        var b = entities[(i + 1) % ENTITY_COUNT];
+        for (var predicate : sharedLambdas) {
+            blackhole.consume(predicate.test(a, b));
+        }
+    }
+
+    @Benchmark
+    public void dedicatedClassPerFunction(Blackhole blackhole) {
+        int i = nextIndex();
+        var a = entities[i];
+        var b = entities[(i + 1) % ENTITY_COUNT];
+        for (var predicate : dedicatedClasses) {
+            blackhole.consume(predicate.test(a, b));
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package org.solverforge.wasm.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+
+/**
+ * Compares the cost of a {@link FunctionCache} lookup with calling the WASM export
+ * it caches, for a predicate over two entities.
+ *
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FunctionCacheBenchmark {
+    // Entities are 8 bytes: an id and a planning variable
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (func (export "sameValue") (param $a i32) (param $b i32) (result i32)
+                    (i32.eq (i32.load offset=4 (local.get $a)) (i32.load offset=4 (local.get $b)))
+                )
+            )
+            """;
+
+    private static final int ENTITY_COUNT = 1024;
+    private static final int FUNCTION_ID = 0;
+
+    private ExportFunction sameValue;
+    private FunctionCache cache;
+    private int[] entities;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var instance = Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+        sameValue = instance.export("sameValue");
+
+        entities = new int[ENTITY_COUNT];
+        cache = new FunctionCache();
+        var memory = instance.memory();
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            entities[i] = 16 + 8 * i;
+            memory.writeI32(entities[i], i);
+            memory.writeI32(entities[i] + 4, i % 8);
+        }
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            int a = entities[i];
+            int b = entities[(i + 1) % ENTITY_COUNT];
+            cache.put2(FUNCTION_ID, a, b, sameValue.apply(a, b)[0]);
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) % ENTITY_COUNT;
+        return index;
+    }
+
+    @Benchmark
+    public long directCall() {
+        int i = nextIndex();
+        return sameValue.apply(entities[i], entities[(i + 1) % ENTITY_COUNT])[0];
+    }
+
+    @Benchmark
+    public long cacheHit() {
+        int i = nextIndex();
+        return cache.get2(FUNCTION_ID, entities[i], entities[(i + 1) % ENTITY_COUNT]);
+    }
+
+    @Benchmark
+    public long cacheMiss() {
+        // Arguments in the other order are never cached
+        int i = nextIndex();
+        return cache.get2(FUNCTION_ID, entities[(i + 1) % ENTITY_COUNT], entities[i]);
+    }
+
+    @Benchmark
+    public long cacheStaleHitAfterInvalidation() {
+        // Invalidate then refill, as a move changing the entity's planning variable would
+        int i = nextIndex();
+        int a = entities[i];
+        int b = entities[(i + 1) % ENTITY_COUNT];
+        cache.invalidateEntity(a);
+        long result = cache.get2(FUNCTION_ID, a, b);
+        if (result == FunctionCache.MISS) {
+            result = sameValue.apply(a, b)[0];
+            cache.put2(FUNCTION_ID, a, b, result);
+        }
+        return result;
+    }
+}
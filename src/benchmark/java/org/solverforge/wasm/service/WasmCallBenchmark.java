@@ -0,0 +1,89 @@
+package org.solverforge.wasm.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+
+/**
+ * Compares calling a compiled WASM predicate through {@link ExportFunction#apply(long...)}
+ * with calling it through a {@link WasmCall}. Run with {@code -prof gc} to compare the
+ * allocation rate per call.
+ *
+ * Run with {@code mvn -Pbenchmark test-compile exec:exec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WasmCallBenchmark {
+    // Entities are 8 bytes: an id and a planning variable
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (func (export "sameValue") (param $a i32) (param $b i32) (result i32)
+                    (i32.eq (i32.load offset=4 (local.get $a)) (i32.load offset=4 (local.get $b)))
+                )
+            )
+            """;
+
+    private static final int ENTITY_COUNT = 1024;
+
+    private ExportFunction sameValueExport;
+    private WasmCall sameValueCall;
+    private int[] entities;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var instance = Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+        sameValueExport = instance.export("sameValue");
+        sameValueCall = WasmCall.of(instance, "sameValue");
+        if (!sameValueCall.isDirect()) {
+            throw new IllegalStateException("sameValue is not called directly");
+        }
+
+        entities = new int[ENTITY_COUNT];
+        var memory = instance.memory();
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            entities[i] = 16 + 8 * i;
+            memory.writeI32(entities[i], i);
+            memory.writeI32(entities[i] + 4, i % 8);
+        }
+    }
+
+    private int nextIndex() {
+        index = (index + 1) % ENTITY_COUNT;
+        return index;
+    }
+
+    @Benchmark
+    public long exportApply() {
+        int i = nextIndex();
+        return sameValueExport.apply(entities[i], entities[(i + 1) % ENTITY_COUNT])[0];
+    }
+
+    @Benchmark
+    public long wasmCall() {
+        int i = nextIndex();
+        return sameValueCall.call2(entities[i], entities[(i + 1) % ENTITY_COUNT]);
+    }
+}
@@ -0,0 +1,161 @@
+package org.solverforge.wasm.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import ai.timefold.solver.core.api.score.Score;
+import org.solverforge.wasm.service.classgen.WasmObject;
+import org.solverforge.wasm.service.dto.RawJson;
+
+/**
+ * Tracks the best solution of a solve, serializing it to JSON only when it is requested.
+ *
+ * The solver thread only records the best solution clone and its score. The clone is a
+ * deep copy in WASM memory (see {@code WasmSolutionCloner}) that stays allocated while it
+ * is referenced here, so it can be serialized later from another thread. Solver
+ * throughput therefore does not depend on the size of the solution. The exception is a
+ * module whose lists do not have the host layout (see {@link ModuleLists}), whose best
+ * solutions are serialized on the solver thread.
+ *
+ * {@link #close()} must be called when the solve ends, before the WASM instance is
+ * reused; it serializes the final best solution and drops the reference to the clone.
+ *
+ * Threads streaming the best solution wait for updates with {@link #awaitUpdate}. Updates
+ * only advance a phase, without blocking the solver thread on the waiting threads; an
+ * update made while nobody waits is seen as a new phase by the next wait. Closing the
+ * holder wakes the waiting threads for good.
+ */
+public final class BestSolutionHolder {
+    /**
+     * A serialized best solution and its score.
+     */
+    public record SolutionJson(RawJson solution, Score<?> score) {}
+
+    private record Snapshot(WasmObject solution, Score<?> score) {}
+
+    private final SolutionJsonWriter solutionJsonWriter;
+    private final long minIntervalNanos;
+
+    private final AtomicReference<Snapshot> latest = new AtomicReference<>();
+    // Advanced on every update, terminated on close
+    private final Phaser updates = new Phaser(1);
+
+    // Guarded by this
+    private Snapshot materializedSnapshot;
+    private long materializedAtNanos;
+    private boolean closed;
+    private volatile SolutionJson materialized;
+
+    /**
+     * @param initialSolution returned until a best solution has been found
+     * @param minIntervalMillis minimum time between serializations; until it has elapsed,
+     *        the previously serialized best solution is returned
+     */
+    public BestSolutionHolder(SolutionJsonWriter solutionJsonWriter, RawJson initialSolution, long minIntervalMillis) {
+        this.solutionJsonWriter = solutionJsonWriter;
+        this.minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMillis);
+        this.materialized = new SolutionJson(initialSolution, null);
+    }
+
+    /**
+     * Record a new best solution. Called on the solver thread, so it does no serialization,
+     * unless the module's lists can only be read through its exports (see {@link ModuleLists}):
+     * the solution is then serialized here, on the thread using the instance.
+     */
+    public void update(Object solution, Score<?> score) {
+        var snapshot = new Snapshot((WasmObject) solution, score);
+        if (ModuleLists.hasHostLayout(snapshot.solution().wasmInstance)) {
+            latest.set(snapshot);
+        } else {
+            synchronized (this) {
+                if (!closed) {
+                    materialize(snapshot);
+                }
+                latest.set(snapshot);
+            }
+        }
+        updates.arrive();
+    }
+
+    /**
+     * @return the current update phase, to pass to {@link #awaitUpdate}; negative once closed
+     */
+    public int getUpdatePhase() {
+        return updates.getPhase();
+    }
+
+    /**
+     * Wait until a best solution is recorded after the given phase, or the holder is closed.
+     */
+    public void awaitUpdate(int phase) throws InterruptedException {
+        updates.awaitAdvanceInterruptibly(phase);
+    }
+
+    /**
+     * @return the score of the latest best solution, or null if none has been found
+     */
+    public Score<?> getScore() {
+        var snapshot = latest.get();
+        return (snapshot != null) ? snapshot.score() : materialized.score();
+    }
+
+    /**
+     * @return the latest best solution as JSON, serializing it if it changed since the
+     *         last call (and the minimum interval has elapsed)
+     */
+    public synchronized SolutionJson get() {
+        var snapshot = latest.get();
+        if (!closed && snapshot != null && snapshot != materializedSnapshot
+                && (materializedSnapshot == null || System.nanoTime() - materializedAtNanos >= minIntervalNanos)) {
+            materialize(snapshot);
+        }
+        return materialized;
+    }
+
+    /**
+     * @return how long until {@link #get()} may serialize a newer best solution; 0 if it
+     *         would right away
+     */
+    public synchronized long getSerializationDelayNanos() {
+        if (materializedSnapshot == null) {
+            return 0L;
+        }
+        return Math.max(0L, minIntervalNanos - (System.nanoTime() - materializedAtNanos));
+    }
+
+    /**
+     * Serialize the final best solution and release the reference to its clone.
+     */
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        var snapshot = latest.getAndSet(null);
+        try {
+            if (snapshot != null && snapshot != materializedSnapshot) {
+                materialize(snapshot);
+            }
+        } finally {
+            materializedSnapshot = null;
+            closed = true;
+            updates.forceTermination();
+        }
+    }
+
+    private void materialize(Snapshot snapshot) {
+        var solution = snapshot.solution();
+        var out = new ByteArrayOutputStream();
+        try {
+            solutionJsonWriter.write(solution.wasmInstance, solution.memoryPointer, out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        materialized = new SolutionJson(RawJson.of(out.toByteArray()), snapshot.score());
+        materializedSnapshot = snapshot;
+        materializedAtNanos = System.nanoTime();
+    }
+}
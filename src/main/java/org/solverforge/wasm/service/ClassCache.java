@@ -0,0 +1,276 @@
+package org.solverforge.wasm.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import org.solverforge.wasm.service.dto.PlanningProblem;
+
+import org.jboss.logging.Logger;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+/**
+ * On-disk cache of compiled WASM module classes and generated domain/constraint classes.
+ *
+ * Layout under the cache directory:
+ * <pre>
+ * wasm/&lt;module hash&gt;.wasm        modules registered via {@code POST /modules}
+ * modules/&lt;module hash&gt;/         Chicory-compiled machine classes
+ * generated/&lt;fingerprint&gt;/       generated domain classes and constraint provider
+ * </pre>
+ * Each entry directory contains an {@code index} file listing the class names in
+ * definition order, followed by one {@code .class} file per class. Entries are written
+ * to a temporary directory and atomically moved into place, so concurrent writers
+ * (including other nodes sharing the directory) never observe a partial entry.
+ *
+ * An entry that cannot be read or defined (corrupt files, or classes written by another
+ * Chicory version) is discarded, and the classes are compiled or generated again.
+ */
+public final class ClassCache {
+    private static final Logger LOG = Logger.getLogger(ClassCache.class);
+
+    private static final String INDEX_FILE = "index";
+
+    // Bumped whenever generated classes call the runtime differently, so classes generated
+    // by an older version are not loaded
+    private static final String GENERATED_CLASS_VERSION = "2";
+
+    // Serializes every DTO field (not just getters) so the fingerprint covers the full domain/constraint model
+    private static final ObjectMapper FINGERPRINT_MAPPER = JsonMapper.builder()
+            .visibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.NONE)
+            .visibility(PropertyAccessor.FIELD, JsonAutoDetect.Visibility.ANY)
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .build();
+
+    private final Path root;
+
+    public ClassCache(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * The class cache at the configured path, or empty if no (or a blank) path is configured.
+     */
+    public static Optional<ClassCache> fromPath(Optional<String> path) {
+        return path.filter(s -> !s.isBlank()).map(Path::of).map(ClassCache::new);
+    }
+
+    /**
+     * Fingerprint of the generated classes for a planning problem: the module hash plus
+     * the domain and constraint definitions and the version of the generated code. Returns empty if the model cannot be
+     * fingerprinted, in which case generated classes are not cached.
+     */
+    public static Optional<String> fingerprint(String moduleHash, PlanningProblem planningProblem) {
+        try {
+            var constraints = new LinkedHashMap<String, Object>();
+            for (var constraint : planningProblem.getConstraintList()) {
+                constraints.put(constraint.getName(), constraint.getStreamComponentList());
+            }
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(GENERATED_CLASS_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update(moduleHash.getBytes(StandardCharsets.UTF_8));
+            digest.update(FINGERPRINT_MAPPER.writeValueAsBytes(planningProblem.getDomainObjectMap()));
+            digest.update(FINGERPRINT_MAPPER.writeValueAsBytes(constraints));
+            return Optional.of(HexFormat.of().formatHex(digest.digest()));
+        } catch (JsonProcessingException e) {
+            LOG.warnf(e, "Unable to fingerprint planning problem; generated classes will not be cached");
+            return Optional.empty();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return empty if the module is not stored
+     * @throws UncheckedIOException if the module is stored but cannot be read
+     */
+    public Optional<byte[]> loadModule(String moduleHash) {
+        var file = root.resolve("wasm").resolve(moduleHash + ".wasm");
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(Files.readAllBytes(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read class cache entry " + file, e);
+        }
+    }
+
+    public void storeModule(String moduleHash, byte[] wasmBytes) {
+        var file = root.resolve("wasm").resolve(moduleHash + ".wasm");
+        if (Files.exists(file)) {
+            return;
+        }
+        Path temp = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.write(temp, wasmBytes);
+            try {
+                Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Another request or node stored the same module first
+        } catch (IOException e) {
+            LOG.warnf(e, "Unable to store class cache entry %s", file);
+        } finally {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException e) {
+                // best effort
+            }
+        }
+    }
+
+    /**
+     * Remove a registered module and its compiled classes.
+     *
+     * @return true if the module was stored
+     */
+    public boolean removeModule(String moduleHash) {
+        var file = root.resolve("wasm").resolve(moduleHash + ".wasm");
+        boolean removed;
+        try {
+            removed = Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.warnf(e, "Unable to remove class cache entry %s", file);
+            removed = false;
+        }
+        discardModuleClasses(moduleHash);
+        return removed;
+    }
+
+    public Optional<Map<String, byte[]>> loadModuleClasses(String moduleHash) {
+        return load(root.resolve("modules").resolve(moduleHash));
+    }
+
+    public void storeModuleClasses(String moduleHash, Map<String, byte[]> classBytes) {
+        store(root.resolve("modules").resolve(moduleHash), classBytes);
+    }
+
+    public Optional<Map<String, byte[]>> loadGeneratedClasses(String fingerprint) {
+        return load(root.resolve("generated").resolve(fingerprint));
+    }
+
+    public void storeGeneratedClasses(String fingerprint, Map<String, byte[]> classBytes) {
+        store(root.resolve("generated").resolve(fingerprint), classBytes);
+    }
+
+    /**
+     * Remove the compiled classes of a module, e.g. because they could not be loaded, so
+     * they are stored again on the next compilation.
+     */
+    public void discardModuleClasses(String moduleHash) {
+        discard(root.resolve("modules").resolve(moduleHash));
+    }
+
+    /**
+     * Remove the generated classes of a model, e.g. because they could not be loaded, so
+     * they are stored again the next time they are generated.
+     */
+    public void discardGeneratedClasses(String fingerprint) {
+        discard(root.resolve("generated").resolve(fingerprint));
+    }
+
+    private static Optional<Map<String, byte[]>> load(Path entry) {
+        var index = entry.resolve(INDEX_FILE);
+        if (!Files.isRegularFile(index)) {
+            return Optional.empty();
+        }
+        try {
+            var out = new LinkedHashMap<String, byte[]>();
+            for (var className : Files.readAllLines(index, StandardCharsets.UTF_8)) {
+                if (!className.isEmpty()) {
+                    out.put(className, Files.readAllBytes(entry.resolve(className + ".class")));
+                }
+            }
+            if (out.isEmpty()) {
+                throw new IOException("Empty index");
+            }
+            return Optional.of(out);
+        } catch (IOException e) {
+            // Entries are moved into place complete, so a missing class means the entry is corrupt
+            LOG.warnf(e, "Discarding unreadable class cache entry %s", entry);
+            discard(entry);
+            return Optional.empty();
+        }
+    }
+
+    // Moves the entry aside first, so readers never see it half deleted
+    private static void discard(Path entry) {
+        if (!Files.exists(entry)) {
+            return;
+        }
+        Path temp = entry.resolveSibling(entry.getFileName() + "." + UUID.randomUUID() + ".discarded");
+        try {
+            Files.move(entry, temp, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Removed by another request or node, or not movable; deleting in place is still worth a try
+            temp = entry;
+        }
+        deleteQuietly(temp);
+    }
+
+    private static void store(Path entry, Map<String, byte[]> classBytes) {
+        if (Files.exists(entry)) {
+            return;
+        }
+        Path temp = entry.resolveSibling(entry.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.createDirectories(temp);
+            List<String> classNames = new ArrayList<>(classBytes.size());
+            for (var classEntry : classBytes.entrySet()) {
+                var className = classEntry.getKey().replace('/', '.');
+                Files.write(temp.resolve(className + ".class"), classEntry.getValue());
+                classNames.add(className);
+            }
+            // Index is written last; an entry without an index is never loaded
+            Files.write(temp.resolve(INDEX_FILE), classNames, StandardCharsets.UTF_8);
+            try {
+                Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry);
+            }
+            LOG.infof("Stored %d classes in class cache entry %s", classNames.size(), entry);
+        } catch (FileAlreadyExistsException | DirectoryNotEmptyException e) {
+            // Another request or node stored the same entry first
+            deleteQuietly(temp);
+        } catch (IOException e) {
+            LOG.warnf(e, "Unable to store class cache entry %s", entry);
+            deleteQuietly(temp);
+        }
+    }
+
+    private static void deleteQuietly(Path directory) {
+        try (var files = Files.list(directory)) {
+            for (var file : (Iterable<Path>) files::iterator) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(directory);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+}
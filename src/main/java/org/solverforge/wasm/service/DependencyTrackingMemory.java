@@ -0,0 +1,406 @@
+package org.solverforge.wasm.service;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.DataSegment;
+
+/**
+ * Linear memory that versions its contents, and can record which parts of it a call reads.
+ *
+ * Memory is divided into 64-byte blocks, each with a version number that is incremented
+ * by every write to it, whether made by the module or by the host (generated setters,
+ * list operations, snapshot restores). While recording, the blocks read are collected
+ * together with their versions; a result computed from them is still valid as long as
+ * none of those versions changed.
+ *
+ * Compiled modules access memory through the {@link Memory} interface, so wrapping the
+ * memory sees every load and store of the module.
+ *
+ * Recording and block versions belong to the thread that last started a recording (the
+ * solver thread). Other threads may still use the memory, e.g. to serialize the best
+ * solution (solution clones are freed on the solver thread, see
+ * {@link org.solverforge.wasm.service.classgen.Allocator#deferFreeSolution}): their reads are not recorded, and
+ * their writes, instead of bumping block versions, bump a shared counter that
+ * invalidates every recorded dependency. An instance must be handed from one solver
+ * thread to the next with a happens-before edge (as the instance pool does).
+ */
+public final class DependencyTrackingMemory implements Memory {
+    private static final int BLOCK_SHIFT = 6;
+
+    private final Memory delegate;
+
+    // Owned by the recording thread
+    private int[] blockVersions;
+
+    // Writes by threads other than the recording thread
+    private final AtomicInteger foreignWrites = new AtomicInteger();
+
+    // The thread that records reads and versions blocks; only ever equal to the current
+    // thread on that thread, so other threads may read it without synchronization
+    private Thread recordingThread;
+
+    // Recording state, owned by the recording thread; a block is recorded at most once per recording
+    private boolean recording;
+    private int recordingForeignWrites;
+    private int recordingId;
+    private int[] recordedIds;
+    private int[] recordedBlocks = new int[16];
+    private int recordedCount;
+
+    public DependencyTrackingMemory(Memory delegate) {
+        this.delegate = delegate;
+        this.blockVersions = new int[blockCount()];
+        this.recordedIds = new int[blockVersions.length];
+    }
+
+    private int blockCount() {
+        return (int) (((long) delegate.pages() * PAGE_SIZE) >>> BLOCK_SHIFT);
+    }
+
+    // Memory may have been grown by another thread, so this is checked before blocks are accessed
+    private void ensureBlockCapacity() {
+        int blockCount = blockCount();
+        if (blockCount > blockVersions.length) {
+            blockVersions = Arrays.copyOf(blockVersions, blockCount);
+            recordedIds = Arrays.copyOf(recordedIds, blockCount);
+        }
+    }
+
+    // ========== Recording ==========
+
+    /**
+     * Start recording the blocks read by the current thread, which becomes the thread
+     * versioning blocks.
+     *
+     * @return false if a recording is already in progress, which is left unchanged
+     */
+    public boolean startRecording() {
+        var currentThread = Thread.currentThread();
+        if (recordingThread != currentThread) {
+            // The instance was handed over by the previous solver thread, whose recordings
+            // have all stopped
+            recordingThread = currentThread;
+        } else if (recording) {
+            return false;
+        }
+        recording = true;
+        recordingForeignWrites = foreignWrites.get();
+        recordedCount = 0;
+        if (++recordingId == 0) {
+            // Wrapped around; forget which blocks earlier recordings saw
+            Arrays.fill(recordedIds, 0);
+            recordingId = 1;
+        }
+        return true;
+    }
+
+    /**
+     * Stop recording. Must be called on the thread that started the recording.
+     *
+     * @return the blocks read since {@link #startRecording()} and their current versions,
+     *         as (block, version) pairs, after the count of writes by other threads
+     */
+    public int[] stopRecording() {
+        recording = false;
+        var dependencies = new int[1 + recordedCount * 2];
+        dependencies[0] = recordingForeignWrites;
+        for (int i = 0; i < recordedCount; i++) {
+            int block = recordedBlocks[i];
+            dependencies[1 + 2 * i] = block;
+            dependencies[2 + 2 * i] = blockVersions[block];
+        }
+        return dependencies;
+    }
+
+    /**
+     * Must be called on the thread that recorded the dependencies.
+     *
+     * @param dependencies returned by {@link #stopRecording()}
+     * @return true if none of the blocks was written since, and no other thread wrote
+     *         to the memory since the recording started
+     */
+    public boolean isCurrent(int[] dependencies) {
+        if (foreignWrites.get() != dependencies[0]) {
+            return false;
+        }
+        for (int i = 1; i < dependencies.length; i += 2) {
+            if (blockVersions[dependencies[i]] != dependencies[i + 1]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isRecording() {
+        return recording && Thread.currentThread() == recordingThread;
+    }
+
+    private void recordRead(int address, int length) {
+        int last = (address + length - 1) >>> BLOCK_SHIFT;
+        if (last >= recordedIds.length) {
+            ensureBlockCapacity();
+        }
+        for (int block = address >>> BLOCK_SHIFT; block <= last; block++) {
+            if (recordedIds[block] != recordingId) {
+                recordedIds[block] = recordingId;
+                if (recordedCount == recordedBlocks.length) {
+                    recordedBlocks = Arrays.copyOf(recordedBlocks, recordedCount * 2);
+                }
+                recordedBlocks[recordedCount++] = block;
+            }
+        }
+    }
+
+    private void recordWrite(int address, int length) {
+        if (length <= 0) {
+            return;
+        }
+        if (Thread.currentThread() != recordingThread) {
+            foreignWrites.incrementAndGet();
+            return;
+        }
+        int last = (address + length - 1) >>> BLOCK_SHIFT;
+        if (last >= blockVersions.length) {
+            ensureBlockCapacity();
+        }
+        for (int block = address >>> BLOCK_SHIFT; block <= last; block++) {
+            blockVersions[block]++;
+        }
+    }
+
+    private void recordWriteAll() {
+        if (Thread.currentThread() != recordingThread) {
+            foreignWrites.incrementAndGet();
+            return;
+        }
+        ensureBlockCapacity();
+        for (int block = 0; block < blockVersions.length; block++) {
+            blockVersions[block]++;
+        }
+    }
+
+    // ========== Reads ==========
+
+    @Override
+    public byte read(int addr) {
+        var out = delegate.read(addr);
+        if (isRecording()) {
+            recordRead(addr, 1);
+        }
+        return out;
+    }
+
+    @Override
+    public byte[] readBytes(int addr, int len) {
+        var out = delegate.readBytes(addr, len);
+        if (len > 0 && isRecording()) {
+            recordRead(addr, len);
+        }
+        return out;
+    }
+
+    @Override
+    public int readInt(int addr) {
+        var out = delegate.readInt(addr);
+        if (isRecording()) {
+            recordRead(addr, 4);
+        }
+        return out;
+    }
+
+    @Override
+    public long readLong(int addr) {
+        var out = delegate.readLong(addr);
+        if (isRecording()) {
+            recordRead(addr, 8);
+        }
+        return out;
+    }
+
+    @Override
+    public short readShort(int addr) {
+        var out = delegate.readShort(addr);
+        if (isRecording()) {
+            recordRead(addr, 2);
+        }
+        return out;
+    }
+
+    @Override
+    public long readU16(int addr) {
+        var out = delegate.readU16(addr);
+        if (isRecording()) {
+            recordRead(addr, 2);
+        }
+        return out;
+    }
+
+    @Override
+    public long readF32(int addr) {
+        var out = delegate.readF32(addr);
+        if (isRecording()) {
+            recordRead(addr, 4);
+        }
+        return out;
+    }
+
+    @Override
+    public float readFloat(int addr) {
+        var out = delegate.readFloat(addr);
+        if (isRecording()) {
+            recordRead(addr, 4);
+        }
+        return out;
+    }
+
+    @Override
+    public long readF64(int addr) {
+        var out = delegate.readF64(addr);
+        if (isRecording()) {
+            recordRead(addr, 8);
+        }
+        return out;
+    }
+
+    @Override
+    public double readDouble(int addr) {
+        var out = delegate.readDouble(addr);
+        if (isRecording()) {
+            recordRead(addr, 8);
+        }
+        return out;
+    }
+
+    // ========== Writes ==========
+
+    @Override
+    public void write(int addr, byte[] data, int offset, int size) {
+        delegate.write(addr, data, offset, size);
+        recordWrite(addr, size);
+    }
+
+    @Override
+    public void writeI32(int addr, int data) {
+        delegate.writeI32(addr, data);
+        recordWrite(addr, 4);
+    }
+
+    @Override
+    public void writeLong(int addr, long data) {
+        delegate.writeLong(addr, data);
+        recordWrite(addr, 8);
+    }
+
+    @Override
+    public void writeShort(int addr, short data) {
+        delegate.writeShort(addr, data);
+        recordWrite(addr, 2);
+    }
+
+    @Override
+    public void writeByte(int addr, byte data) {
+        delegate.writeByte(addr, data);
+        recordWrite(addr, 1);
+    }
+
+    @Override
+    public void writeF32(int addr, float data) {
+        delegate.writeF32(addr, data);
+        recordWrite(addr, 4);
+    }
+
+    @Override
+    public void writeF64(int addr, double data) {
+        delegate.writeF64(addr, data);
+        recordWrite(addr, 8);
+    }
+
+    @Override
+    public void fill(byte value, int fromIndex, int toIndex) {
+        delegate.fill(value, fromIndex, toIndex);
+        recordWrite(fromIndex, toIndex - fromIndex);
+    }
+
+    @Override
+    public void copy(int dest, int src, int size) {
+        delegate.copy(dest, src, size);
+        if (size > 0 && isRecording()) {
+            recordRead(src, size);
+        }
+        recordWrite(dest, size);
+    }
+
+    @Override
+    public void zero() {
+        delegate.zero();
+        recordWriteAll();
+    }
+
+    @Override
+    public void initialize(Instance instance, DataSegment[] dataSegments) {
+        delegate.initialize(instance, dataSegments);
+        recordWriteAll();
+    }
+
+    @Override
+    public void initPassiveSegment(int segmentId, int dest, int offset, int size) {
+        delegate.initPassiveSegment(segmentId, dest, offset, size);
+        recordWrite(dest, size);
+    }
+
+    // ========== Delegated ==========
+
+    @Override
+    public int pages() {
+        return delegate.pages();
+    }
+
+    @Override
+    public int grow(int size) {
+        // Block arrays grow when the recording thread next accesses the new pages
+        return delegate.grow(size);
+    }
+
+    @Override
+    public int initialPages() {
+        return delegate.initialPages();
+    }
+
+    @Override
+    public int maximumPages() {
+        return delegate.maximumPages();
+    }
+
+    @Override
+    public boolean shared() {
+        return delegate.shared();
+    }
+
+    @Override
+    public Object lock(int address) {
+        return delegate.lock(address);
+    }
+
+    @Override
+    public int waitOn(int address, int expected, long timeout) {
+        return delegate.waitOn(address, expected, timeout);
+    }
+
+    @Override
+    public int waitOn(int address, long expected, long timeout) {
+        return delegate.waitOn(address, expected, timeout);
+    }
+
+    @Override
+    public int notify(int address, int maxThreads) {
+        return delegate.notify(address, maxThreads);
+    }
+
+    @Override
+    public void drop(int segment) {
+        delegate.drop(segment);
+    }
+}
@@ -0,0 +1,70 @@
+package org.solverforge.wasm.service;
+
+import java.util.Map;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+@Path("/diagnostics")
+public class DiagnosticsResource {
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    public Diagnostics diagnostics() {
+        return new Diagnostics(ModuleCache.getStats(), ModelCache.getStats(), InstancePool.getStats(),
+                FunctionCache.getGlobalStats(), SolverResource.getAsyncSolveStats());
+    }
+
+    @GET
+    @Path("/modules")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ModuleCache.Stats modules() {
+        return ModuleCache.getStats();
+    }
+
+    @GET
+    @Path("/models")
+    @Produces(MediaType.APPLICATION_JSON)
+    public ModelCache.Stats models() {
+        return ModelCache.getStats();
+    }
+
+    /**
+     * Classification of each cached model's exports by {@link PurityAnalysis}.
+     */
+    @GET
+    @Path("/purity")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Map<String, Map<String, PurityAnalysis.Purity>> purity() {
+        return ModelCache.getPurity();
+    }
+
+    @GET
+    @Path("/instances")
+    @Produces(MediaType.APPLICATION_JSON)
+    public InstancePool.Stats instances() {
+        return InstancePool.getStats();
+    }
+
+    @GET
+    @Path("/functionCaches")
+    @Produces(MediaType.APPLICATION_JSON)
+    public FunctionCache.Stats functionCaches() {
+        return FunctionCache.getGlobalStats();
+    }
+
+    /**
+     * Live and finished async solves, and the load of the solve scheduler.
+     */
+    @GET
+    @Path("/solves")
+    @Produces(MediaType.APPLICATION_JSON)
+    public SolverResource.AsyncSolveStats solves() {
+        return SolverResource.getAsyncSolveStats();
+    }
+
+    public record Diagnostics(ModuleCache.Stats modules, ModelCache.Stats models, InstancePool.Stats instances,
+            FunctionCache.Stats functionCaches, SolverResource.AsyncSolveStats solves) {}
+}
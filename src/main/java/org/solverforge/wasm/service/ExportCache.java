@@ -12,10 +12,14 @@ import com.dylibso.chicory.runtime.Instance;
  * Each call to instance.export(name) does a string lookup in the export table.
  * Since constraint evaluation calls the same functions thousands of times per solve,
  * caching these lookups significantly reduces overhead.
+ *
+ * Also caches the {@link WasmCall}s of the instance's exports, which are expensive to
+ * resolve but call the compiled functions without allocating.
  */
 public class ExportCache {
     private final Instance instance;
     private final Map<String, ExportFunction> cache = new HashMap<>();
+    private final Map<String, WasmCall> calls = new HashMap<>();
 
     public ExportCache(Instance instance) {
         this.instance = instance;
@@ -28,6 +32,18 @@ public class ExportCache {
         return cache.computeIfAbsent(name, instance::export);
     }
 
+    /**
+     * Get a call of an exported function by name, using cache if available.
+     */
+    public WasmCall getCall(String name) {
+        var call = calls.get(name);
+        if (call == null) {
+            call = WasmCall.of(instance, name);
+            calls.put(name, call);
+        }
+        return call;
+    }
+
     /**
      * Get the underlying instance.
      */
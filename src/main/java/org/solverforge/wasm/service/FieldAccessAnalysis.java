@@ -0,0 +1,148 @@
+package org.solverforge.wasm.service;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.Instruction;
+
+/**
+ * Finds the exported getters and setters that only load or store one field of their
+ * argument, so generated domain classes can access the field in linear memory directly
+ * instead of calling the export.
+ *
+ * A getter qualifies if its body is {@code (T.load offset=N (local.get 0))} and a setter
+ * if its body is {@code (T.store offset=N (local.get 0) (local.get 1))}, for a full-width
+ * T of i32, i64, f32 or f64. Validation of the module guarantees the types match the
+ * function's signature. Accessors that compute their value, convert it or have any other
+ * side effect are not matched and are still called.
+ */
+public final class FieldAccessAnalysis {
+
+    /**
+     * How a field is stored in linear memory.
+     */
+    public enum ValueType {
+        I32,
+        I64,
+        F32,
+        F64;
+
+        /**
+         * @return true if the field is 8 bytes, and read as a long
+         */
+        public boolean isWide() {
+            return this == I64 || this == F64;
+        }
+
+        /**
+         * @return how a field of the given domain type is stored
+         */
+        public static ValueType ofFieldType(String fieldType) {
+            return switch (fieldType) {
+                case "long", "LocalDate", "LocalDateTime", "datetime", "localdatetime" -> I64;
+                case "float" -> F32;
+                case "double" -> F64;
+                default -> I32; // int, pointers, strings and lists
+            };
+        }
+    }
+
+    /**
+     * A field at {@code offset} bytes from an object's memory pointer.
+     */
+    public record FieldAccess(int offset, ValueType type) {}
+
+    private static final FieldAccessAnalysis EMPTY = new FieldAccessAnalysis(Map.of(), Map.of());
+
+    private final Map<String, FieldAccess> loads;
+    private final Map<String, FieldAccess> stores;
+
+    private FieldAccessAnalysis(Map<String, FieldAccess> loads, Map<String, FieldAccess> stores) {
+        this.loads = loads;
+        this.stores = stores;
+    }
+
+    /**
+     * @return an analysis that matches no accessor
+     */
+    public static FieldAccessAnalysis empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Match the exported functions of the module that load or store a single field.
+     */
+    public static FieldAccessAnalysis analyze(WasmModule module) {
+        int importedFunctionCount = 0;
+        var importSection = module.importSection();
+        for (int i = 0; i < importSection.importCount(); i++) {
+            if (importSection.getImport(i).importType() == ExternalType.FUNCTION) {
+                importedFunctionCount++;
+            }
+        }
+
+        var loads = new HashMap<String, FieldAccess>();
+        var stores = new HashMap<String, FieldAccess>();
+        var exportSection = module.exportSection();
+        for (int i = 0; i < exportSection.exportCount(); i++) {
+            var exportEntry = exportSection.getExport(i);
+            int functionIndex = (int) exportEntry.index();
+            if (exportEntry.exportType() != ExternalType.FUNCTION || functionIndex < importedFunctionCount) {
+                continue;
+            }
+            var instructions = module.codeSection().getFunctionBody(functionIndex - importedFunctionCount).instructions();
+            int length = instructions.size();
+            if (length > 0 && instructions.get(length - 1).opcode().name().equals("END")) {
+                length--;
+            }
+            if (length == 2 && isLocalGet(instructions.get(0), 0)) {
+                matchAccess(instructions.get(1), "LOAD").ifPresent(access -> loads.put(exportEntry.name(), access));
+            } else if (length == 3 && isLocalGet(instructions.get(0), 0) && isLocalGet(instructions.get(1), 1)) {
+                matchAccess(instructions.get(2), "STORE").ifPresent(access -> stores.put(exportEntry.name(), access));
+            }
+        }
+        return new FieldAccessAnalysis(Collections.unmodifiableMap(loads), Collections.unmodifiableMap(stores));
+    }
+
+    private static boolean isLocalGet(Instruction instruction, int localIndex) {
+        return instruction.opcode().name().equals("LOCAL_GET") && instruction.operand(0) == localIndex;
+    }
+
+    private static Optional<FieldAccess> matchAccess(Instruction instruction, String kind) {
+        ValueType type;
+        try {
+            // Only full-width accesses, e.g. I32_LOAD but not I32_LOAD8_U
+            var opcode = instruction.opcode().name();
+            if (!opcode.endsWith("_" + kind)) {
+                return Optional.empty();
+            }
+            type = ValueType.valueOf(opcode.substring(0, opcode.length() - kind.length() - 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        // Memory instructions have (align, offset) operands
+        long offset = instruction.operand(1);
+        if (offset < 0 || offset > Integer.MAX_VALUE) {
+            return Optional.empty();
+        }
+        return Optional.of(new FieldAccess((int) offset, type));
+    }
+
+    /**
+     * @return the field the getter loads, if it only loads a field of its argument
+     */
+    public Optional<FieldAccess> getLoad(String getterName) {
+        return Optional.ofNullable(loads.get(getterName));
+    }
+
+    /**
+     * @return the field the setter stores to, if it only stores its second argument in a field of its first
+     */
+    public Optional<FieldAccess> getStore(String setterName) {
+        return Optional.ofNullable(stores.get(setterName));
+    }
+}
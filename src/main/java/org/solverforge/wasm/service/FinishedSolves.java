@@ -0,0 +1,184 @@
+package org.solverforge.wasm.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ai.timefold.solver.core.api.score.Score;
+import org.jboss.logging.Logger;
+import org.jspecify.annotations.Nullable;
+import org.solverforge.wasm.service.dto.RawJson;
+
+/**
+ * Compacted results of async solves that ended.
+ *
+ * A finished solve keeps only its final solution JSON, score and statistics; its solver,
+ * best solution holder and the request it was admitted with are dropped. Solutions larger
+ * than the spill threshold are written to a file in the spill directory, if one is
+ * configured, and read back when requested. A finished solve is evicted once its TTL
+ * has passed, so results of clients that never delete them do not accumulate.
+ */
+public final class FinishedSolves {
+    private static final Logger LOG = Logger.getLogger(FinishedSolves.class);
+
+    private static final ScheduledExecutorService EVICTIONS = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("finished-solve-eviction").daemon().factory());
+
+    /**
+     * Snapshot of the finished solves, reported by the diagnostics endpoint.
+     */
+    public record Stats(int count, long inMemoryBytes, int spilled, long spilledBytes, long evicted) {}
+
+    /**
+     * The result of a solve that ended.
+     *
+     * @param error the failure of the solve, or null if it ended normally
+     */
+    public record FinishedSolve(@Nullable RawJson solution, @Nullable Path spillFile, long solutionBytes,
+            @Nullable Score<?> score, @Nullable String error, long timeSpentMs, long queueTimeMs) {
+
+        /**
+         * @return the final solution, read from its spill file if it was spilled
+         */
+        public RawJson getSolution() {
+            if (spillFile == null) {
+                return solution;
+            }
+            try {
+                return RawJson.of(Files.readAllBytes(spillFile));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read spilled solution " + spillFile, e);
+            }
+        }
+    }
+
+    private record Entry(FinishedSolve solve, @Nullable ScheduledFuture<?> eviction) {}
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final long ttlMillis;
+    private final Optional<Path> spillPath;
+    private final long spillThresholdBytes;
+    private final AtomicLong evicted = new AtomicLong();
+
+    /**
+     * @param ttlMillis how long a finished solve is kept; 0 keeps it until it is removed
+     * @param spillPath directory for spilled solutions; if empty, solutions stay in memory
+     * @param spillThresholdBytes solutions larger than this are spilled
+     */
+    public FinishedSolves(long ttlMillis, Optional<Path> spillPath, long spillThresholdBytes) {
+        this.ttlMillis = ttlMillis;
+        this.spillPath = spillPath;
+        this.spillThresholdBytes = spillThresholdBytes;
+    }
+
+    /**
+     * Keep the result of a solve that ended, replacing an earlier result of the same id.
+     */
+    public FinishedSolve put(String solveId, RawJson solution, @Nullable Score<?> score, @Nullable String error,
+            long timeSpentMs, long queueTimeMs) {
+        var solutionBytes = solution.bytes().length;
+        var spillFile = (solutionBytes > spillThresholdBytes) ? spill(solution) : null;
+        var solve = new FinishedSolve((spillFile == null) ? solution : null, spillFile, solutionBytes, score, error,
+                timeSpentMs, queueTimeMs);
+
+        var entry = new Entry(solve, null);
+        var previous = entries.put(solveId, entry);
+        if (previous != null) {
+            discard(previous);
+        }
+        if (ttlMillis > 0) {
+            var eviction = EVICTIONS.schedule(() -> {
+                if (remove(solveId, solve)) {
+                    evicted.incrementAndGet();
+                }
+            }, ttlMillis, TimeUnit.MILLISECONDS);
+            if (!entries.replace(solveId, entry, new Entry(solve, eviction))) {
+                // Removed, or already evicted, meanwhile
+                eviction.cancel(false);
+            }
+        }
+        return solve;
+    }
+
+    public @Nullable FinishedSolve get(String solveId) {
+        var entry = entries.get(solveId);
+        return (entry != null) ? entry.solve() : null;
+    }
+
+    /**
+     * Remove the result of a solve, deleting its spill file.
+     *
+     * @return true if there was a result
+     */
+    public boolean remove(String solveId) {
+        var entry = entries.remove(solveId);
+        if (entry == null) {
+            return false;
+        }
+        discard(entry);
+        return true;
+    }
+
+    private boolean remove(String solveId, FinishedSolve solve) {
+        var entry = entries.get(solveId);
+        if (entry == null || entry.solve() != solve || !entries.remove(solveId, entry)) {
+            return false;
+        }
+        discard(entry);
+        return true;
+    }
+
+    public Stats getStats() {
+        int count = 0;
+        int spilled = 0;
+        long inMemoryBytes = 0;
+        long spilledBytes = 0;
+        for (var entry : entries.values()) {
+            count++;
+            if (entry.solve().spillFile() != null) {
+                spilled++;
+                spilledBytes += entry.solve().solutionBytes();
+            } else {
+                inMemoryBytes += entry.solve().solutionBytes();
+            }
+        }
+        return new Stats(count, inMemoryBytes, spilled, spilledBytes, evicted.get());
+    }
+
+    private @Nullable Path spill(RawJson solution) {
+        if (spillPath.isEmpty()) {
+            return null;
+        }
+        try {
+            var directory = Files.createDirectories(spillPath.get());
+            var file = Files.createTempFile(directory, "solve-", ".json");
+            Files.write(file, solution.bytes());
+            return file;
+        } catch (IOException e) {
+            LOG.warnf(e, "Failed to spill a solution to %s; keeping it in memory", spillPath.get());
+            return null;
+        }
+    }
+
+    private static void discard(Entry entry) {
+        if (entry.eviction() != null) {
+            entry.eviction().cancel(false);
+        }
+        var spillFile = entry.solve().spillFile();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                LOG.warnf(e, "Failed to delete spilled solution %s", spillFile);
+            }
+        }
+    }
+}
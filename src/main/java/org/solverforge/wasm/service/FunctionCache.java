@@ -1,321 +1,501 @@
 package org.solverforge.wasm.service;
 
-import java.util.Map;
+import java.util.Arrays;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicLong;
 
-import org.jboss.logging.Logger;
+import org.jspecify.annotations.Nullable;
+
+import com.dylibso.chicory.runtime.Instance;
 
 /**
- * Caches ALL WASM function call results to avoid redundant calls.
+ * Caches WASM function call results to avoid redundant calls.
+ *
+ * Results are keyed by a function ID (assigned per function name when the constraint
+ * provider is generated) and the call's i32 arguments, and stored as raw i64 values in
+ * open-addressing tables of primitive arrays, one table per arity. Lookups do not
+ * allocate, box or hash strings.
  *
  * Uses VERSION-BASED LAZY INVALIDATION:
- * - Each entity pointer has a version number
- * - Cache entries store versions at time of caching
+ * - Each entity pointer gets a dense ordinal, and a version number in a long[]
+ * - Cache entries store the ordinals and versions of their arguments at time of caching
  * - On lookup, version mismatch = cache miss (no iteration needed)
  * - invalidateEntity() is O(1) - just increment version
  *
  * This solves the scaling problem where iterating through all keys
  * for an entity became O(n) with large datasets.
+ *
+ * Results of functions that navigate from their arguments (e.g. shift.employee.skills)
+ * can depend on memory other than their arguments. If the instance's memory is a
+ * {@link DependencyTrackingMemory}, {@link #call1} and friends memoize calls by recording
+ * the memory blocks each call reads; such a result stays valid until one of those
+ * blocks is written.
+ *
+ * Functions that {@link PurityAnalysis} classifies as pure on facts are memoized by
+ * {@link #callPure1} and friends regardless of dependency tracking. Their results do not
+ * change while the solver runs, so their entries ignore {@link #invalidateEntity(int)}
+ * and only go stale when the memory of an argument is freed.
+ *
+ * The memory used by cached results is bounded by a budget. Stale entries are purged
+ * before a table grows, and a table that cannot grow within the budget evicts entries
+ * with the CLOCK algorithm instead: entries get a reference bit when they are read, and
+ * a hand sweeping the table evicts the first entry without one, clearing bits as it
+ * passes. Per-entity versions count towards the budget but grow with the number of
+ * entities, since they cannot be evicted.
+ *
+ * A cache is used by a single solver thread; only {@link #invalidateEntities(int[])}
+ * may be called from other threads.
  */
 public class FunctionCache {
-    private static final Logger LOG = Logger.getLogger(FunctionCache.class);
 
-    // Debug counters
-    private final AtomicLong hits = new AtomicLong();
-    private final AtomicLong misses = new AtomicLong();
-    private final AtomicLong invalidations = new AtomicLong();
-    private final AtomicLong staleReads = new AtomicLong();
+    /**
+     * Returned by lookups on a miss. A result equal to it is never cached.
+     */
+    public static final long MISS = Long.MIN_VALUE;
 
-    // Version per entity pointer - O(1) invalidation
-    private final Map<Integer, Long> entityVersions = new ConcurrentHashMap<>();
-    private long globalVersion = 0;
+    /**
+     * Function ID of functions without one, such as those not created by a generated
+     * constraint provider. Their results are never cached.
+     */
+    public static final int NO_FUNCTION_ID = -1;
+
+    public static final int MAX_ARITY = 5;
+
+    // Marks entries of pure functions in place of memory dependencies
+    private static final int[] PURE = new int[0];
 
-    // Cache entry includes versions of all involved entities
-    private record BoolEntry(boolean value, long v1) {}
-    private record BoolEntry2(boolean value, long v1, long v2) {}
-    private record BoolEntry3(boolean value, long v1, long v2, long v3) {}
-    private record BoolEntry4(boolean value, long v1, long v2, long v3, long v4) {}
-    private record BoolEntry5(boolean value, long v1, long v2, long v3, long v4, long v5) {}
+    private static final int INITIAL_TABLE_CAPACITY = 256;
+    private static final int INITIAL_ENTITY_CAPACITY = 256;
 
-    private record IntEntry(int value, long v1) {}
-    private record IntEntry2(int value, long v1, long v2) {}
-    private record IntEntry3(int value, long v1, long v2, long v3) {}
-    private record IntEntry4(int value, long v1, long v2, long v3, long v4) {}
-    private record IntEntry5(int value, long v1, long v2, long v3, long v4, long v5) {}
+    // Caches of running solves, and the counters of closed ones, for the diagnostics endpoint
+    private static final Set<FunctionCache> OPEN_CACHES = ConcurrentHashMap.newKeySet();
+    private static final AtomicLong closedHits = new AtomicLong();
+    private static final AtomicLong closedMisses = new AtomicLong();
+    private static final AtomicLong closedStaleReads = new AtomicLong();
+    private static final AtomicLong closedEvictions = new AtomicLong();
+    private static final AtomicLong closedPurged = new AtomicLong();
+    private static final AtomicLong closedInvalidations = new AtomicLong();
+
+    /**
+     * Snapshot of cache statistics, reported by the diagnostics endpoint.
+     *
+     * @param caches number of caches of running solves
+     * @param entries entries in those caches
+     * @param memoryBytes estimated memory used by those caches
+     * @param evictions entries evicted to stay within the memory budget
+     * @param purged stale entries removed before they were read
+     */
+    public record Stats(int caches, int entries, long memoryBytes, long hits, long misses, double hitRate,
+            long staleReads, long evictions, long purged, long invalidations) {}
+
+    // Counters; only updated by the solver thread, read racily for statistics
+    private long hits;
+    private long misses;
+    private long invalidations;
+    private long staleReads;
+    private long evictions;
+    private long purged;
+
+    private final long maxMemoryBytes;
+
+    // Ordinal and version per entity pointer - O(1) invalidation
+    private final OrdinalTable entityOrdinals = new OrdinalTable(INITIAL_ENTITY_CAPACITY);
+    private long[] entityVersions = new long[INITIAL_ENTITY_CAPACITY];
+    // Incremented only when an entity's memory is freed; checked by entries of pure functions
+    private long[] entityGenerations = new long[INITIAL_ENTITY_CAPACITY];
+    private long globalVersion = 0;
 
-    private record LongEntry(long value, long v1) {}
-    private record LongEntry2(long value, long v1, long v2) {}
-    private record LongEntry3(long value, long v1, long v2, long v3) {}
-    private record LongEntry4(long value, long v1, long v2, long v3, long v4) {}
+    // Results by arity (index 0 is unused)
+    private final ResultTable[] resultTables = new ResultTable[MAX_ARITY + 1];
 
-    // Cache keys (without version - version checked on read)
-    private record UnaryKey(String functionName, int p1) {}
-    private record BinaryKey(String functionName, int p1, int p2) {}
-    private record TernaryKey(String functionName, int p1, int p2, int p3) {}
-    private record QuadKey(String functionName, int p1, int p2, int p3, int p4) {}
-    private record PentaKey(String functionName, int p1, int p2, int p3, int p4, int p5) {}
+    // Pointers invalidated by other threads, applied by the solver thread before its next access
+    private final ConcurrentLinkedQueue<int[]> pendingInvalidations = new ConcurrentLinkedQueue<>();
 
-    // Boolean caches
-    private final Map<UnaryKey, BoolEntry> boolUnary = new ConcurrentHashMap<>();
-    private final Map<BinaryKey, BoolEntry2> boolBinary = new ConcurrentHashMap<>();
-    private final Map<TernaryKey, BoolEntry3> boolTernary = new ConcurrentHashMap<>();
-    private final Map<QuadKey, BoolEntry4> boolQuad = new ConcurrentHashMap<>();
-    private final Map<PentaKey, BoolEntry5> boolPenta = new ConcurrentHashMap<>();
+    // Versions the memory read by memoized calls; null if calls are not memoized
+    private final @Nullable DependencyTrackingMemory memory;
 
-    // Integer caches
-    private final Map<UnaryKey, IntEntry> intUnary = new ConcurrentHashMap<>();
-    private final Map<BinaryKey, IntEntry2> intBinary = new ConcurrentHashMap<>();
-    private final Map<TernaryKey, IntEntry3> intTernary = new ConcurrentHashMap<>();
-    private final Map<QuadKey, IntEntry4> intQuad = new ConcurrentHashMap<>();
-    private final Map<PentaKey, IntEntry5> intPenta = new ConcurrentHashMap<>();
+    private final PurityAnalysis purity;
 
-    // Long caches
-    private final Map<UnaryKey, LongEntry> longUnary = new ConcurrentHashMap<>();
-    private final Map<BinaryKey, LongEntry2> longBinary = new ConcurrentHashMap<>();
-    private final Map<TernaryKey, LongEntry3> longTernary = new ConcurrentHashMap<>();
-    private final Map<QuadKey, LongEntry4> longQuad = new ConcurrentHashMap<>();
+    public FunctionCache() {
+        this(null);
+    }
 
-    private long getVersion(int pointer) {
-        return entityVersions.getOrDefault(pointer, 0L);
+    public FunctionCache(@Nullable DependencyTrackingMemory memory) {
+        this(memory, PurityAnalysis.empty());
     }
 
-    // ========== Boolean (Predicate) Methods ==========
+    public FunctionCache(@Nullable DependencyTrackingMemory memory, PurityAnalysis purity) {
+        this(memory, purity, Long.MAX_VALUE);
+    }
 
-    public Boolean getBool1(String fn, int p1) {
-        var entry = boolUnary.get(new UnaryKey(fn, p1));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1)) {
-            staleReads.incrementAndGet();
-            return null;
+    /**
+     * @param maxMemoryBytes the memory the cache may use, beyond which entries are evicted
+     */
+    public FunctionCache(@Nullable DependencyTrackingMemory memory, PurityAnalysis purity, long maxMemoryBytes) {
+        this.memory = memory;
+        this.purity = purity;
+        this.maxMemoryBytes = maxMemoryBytes;
+        for (int arity = 1; arity <= MAX_ARITY; arity++) {
+            resultTables[arity] = new ResultTable(arity, INITIAL_TABLE_CAPACITY);
         }
-        hits.incrementAndGet();
-        return entry.value;
     }
 
-    public void putBool1(String fn, int p1, boolean result) {
-        misses.incrementAndGet();
-        boolUnary.put(new UnaryKey(fn, p1), new BoolEntry(result, getVersion(p1)));
+    /**
+     * Create a cache for the instance, which memoizes calls if the instance's memory
+     * tracks dependencies.
+     */
+    public static FunctionCache forInstance(Instance instance) {
+        return forInstance(instance, PurityAnalysis.empty());
     }
 
-    public Boolean getBool2(String fn, int p1, int p2) {
-        var entry = boolBinary.get(new BinaryKey(fn, p1, p2));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        long h = hits.incrementAndGet();
-        if (h % 10000 == 0) {
-            LOG.infof("Cache stats: hits=%d, misses=%d, stale=%d, invalidations=%d",
-                    h, misses.get(), staleReads.get(), invalidations.get());
-        }
-        return entry.value;
+    /**
+     * Create a cache for the instance, which also memoizes calls of the functions the
+     * analysis classifies as pure on facts.
+     */
+    public static FunctionCache forInstance(Instance instance, PurityAnalysis purity) {
+        return forInstance(instance, purity, Long.MAX_VALUE);
     }
 
-    public void putBool2(String fn, int p1, int p2, boolean result) {
-        misses.incrementAndGet();
-        boolBinary.put(new BinaryKey(fn, p1, p2), new BoolEntry2(result, getVersion(p1), getVersion(p2)));
+    public static FunctionCache forInstance(Instance instance, PurityAnalysis purity, long maxMemoryBytes) {
+        return new FunctionCache(instance.memory() instanceof DependencyTrackingMemory trackingMemory
+                ? trackingMemory
+                : null, purity, maxMemoryBytes);
+    }
+
+    /**
+     * Create the cache of a solve, which is included in the diagnostics statistics until
+     * it is {@link #close() closed}.
+     */
+    public static FunctionCache forSolve(Instance instance, PurityAnalysis purity, long maxMemoryBytes) {
+        var cache = forInstance(instance, purity, maxMemoryBytes);
+        OPEN_CACHES.add(cache);
+        return cache;
     }
 
-    public Boolean getBool3(String fn, int p1, int p2, int p3) {
-        var entry = boolTernary.get(new TernaryKey(fn, p1, p2, p3));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3)) {
-            staleReads.incrementAndGet();
-            return null;
+    /**
+     * Stop reporting the cache individually once its solve ended; its counters are kept
+     * in the totals.
+     */
+    public void close() {
+        if (OPEN_CACHES.remove(this)) {
+            closedHits.addAndGet(hits);
+            closedMisses.addAndGet(misses);
+            closedStaleReads.addAndGet(staleReads);
+            closedEvictions.addAndGet(evictions);
+            closedPurged.addAndGet(purged);
+            closedInvalidations.addAndGet(invalidations);
         }
-        hits.incrementAndGet();
-        return entry.value;
     }
 
-    public void putBool3(String fn, int p1, int p2, int p3, boolean result) {
-        misses.incrementAndGet();
-        boolTernary.put(new TernaryKey(fn, p1, p2, p3), new BoolEntry3(result, getVersion(p1), getVersion(p2), getVersion(p3)));
+    /**
+     * @return true if {@link #call1} and friends memoize their results
+     */
+    public boolean isMemoizing() {
+        return memory != null;
+    }
+
+    /**
+     * @return true if calls of the export can be memoized with {@link #callPure1} and friends
+     */
+    public boolean isPureOnFacts(String exportName) {
+        return purity.isPureOnFacts(exportName);
     }
 
-    public Boolean getBool4(String fn, int p1, int p2, int p3, int p4) {
-        var entry = boolQuad.get(new QuadKey(fn, p1, p2, p3, p4));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3) || entry.v4 != getVersion(p4)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        hits.incrementAndGet();
-        return entry.value;
+    // ========== Lookups ==========
+
+    /**
+     * @return the cached result of calling the function with the given argument,
+     *         or {@link #MISS} if there is none or it is stale
+     */
+    public long get1(int functionId, int p1) {
+        return get(1, functionId, p1, 0, 0, 0, 0);
     }
 
-    public void putBool4(String fn, int p1, int p2, int p3, int p4, boolean result) {
-        misses.incrementAndGet();
-        boolQuad.put(new QuadKey(fn, p1, p2, p3, p4), new BoolEntry4(result, getVersion(p1), getVersion(p2), getVersion(p3), getVersion(p4)));
+    public long get2(int functionId, int p1, int p2) {
+        return get(2, functionId, p1, p2, 0, 0, 0);
     }
 
-    public Boolean getBool5(String fn, int p1, int p2, int p3, int p4, int p5) {
-        var entry = boolPenta.get(new PentaKey(fn, p1, p2, p3, p4, p5));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3) ||
-                entry.v4 != getVersion(p4) || entry.v5 != getVersion(p5)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        hits.incrementAndGet();
-        return entry.value;
+    public long get3(int functionId, int p1, int p2, int p3) {
+        return get(3, functionId, p1, p2, p3, 0, 0);
+    }
+
+    public long get4(int functionId, int p1, int p2, int p3, int p4) {
+        return get(4, functionId, p1, p2, p3, p4, 0);
     }
 
-    public void putBool5(String fn, int p1, int p2, int p3, int p4, int p5, boolean result) {
-        misses.incrementAndGet();
-        boolPenta.put(new PentaKey(fn, p1, p2, p3, p4, p5),
-                new BoolEntry5(result, getVersion(p1), getVersion(p2), getVersion(p3), getVersion(p4), getVersion(p5)));
+    public long get5(int functionId, int p1, int p2, int p3, int p4, int p5) {
+        return get(5, functionId, p1, p2, p3, p4, p5);
     }
 
-    // ========== Integer (Mapper/ToInt) Methods ==========
+    public void put1(int functionId, int p1, long result) {
+        put(1, functionId, p1, 0, 0, 0, 0, result);
+    }
 
-    public Integer getInt1(String fn, int p1) {
-        var entry = intUnary.get(new UnaryKey(fn, p1));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        hits.incrementAndGet();
-        return entry.value;
+    public void put2(int functionId, int p1, int p2, long result) {
+        put(2, functionId, p1, p2, 0, 0, 0, result);
     }
 
-    public void putInt1(String fn, int p1, int result) {
-        misses.incrementAndGet();
-        intUnary.put(new UnaryKey(fn, p1), new IntEntry(result, getVersion(p1)));
+    public void put3(int functionId, int p1, int p2, int p3, long result) {
+        put(3, functionId, p1, p2, p3, 0, 0, result);
     }
 
-    public Integer getInt2(String fn, int p1, int p2) {
-        var entry = intBinary.get(new BinaryKey(fn, p1, p2));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        hits.incrementAndGet();
-        return entry.value;
+    public void put4(int functionId, int p1, int p2, int p3, int p4, long result) {
+        put(4, functionId, p1, p2, p3, p4, 0, result);
     }
 
-    public void putInt2(String fn, int p1, int p2, int result) {
-        misses.incrementAndGet();
-        intBinary.put(new BinaryKey(fn, p1, p2), new IntEntry2(result, getVersion(p1), getVersion(p2)));
+    public void put5(int functionId, int p1, int p2, int p3, int p4, int p5, long result) {
+        put(5, functionId, p1, p2, p3, p4, p5, result);
     }
 
-    public Integer getInt3(String fn, int p1, int p2, int p3) {
-        var entry = intTernary.get(new TernaryKey(fn, p1, p2, p3));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3)) {
-            staleReads.incrementAndGet();
-            return null;
+    private long get(int arity, int functionId, int p1, int p2, int p3, int p4, int p5) {
+        applyPendingInvalidations();
+        var table = resultTables[arity];
+        int slot = table.find(functionId, p1, p2, p3, p4, p5);
+        if (slot < 0) {
+            return MISS;
+        }
+        if (!isCurrent(table, slot)) {
+            staleReads++;
+            return MISS;
+        }
+        hits++;
+        table.referenced[slot] = true;
+        return table.values[slot];
+    }
+
+    private boolean isCurrent(ResultTable table, int slot) {
+        var dependencies = table.dependencies[slot];
+        if (dependencies == PURE) {
+            return table.isCurrent(slot, entityGenerations);
+        } else if (dependencies != null) {
+            return memory.isCurrent(dependencies);
+        } else {
+            return table.isCurrent(slot, entityVersions);
         }
-        hits.incrementAndGet();
-        return entry.value;
     }
 
-    public void putInt3(String fn, int p1, int p2, int p3, int result) {
-        misses.incrementAndGet();
-        intTernary.put(new TernaryKey(fn, p1, p2, p3), new IntEntry3(result, getVersion(p1), getVersion(p2), getVersion(p3)));
+    private void put(int arity, int functionId, int p1, int p2, int p3, int p4, int p5, long result) {
+        put(arity, functionId, p1, p2, p3, p4, p5, result, null);
     }
 
-    public Integer getInt4(String fn, int p1, int p2, int p3, int p4) {
-        var entry = intQuad.get(new QuadKey(fn, p1, p2, p3, p4));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3) || entry.v4 != getVersion(p4)) {
-            staleReads.incrementAndGet();
-            return null;
+    /**
+     * @param dependencies the memory blocks the result was computed from, {@link #PURE} if
+     *        it is the result of a pure function, or null if it only depends on its arguments
+     */
+    private void put(int arity, int functionId, int p1, int p2, int p3, int p4, int p5, long result,
+            int @Nullable [] dependencies) {
+        misses++;
+        if (functionId == NO_FUNCTION_ID || result == MISS) {
+            return;
+        }
+        applyPendingInvalidations();
+        var table = resultTables[arity];
+        int slot = table.find(functionId, p1, p2, p3, p4, p5);
+        if (slot < 0) {
+            if (table.isFull()) {
+                makeRoom(table);
+                slot = table.find(functionId, p1, p2, p3, p4, p5);
+            }
+            slot = table.insert(-slot - 1, functionId, p1, p2, p3, p4, p5);
+        }
+        table.values[slot] = result;
+        table.setDependencies(slot, dependencies);
+        table.referenced[slot] = false;
+        if (dependencies != null && dependencies != PURE) {
+            // Dependencies vary in size, so they can push the cache over its budget
+            while (getMemoryBytes() > maxMemoryBytes && table.size > 1) {
+                evict(table);
+            }
+            return;
+        }
+        int base = slot * arity;
+        for (int i = 0; i < arity; i++) {
+            int ordinal = getOrCreateOrdinal(argument(i, p1, p2, p3, p4, p5));
+            table.ordinals[base + i] = ordinal;
+            table.versions[base + i] = (dependencies == PURE) ? entityGenerations[ordinal] : entityVersions[ordinal];
         }
-        hits.incrementAndGet();
-        return entry.value;
     }
 
-    public void putInt4(String fn, int p1, int p2, int p3, int p4, int result) {
-        misses.incrementAndGet();
-        intQuad.put(new QuadKey(fn, p1, p2, p3, p4), new IntEntry4(result, getVersion(p1), getVersion(p2), getVersion(p3), getVersion(p4)));
+    // ========== Memoized calls ==========
+
+    /**
+     * Call the function, returning the memoized result of an earlier identical call
+     * if none of the memory it read has been written since. Calls are not memoized
+     * unless {@link #isMemoizing()}.
+     */
+    public long call1(int functionId, WasmCall function, int p1) {
+        return call(1, functionId, function, p1, 0, 0, 0, 0);
     }
 
-    public Integer getInt5(String fn, int p1, int p2, int p3, int p4, int p5) {
-        var entry = intPenta.get(new PentaKey(fn, p1, p2, p3, p4, p5));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3) ||
-                entry.v4 != getVersion(p4) || entry.v5 != getVersion(p5)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        hits.incrementAndGet();
-        return entry.value;
+    public long call2(int functionId, WasmCall function, int p1, int p2) {
+        return call(2, functionId, function, p1, p2, 0, 0, 0);
     }
 
-    public void putInt5(String fn, int p1, int p2, int p3, int p4, int p5, int result) {
-        misses.incrementAndGet();
-        intPenta.put(new PentaKey(fn, p1, p2, p3, p4, p5),
-                new IntEntry5(result, getVersion(p1), getVersion(p2), getVersion(p3), getVersion(p4), getVersion(p5)));
+    public long call3(int functionId, WasmCall function, int p1, int p2, int p3) {
+        return call(3, functionId, function, p1, p2, p3, 0, 0);
     }
 
-    // ========== Long (ToLong) Methods ==========
+    public long call4(int functionId, WasmCall function, int p1, int p2, int p3, int p4) {
+        return call(4, functionId, function, p1, p2, p3, p4, 0);
+    }
+
+    public long call5(int functionId, WasmCall function, int p1, int p2, int p3, int p4, int p5) {
+        return call(5, functionId, function, p1, p2, p3, p4, p5);
+    }
 
-    public Long getLong1(String fn, int p1) {
-        var entry = longUnary.get(new UnaryKey(fn, p1));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1)) {
-            staleReads.incrementAndGet();
-            return null;
+    private long call(int arity, int functionId, WasmCall function, int p1, int p2, int p3, int p4, int p5) {
+        if (memory == null || functionId == NO_FUNCTION_ID) {
+            return invoke(arity, function, p1, p2, p3, p4, p5);
+        }
+        long result = get(arity, functionId, p1, p2, p3, p4, p5);
+        if (result != MISS) {
+            return result;
+        }
+        if (!memory.startRecording()) {
+            // Called while recording another call (e.g. from a host function); its reads
+            // are part of that call's dependencies
+            return invoke(arity, function, p1, p2, p3, p4, p5);
         }
-        hits.incrementAndGet();
-        return entry.value;
+        int[] dependencies;
+        try {
+            result = invoke(arity, function, p1, p2, p3, p4, p5);
+        } finally {
+            dependencies = memory.stopRecording();
+        }
+        put(arity, functionId, p1, p2, p3, p4, p5, result, dependencies);
+        return result;
     }
 
-    public void putLong1(String fn, int p1, long result) {
-        misses.incrementAndGet();
-        longUnary.put(new UnaryKey(fn, p1), new LongEntry(result, getVersion(p1)));
+    /**
+     * Call a function that is pure on facts, returning the memoized result of an earlier
+     * identical call unless the memory of one of its arguments was freed since.
+     * Only valid for exports for which {@link #isPureOnFacts(String)} is true.
+     */
+    public long callPure1(int functionId, WasmCall function, int p1) {
+        return callPure(1, functionId, function, p1, 0, 0, 0, 0);
     }
 
-    public Long getLong2(String fn, int p1, int p2) {
-        var entry = longBinary.get(new BinaryKey(fn, p1, p2));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2)) {
-            staleReads.incrementAndGet();
-            return null;
-        }
-        hits.incrementAndGet();
-        return entry.value;
+    public long callPure2(int functionId, WasmCall function, int p1, int p2) {
+        return callPure(2, functionId, function, p1, p2, 0, 0, 0);
+    }
+
+    public long callPure3(int functionId, WasmCall function, int p1, int p2, int p3) {
+        return callPure(3, functionId, function, p1, p2, p3, 0, 0);
+    }
+
+    public long callPure4(int functionId, WasmCall function, int p1, int p2, int p3, int p4) {
+        return callPure(4, functionId, function, p1, p2, p3, p4, 0);
+    }
+
+    public long callPure5(int functionId, WasmCall function, int p1, int p2, int p3, int p4, int p5) {
+        return callPure(5, functionId, function, p1, p2, p3, p4, p5);
     }
 
-    public void putLong2(String fn, int p1, int p2, long result) {
-        misses.incrementAndGet();
-        longBinary.put(new BinaryKey(fn, p1, p2), new LongEntry2(result, getVersion(p1), getVersion(p2)));
+    private long callPure(int arity, int functionId, WasmCall function, int p1, int p2, int p3, int p4, int p5) {
+        if (functionId == NO_FUNCTION_ID) {
+            return invoke(arity, function, p1, p2, p3, p4, p5);
+        }
+        long result = get(arity, functionId, p1, p2, p3, p4, p5);
+        if (result != MISS) {
+            return result;
+        }
+        result = invoke(arity, function, p1, p2, p3, p4, p5);
+        put(arity, functionId, p1, p2, p3, p4, p5, result, PURE);
+        return result;
     }
 
-    public Long getLong3(String fn, int p1, int p2, int p3) {
-        var entry = longTernary.get(new TernaryKey(fn, p1, p2, p3));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3)) {
-            staleReads.incrementAndGet();
-            return null;
+    // ========== Memory budget ==========
+
+    /**
+     * Make room in a table that is about to grow: purge its stale entries, and if that
+     * is not enough and growing would exceed the memory budget, evict an entry instead.
+     */
+    private void makeRoom(ResultTable table) {
+        purgeStale(table);
+        if (table.isFull() && getMemoryBytes() + table.getSlotArrayBytes() > maxMemoryBytes) {
+            evict(table);
         }
-        hits.incrementAndGet();
-        return entry.value;
     }
 
-    public void putLong3(String fn, int p1, int p2, int p3, long result) {
-        misses.incrementAndGet();
-        longTernary.put(new TernaryKey(fn, p1, p2, p3), new LongEntry3(result, getVersion(p1), getVersion(p2), getVersion(p3)));
+    private void purgeStale(ResultTable table) {
+        for (int slot = 0; slot <= table.mask; slot++) {
+            // Removing an entry can move the next one of its probe sequence into the slot
+            while (!table.isEmpty(slot) && !isCurrent(table, slot)) {
+                table.remove(slot);
+                purged++;
+            }
+        }
     }
 
-    public Long getLong4(String fn, int p1, int p2, int p3, int p4) {
-        var entry = longQuad.get(new QuadKey(fn, p1, p2, p3, p4));
-        if (entry == null) return null;
-        if (entry.v1 != getVersion(p1) || entry.v2 != getVersion(p2) || entry.v3 != getVersion(p3) || entry.v4 != getVersion(p4)) {
-            staleReads.incrementAndGet();
-            return null;
+    /**
+     * Remove one entry chosen by the CLOCK hand. Stale entries are always removed, and
+     * entries read since the hand last passed get a second chance.
+     */
+    private void evict(ResultTable table) {
+        for (int step = 0; step <= 2 * (table.mask + 1); step++) {
+            int slot = table.hand;
+            if (!table.isEmpty(slot)) {
+                if (!isCurrent(table, slot)) {
+                    table.remove(slot);
+                    purged++;
+                    return;
+                }
+                if (!table.referenced[slot]) {
+                    // The hand stays, since the next entry may have moved into the slot
+                    table.remove(slot);
+                    evictions++;
+                    return;
+                }
+                table.referenced[slot] = false;
+            }
+            table.hand = (slot + 1) & table.mask;
         }
-        hits.incrementAndGet();
-        return entry.value;
     }
 
-    public void putLong4(String fn, int p1, int p2, int p3, int p4, long result) {
-        misses.incrementAndGet();
-        longQuad.put(new QuadKey(fn, p1, p2, p3, p4), new LongEntry4(result, getVersion(p1), getVersion(p2), getVersion(p3), getVersion(p4)));
+    /**
+     * @return an estimate of the memory used by the cache, in bytes
+     */
+    public long getMemoryBytes() {
+        long bytes = entityOrdinals.getMemoryBytes() + 16L * entityVersions.length;
+        for (int arity = 1; arity <= MAX_ARITY; arity++) {
+            bytes += resultTables[arity].getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    private static long invoke(int arity, WasmCall function, int p1, int p2, int p3, int p4, int p5) {
+        return switch (arity) {
+            case 1 -> function.call1(p1);
+            case 2 -> function.call2(p1, p2);
+            case 3 -> function.call3(p1, p2, p3);
+            case 4 -> function.call4(p1, p2, p3, p4);
+            default -> function.call5(p1, p2, p3, p4, p5);
+        };
+    }
+
+    private static int argument(int index, int p1, int p2, int p3, int p4, int p5) {
+        return switch (index) {
+            case 0 -> p1;
+            case 1 -> p2;
+            case 2 -> p3;
+            case 3 -> p4;
+            default -> p5;
+        };
+    }
+
+    private int getOrCreateOrdinal(int pointer) {
+        int ordinal = entityOrdinals.get(pointer);
+        if (ordinal < 0) {
+            ordinal = entityOrdinals.size();
+            entityOrdinals.put(pointer, ordinal);
+            if (ordinal == entityVersions.length) {
+                entityVersions = Arrays.copyOf(entityVersions, ordinal * 2);
+                entityGenerations = Arrays.copyOf(entityGenerations, ordinal * 2);
+            }
+        }
+        return ordinal;
     }
 
     // ========== O(1) Invalidation ==========
@@ -325,35 +505,61 @@ public class FunctionCache {
      * O(1) - just bumps the version number. Stale entries detected lazily on read.
      */
     public void invalidateEntity(int pointer) {
-        long newVersion = entityVersions.compute(pointer, (k, v) -> (v == null ? 0L : v) + 1);
-        long inv = invalidations.incrementAndGet();
+        applyPendingInvalidations();
+        bumpVersion(pointer);
+        invalidations++;
         globalVersion++;
+    }
+
+    /**
+     * Invalidate all cached results involving any of the given entity pointers,
+     * such as the objects of a solution being freed. O(1) per pointer.
+     * Unlike the other methods, this may be called from any thread; the invalidation
+     * takes effect before the solver thread's next access.
+     */
+    public void invalidateEntities(int[] pointers) {
+        pendingInvalidations.add(pointers);
+    }
+
+    private void applyPendingInvalidations() {
+        if (pendingInvalidations.isEmpty()) {
+            return;
+        }
+        int[] pointers;
+        while ((pointers = pendingInvalidations.poll()) != null) {
+            for (int pointer : pointers) {
+                bumpGeneration(pointer);
+            }
+            invalidations += pointers.length;
+            globalVersion++;
+        }
+    }
 
-        if (inv % 1000 == 0) {
-            int totalEntries = boolUnary.size() + boolBinary.size() + boolTernary.size() + boolQuad.size() + boolPenta.size() +
-                    intUnary.size() + intBinary.size() + intTernary.size() + intQuad.size() + intPenta.size() +
-                    longUnary.size() + longBinary.size() + longTernary.size() + longQuad.size();
-            LOG.infof("Inv#%d ptr=%x newVer=%d entities=%d entries=%d",
-                    inv, pointer, newVersion, entityVersions.size(), totalEntries);
+    private void bumpVersion(int pointer) {
+        // Pointers without an ordinal are not involved in any cached result
+        int ordinal = entityOrdinals.get(pointer);
+        if (ordinal >= 0) {
+            entityVersions[ordinal]++;
+        }
+    }
+
+    private void bumpGeneration(int pointer) {
+        // The memory is freed, so results of pure functions keyed by it are stale too
+        int ordinal = entityOrdinals.get(pointer);
+        if (ordinal >= 0) {
+            entityVersions[ordinal]++;
+            entityGenerations[ordinal]++;
         }
     }
 
     public void clear() {
-        boolUnary.clear();
-        boolBinary.clear();
-        boolTernary.clear();
-        boolQuad.clear();
-        boolPenta.clear();
-        intUnary.clear();
-        intBinary.clear();
-        intTernary.clear();
-        intQuad.clear();
-        intPenta.clear();
-        longUnary.clear();
-        longBinary.clear();
-        longTernary.clear();
-        longQuad.clear();
-        entityVersions.clear();
+        pendingInvalidations.clear();
+        for (int arity = 1; arity <= MAX_ARITY; arity++) {
+            resultTables[arity] = new ResultTable(arity, INITIAL_TABLE_CAPACITY);
+        }
+        entityOrdinals.clear();
+        entityVersions = new long[INITIAL_ENTITY_CAPACITY];
+        entityGenerations = new long[INITIAL_ENTITY_CAPACITY];
         globalVersion++;
     }
 
@@ -361,11 +567,336 @@ public class FunctionCache {
         return globalVersion;
     }
 
-    public String getStats() {
-        int boolCount = boolUnary.size() + boolBinary.size() + boolTernary.size() + boolQuad.size() + boolPenta.size();
-        int intCount = intUnary.size() + intBinary.size() + intTernary.size() + intQuad.size() + intPenta.size();
-        int longCount = longUnary.size() + longBinary.size() + longTernary.size() + longQuad.size();
-        return String.format("FunctionCache[bool=%d, int=%d, long=%d, entities=%d, hits=%d, misses=%d, stale=%d]",
-                boolCount, intCount, longCount, entityVersions.size(), hits.get(), misses.get(), staleReads.get());
+    private int getEntryCount() {
+        int count = 0;
+        for (int arity = 1; arity <= MAX_ARITY; arity++) {
+            count += resultTables[arity].size;
+        }
+        return count;
+    }
+
+    public Stats getStats() {
+        long total = hits + misses;
+        return new Stats(1, getEntryCount(), getMemoryBytes(), hits, misses,
+                total == 0 ? 0.0 : (double) hits / total, staleReads, evictions, purged, invalidations);
+    }
+
+    /**
+     * @return the statistics of the caches of running solves, with the counters of closed
+     *         caches included in the totals
+     */
+    public static Stats getGlobalStats() {
+        int caches = 0;
+        int entries = 0;
+        long memoryBytes = 0;
+        long hitCount = closedHits.get();
+        long missCount = closedMisses.get();
+        long staleReadCount = closedStaleReads.get();
+        long evictionCount = closedEvictions.get();
+        long purgedCount = closedPurged.get();
+        long invalidationCount = closedInvalidations.get();
+        for (var cache : OPEN_CACHES) {
+            // Read while the solver thread updates them; good enough for statistics
+            var stats = cache.getStats();
+            caches++;
+            entries += stats.entries();
+            memoryBytes += stats.memoryBytes();
+            hitCount += stats.hits();
+            missCount += stats.misses();
+            staleReadCount += stats.staleReads();
+            evictionCount += stats.evictions();
+            purgedCount += stats.purged();
+            invalidationCount += stats.invalidations();
+        }
+        long total = hitCount + missCount;
+        return new Stats(caches, entries, memoryBytes, hitCount, missCount,
+                total == 0 ? 0.0 : (double) hitCount / total, staleReadCount, evictionCount, purgedCount,
+                invalidationCount);
+    }
+
+    private static int hash(int functionId, int p1, int p2, int p3, int p4, int p5) {
+        int h = functionId * 0x9E3779B9;
+        h = (h ^ p1) * 0x9E3779B9;
+        h = (h ^ p2) * 0x9E3779B9;
+        h = (h ^ p3) * 0x9E3779B9;
+        h = (h ^ p4) * 0x9E3779B9;
+        h = (h ^ p5) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Results of functions of one arity, in an open-addressing table with linear probing.
+     * Entry i has its function ID and arguments at keys[i * (arity + 1)...], the ordinals and
+     * versions of its arguments at ordinals/versions[i * arity...] and its result at values[i].
+     * Memoized calls have their memory dependencies at dependencies[i] instead, and results
+     * of pure functions have {@link #PURE} there and argument generations in place of versions.
+     * referenced[i] is the entry's CLOCK reference bit.
+     */
+    private static final class ResultTable {
+        private static final int EMPTY = NO_FUNCTION_ID;
+
+        private final int arity;
+        private final int keyStride;
+        private int[] keys;
+        private int[] ordinals;
+        private long[] versions;
+        private long[] values;
+        private int[][] dependencies;
+        private boolean[] referenced;
+        private long dependencyBytes;
+        private int hand;
+        private int mask;
+        private int size;
+
+        ResultTable(int arity, int capacity) {
+            this.arity = arity;
+            this.keyStride = arity + 1;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity * keyStride];
+            for (int slot = 0; slot < capacity; slot++) {
+                keys[slot * keyStride] = EMPTY;
+            }
+            ordinals = new int[capacity * arity];
+            versions = new long[capacity * arity];
+            values = new long[capacity];
+            dependencies = new int[capacity][];
+            referenced = new boolean[capacity];
+            hand = 0;
+            mask = capacity - 1;
+        }
+
+        boolean isEmpty(int slot) {
+            return keys[slot * keyStride] == EMPTY;
+        }
+
+        /**
+         * @return true if inserting another entry would grow the table
+         */
+        boolean isFull() {
+            // Keep the load factor at most 1/2, so probe sequences stay short
+            return (size + 1) * 2 > mask + 1;
+        }
+
+        void setDependencies(int slot, int @Nullable [] slotDependencies) {
+            dependencyBytes += bytesOf(slotDependencies) - bytesOf(dependencies[slot]);
+            dependencies[slot] = slotDependencies;
+        }
+
+        private static long bytesOf(int @Nullable [] slotDependencies) {
+            return (slotDependencies == null || slotDependencies == PURE) ? 0 : 16 + 4L * slotDependencies.length;
+        }
+
+        /**
+         * @return the size of the arrays holding the entries, without dependencies
+         */
+        long getSlotArrayBytes() {
+            // keys, ordinals, versions, values, dependency references and reference bits
+            long slotBytes = 4L * keyStride + 4L * arity + 8L * arity + 8 + 8 + 1;
+            return slotBytes * (mask + 1);
+        }
+
+        long getMemoryBytes() {
+            return getSlotArrayBytes() + dependencyBytes;
+        }
+
+        private int homeSlot(int slot) {
+            int base = slot * keyStride;
+            return hash(keys[base],
+                    keys[base + 1],
+                    arity > 1 ? keys[base + 2] : 0,
+                    arity > 2 ? keys[base + 3] : 0,
+                    arity > 3 ? keys[base + 4] : 0,
+                    arity > 4 ? keys[base + 5] : 0) & mask;
+        }
+
+        /**
+         * Remove the entry in the slot, moving later entries of its probe sequence back
+         * so lookups do not need tombstones.
+         */
+        void remove(int slot) {
+            setDependencies(slot, null);
+            int free = slot;
+            int next = (free + 1) & mask;
+            while (!isEmpty(next)) {
+                // The entry can move to the free slot if that is not before its home slot
+                if (((next - homeSlot(next)) & mask) >= ((next - free) & mask)) {
+                    move(next, free);
+                    free = next;
+                }
+                next = (next + 1) & mask;
+            }
+            keys[free * keyStride] = EMPTY;
+            dependencies[free] = null;
+            referenced[free] = false;
+            size--;
+        }
+
+        private void move(int from, int to) {
+            System.arraycopy(keys, from * keyStride, keys, to * keyStride, keyStride);
+            System.arraycopy(ordinals, from * arity, ordinals, to * arity, arity);
+            System.arraycopy(versions, from * arity, versions, to * arity, arity);
+            values[to] = values[from];
+            dependencies[to] = dependencies[from];
+            referenced[to] = referenced[from];
+        }
+
+        /**
+         * @return the slot of the entry, or -(slot where it would be inserted) - 1
+         */
+        int find(int functionId, int p1, int p2, int p3, int p4, int p5) {
+            // Unused arguments are always 0
+            int slot = hash(functionId, p1, p2, p3, p4, p5) & mask;
+            while (true) {
+                int base = slot * keyStride;
+                int storedFunctionId = keys[base];
+                if (storedFunctionId == EMPTY) {
+                    return -slot - 1;
+                }
+                if (storedFunctionId == functionId && keys[base + 1] == p1
+                        && (arity < 2 || keys[base + 2] == p2)
+                        && (arity < 3 || keys[base + 3] == p3)
+                        && (arity < 4 || keys[base + 4] == p4)
+                        && (arity < 5 || keys[base + 5] == p5)) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        /**
+         * Insert a key at a free slot returned by {@link #find}, growing the table if needed.
+         *
+         * @return the slot of the new entry
+         */
+        int insert(int slot, int functionId, int p1, int p2, int p3, int p4, int p5) {
+            if (isFull()) {
+                grow();
+                slot = -find(functionId, p1, p2, p3, p4, p5) - 1;
+            }
+            int base = slot * keyStride;
+            keys[base] = functionId;
+            for (int i = 0; i < arity; i++) {
+                keys[base + 1 + i] = argument(i, p1, p2, p3, p4, p5);
+            }
+            size++;
+            return slot;
+        }
+
+        boolean isCurrent(int slot, long[] entityVersions) {
+            int base = slot * arity;
+            for (int i = 0; i < arity; i++) {
+                if (versions[base + i] != entityVersions[ordinals[base + i]]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grow() {
+            var oldKeys = keys;
+            var oldOrdinals = ordinals;
+            var oldVersions = versions;
+            var oldValues = values;
+            var oldDependencies = dependencies;
+            var oldReferenced = referenced;
+            int oldCapacity = mask + 1;
+            allocate(oldCapacity * 2);
+            for (int oldSlot = 0; oldSlot < oldCapacity; oldSlot++) {
+                int oldBase = oldSlot * keyStride;
+                if (oldKeys[oldBase] == EMPTY) {
+                    continue;
+                }
+                int slot = -find(oldKeys[oldBase],
+                        oldKeys[oldBase + 1],
+                        arity > 1 ? oldKeys[oldBase + 2] : 0,
+                        arity > 2 ? oldKeys[oldBase + 3] : 0,
+                        arity > 3 ? oldKeys[oldBase + 4] : 0,
+                        arity > 4 ? oldKeys[oldBase + 5] : 0) - 1;
+                System.arraycopy(oldKeys, oldBase, keys, slot * keyStride, keyStride);
+                System.arraycopy(oldOrdinals, oldSlot * arity, ordinals, slot * arity, arity);
+                System.arraycopy(oldVersions, oldSlot * arity, versions, slot * arity, arity);
+                values[slot] = oldValues[oldSlot];
+                dependencies[slot] = oldDependencies[oldSlot];
+                referenced[slot] = oldReferenced[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * Map from entity pointer to ordinal, in an open-addressing table with linear probing.
+     * Ordinals are stored plus one, so 0 marks a free slot and any pointer can be a key.
+     */
+    private static final class OrdinalTable {
+        private int[] keys;
+        private int[] values;
+        private int mask;
+        private int size;
+
+        OrdinalTable(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            mask = capacity - 1;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long getMemoryBytes() {
+            return 8L * keys.length;
+        }
+
+        /**
+         * @return the ordinal of the pointer, or -1 if it has none
+         */
+        int get(int pointer) {
+            int slot = hash(pointer, 0, 0, 0, 0, 0) & mask;
+            while (values[slot] != 0) {
+                if (keys[slot] == pointer) {
+                    return values[slot] - 1;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        void put(int pointer, int ordinal) {
+            if ((size + 1) * 2 > mask + 1) {
+                grow();
+            }
+            int slot = hash(pointer, 0, 0, 0, 0, 0) & mask;
+            while (values[slot] != 0) {
+                if (keys[slot] == pointer) {
+                    values[slot] = ordinal + 1;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = pointer;
+            values[slot] = ordinal + 1;
+            size++;
+        }
+
+        void clear() {
+            Arrays.fill(values, 0);
+            size = 0;
+        }
+
+        private void grow() {
+            var oldKeys = keys;
+            var oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldValues.length * 2];
+            mask = keys.length - 1;
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] != 0) {
+                    put(oldKeys[slot], oldValues[slot] - 1);
+                }
+            }
+        }
     }
 }
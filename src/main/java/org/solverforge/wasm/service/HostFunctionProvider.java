@@ -1,26 +1,36 @@
 package org.solverforge.wasm.service;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
+import ai.timefold.solver.core.impl.util.MutableReference;
 import org.solverforge.wasm.service.dto.DomainObject;
 import org.solverforge.wasm.service.dto.FieldDescriptor;
 import org.solverforge.wasm.service.dto.PlanningProblem;
+import org.solverforge.wasm.service.dto.annotation.DomainPlanningId;
 import org.solverforge.wasm.service.dto.annotation.DomainPlanningScore;
 import org.solverforge.wasm.service.dto.annotation.DomainValueRangeProvider;
 
 import com.dylibso.chicory.runtime.ExportFunction;
 import com.dylibso.chicory.runtime.HostFunction;
 import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
 import com.dylibso.chicory.wasm.types.FunctionType;
 import com.dylibso.chicory.wasm.types.ValType;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 /**
  * Provides host functions required by WASM modules for solving planning problems.
@@ -35,14 +45,14 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 public class HostFunctionProvider {
     // Standard WASM word size: 4 bytes (32 bits = i32)
     // WASM linear memory uses 4-byte aligned fields for i32 values.
-    private static final int WORD_SIZE = Integer.BYTES;
+    static final int WORD_SIZE = Integer.BYTES;
 
-    // List structure offsets (12 bytes total):
+    // Host list layout (12 bytes total), used by the host list functions (see ModuleLists):
     // [size: i32][capacity: i32][backing_array_ptr: i32]
-    private static final int SIZE_OFFSET = 0;
-    private static final int CAPACITY_OFFSET = WORD_SIZE;
-    private static final int BACKING_ARRAY_OFFSET = WORD_SIZE * 2;
-    private static final int LIST_HEADER_SIZE = WORD_SIZE * 3;
+    static final int SIZE_OFFSET = 0;
+    static final int CAPACITY_OFFSET = WORD_SIZE;
+    static final int BACKING_ARRAY_OFFSET = WORD_SIZE * 2;
+    static final int LIST_HEADER_SIZE = WORD_SIZE * 3;
     private static final int INITIAL_CAPACITY = 4;
 
     private final ObjectMapper objectMapper;
@@ -52,10 +62,16 @@ public class HostFunctionProvider {
      * Each entry maps object key (e.g., "ptr1_ptr2") to result value.
      */
     private final Map<Integer, Map<String, Integer>> precomputed;
+    /**
+     * Memory layouts of domain objects, computed on first use.
+     */
+    private final Map<String, ParseLayout> objectLayoutMap = new HashMap<>();
+    private final SolutionJsonWriter solutionJsonWriter;
 
     public HostFunctionProvider(ObjectMapper objectMapper, PlanningProblem planningProblem) {
         this.objectMapper = objectMapper;
         this.domainObjectMap = planningProblem.getDomainObjectMap();
+        this.solutionJsonWriter = new SolutionJsonWriter(objectMapper.getFactory(), domainObjectMap);
         this.precomputed = planningProblem.getPrecomputed() != null
             ? planningProblem.getPrecomputed()
             : new HashMap<>();
@@ -101,7 +117,7 @@ public class HostFunctionProvider {
     /**
      * Find the solution class (the one with a DomainObjectMapper).
      */
-    private String findSolutionClass() {
+    static String findSolutionClass(Map<String, DomainObject> domainObjectMap) {
         for (var entry : domainObjectMap.entrySet()) {
             if (entry.getValue().getDomainObjectMapper() != null) {
                 return entry.getKey();
@@ -110,35 +126,10 @@ public class HostFunctionProvider {
         throw new IllegalStateException("No solution class found (must have a DomainObjectMapper)");
     }
 
-    /**
-     * Calculate the size of a domain object in WASM memory.
-     * Accounts for alignment requirements matching Rust's LayoutCalculator.
-     */
-    private int calculateObjectSize(DomainObject def) {
-        int currentOffset = 0;
-        int maxAlignment = WORD_SIZE;
-
-        for (FieldDescriptor field : def.getFieldDescriptorMap().values()) {
-            int fieldAlignment = getFieldAlignment(field.getType());
-            int fieldSize = getFieldSize(field.getType());
-
-            // Align current offset for this field
-            currentOffset = alignOffset(currentOffset, fieldAlignment);
-            currentOffset += fieldSize;
-
-            maxAlignment = Math.max(maxAlignment, fieldAlignment);
-        }
-
-        // Align total size to max alignment
-        currentOffset = alignOffset(currentOffset, maxAlignment);
-
-        return Math.max(currentOffset, WORD_SIZE); // Minimum 1 word
-    }
-
     /**
      * Get the size of a field type in bytes.
      */
-    private int getFieldSize(String type) {
+    static int getFieldSize(String type) {
         return switch (type) {
             case "long", "double", "LocalDate", "LocalDateTime" -> 8; // LocalDate/LocalDateTime stored as long
             default -> WORD_SIZE; // int, float, pointers, arrays all use 4 bytes
@@ -149,7 +140,7 @@ public class HostFunctionProvider {
      * Get the alignment of a field type in bytes.
      * Alignment must match Rust's WasmMemoryType alignment.
      */
-    private int getFieldAlignment(String type) {
+    static int getFieldAlignment(String type) {
         return switch (type) {
             case "long", "double", "LocalDate", "LocalDateTime" -> 8; // 64-bit types need 8-byte alignment
             default -> WORD_SIZE; // 32-bit types need 4-byte alignment
@@ -159,7 +150,7 @@ public class HostFunctionProvider {
     /**
      * Align an offset to the required alignment boundary.
      */
-    private int alignOffset(int offset, int alignment) {
+    static int alignOffset(int offset, int alignment) {
         if (offset % alignment == 0) {
             return offset;
         }
@@ -169,7 +160,7 @@ public class HostFunctionProvider {
     /**
      * Check if a type is a primitive (not an object reference or array).
      */
-    private boolean isPrimitiveType(String type) {
+    static boolean isPrimitiveType(String type) {
         return type.equals("int") || type.equals("long") ||
                type.equals("float") || type.equals("double") ||
                type.equals("boolean") || type.equals("String") ||
@@ -179,7 +170,7 @@ public class HostFunctionProvider {
     /**
      * Check if a field has the PlanningScore annotation.
      */
-    private boolean hasPlanningScoreAnnotation(FieldDescriptor field) {
+    static boolean hasPlanningScoreAnnotation(FieldDescriptor field) {
         if (field.getAnnotations() == null) return false;
         return field.getAnnotations().stream()
                 .anyMatch(a -> a instanceof DomainPlanningScore);
@@ -193,196 +184,294 @@ public class HostFunctionProvider {
 
     // ========== hparseSchedule ==========
 
+    /**
+     * Memory layout of a domain object, with its fields by name and the field holding its
+     * planning ID (if any).
+     */
+    private record ParseLayout(int size, Map<String, ObjectLayout.Field> fieldLayoutMap,
+            List<ObjectLayout.Field> listFieldLayouts, String planningIdField) {}
+
+    /**
+     * Position of a top-level field value in the problem JSON, relative to its start,
+     * and the element count if the value is an array. Other values are small, so they
+     * are buffered instead (a root-level scalar cannot be re-parsed in place, since it is
+     * followed by a comma rather than whitespace).
+     */
+    private record TopLevelField(long offset, int elementCount, TokenBuffer value) {}
+
+    private ParseLayout getObjectLayout(String className, DomainObject def) {
+        return objectLayoutMap.computeIfAbsent(className, _ -> {
+            var layout = ObjectLayout.of(def);
+            var fieldLayoutMap = new LinkedHashMap<String, ObjectLayout.Field>();
+            var listFieldLayouts = new ArrayList<ObjectLayout.Field>();
+            String planningIdField = null;
+            for (var fieldLayout : layout.fields()) {
+                fieldLayoutMap.put(fieldLayout.name(), fieldLayout);
+                if (fieldLayout.field().getType().endsWith("[]")) {
+                    listFieldLayouts.add(fieldLayout);
+                }
+                if (planningIdField == null && hasPlanningIdAnnotation(fieldLayout.field())) {
+                    planningIdField = fieldLayout.name();
+                }
+            }
+            return new ParseLayout(layout.size(), fieldLayoutMap, listFieldLayouts, planningIdField);
+        });
+    }
+
+    private boolean hasPlanningIdAnnotation(FieldDescriptor field) {
+        if (field.getAnnotations() == null) return false;
+        return field.getAnnotations().stream()
+                .anyMatch(a -> a instanceof DomainPlanningId);
+    }
+
     /**
      * hparseSchedule(length: i32, ptr: i32) -> i32
      *
-     * Parses a JSON schedule string from WASM memory and creates native WASM objects
+     * Parses a JSON schedule from WASM memory and creates native WASM objects
      * dynamically based on the domain model.
      * Returns pointer to the allocated schedule structure.
+     *
+     * The JSON is streamed directly from linear memory, so neither a String nor a
+     * JsonNode tree of the problem is created. A first scan records where each top-level
+     * field starts and how many elements each top-level collection has; the fields are
+     * then parsed in domain order with their lists presized. Lists are built in the
+     * module's own layout (see {@link ModuleLists}).
      */
     private HostFunction createParseSchedule() {
         return new HostFunction("host", "hparseSchedule",
                 FunctionType.of(List.of(ValType.I32, ValType.I32), List.of(ValType.I32)),
                 (instance, args) -> {
-                    var scheduleString = instance.memory().readString((int) args[1], (int) args[0]);
+                    int length = (int) args[0];
+                    int start = (int) args[1];
                     var alloc = instance.export("alloc");
-                    var newList = instance.export("newList");
-                    var append = instance.export("append");
+                    var lists = ModuleLists.of(instance);
 
                     try {
-                        var parsedJson = objectMapper.reader().readTree(scheduleString);
+                        var topLevelFields = indexTopLevelFields(instance, start, length);
 
                         // Find solution class and its definition
-                        String solutionClassName = findSolutionClass();
+                        String solutionClassName = findSolutionClass(domainObjectMap);
                         DomainObject solutionDef = domainObjectMap.get(solutionClassName);
+                        var solutionLayout = getObjectLayout(solutionClassName, solutionDef);
 
                         // Entity maps will be populated with actual WASM pointers
                         Map<String, Map<Object, Integer>> entityMaps = new HashMap<>();
-                        Map<String, Integer> listPointers = new HashMap<>();
 
                         // Allocate solution object
-                        int solutionSize = calculateObjectSize(solutionDef);
-                        int solution = (int) alloc.apply(solutionSize)[0];
+                        int solution = (int) alloc.apply(solutionLayout.size())[0];
 
                         // FIRST PASS: Parse value range provider collections
                         // This ensures entityMaps is populated before parsing entity collections
                         // that reference these entities (e.g., Vehicle.visits references Visit entities)
-                        int offset = 0;
-                        for (var entry : solutionDef.getFieldDescriptorMap().entrySet()) {
-                            String fieldName = entry.getKey();
-                            FieldDescriptor field = entry.getValue();
-
-                            int fieldAlignment = getFieldAlignment(field.getType());
-                            offset = alignOffset(offset, fieldAlignment);
-
+                        for (var fieldLayout : solutionLayout.fieldLayoutMap().values()) {
+                            FieldDescriptor field = fieldLayout.field();
                             if (field.getType().endsWith("[]") && hasValueRangeProviderAnnotation(field)) {
-                                int listPtr = parseCollectionField(instance, alloc, newList, append,
-                                        fieldName, field, parsedJson, entityMaps, listPointers);
-                                instance.memory().writeI32(solution + offset, listPtr);
-                                listPointers.put(field.getType().replace("[]", ""), listPtr);
+                                int listPtr = parseCollectionField(instance, alloc, lists, field,
+                                        topLevelFields.get(fieldLayout.name()), start, length, entityMaps);
+                                instance.memory().writeI32(solution + fieldLayout.offset(), listPtr);
                             }
-
-                            offset += getFieldSize(field.getType());
                         }
 
                         // SECOND PASS: Parse all other fields
-                        offset = 0;
-                        for (var entry : solutionDef.getFieldDescriptorMap().entrySet()) {
-                            String fieldName = entry.getKey();
-                            FieldDescriptor field = entry.getValue();
-
-                            int fieldAlignment = getFieldAlignment(field.getType());
-                            offset = alignOffset(offset, fieldAlignment);
+                        for (var fieldLayout : solutionLayout.fieldLayoutMap().values()) {
+                            FieldDescriptor field = fieldLayout.field();
+                            var topLevelField = topLevelFields.get(fieldLayout.name());
 
                             if (hasPlanningScoreAnnotation(field)) {
-                                offset += getFieldSize(field.getType());
                                 continue;
                             }
 
                             // Skip value range providers - already parsed in first pass
                             if (field.getType().endsWith("[]") && hasValueRangeProviderAnnotation(field)) {
-                                offset += getFieldSize(field.getType());
                                 continue;
                             }
 
                             if (field.getType().endsWith("[]")) {
-                                int listPtr = parseCollectionField(instance, alloc, newList, append,
-                                        fieldName, field, parsedJson, entityMaps, listPointers);
-                                instance.memory().writeI32(solution + offset, listPtr);
-                                listPointers.put(field.getType().replace("[]", ""), listPtr);
-                            } else if (parsedJson.has(fieldName)) {
-                                writePrimitiveField(instance, alloc, solution + offset,
-                                        field, parsedJson.get(fieldName));
+                                int listPtr = parseCollectionField(instance, alloc, lists, field,
+                                        topLevelField, start, length, entityMaps);
+                                instance.memory().writeI32(solution + fieldLayout.offset(), listPtr);
+                            } else if (topLevelField != null) {
+                                try (var parser = topLevelField.value().asParser()) {
+                                    parser.nextToken();
+                                    writePrimitiveField(instance, alloc, solution + fieldLayout.offset(), field, parser);
+                                }
                             }
-
-                            offset += getFieldSize(field.getType());
                         }
 
                         return new long[] { solution };
-                    } catch (JsonProcessingException e) {
+                    } catch (IOException e) {
                         throw new RuntimeException(e);
                     }
                 });
     }
 
+    private JsonParser createParser(Instance instance, int start, int end) throws IOException {
+        return objectMapper.getFactory().createParser(new MemoryInputStream(instance.memory(), start, end));
+    }
+
     /**
-     * Find the planning ID value from a JSON object based on domain definition.
+     * Scan the problem JSON once, recording the offset of each top-level field value
+     * and the number of elements of each top-level array.
      */
-    private Object findPlanningId(DomainObject def, JsonNode json) {
-        for (var entry : def.getFieldDescriptorMap().entrySet()) {
-            FieldDescriptor field = entry.getValue();
-            if (field.getAnnotations() != null) {
-                boolean isPlanningId = field.getAnnotations().stream()
-                        .anyMatch(a -> a.getClass().getSimpleName().equals("DomainPlanningId"));
-                if (isPlanningId && json.has(entry.getKey())) {
-                    JsonNode idNode = json.get(entry.getKey());
-                    if (idNode.isInt()) return idNode.asInt();
-                    if (idNode.isLong()) return idNode.asLong();
-                    if (idNode.isTextual()) return idNode.asText();
-                    return idNode.toString();
+    private Map<String, TopLevelField> indexTopLevelFields(Instance instance, int start, int length) throws IOException {
+        var topLevelFields = new HashMap<String, TopLevelField>();
+        try (var parser = createParser(instance, start, start + length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Expected problem to be a JSON object, but got " + parser.currentToken());
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken value = parser.nextToken();
+                long offset = parser.currentTokenLocation().getByteOffset();
+                int elementCount = 0;
+                TokenBuffer buffer = null;
+                if (value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        parser.skipChildren();
+                        elementCount++;
+                    }
+                } else {
+                    buffer = new TokenBuffer(parser);
+                    buffer.copyCurrentStructure(parser);
                 }
+                topLevelFields.put(fieldName, new TopLevelField(offset, elementCount, buffer));
+            }
+        }
+        return topLevelFields;
+    }
+
+    /**
+     * Read the planning ID at the parser's current (scalar) token.
+     */
+    private Object readPlanningId(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            switch (parser.getNumberType()) {
+                case INT:
+                    return parser.getIntValue();
+                case LONG:
+                    return parser.getLongValue();
+                default:
+                    break;
             }
         }
-        return null;
+        return parser.getText();
     }
 
     /**
-     * Parse a collection field from JSON and return the list pointer.
+     * Read the planning ID of a referenced object (either just its ID or the full object),
+     * consuming the object. Returns null if the reference is null or has no planning ID.
      */
-    private int parseCollectionField(Instance instance, ExportFunction alloc, ExportFunction newList,
-            ExportFunction append, String fieldName, FieldDescriptor field, JsonNode json,
-            Map<String, Map<Object, Integer>> entityMaps, Map<String, Integer> listPointers) {
+    private Object readReferencePlanningId(String className, DomainObject def, JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return null;
+        }
+        String planningIdField = getObjectLayout(className, def).planningIdField();
+        Object planningId = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            boolean isPlanningId = parser.currentName().equals(planningIdField);
+            parser.nextToken();
+            if (isPlanningId && parser.currentToken().isScalarValue()) {
+                planningId = readPlanningId(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return planningId;
+    }
+
+    /**
+     * Parse a top-level collection field and return the list pointer.
+     * The list is presized to the element count found by the first scan.
+     */
+    private int parseCollectionField(Instance instance, ExportFunction alloc, ModuleLists lists, FieldDescriptor field,
+            TopLevelField topLevelField, int start, int length,
+            Map<String, Map<Object, Integer>> entityMaps) throws IOException {
 
         String elementType = field.getType().replace("[]", "");
         DomainObject elementDef = domainObjectMap.get(elementType);
 
-        int list = (int) newList.apply()[0];
-
-        if (!json.has(fieldName)) {
-            return list;
+        if (topLevelField == null || topLevelField.value() != null) {
+            // Missing or not an array
+            return lists.newList(INITIAL_CAPACITY);
         }
 
-        JsonNode arrayNode = json.get(fieldName);
+        int list = lists.newList(Math.max(topLevelField.elementCount(), INITIAL_CAPACITY));
+        try (var parser = createParser(instance, start + (int) topLevelField.offset(), start + length)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return list;
+            }
 
-        for (int i = 0; i < arrayNode.size(); i++) {
-            JsonNode elementJson = arrayNode.get(i);
+            var planningId = new MutableReference<Object>(null);
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (elementDef == null) {
+                    lists.append(list, readPrimitiveListElement(instance, alloc, elementType, parser));
+                    continue;
+                }
 
-            // Parse the full object and register in entityMaps
-            int element = parseObject(instance, alloc, newList, append, elementType, elementDef,
-                    elementJson, entityMaps, listPointers);
+                // Parse the full object and register in entityMaps
+                int element = parseObject(instance, alloc, lists, elementType, elementDef, parser, entityMaps, planningId);
 
-            // Store WASM pointer in entityMaps for later lookups by planning ID
-            if (elementDef != null) {
-                Object planningId = findPlanningId(elementDef, elementJson);
-                if (planningId != null) {
+                // Store WASM pointer in entityMaps for later lookups by planning ID
+                if (planningId.getValue() != null) {
                     entityMaps.computeIfAbsent(elementType, k -> new HashMap<>())
-                            .put(planningId, element);
+                            .put(planningId.getValue(), element);
                 }
+                lists.append(list, element);
             }
-            append.apply(list, element);
         }
 
         return list;
     }
 
     /**
-     * Parse a single object from JSON and return its pointer.
+     * Parse a single object at the parser's current token and return its pointer.
+     * The object's planning ID, if any, is stored in {@code planningId}.
      */
-    private int parseObject(Instance instance, ExportFunction alloc, ExportFunction newList,
-            ExportFunction append, String className,
-            DomainObject def, JsonNode json, Map<String, Map<Object, Integer>> entityMaps,
-            Map<String, Integer> listPointers) {
-
-        int size = calculateObjectSize(def);
-        int obj = (int) alloc.apply(size)[0];
-
-        int offset = 0;
-        for (var entry : def.getFieldDescriptorMap().entrySet()) {
-            String fieldName = entry.getKey();
-            FieldDescriptor field = entry.getValue();
-
-            // Align offset for this field's type
-            int fieldAlignment = getFieldAlignment(field.getType());
-            offset = alignOffset(offset, fieldAlignment);
-
-            if (field.getType().endsWith("[]")) {
-                // Nested array field - create list and populate it
-                int listPtr = parseNestedList(instance, alloc, newList, append,
-                        fieldName, field, json, entityMaps, listPointers);
-                instance.memory().writeI32(obj + offset, listPtr);
-            } else if (json.has(fieldName)) {
-                JsonNode fieldValue = json.get(fieldName);
-
-                if (isPrimitiveType(field.getType())) {
-                    writePrimitiveField(instance, alloc, obj + offset, field, fieldValue);
+    private int parseObject(Instance instance, ExportFunction alloc, ModuleLists lists, String className,
+            DomainObject def, JsonParser parser, Map<String, Map<Object, Integer>> entityMaps,
+            MutableReference<Object> planningId) throws IOException {
+
+        var layout = getObjectLayout(className, def);
+        int obj = (int) alloc.apply(layout.size())[0];
+        planningId.setValue(null);
+
+        var parsedListFields = new boolean[layout.fieldLayoutMap().size()];
+        if (parser.currentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                var fieldLayout = layout.fieldLayoutMap().get(parser.currentName());
+                parser.nextToken();
+                if (fieldLayout == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                FieldDescriptor field = fieldLayout.field();
+                int ptr = obj + fieldLayout.offset();
+                if (fieldLayout.name().equals(layout.planningIdField()) && parser.currentToken().isScalarValue()) {
+                    planningId.setValue(readPlanningId(parser));
+                }
+
+                if (field.getType().endsWith("[]")) {
+                    // Nested array field - create list and populate it
+                    instance.memory().writeI32(ptr, parseNestedList(instance, alloc, lists, field, parser, entityMaps));
+                    parsedListFields[fieldLayout.index()] = true;
+                } else if (isPrimitiveType(field.getType())) {
+                    writePrimitiveField(instance, alloc, ptr, field, parser);
                 } else {
                     // Object reference - look up by planning ID
-                    writeObjectReference(instance, obj + offset, field.getType(), fieldValue,
-                            entityMaps, listPointers);
+                    writeObjectReference(instance, ptr, field.getType(), parser, entityMaps);
                 }
             }
+        } else {
+            parser.skipChildren();
+        }
 
-            offset += getFieldSize(field.getType());
+        // List fields are never null - missing ones get an empty list
+        for (var fieldLayout : layout.listFieldLayouts()) {
+            if (!parsedListFields[fieldLayout.index()]) {
+                instance.memory().writeI32(obj + fieldLayout.offset(), lists.newList(INITIAL_CAPACITY));
+            }
         }
 
         return obj;
@@ -390,102 +479,106 @@ public class HostFunctionProvider {
 
     /**
      * Parse a nested list field within an entity (e.g., Employee.unavailableDates).
-     * Returns a list pointer (never null - returns empty list if field missing).
+     * Returns a list pointer (never null - returns empty list if the value is not an array).
      */
-    private int parseNestedList(Instance instance, ExportFunction alloc, ExportFunction newList,
-            ExportFunction append, String fieldName, FieldDescriptor field, JsonNode parentJson,
-            Map<String, Map<Object, Integer>> entityMaps, Map<String, Integer> listPointers) {
+    private int parseNestedList(Instance instance, ExportFunction alloc, ModuleLists lists, FieldDescriptor field,
+            JsonParser parser, Map<String, Map<Object, Integer>> entityMaps) throws IOException {
 
         String elementType = field.getType().replace("[]", "");
-        int list = (int) newList.apply()[0];
+        int list = lists.newList(INITIAL_CAPACITY);
 
-        if (!parentJson.has(fieldName)) {
-            return list; // Return empty list if field not present
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return list;
         }
 
-        JsonNode arrayNode = parentJson.get(fieldName);
-        for (int i = 0; i < arrayNode.size(); i++) {
-            JsonNode elementJson = arrayNode.get(i);
-
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
             if (isPrimitiveType(elementType)) {
-                int value = switch (elementType) {
-                    case "int", "boolean" -> elementJson.asInt();
-                    case "LocalDate" -> {
-                        if (elementJson.isNumber()) {
-                            yield elementJson.asInt();
-                        } else {
-                            yield (int) LocalDate.parse(elementJson.asText()).toEpochDay();
-                        }
-                    }
-                    case "String" -> {
-                        String str = elementJson.asText();
-                        int strPtr = (int) alloc.apply(str.getBytes().length + 1)[0];
-                        instance.memory().writeCString(strPtr, str);
-                        yield strPtr;
-                    }
-                    default -> throw new IllegalArgumentException("Unsupported primitive list element type: " + elementType);
-                };
-                append.apply(list, value);
-            } else {
-                DomainObject elementDef = domainObjectMap.get(elementType);
-                if (elementDef != null) {
-                    int element;
-                    // For entity types, try to look up canonical entity by planning ID
-                    // This ensures list variables reference the same entities as value range providers
-                    Map<Object, Integer> entityMap = entityMaps.get(elementType);
-
-                    // Extract planning ID from full entity object
-                    Object planningId = findPlanningId(elementDef, elementJson);
-                    Integer ptr = entityMap.get(planningId);
-                    if (ptr == null) {
-                        throw new IllegalStateException(
-                            "Entity " + elementType + " with planning ID '" + planningId +
-                            "' (type: " + (planningId != null ? planningId.getClass().getSimpleName() : "null") +
-                            ") not found. Available IDs: " + entityMap.keySet() +
-                            ". JSON: " + elementJson);
-                    }
-                    element = ptr;
-                    append.apply(list, element);
-                }
+                lists.append(list, readPrimitiveListElement(instance, alloc, elementType, parser));
+                continue;
             }
+
+            DomainObject elementDef = domainObjectMap.get(elementType);
+            if (elementDef == null) {
+                parser.skipChildren();
+                continue;
+            }
+
+            // For entity types, look up canonical entity by planning ID
+            // This ensures list variables reference the same entities as value range providers
+            Map<Object, Integer> entityMap = entityMaps.getOrDefault(elementType, Map.of());
+
+            // Extract planning ID from full entity object
+            Object planningId = readReferencePlanningId(elementType, elementDef, parser);
+            Integer ptr = (planningId != null) ? entityMap.get(planningId) : null;
+            if (ptr == null) {
+                throw new IllegalStateException(
+                    "Entity " + elementType + " with planning ID '" + planningId +
+                    "' (type: " + (planningId != null ? planningId.getClass().getSimpleName() : "null") +
+                    ") not found. Available IDs: " + entityMap.keySet());
+            }
+            lists.append(list, ptr);
         }
 
         return list;
     }
 
     /**
-     * Write a primitive field value to WASM memory.
+     * Read a primitive list element at the parser's current token.
+     */
+    private int readPrimitiveListElement(Instance instance, ExportFunction alloc, String elementType,
+            JsonParser parser) throws IOException {
+        int value = switch (elementType) {
+            case "int", "boolean" -> parser.getValueAsInt();
+            case "LocalDate" -> {
+                if (parser.currentToken().isNumeric()) {
+                    yield parser.getValueAsInt();
+                } else {
+                    yield (int) LocalDate.parse(parser.getText()).toEpochDay();
+                }
+            }
+            case "String" -> writeString(instance, alloc, parser.getText());
+            default -> throw new IllegalArgumentException("Unsupported primitive list element type: " + elementType);
+        };
+        parser.skipChildren();
+        return value;
+    }
+
+    private int writeString(Instance instance, ExportFunction alloc, String str) {
+        int strPtr = (int) alloc.apply(str.getBytes().length + 1)[0];
+        instance.memory().writeCString(strPtr, str);
+        return strPtr;
+    }
+
+    /**
+     * Write the primitive field value at the parser's current token to WASM memory.
      */
     private void writePrimitiveField(Instance instance, ExportFunction alloc, int ptr,
-            FieldDescriptor field, JsonNode value) {
+            FieldDescriptor field, JsonParser parser) throws IOException {
+        JsonToken token = parser.currentToken();
         switch (field.getType()) {
-            case "int" -> instance.memory().writeI32(ptr, value.asInt());
+            case "int" -> instance.memory().writeI32(ptr, parser.getValueAsInt());
             case "long" -> {
                 // Write 64-bit value as two 32-bit writes (little-endian)
-                long longVal = value.asLong();
+                long longVal = parser.getValueAsLong();
                 instance.memory().writeI32(ptr, (int) longVal);
                 instance.memory().writeI32(ptr + 4, (int) (longVal >> 32));
             }
-            case "float" -> instance.memory().writeF32(ptr, (float) value.asDouble());
-            case "double" -> instance.memory().writeF64(ptr, value.asDouble());
-            case "boolean" -> instance.memory().writeI32(ptr, value.asBoolean() ? 1 : 0);
-            case "String" -> {
-                String str = value.asText();
-                int strPtr = (int) alloc.apply(str.getBytes().length + 1)[0];
-                instance.memory().writeCString(strPtr, str);
-                instance.memory().writeI32(ptr, strPtr);
-            }
+            case "float" -> instance.memory().writeF32(ptr, (float) parser.getValueAsDouble());
+            case "double" -> instance.memory().writeF64(ptr, parser.getValueAsDouble());
+            case "boolean" -> instance.memory().writeI32(ptr, parser.getValueAsBoolean() ? 1 : 0);
+            case "String" -> instance.memory().writeI32(ptr, writeString(instance, alloc, parser.getText()));
             case "LocalDate" -> {
                 // Store as epoch day (long)
                 // Accept either ISO date string (e.g., "2024-01-15") or epoch day integer
                 // Null values are stored as 0
                 long epochDay;
-                if (value.isNull()) {
+                if (token == JsonToken.VALUE_NULL) {
                     epochDay = 0;
-                } else if (value.isNumber()) {
-                    epochDay = value.asLong();
+                } else if (token.isNumeric()) {
+                    epochDay = parser.getValueAsLong();
                 } else {
-                    LocalDate date = LocalDate.parse(value.asText());
+                    LocalDate date = LocalDate.parse(parser.getText());
                     epochDay = date.toEpochDay();
                 }
                 instance.memory().writeI32(ptr, (int) epochDay);
@@ -495,10 +588,10 @@ public class HostFunctionProvider {
                 // Parse ISO datetime string (e.g., "2024-01-15T14:30:00") and store as epoch second (long)
                 // Null values are stored as 0
                 long epochSecond;
-                if (value.isNull()) {
+                if (token == JsonToken.VALUE_NULL) {
                     epochSecond = 0;
                 } else {
-                    LocalDateTime dateTime = LocalDateTime.parse(value.asText());
+                    LocalDateTime dateTime = LocalDateTime.parse(parser.getText());
                     epochSecond = dateTime.toEpochSecond(ZoneOffset.UTC);
                 }
                 instance.memory().writeI32(ptr, (int) epochSecond);
@@ -506,42 +599,69 @@ public class HostFunctionProvider {
             }
             default -> {
                 // Unknown primitive type, try to write as int
-                if (value.isInt()) {
-                    instance.memory().writeI32(ptr, value.asInt());
+                if (token == JsonToken.VALUE_NUMBER_INT && parser.getNumberType() == JsonParser.NumberType.INT) {
+                    instance.memory().writeI32(ptr, parser.getIntValue());
                 }
             }
         }
+        parser.skipChildren();
     }
 
     /**
      * Write an object reference by looking up the referenced entity.
      */
-    private void writeObjectReference(Instance instance, int ptr, String refType, JsonNode value,
-            Map<String, Map<Object, Integer>> entityMaps, Map<String, Integer> listPointers) {
-
-        if (value.isNull()) {
-            instance.memory().writeI32(ptr, 0);
-            return;
-        }
+    private void writeObjectReference(Instance instance, int ptr, String refType, JsonParser parser,
+            Map<String, Map<Object, Integer>> entityMaps) throws IOException {
 
         // Get the entity map for this type (contains actual WASM pointers)
         Map<Object, Integer> entityMap = entityMaps.get(refType);
 
         if (entityMap == null) {
+            parser.skipChildren();
             instance.memory().writeI32(ptr, 0);
             return;
         }
 
-        // Find the planning ID in the reference
-        DomainObject refDef = domainObjectMap.get(refType);
-        Object planningId = findPlanningId(refDef, value);
+        // Find the planning ID in the reference (null references have none)
+        Object planningId = readReferencePlanningId(refType, domainObjectMap.get(refType), parser);
+        Integer entityPtr = (planningId != null) ? entityMap.get(planningId) : null;
+        instance.memory().writeI32(ptr, (entityPtr != null) ? entityPtr : 0);
+    }
+
+    /**
+     * Reads a range of WASM linear memory in chunks, without copying the whole range.
+     */
+    private static final class MemoryInputStream extends InputStream {
+        private final Memory memory;
+        private final int end;
+        private int position;
+
+        MemoryInputStream(Memory memory, int start, int end) {
+            this.memory = memory;
+            this.position = start;
+            this.end = end;
+        }
 
-        if (planningId != null && entityMap.containsKey(planningId)) {
-            // entityMap now stores actual WASM pointers directly
-            int entityPtr = entityMap.get(planningId);
-            instance.memory().writeI32(ptr, entityPtr);
-        } else {
-            instance.memory().writeI32(ptr, 0);
+        @Override
+        public int read() {
+            if (position >= end) {
+                return -1;
+            }
+            return memory.read(position++) & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            int count = Math.min(length, end - position);
+            if (count <= 0) {
+                return -1;
+            }
+            System.arraycopy(memory.readBytes(position, count), 0, buffer, offset, count);
+            position += count;
+            return count;
         }
     }
 
@@ -559,274 +679,23 @@ public class HostFunctionProvider {
                 (instance, args) -> {
                     int schedule = (int) args[0];
                     var alloc = instance.export("alloc");
-                    var listSize = instance.export("size");
-                    var getItem = instance.export("getItem");
 
-                    String solutionClassName = findSolutionClass();
-                    DomainObject solutionDef = domainObjectMap.get(solutionClassName);
-
-                    StringBuilder out = new StringBuilder("{");
-                    serializeSolutionObject(instance, listSize, getItem, schedule, solutionDef, out);
-                    out.append("}");
+                    var out = new ByteArrayOutputStream();
+                    try {
+                        solutionJsonWriter.write(instance, schedule, out);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    // C string terminator
+                    out.write(0);
 
-                    var outString = out.toString();
-                    var memoryString = (int) alloc.apply(outString.getBytes().length + 1)[0];
-                    instance.memory().writeCString(memoryString, outString);
+                    var outBytes = out.toByteArray();
+                    var memoryString = (int) alloc.apply(outBytes.length)[0];
+                    instance.memory().write(memoryString, outBytes);
                     return new long[] { memoryString };
                 });
     }
 
-    /**
-     * Serialize a solution object to JSON.
-     */
-    private void serializeSolutionObject(Instance instance, ExportFunction listSize,
-            ExportFunction getItem, int ptr, DomainObject def, StringBuilder out) {
-
-        boolean first = true;
-        int offset = 0;
-
-        for (var entry : def.getFieldDescriptorMap().entrySet()) {
-            String fieldName = entry.getKey();
-            FieldDescriptor field = entry.getValue();
-
-            // Align offset for this field's type
-            int fieldAlignment = getFieldAlignment(field.getType());
-            offset = alignOffset(offset, fieldAlignment);
-
-            // Skip score field in serialization
-            if (hasPlanningScoreAnnotation(field)) {
-                offset += getFieldSize(field.getType());
-                continue;
-            }
-
-            if (!first) out.append(", ");
-            first = false;
-
-            out.append("\"").append(fieldName).append("\": ");
-
-            if (field.getType().endsWith("[]")) {
-                serializeCollection(instance, listSize, getItem, ptr + offset, field, out);
-            } else if (isPrimitiveType(field.getType())) {
-                serializePrimitive(instance, ptr + offset, field.getType(), out);
-            } else {
-                serializeObjectReference(instance, listSize, getItem, ptr + offset, field.getType(), out);
-            }
-
-            offset += getFieldSize(field.getType());
-        }
-    }
-
-    /**
-     * Serialize a collection field to JSON.
-     */
-    private void serializeCollection(Instance instance, ExportFunction listSize,
-            ExportFunction getItem, int ptr, FieldDescriptor field, StringBuilder out) {
-
-        String elementType = field.getType().replace("[]", "");
-        DomainObject elementDef = domainObjectMap.get(elementType);
-
-        int listPtr = instance.memory().readInt(ptr);
-        int length = (int) listSize.apply((long) listPtr)[0];
-
-        out.append("[");
-        for (int i = 0; i < length; i++) {
-            if (i > 0) out.append(", ");
-            int elementPtr = (int) getItem.apply((long) listPtr, (long) i)[0];
-            out.append("{");
-            serializeEntityObject(instance, listSize, getItem, elementPtr, elementDef, out);
-            out.append("}");
-        }
-        out.append("]");
-    }
-
-    /**
-     * Serialize a nested collection field (array inside an entity) to JSON.
-     * Handles String[], LocalDate[], and object arrays.
-     */
-    private void serializeNestedCollection(Instance instance, ExportFunction listSize,
-            ExportFunction getItem, int ptr, FieldDescriptor field, StringBuilder out) {
-
-        String elementType = field.getType().replace("[]", "");
-        int listPtr = instance.memory().readInt(ptr);
-
-        if (listPtr == 0) {
-            out.append("[]");
-            return;
-        }
-
-        int length = (int) listSize.apply((long) listPtr)[0];
-
-        out.append("[");
-        for (int i = 0; i < length; i++) {
-            if (i > 0) out.append(", ");
-            int elementPtr = (int) getItem.apply((long) listPtr, (long) i)[0];
-
-            if (elementType.equals("String")) {
-                if (elementPtr == 0) {
-                    out.append("null");
-                } else {
-                    String str = instance.memory().readCString(elementPtr);
-                    out.append("\"").append(escapeJson(str)).append("\"");
-                }
-            } else if (elementType.equals("LocalDate")) {
-                // elementPtr is the epoch day value directly (wrapped as int)
-                long epochDay = elementPtr;
-                LocalDate date = LocalDate.ofEpochDay(epochDay);
-                out.append(epochDay);  // Output as number for date arrays
-            } else if (elementType.equals("LocalDateTime")) {
-                // elementPtr is the epoch second value directly
-                out.append(elementPtr);
-            } else {
-                // Object type - serialize recursively
-                DomainObject elementDef = domainObjectMap.get(elementType);
-                if (elementDef != null) {
-                    out.append("{");
-                    serializeEntityObject(instance, listSize, getItem, elementPtr, elementDef, out);
-                    out.append("}");
-                } else {
-                    out.append("null");
-                }
-            }
-        }
-        out.append("]");
-    }
-
-    /**
-     * Serialize an entity object (not the solution) to JSON.
-     */
-    private void serializeEntityObject(Instance instance, ExportFunction listSize,
-            ExportFunction getItem, int ptr, DomainObject def, StringBuilder out) {
-
-        boolean first = true;
-        int offset = 0;
-
-        for (var entry : def.getFieldDescriptorMap().entrySet()) {
-            String fieldName = entry.getKey();
-            FieldDescriptor field = entry.getValue();
-
-            // Align offset for this field's type
-            int fieldAlignment = getFieldAlignment(field.getType());
-            offset = alignOffset(offset, fieldAlignment);
-
-            if (!first) out.append(", ");
-            first = false;
-
-            out.append("\"").append(fieldName).append("\": ");
-
-            if (field.getType().endsWith("[]")) {
-                // Serialize nested arrays in entities
-                serializeNestedCollection(instance, listSize, getItem, ptr + offset, field, out);
-            } else if (isPrimitiveType(field.getType())) {
-                serializePrimitive(instance, ptr + offset, field.getType(), out);
-            } else {
-                serializeObjectReference(instance, listSize, getItem, ptr + offset, field.getType(), out);
-            }
-
-            offset += getFieldSize(field.getType());
-        }
-    }
-
-    /**
-     * Serialize a primitive field to JSON.
-     */
-    private void serializePrimitive(Instance instance, int ptr, String type, StringBuilder out) {
-        switch (type) {
-            case "int" -> out.append(instance.memory().readInt(ptr));
-            case "long" -> out.append(instance.memory().readLong(ptr));
-            case "float" -> out.append(instance.memory().readFloat(ptr));
-            case "double" -> out.append(instance.memory().readDouble(ptr));
-            case "boolean" -> out.append(instance.memory().readInt(ptr) != 0);
-            case "String" -> {
-                int strPtr = instance.memory().readInt(ptr);
-                if (strPtr == 0) {
-                    out.append("null");
-                } else {
-                    String str = instance.memory().readCString(strPtr);
-                    out.append("\"").append(escapeJson(str)).append("\"");
-                }
-            }
-            case "LocalDate" -> {
-                // Read epoch day (long) and convert back to ISO date string
-                long epochDay = instance.memory().readLong(ptr);
-                LocalDate date = LocalDate.ofEpochDay(epochDay);
-                out.append("\"").append(date.toString()).append("\"");
-            }
-            case "LocalDateTime" -> {
-                // Read epoch second (long) and convert back to ISO datetime string
-                long epochSecond = instance.memory().readLong(ptr);
-                LocalDateTime dateTime = LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
-                out.append("\"").append(dateTime.toString()).append("\"");
-            }
-            default -> out.append(instance.memory().readInt(ptr));
-        }
-    }
-
-    /**
-     * Serialize an object reference to JSON.
-     * Only outputs the planning ID to avoid infinite recursion from circular references.
-     */
-    private void serializeObjectReference(Instance instance, ExportFunction listSize,
-            ExportFunction getItem, int ptr, String refType, StringBuilder out) {
-
-        int refPtr = instance.memory().readInt(ptr);
-
-        if (refPtr == 0) {
-            out.append("null");
-            return;
-        }
-
-        DomainObject refDef = domainObjectMap.get(refType);
-        if (refDef == null) {
-            out.append("null");
-            return;
-        }
-
-        // Full serialization (may infinite loop on circular references)
-        out.append("{");
-        serializeEntityObject(instance, listSize, getItem, refPtr, refDef, out);
-        out.append("}");
-    }
-
-    /**
-     * Serialize only the planning ID of an object (to avoid circular references).
-     */
-    private void serializePlanningIdOnly(Instance instance, int ptr, DomainObject def, StringBuilder out) {
-        int offset = 0;
-
-        for (var entry : def.getFieldDescriptorMap().entrySet()) {
-            FieldDescriptor field = entry.getValue();
-
-            // Align offset for this field's type
-            int fieldAlignment = getFieldAlignment(field.getType());
-            offset = alignOffset(offset, fieldAlignment);
-
-            boolean isPlanningId = field.getAnnotations() != null &&
-                    field.getAnnotations().stream()
-                            .anyMatch(a -> a.getClass().getSimpleName().equals("DomainPlanningId"));
-
-            if (isPlanningId) {
-                // Output just the ID value (not wrapped in an object)
-                serializePrimitive(instance, ptr + offset, field.getType(), out);
-                return;
-            }
-
-            offset += getFieldSize(field.getType());
-        }
-
-        throw new IllegalStateException("No @PlanningId field found in " + def.getName() + " - cannot serialize object reference");
-    }
-
-    /**
-     * Escape special characters in JSON strings.
-     */
-    private String escapeJson(String str) {
-        return str.replace("\\", "\\\\")
-                  .replace("\"", "\\\"")
-                  .replace("\n", "\\n")
-                  .replace("\r", "\\r")
-                  .replace("\t", "\\t");
-    }
-
     // ========== List Operations ==========
 
     /**
@@ -840,16 +709,7 @@ public class HostFunctionProvider {
                 FunctionType.of(List.of(), List.of(ValType.I32)),
                 (instance, args) -> {
                     var alloc = instance.export("alloc");
-                    var listInstance = (int) alloc.apply(LIST_HEADER_SIZE)[0];
-
-                    // Allocate initial backing array with INITIAL_CAPACITY
-                    var backingArray = (int) alloc.apply((long) WORD_SIZE * INITIAL_CAPACITY)[0];
-
-                    instance.memory().writeI32(listInstance + SIZE_OFFSET, 0);
-                    instance.memory().writeI32(listInstance + CAPACITY_OFFSET, INITIAL_CAPACITY);
-                    instance.memory().writeI32(listInstance + BACKING_ARRAY_OFFSET, backingArray);
-
-                    return new long[] { listInstance };
+                    return new long[] { ModuleLists.newHostList(instance, alloc, INITIAL_CAPACITY) };
                 });
     }
 
@@ -914,27 +774,7 @@ public class HostFunctionProvider {
                 FunctionType.of(List.of(ValType.I32, ValType.I32), List.of()),
                 (instance, args) -> {
                     var alloc = instance.export("alloc");
-                    var listInstance = (int) args[0];
-                    var item = (int) args[1];
-
-                    var oldSize = (int) instance.memory().readI32(listInstance + SIZE_OFFSET);
-                    var newSize = oldSize + 1;
-                    var capacity = (int) instance.memory().readI32(listInstance + CAPACITY_OFFSET);
-                    var backingArray = (int) instance.memory().readI32(listInstance + BACKING_ARRAY_OFFSET);
-
-                    // Geometric growth when capacity exceeded
-                    if (newSize > capacity) {
-                        var newCapacity = Math.max(newSize, capacity * 2);
-                        var newBackingArray = (int) alloc.apply((long) WORD_SIZE * newCapacity)[0];
-                        instance.memory().copy(newBackingArray, backingArray, oldSize * WORD_SIZE);
-                        instance.memory().writeI32(listInstance + CAPACITY_OFFSET, newCapacity);
-                        instance.memory().writeI32(listInstance + BACKING_ARRAY_OFFSET, newBackingArray);
-                        backingArray = newBackingArray;
-                    }
-
-                    instance.memory().writeI32(listInstance + SIZE_OFFSET, newSize);
-                    instance.memory().writeI32(backingArray + oldSize * WORD_SIZE, item);
-
+                    ModuleLists.appendToHostList(instance, alloc, (int) args[0], (int) args[1]);
                     return new long[] {};
                 });
     }
@@ -0,0 +1,243 @@
+package org.solverforge.wasm.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.solverforge.wasm.service.classgen.WasmList;
+import org.solverforge.wasm.service.classgen.WasmObject;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.ImportFunction;
+import com.dylibso.chicory.runtime.ImportValues;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wasi.WasiOptions;
+import com.dylibso.chicory.wasi.WasiPreview1;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.MutabilityType;
+
+/**
+ * Per-module pool of initialized WASM instances.
+ *
+ * Right after {@code initialize}, the linear memory and mutable globals of a new
+ * instance are snapshotted. An instance checked out again gets its memory restored to
+ * the snapshot with a single bulk copy, which is much cheaper than instantiating and
+ * initializing the module again.
+ *
+ * Host functions of pooled instances delegate to the functions bound at checkout, so a
+ * pooled instance can serve requests with different domain models.
+ *
+ * Linear memory cannot shrink, and the module's allocator does not know about pages
+ * grown by a previous request, so an instance whose memory grew past the configured
+ * limit is evicted instead of being returned to the pool. So is an instance of a module
+ * that was dropped from the {@link ModuleCache}.
+ */
+public final class InstancePool {
+    private static final int PAGE_SIZE = 65536;
+
+    private static final ConcurrentHashMap<String, ConcurrentLinkedDeque<PooledInstance>> IDLE = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger idleCount = new AtomicInteger();
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    // Building WASI options copies the whole environment, so it is done once
+    private static final WasiOptions WASI_OPTIONS = createWasiOptions();
+
+    /**
+     * Snapshot of pool statistics, reported by the diagnostics endpoint.
+     */
+    public record Stats(int idle, long hits, long misses, double hitRate, long evictions) {}
+
+    /**
+     * An instance checked out from the pool, together with its post-initialization snapshot.
+     */
+    public static final class PooledInstance {
+        private final String poolKey;
+        private final ModuleCache.CompiledModule compiledModule;
+        private final Instance instance;
+        private final HostFunction[] boundHostFunctions;
+        private final byte[] memorySnapshot;
+        private final int[] globalIndices;
+        private final long[] globalLowSnapshot;
+        private final long[] globalHighSnapshot;
+
+        private PooledInstance(String poolKey, ModuleCache.CompiledModule compiledModule, Instance instance,
+                HostFunction[] boundHostFunctions) {
+            this.poolKey = poolKey;
+            this.compiledModule = compiledModule;
+            this.instance = instance;
+            this.boundHostFunctions = boundHostFunctions;
+
+            var memory = instance.memory();
+            this.memorySnapshot = memory.readBytes(0, memory.pages() * PAGE_SIZE);
+
+            var module = instance.module();
+            var importedGlobals = module.importSection().count(ExternalType.GLOBAL);
+            var globalCount = module.globalSection().globalCount();
+            var mutableGlobals = new ArrayList<Integer>();
+            for (int i = importedGlobals; i < importedGlobals + globalCount; i++) {
+                if (instance.global(i).getMutabilityType() == MutabilityType.Var) {
+                    mutableGlobals.add(i);
+                }
+            }
+            this.globalIndices = mutableGlobals.stream().mapToInt(Integer::intValue).toArray();
+            this.globalLowSnapshot = new long[globalIndices.length];
+            this.globalHighSnapshot = new long[globalIndices.length];
+            for (int i = 0; i < globalIndices.length; i++) {
+                var global = instance.global(globalIndices[i]);
+                globalLowSnapshot[i] = global.getValueLow();
+                globalHighSnapshot[i] = global.getValueHigh();
+            }
+        }
+
+        public Instance instance() {
+            return instance;
+        }
+
+        private void bind(List<HostFunction> hostFunctions) {
+            for (int i = 0; i < boundHostFunctions.length; i++) {
+                boundHostFunctions[i] = hostFunctions.get(i);
+            }
+        }
+
+        private void unbind() {
+            Arrays.fill(boundHostFunctions, null);
+        }
+
+        private void restore() {
+            var memory = instance.memory();
+            memory.write(0, memorySnapshot, 0, memorySnapshot.length);
+            var memorySize = memory.pages() * PAGE_SIZE;
+            if (memorySize > memorySnapshot.length) {
+                memory.fill((byte) 0, memorySnapshot.length, memorySize);
+            }
+            for (int i = 0; i < globalIndices.length; i++) {
+                var global = instance.global(globalIndices[i]);
+                global.setValueLow(globalLowSnapshot[i]);
+                global.setValueHigh(globalHighSnapshot[i]);
+            }
+        }
+
+        private long memorySize() {
+            return (long) instance.memory().pages() * PAGE_SIZE;
+        }
+    }
+
+    private InstancePool() {
+    }
+
+    private static WasiOptions createWasiOptions() {
+        var optionsBuilder = WasiOptions.builder()
+                .inheritSystem();
+
+        for (var environmentEntry : System.getenv().entrySet()) {
+            optionsBuilder.withEnvironment(environmentEntry.getKey(), environmentEntry.getValue());
+        }
+        return optionsBuilder.build();
+    }
+
+    /**
+     * Check out an instance of the module with the given host functions bound,
+     * restoring an idle instance to its post-initialization state if one is available.
+     *
+     * @param trackDependencies whether the instance's memory is a {@link DependencyTrackingMemory},
+     *        so function results can be memoized
+     */
+    public static PooledInstance acquire(ModuleCache.CompiledModule compiledModule, List<HostFunction> hostFunctions,
+            boolean trackDependencies) {
+        // Instances with and without dependency tracking are pooled separately
+        var poolKey = trackDependencies ? compiledModule.hash() + "+deps" : compiledModule.hash();
+        var idle = IDLE.get(poolKey);
+        var pooled = (idle != null) ? idle.pollFirst() : null;
+        if (pooled != null) {
+            idleCount.decrementAndGet();
+            hits.incrementAndGet();
+            pooled.restore();
+        } else {
+            misses.incrementAndGet();
+            pooled = createInstance(poolKey, compiledModule, hostFunctions, trackDependencies);
+        }
+        pooled.bind(hostFunctions);
+        return pooled;
+    }
+
+    /**
+     * Return an instance to the pool. The instance is evicted instead if the pool for its
+     * module is full or its memory grew past {@code maxMemoryBytes}.
+     */
+    public static void release(PooledInstance pooled, int maxIdlePerModule, long maxMemoryBytes) {
+        pooled.unbind();
+        // Objects cached for this instance describe the previous request's memory
+        WasmObject.clearCacheForInstance(pooled.instance);
+        WasmList.clearCacheForInstance(pooled.instance);
+
+        var idle = IDLE.computeIfAbsent(pooled.poolKey, _ -> new ConcurrentLinkedDeque<>());
+        if (idle.size() >= maxIdlePerModule || pooled.memorySize() > maxMemoryBytes
+                || !ModuleCache.isCached(pooled.compiledModule)) {
+            evictions.incrementAndGet();
+            return;
+        }
+        idle.offerFirst(pooled);
+        idleCount.incrementAndGet();
+    }
+
+    /**
+     * Drop the idle instances of a module, e.g. because the module was dropped from the
+     * module cache. Instances checked out are evicted when they are released.
+     */
+    public static void evictModule(String moduleHash) {
+        for (var poolKey : List.of(moduleHash, moduleHash + "+deps")) {
+            var idle = IDLE.remove(poolKey);
+            // Drained one by one, as concurrent acquires may still poll the removed deque
+            while (idle != null && idle.pollFirst() != null) {
+                idleCount.decrementAndGet();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private static PooledInstance createInstance(String poolKey, ModuleCache.CompiledModule compiledModule,
+            List<HostFunction> hostFunctions, boolean trackDependencies) {
+        // Host functions delegate to whichever functions are bound to the pooled instance
+        var boundHostFunctions = new HostFunction[hostFunctions.size()];
+        var importFunctions = new ImportFunction[hostFunctions.size()];
+        for (int i = 0; i < hostFunctions.size(); i++) {
+            var index = i;
+            var hostFunction = hostFunctions.get(i);
+            boundHostFunctions[i] = hostFunction;
+            importFunctions[i] = new HostFunction(hostFunction.module(), hostFunction.name(), hostFunction.functionType(),
+                    (instance, args) -> boundHostFunctions[index].handle().apply(instance, args));
+        }
+
+        // create our instance of wasip1
+        var wasi = WasiPreview1.builder().withOptions(WASI_OPTIONS).build();
+
+        var instance = Instance.builder(compiledModule.module())
+                .withMemoryFactory(trackDependencies
+                        ? limits -> new DependencyTrackingMemory(new ByteArrayMemory(limits))
+                        : ByteArrayMemory::new)
+                .withMachineFactory(compiledModule.machineFactory())
+                .withImportValues(ImportValues.builder()
+                        .addFunction(importFunctions)
+                        .addFunction(wasi.toHostFunctions())
+                        .build())
+                .build();
+        instance.initialize(true);
+        return new PooledInstance(poolKey, compiledModule, instance, boundHostFunctions);
+    }
+
+    public static Stats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        return new Stats(idleCount.get(), hitCount, missCount,
+                total == 0 ? 0.0 : (double) hitCount / total, evictions.get());
+    }
+}
@@ -0,0 +1,138 @@
+package org.solverforge.wasm.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import ai.timefold.solver.core.api.score.stream.ConstraintProvider;
+import org.solverforge.wasm.service.classgen.DomainObjectClassLoader;
+
+/**
+ * Caches generated domain classes and constraint providers by model fingerprint
+ * (module hash plus domain and constraint definitions).
+ *
+ * Generated classes do not reference a particular WASM instance: domain objects carry
+ * their instance, and the constraint provider binds its WASM functions to the current
+ * solve's instance when {@code defineConstraints} runs. Requests for the same model
+ * therefore share one class loader, and classes are defined once per model instead of
+ * once per request.
+ *
+ * The cache holds at most {@code maxSize} models; beyond it, the least recently used one
+ * is dropped, so its class loader and generated classes can be unloaded once the solves
+ * using them end. A model is defined by the first request for it, outside the cache's
+ * lock; concurrent requests for the same model wait for that definition, and requests
+ * for other models are not held up by it.
+ */
+public final class ModelCache {
+    // Access ordered, so the eldest entry is the least recently used; guarded by itself
+    private static final LinkedHashMap<String, CompletableFuture<GeneratedModel>> CACHE =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * The class loader holding a model's generated classes, its constraint provider, and
+     * the purity of the module's exports under the model.
+     */
+    public record GeneratedModel(DomainObjectClassLoader classLoader,
+            Class<? extends ConstraintProvider> constraintProviderClass,
+            PurityAnalysis purity) {}
+
+    /**
+     * Snapshot of cache statistics, reported by the diagnostics endpoint.
+     */
+    public record Stats(int size, long hits, long misses, double hitRate, long evictions) {}
+
+    private ModelCache() {
+    }
+
+    /**
+     * Get the generated model for the given fingerprint, defining it on first use.
+     *
+     * @param maxSize the number of models to keep; the least recently used ones beyond it are dropped
+     */
+    public static GeneratedModel getOrDefine(String fingerprint, int maxSize, Supplier<GeneratedModel> modelDefiner) {
+        CompletableFuture<GeneratedModel> model;
+        boolean define = false;
+        synchronized (CACHE) {
+            model = CACHE.get(fingerprint);
+            if (model == null) {
+                model = new CompletableFuture<>();
+                CACHE.put(fingerprint, model);
+                define = true;
+                evict(maxSize);
+            }
+        }
+
+        if (!define) {
+            hits.incrementAndGet();
+            try {
+                return model.join();
+            } catch (CompletionException e) {
+                // Failed for the request defining it; that request reports the failure
+                throw (e.getCause() instanceof RuntimeException cause) ? cause : e;
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            var generatedModel = modelDefiner.get();
+            model.complete(generatedModel);
+            return generatedModel;
+        } catch (RuntimeException | Error e) {
+            // Not cached, so the next request tries again
+            synchronized (CACHE) {
+                CACHE.remove(fingerprint, model);
+            }
+            model.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Guarded by CACHE
+    private static void evict(int maxSize) {
+        var iterator = CACHE.values().iterator();
+        while (CACHE.size() > Math.max(maxSize, 1) && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the purity of each model's exports, by model fingerprint
+     */
+    public static Map<String, Map<String, PurityAnalysis.Purity>> getPurity() {
+        ArrayList<Map.Entry<String, CompletableFuture<GeneratedModel>>> entries;
+        synchronized (CACHE) {
+            entries = new ArrayList<>(CACHE.entrySet());
+        }
+        var out = new TreeMap<String, Map<String, PurityAnalysis.Purity>>();
+        for (var entry : entries) {
+            var model = entry.getValue();
+            // Models still being defined, or that failed, have no purity yet
+            if (model.state() == Future.State.SUCCESS) {
+                out.put(entry.getKey(), model.resultNow().purity().getExportPurity());
+            }
+        }
+        return out;
+    }
+
+    public static Stats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (CACHE) {
+            size = CACHE.size();
+        }
+        return new Stats(size, hitCount, missCount, total == 0 ? 0.0 : (double) hitCount / total, evictions.get());
+    }
+}
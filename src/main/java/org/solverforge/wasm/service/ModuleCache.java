@@ -0,0 +1,374 @@
+package org.solverforge.wasm.service;
+
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.jboss.logging.Logger;
+
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.WasmModule;
+
+/**
+ * Caches parsed and compiled WASM modules by SHA-256 hash.
+ *
+ * Compiling a module with Chicory translates every WASM function into JVM bytecode,
+ * which dominates setup time for short solves. The compiled machine factory only
+ * depends on the module, so it is shared by every instance created from the same
+ * module; those instances also reuse the already loaded (and JIT-warm) classes.
+ *
+ * When a {@link ClassCache} is configured, the compiled classes are also persisted so
+ * a restarted node can define them directly instead of compiling the module again.
+ *
+ * Modules can also be registered ahead of time and referenced by hash in later requests,
+ * so the module bytes do not have to be sent (and hashed) with every request.
+ *
+ * At most {@code maxSize} modules are kept in memory; beyond it, the least recently used
+ * one is dropped together with its idle pooled instances. A dropped registered module is
+ * loaded again from the class cache if it is there, and must be registered again otherwise.
+ */
+public final class ModuleCache {
+    private static final Logger LOG = Logger.getLogger(ModuleCache.class);
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    // Modules kept when no limit is given, e.g. by tests and benchmarks
+    static final int DEFAULT_MAX_SIZE = 32;
+
+    // Access ordered, so the eldest entry is the least recently used; guarded by itself
+    private static final LinkedHashMap<String, CompletableFuture<CompiledModule>> CACHE =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+    private static final AtomicLong compileTimeNanos = new AtomicLong();
+
+    /**
+     * A parsed module together with the machine factory compiled from it.
+     */
+    public record CompiledModule(String hash, WasmModule module, Function<Instance, Machine> machineFactory) {}
+
+    /**
+     * Snapshot of cache statistics, reported by the diagnostics endpoint.
+     */
+    public record Stats(int size, long hits, long misses, double hitRate, long evictions, long totalCompileTimeMs) {}
+
+    /**
+     * Thrown when a registered module is known but cannot be used; mapped to HTTP 422
+     * Unprocessable Content if the module fails to compile, and to HTTP 500 Internal Server
+     * Error if its class cache entry is broken. The response carries the cause's message.
+     */
+    public static final class UnusableModuleException extends WebApplicationException {
+        private UnusableModuleException(String message, Throwable cause, int status) {
+            super(message, cause, Response.status(status)
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity(message)
+                    .build());
+        }
+
+        static UnusableModuleException failedToCompile(String hash, Throwable cause) {
+            return new UnusableModuleException("WASM module " + hash + " failed to compile: " + cause.getMessage(),
+                    cause, 422);
+        }
+
+        static UnusableModuleException brokenEntry(String hash, Throwable cause) {
+            return new UnusableModuleException("WASM module " + hash + " cannot be loaded from the class cache: "
+                    + cause.getMessage(), cause, Response.Status.INTERNAL_SERVER_ERROR.getStatusCode());
+        }
+    }
+
+    private ModuleCache() {
+    }
+
+    /**
+     * Compute SHA-256 hash of WASM bytes for cache key.
+     */
+    public static String computeWasmHash(byte[] wasmBytes) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(wasmBytes);
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Get the compiled module for the given WASM bytes, parsing and compiling it
+     * on first use.
+     */
+    public static CompiledModule getOrCompile(byte[] wasmBytes) {
+        return getOrCompile(wasmBytes, Optional.empty(), DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Get the compiled module for the given WASM bytes, parsing and compiling it
+     * (or loading its compiled classes from the class cache) on first use. The module is
+     * compiled outside the cache's lock; concurrent requests for it wait for the first.
+     *
+     * @param maxSize the number of modules to keep; the least recently used ones beyond it are dropped
+     */
+    public static CompiledModule getOrCompile(byte[] wasmBytes, Optional<ClassCache> classCache, int maxSize) {
+        String hash = computeWasmHash(wasmBytes);
+        CompletableFuture<CompiledModule> compiledModule;
+        boolean compile = false;
+        synchronized (CACHE) {
+            compiledModule = CACHE.get(hash);
+            if (compiledModule == null) {
+                compiledModule = new CompletableFuture<>();
+                CACHE.put(hash, compiledModule);
+                compile = true;
+                evict(maxSize);
+            }
+        }
+
+        if (!compile) {
+            hits.incrementAndGet();
+            try {
+                return compiledModule.join();
+            } catch (CompletionException e) {
+                // Failed for the request compiling it; that request reports the failure
+                throw (e.getCause() instanceof RuntimeException cause) ? cause : e;
+            }
+        }
+        misses.incrementAndGet();
+        try {
+            long start = System.nanoTime();
+            var loaded = load(hash, wasmBytes, classCache);
+            long elapsed = System.nanoTime() - start;
+            compileTimeNanos.addAndGet(elapsed);
+            LOG.infof("Compiled new WASM module (hash=%s, size=%d bytes) in %d ms",
+                    hash.substring(0, 16), wasmBytes.length, elapsed / 1_000_000);
+            compiledModule.complete(loaded);
+            return loaded;
+        } catch (RuntimeException | Error e) {
+            // Not cached, so the next request tries again
+            synchronized (CACHE) {
+                CACHE.remove(hash, compiledModule);
+            }
+            compiledModule.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // Guarded by CACHE
+    private static void evict(int maxSize) {
+        var iterator = CACHE.entrySet().iterator();
+        while (CACHE.size() > Math.max(maxSize, 1) && iterator.hasNext()) {
+            var hash = iterator.next().getKey();
+            iterator.remove();
+            evictions.incrementAndGet();
+            InstancePool.evictModule(hash);
+        }
+    }
+
+    /**
+     * @return whether the module is the one cached for its hash; instances of modules
+     *         that were dropped are not pooled
+     */
+    static boolean isCached(CompiledModule compiledModule) {
+        CompletableFuture<CompiledModule> cached;
+        synchronized (CACHE) {
+            // Does not count as a use
+            cached = CACHE.entrySet().stream()
+                    .filter(entry -> entry.getKey().equals(compiledModule.hash()))
+                    .map(Map.Entry::getValue)
+                    .findFirst()
+                    .orElse(null);
+        }
+        return cached != null && cached.state() == Future.State.SUCCESS && cached.resultNow() == compiledModule;
+    }
+
+    /**
+     * Remove a module from memory and from the class cache, including its idle pooled
+     * instances. Solves that are using it are not affected.
+     *
+     * @return true if the module was known
+     */
+    public static boolean remove(String hash, Optional<ClassCache> classCache) {
+        boolean removed;
+        synchronized (CACHE) {
+            removed = CACHE.remove(hash) != null;
+        }
+        InstancePool.evictModule(hash);
+        if (classCache.isPresent() && HASH_PATTERN.matcher(hash).matches()) {
+            removed |= classCache.get().removeModule(hash);
+        }
+        return removed;
+    }
+
+    /**
+     * Parse the module and get its machine factory from the class cache, compiling it
+     * (and storing the compiled classes) if the cache has no usable entry. A cache entry
+     * that cannot be loaded is discarded, so the next compilation replaces it.
+     */
+    static CompiledModule load(String hash, byte[] wasmBytes, Optional<ClassCache> classCache) {
+        var module = Parser.parse(wasmBytes);
+        var classBytes = classCache.flatMap(cache -> cache.loadModuleClasses(hash));
+        if (classBytes.isPresent()) {
+            var machineFactory = loadMachineFactory(getMachineClassName(hash), classBytes.get());
+            if (machineFactory.isPresent()) {
+                return new CompiledModule(hash, module, machineFactory.get());
+            }
+            classCache.get().discardModuleClasses(hash);
+        }
+        return new CompiledModule(hash, module, compile(hash, module, classCache));
+    }
+
+    /**
+     * Parse, validate and compile a module so later requests can reference it by hash.
+     * The module is also persisted to the class cache, if configured, so it survives
+     * restarts and can be shared by nodes using the same cache directory.
+     */
+    public static CompiledModule register(byte[] wasmBytes, Optional<ClassCache> classCache, int maxSize) {
+        var compiledModule = getOrCompile(wasmBytes, classCache, maxSize);
+        classCache.ifPresent(cache -> cache.storeModule(compiledModule.hash(), wasmBytes));
+        return compiledModule;
+    }
+
+    /**
+     * Get a previously registered module by hash, loading it from the class cache if it
+     * is not in memory. Returns empty if the module is unknown, or was dropped from memory
+     * and is not in the class cache.
+     *
+     * @throws UnusableModuleException if the module is known but fails to compile, or its
+     *         class cache entry cannot be read or does not match the hash
+     */
+    public static Optional<CompiledModule> get(String hash, Optional<ClassCache> classCache, int maxSize) {
+        CompletableFuture<CompiledModule> cached;
+        synchronized (CACHE) {
+            cached = CACHE.get(hash);
+        }
+        if (cached != null) {
+            hits.incrementAndGet();
+            try {
+                return Optional.of(cached.join());
+            } catch (CompletionException e) {
+                throw UnusableModuleException.failedToCompile(hash, e.getCause());
+            }
+        }
+        if (classCache.isEmpty() || !HASH_PATTERN.matcher(hash).matches()) {
+            return Optional.empty();
+        }
+        Optional<byte[]> wasmBytes;
+        try {
+            wasmBytes = classCache.get().loadModule(hash);
+        } catch (UncheckedIOException e) {
+            throw UnusableModuleException.brokenEntry(hash, e);
+        }
+        if (wasmBytes.isEmpty()) {
+            return Optional.empty();
+        }
+        if (!computeWasmHash(wasmBytes.get()).equals(hash)) {
+            throw UnusableModuleException.brokenEntry(hash,
+                    new IllegalStateException("The stored module does not match its hash"));
+        }
+        try {
+            return Optional.of(getOrCompile(wasmBytes.get(), classCache, maxSize));
+        } catch (RuntimeException e) {
+            throw UnusableModuleException.failedToCompile(hash, e);
+        }
+    }
+
+    private static String getMachineClassName(String hash) {
+        return "com.dylibso.chicory.$gen.CompiledMachine_" + hash.substring(0, 16);
+    }
+
+    private static Function<Instance, Machine> compile(String hash, WasmModule module, Optional<ClassCache> classCache) {
+        if (classCache.isEmpty()) {
+            return MachineFactoryCompiler.compile(module);
+        }
+        return ModuleClassCompiler.compile(module, getMachineClassName(hash))
+                .map(compilation -> {
+                    if (compilation.complete()) {
+                        classCache.get().storeModuleClasses(hash, compilation.classBytes());
+                    }
+                    return compilation.machineFactory();
+                })
+                .orElseGet(() -> MachineFactoryCompiler.compile(module));
+    }
+
+    /**
+     * Define the cached classes of a module, returning empty if any of them is missing or
+     * cannot be defined, e.g. because the entry is corrupt or was written by another
+     * Chicory version.
+     */
+    private static Optional<Function<Instance, Machine>> loadMachineFactory(String className,
+            Map<String, byte[]> classBytes) {
+        var classLoader = new ModuleClassLoader(classBytes);
+        try {
+            // Define every class now, so a broken entry fails here rather than during a solve
+            for (var name : classBytes.keySet()) {
+                classLoader.loadClass(name);
+            }
+            var machineClass = classLoader.loadClass(className).asSubclass(Machine.class);
+            MethodHandle constructor = MethodHandles.publicLookup()
+                    .findConstructor(machineClass, MethodType.methodType(void.class, Instance.class));
+            return Optional.of(instance -> {
+                try {
+                    return (Machine) constructor.invoke(instance);
+                } catch (Throwable e) {
+                    throw new IllegalStateException("Failed to create machine for cached module " + className, e);
+                }
+            });
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            LOG.warnf(e, "Ignoring unusable class cache entry for %s", className);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Defines the Chicory-compiled classes of a single module loaded from the class cache.
+     */
+    private static final class ModuleClassLoader extends ClassLoader {
+        private final Map<String, byte[]> classNameToBytecode;
+
+        ModuleClassLoader(Map<String, byte[]> classNameToBytecode) {
+            super(MachineFactoryCompiler.class.getClassLoader());
+            this.classNameToBytecode = classNameToBytecode;
+        }
+
+        @Override
+        protected Class<?> findClass(String name) throws ClassNotFoundException {
+            var bytecode = classNameToBytecode.get(name);
+            if (bytecode == null) {
+                throw new ClassNotFoundException(name);
+            }
+            return defineClass(name, bytecode, 0, bytecode.length);
+        }
+    }
+
+    public static Stats getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long total = hitCount + missCount;
+        int size;
+        synchronized (CACHE) {
+            size = CACHE.size();
+        }
+        return new Stats(size, hitCount, missCount,
+                total == 0 ? 0.0 : (double) hitCount / total,
+                evictions.get(), compileTimeNanos.get() / 1_000_000);
+    }
+}
@@ -0,0 +1,63 @@
+package org.solverforge.wasm.service;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+import org.jboss.logging.Logger;
+
+import com.dylibso.chicory.compiler.internal.Compiler;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.wasm.WasmModule;
+
+/**
+ * Compiles a module with Chicory's internal compiler, which, unlike the public
+ * {@code MachineFactoryCompiler}, exposes the generated classes so they can be persisted
+ * in the class cache.
+ *
+ * This is the only class that uses the internal API. If a Chicory upgrade changes it,
+ * {@link #compile} logs a warning once and returns empty from then on, and modules are
+ * compiled in memory with the public API, without being persisted.
+ */
+final class ModuleClassCompiler {
+    private static final Logger LOG = Logger.getLogger(ModuleClassCompiler.class);
+
+    private static volatile boolean available = true;
+
+    /**
+     * @param classBytes the generated classes, by binary name
+     * @param complete false if some functions are interpreted, in which case the classes
+     *        alone cannot run the module and must not be persisted
+     */
+    record Compilation(Function<Instance, Machine> machineFactory, Map<String, byte[]> classBytes, boolean complete) {}
+
+    private ModuleClassCompiler() {
+    }
+
+    /**
+     * @return the compiled module, or empty if the internal compiler is not usable
+     */
+    static Optional<Compilation> compile(WasmModule module, String machineClassName) {
+        if (!available) {
+            return Optional.empty();
+        }
+        try {
+            var result = Compiler.builder(module)
+                    .withClassName(machineClassName)
+                    .build()
+                    .compile();
+            return Optional.of(new Compilation(result.machineFactory(), result.classBytes(),
+                    result.interpretedFunctions().isEmpty()));
+        } catch (LinkageError e) {
+            // The internal API changed; do not try it again
+            available = false;
+            LOG.warnf(e, "Chicory's internal compiler is not usable; compiled modules will not be cached");
+            return Optional.empty();
+        } catch (RuntimeException e) {
+            // Left to the public compiler, which reports the module's own errors
+            LOG.warnf(e, "Chicory's internal compiler failed on %s; compiling without caching", machineClassName);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package org.solverforge.wasm.service;
+
+import static org.solverforge.wasm.service.HostFunctionProvider.BACKING_ARRAY_OFFSET;
+import static org.solverforge.wasm.service.HostFunctionProvider.CAPACITY_OFFSET;
+import static org.solverforge.wasm.service.HostFunctionProvider.LIST_HEADER_SIZE;
+import static org.solverforge.wasm.service.HostFunctionProvider.SIZE_OFFSET;
+import static org.solverforge.wasm.service.HostFunctionProvider.WORD_SIZE;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.jspecify.annotations.Nullable;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+
+/**
+ * Reads and builds the lists of a module's instance, for problem parsing, solution
+ * serialization and solution copying.
+ *
+ * The host list functions ({@code hnewList}, {@code happend}, ...) lay a list out as
+ * {@code [size: i32][capacity: i32][backing array pointer: i32]}, with the items as i32 in
+ * the backing array. Modules usually implement their {@code newList}, {@code append},
+ * {@code size} and {@code getItem} exports with these functions; their lists are then
+ * read and built directly in linear memory. The lists of a module whose exports use a
+ * layout of their own are read and built through the exports instead, which, like any
+ * call into the instance, must be made by the thread using it.
+ *
+ * The layout is detected once per module, the first time a problem is parsed, by building
+ * a list of two items through the exports and checking it has the host layout; the list
+ * is left to the instance. A module without these exports must use the host layout.
+ */
+final class ModuleLists {
+    static final String NEW_LIST = "newList";
+    static final String APPEND = "append";
+    static final String SIZE = "size";
+    static final String GET_ITEM = "getItem";
+
+    // Whether the lists of a module have the host layout; weak keys, so dropped modules are not held
+    private static final Map<WasmModule, Boolean> HOST_LAYOUT = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final Instance instance;
+    private final Memory memory;
+    private final boolean hostLayout;
+
+    // Created on first use
+    private @Nullable ExportFunction alloc;
+    private @Nullable WasmCall newList;
+    private @Nullable WasmCall append;
+    private @Nullable WasmCall size;
+    private @Nullable WasmCall getItem;
+
+    private ModuleLists(Instance instance, boolean hostLayout) {
+        this.instance = instance;
+        this.memory = instance.memory();
+        this.hostLayout = hostLayout;
+    }
+
+    /**
+     * The first call for a module detects the layout of its lists, which calls into the
+     * instance, so it must be made by the thread using the instance.
+     */
+    static ModuleLists of(Instance instance) {
+        return new ModuleLists(instance, hasHostLayout(instance));
+    }
+
+    /**
+     * @see #of(Instance)
+     */
+    static boolean hasHostLayout(Instance instance) {
+        var module = instance.module();
+        var hostLayout = HOST_LAYOUT.get(module);
+        if (hostLayout == null) {
+            hostLayout = detectHostLayout(instance);
+            HOST_LAYOUT.put(module, hostLayout);
+        }
+        return hostLayout;
+    }
+
+    private static boolean detectHostLayout(Instance instance) {
+        if (!exportsFunction(instance, NEW_LIST) || !exportsFunction(instance, APPEND)
+                || !exportsFunction(instance, SIZE) || !exportsFunction(instance, GET_ITEM)) {
+            // Lists can only be built with the host list functions
+            return true;
+        }
+        var memory = instance.memory();
+        int list = (int) instance.export(NEW_LIST).apply()[0];
+        // The list's own address is a valid item whatever the list holds
+        instance.export(APPEND).apply(list, list);
+        instance.export(APPEND).apply(list, list);
+
+        int memorySize = memory.pages() * Memory.PAGE_SIZE;
+        if (list <= 0 || list > memorySize - LIST_HEADER_SIZE
+                || memory.readInt(list + SIZE_OFFSET) != 2 || memory.readInt(list + CAPACITY_OFFSET) < 2) {
+            return false;
+        }
+        int backingArray = memory.readInt(list + BACKING_ARRAY_OFFSET);
+        return backingArray > 0 && backingArray <= memorySize - 2 * WORD_SIZE
+                && memory.readInt(backingArray) == list && memory.readInt(backingArray + WORD_SIZE) == list
+                && instance.export(SIZE).apply(list)[0] == 2 && instance.export(GET_ITEM).apply(list, 1)[0] == list;
+    }
+
+    private static boolean exportsFunction(Instance instance, String name) {
+        var exportSection = instance.module().exportSection();
+        for (int i = 0; i < exportSection.exportCount(); i++) {
+            var exportEntry = exportSection.getExport(i);
+            if (exportEntry.exportType() == ExternalType.FUNCTION && exportEntry.name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the lists are read and built directly in linear memory
+     */
+    boolean hasHostLayout() {
+        return hostLayout;
+    }
+
+    /**
+     * @param capacity the expected number of items; only used with the host layout
+     */
+    int newList(int capacity) {
+        if (hostLayout) {
+            return newHostList(instance, getAlloc(), capacity);
+        }
+        if (newList == null) {
+            newList = WasmCall.ofExport(instance, NEW_LIST);
+        }
+        return (int) newList.call0();
+    }
+
+    void append(int list, int item) {
+        if (hostLayout) {
+            appendToHostList(instance, getAlloc(), list, item);
+            return;
+        }
+        if (append == null) {
+            append = WasmCall.ofExport(instance, APPEND);
+        }
+        append.call2(list, item);
+    }
+
+    int size(int list) {
+        if (hostLayout) {
+            return memory.readInt(list + SIZE_OFFSET);
+        }
+        if (size == null) {
+            size = WasmCall.ofExport(instance, SIZE);
+        }
+        return (int) size.call1(list);
+    }
+
+    int getItem(int list, int index) {
+        if (hostLayout) {
+            return memory.readInt(memory.readInt(list + BACKING_ARRAY_OFFSET) + WORD_SIZE * index);
+        }
+        if (getItem == null) {
+            getItem = WasmCall.ofExport(instance, GET_ITEM);
+        }
+        return (int) getItem.call2(list, index);
+    }
+
+    private ExportFunction getAlloc() {
+        if (alloc == null) {
+            alloc = instance.export("alloc");
+        }
+        return alloc;
+    }
+
+    /**
+     * Allocate an empty list with the host layout and the given capacity.
+     */
+    static int newHostList(Instance instance, ExportFunction alloc, int capacity) {
+        var listInstance = (int) alloc.apply(LIST_HEADER_SIZE)[0];
+        var backingArray = (int) alloc.apply((long) WORD_SIZE * capacity)[0];
+
+        instance.memory().writeI32(listInstance + SIZE_OFFSET, 0);
+        instance.memory().writeI32(listInstance + CAPACITY_OFFSET, capacity);
+        instance.memory().writeI32(listInstance + BACKING_ARRAY_OFFSET, backingArray);
+
+        return listInstance;
+    }
+
+    /**
+     * Append an item to a list with the host layout.
+     * Uses geometric growth (doubling) for O(n) amortized performance.
+     */
+    static void appendToHostList(Instance instance, ExportFunction alloc, int listInstance, int item) {
+        var oldSize = (int) instance.memory().readI32(listInstance + SIZE_OFFSET);
+        var newSize = oldSize + 1;
+        var capacity = (int) instance.memory().readI32(listInstance + CAPACITY_OFFSET);
+        var backingArray = (int) instance.memory().readI32(listInstance + BACKING_ARRAY_OFFSET);
+
+        // Geometric growth when capacity exceeded
+        if (newSize > capacity) {
+            var newCapacity = Math.max(newSize, capacity * 2);
+            var newBackingArray = (int) alloc.apply((long) WORD_SIZE * newCapacity)[0];
+            instance.memory().copy(newBackingArray, backingArray, oldSize * WORD_SIZE);
+            instance.memory().writeI32(listInstance + CAPACITY_OFFSET, newCapacity);
+            instance.memory().writeI32(listInstance + BACKING_ARRAY_OFFSET, newBackingArray);
+            backingArray = newBackingArray;
+        }
+
+        instance.memory().writeI32(listInstance + SIZE_OFFSET, newSize);
+        instance.memory().writeI32(backingArray + oldSize * WORD_SIZE, item);
+    }
+}
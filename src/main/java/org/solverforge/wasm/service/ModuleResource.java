@@ -0,0 +1,61 @@
+package org.solverforge.wasm.service;
+
+import java.util.Optional;
+
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+/**
+ * Registry of WASM modules, so solve and analyze requests can reference a module by
+ * {@code wasmHash} instead of embedding it base64-encoded in every request.
+ */
+@Path("/modules")
+public class ModuleResource {
+    public static final String APPLICATION_WASM = "application/wasm";
+
+    public record RegisteredModule(String wasmHash) {}
+
+    @ConfigProperty(name = "classCachePath")
+    Optional<String> classCachePath;
+
+    @ConfigProperty(name = "moduleCacheMaxSize", defaultValue = "32")
+    int moduleCacheMaxSize;
+
+    @POST
+    @Consumes(APPLICATION_WASM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public RegisteredModule register(byte[] wasm) {
+        // Parsing and compiling validates the module before it is referenced by a solve
+        var compiledModule = ModuleCache.register(wasm, ClassCache.fromPath(classCachePath), moduleCacheMaxSize);
+        return new RegisteredModule(compiledModule.hash());
+    }
+
+    @GET
+    @Path("{hash}")
+    @Produces(MediaType.APPLICATION_JSON)
+    public RegisteredModule get(@PathParam("hash") String wasmHash) {
+        return ModuleCache.get(wasmHash, ClassCache.fromPath(classCachePath), moduleCacheMaxSize)
+                .map(compiledModule -> new RegisteredModule(compiledModule.hash()))
+                .orElseThrow(() -> new jakarta.ws.rs.NotFoundException("WASM module not found: " + wasmHash));
+    }
+
+    /**
+     * Forget a registered module, in memory and in the class cache. Solves already using it
+     * are not affected; later requests referencing it get a 404.
+     */
+    @DELETE
+    @Path("{hash}")
+    public void delete(@PathParam("hash") String wasmHash) {
+        if (!ModuleCache.remove(wasmHash, ClassCache.fromPath(classCachePath))) {
+            throw new jakarta.ws.rs.NotFoundException("WASM module not found: " + wasmHash);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.solverforge.wasm.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.solverforge.wasm.service.dto.DomainObject;
+import org.solverforge.wasm.service.dto.FieldDescriptor;
+
+/**
+ * Host memory layout of a domain object: its fields in declaration order, each aligned
+ * for its type, and its size, rounded up to the largest alignment (matching Rust's
+ * LayoutCalculator).
+ *
+ * The host functions that build objects, the JSON writer and the solution copier all
+ * read objects through this layout, so they agree on where each field is.
+ *
+ * @param fields the fields, by declaration order
+ */
+record ObjectLayout(int size, List<Field> fields) {
+    /**
+     * @param index the position of the field in the declaration order
+     */
+    record Field(String name, FieldDescriptor field, int offset, int index) {}
+
+    static ObjectLayout of(DomainObject def) {
+        var fields = new ArrayList<Field>(def.getFieldDescriptorMap().size());
+        int offset = 0;
+        int maxAlignment = HostFunctionProvider.WORD_SIZE;
+        for (var entry : def.getFieldDescriptorMap().entrySet()) {
+            var type = entry.getValue().getType();
+            int alignment = HostFunctionProvider.getFieldAlignment(type);
+
+            // Align offset for this field's type
+            offset = HostFunctionProvider.alignOffset(offset, alignment);
+            fields.add(new Field(entry.getKey(), entry.getValue(), offset, fields.size()));
+            offset += HostFunctionProvider.getFieldSize(type);
+            maxAlignment = Math.max(maxAlignment, alignment);
+        }
+        // Minimum 1 word
+        int size = Math.max(HostFunctionProvider.alignOffset(offset, maxAlignment), HostFunctionProvider.WORD_SIZE);
+        return new ObjectLayout(size, List.copyOf(fields));
+    }
+}
@@ -0,0 +1,194 @@
+package org.solverforge.wasm.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.solverforge.wasm.service.dto.PlanningProblem;
+import org.solverforge.wasm.service.dto.RawJson;
+import org.solverforge.wasm.service.dto.annotation.DomainPlanningEntityCollectionProperty;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Splits a problem into independent parts by the value of a grouping field (such as a
+ * department id), and merges the solved parts back into one solution.
+ *
+ * The planning entity collections of the problem's top-level object are partitioned, and
+ * so is every other array with an element that has the grouping field:
+ * <ul>
+ * <li>A planning entity goes to the part of its field's value. Entities without the field
+ *     go to one part of their own.</li>
+ * <li>A problem fact with the field goes to the part of its value. Facts without it are
+ *     shared by every part.</li>
+ * </ul>
+ * Other fields are copied to every part. A constraint that relates objects of different
+ * parts is not seen while the parts are solved; only the merged solution is scored with
+ * all constraints.
+ */
+public final class ProblemPartitioner {
+    private final ObjectMapper objectMapper;
+    private final String groupBy;
+    private final Set<String> entityCollections;
+
+    public ProblemPartitioner(ObjectMapper objectMapper, PlanningProblem planningProblem, String groupBy) {
+        this.objectMapper = objectMapper;
+        this.groupBy = groupBy;
+        this.entityCollections = new HashSet<>();
+        var solutionClass = planningProblem.getDomainObjectMap().get(planningProblem.getSolutionClass());
+        for (var field : solutionClass.getFieldDescriptorMap().entrySet()) {
+            var annotations = field.getValue().getAnnotations();
+            if (annotations != null && annotations.stream().anyMatch(DomainPlanningEntityCollectionProperty.class::isInstance)) {
+                entityCollections.add(field.getKey());
+            }
+        }
+    }
+
+    /**
+     * The parts of a problem, in the order their grouping values first appear.
+     */
+    public final class Partitions {
+        private final ObjectNode problem;
+        // Per partitioned array, the part of each element, or -1 if it is shared
+        private final Map<String, int[]> elementParts;
+        private final List<String> parts;
+
+        private Partitions(ObjectNode problem, Map<String, int[]> elementParts, List<String> parts) {
+            this.problem = problem;
+            this.elementParts = elementParts;
+            this.parts = parts;
+        }
+
+        /**
+         * @return the problem JSON of every part
+         */
+        public List<String> getParts() {
+            return parts;
+        }
+
+        /**
+         * Merge the solutions of the parts, in the order of {@link #getParts()}, into a
+         * solution of the whole problem. Partitioned arrays take their elements from the
+         * part they went to, and shared facts and other fields are kept from the problem.
+         */
+        public String merge(List<RawJson> solutions) {
+            if (solutions.size() != parts.size()) {
+                throw new IllegalArgumentException("Expected %d part solutions, got %d."
+                        .formatted(parts.size(), solutions.size()));
+            }
+            if (elementParts.isEmpty()) {
+                // Nothing was partitioned, so the only part is the whole problem
+                return solutions.getFirst().toString();
+            }
+            var solutionNodes = new ArrayList<JsonNode>(solutions.size());
+            for (var solution : solutions) {
+                solutionNodes.add(readTree(solution.bytes()));
+            }
+            var out = problem.deepCopy();
+            for (var partitioned : elementParts.entrySet()) {
+                var fieldName = partitioned.getKey();
+                var elementPart = partitioned.getValue();
+                // Position of the next element in each part's array, which includes the shared ones
+                var nextIndex = new int[parts.size()];
+                var merged = out.putArray(fieldName);
+                var original = (ArrayNode) problem.get(fieldName);
+                for (int i = 0; i < elementPart.length; i++) {
+                    var part = elementPart[i];
+                    if (part < 0) {
+                        merged.add(original.get(i));
+                        for (int p = 0; p < nextIndex.length; p++) {
+                            nextIndex[p]++;
+                        }
+                        continue;
+                    }
+                    var partElements = solutionNodes.get(part).get(fieldName);
+                    var element = (partElements != null) ? partElements.get(nextIndex[part]++) : null;
+                    if (element == null) {
+                        throw new IllegalStateException("The solution of part %d is missing elements of %s."
+                                .formatted(part, fieldName));
+                    }
+                    merged.add(element);
+                }
+            }
+            return out.toString();
+        }
+    }
+
+    /**
+     * Split the problem JSON by the grouping field.
+     *
+     * @throws IllegalArgumentException if the problem is not a JSON object
+     */
+    public Partitions partition(String problemJson) {
+        if (!(readTree(problemJson.getBytes(StandardCharsets.UTF_8)) instanceof ObjectNode problem)) {
+            throw new IllegalArgumentException("The problem is not a JSON object.");
+        }
+
+        var partIndices = new LinkedHashMap<JsonNode, Integer>();
+        var elementParts = new LinkedHashMap<String, int[]>();
+        problem.properties().forEach(field -> {
+            var isEntityCollection = entityCollections.contains(field.getKey());
+            if (!(field.getValue() instanceof ArrayNode array) || (!isEntityCollection && !hasGroupByField(array))) {
+                return;
+            }
+            var elementPart = new int[array.size()];
+            for (int i = 0; i < array.size(); i++) {
+                var key = array.get(i).get(groupBy);
+                if (key == null && !isEntityCollection) {
+                    elementPart[i] = -1;
+                } else {
+                    elementPart[i] = partIndices.computeIfAbsent((key != null) ? key : NullNode.getInstance(),
+                            _ -> partIndices.size());
+                }
+            }
+            elementParts.put(field.getKey(), elementPart);
+        });
+
+        if (partIndices.isEmpty()) {
+            return new Partitions(problem, Map.of(), List.of(problem.toString()));
+        }
+        var parts = new ArrayList<String>(partIndices.size());
+        for (int part = 0; part < partIndices.size(); part++) {
+            var partProblem = problem.deepCopy();
+            for (var partitioned : elementParts.entrySet()) {
+                var original = (ArrayNode) problem.get(partitioned.getKey());
+                var partArray = partProblem.putArray(partitioned.getKey());
+                var elementPart = partitioned.getValue();
+                for (int i = 0; i < elementPart.length; i++) {
+                    if (elementPart[i] == part || elementPart[i] < 0) {
+                        partArray.add(original.get(i));
+                    }
+                }
+            }
+            parts.add(partProblem.toString());
+        }
+        return new Partitions(problem, elementParts, parts);
+    }
+
+    private boolean hasGroupByField(ArrayNode array) {
+        for (var element : array) {
+            if (element.has(groupBy)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private JsonNode readTree(byte[] json) {
+        try {
+            return objectMapper.readTree(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,502 @@
+package org.solverforge.wasm.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.solverforge.wasm.service.dto.PlanningProblem;
+import org.solverforge.wasm.service.dto.annotation.DomainPlanningListVariable;
+import org.solverforge.wasm.service.dto.annotation.PlanningVariableAnnotation;
+import org.solverforge.wasm.service.dto.annotation.ShadowVariableAnnotation;
+
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.FunctionImport;
+import com.dylibso.chicory.wasm.types.Instruction;
+
+/**
+ * Static classification of the exported functions of a module under a domain model.
+ *
+ * The getter and setter exports of planning and shadow variables (from the fields'
+ * {@code accessor} and annotations) are the ground truth: the memory offsets their
+ * bodies load from or store to are taken to be the offsets of variable fields. Each
+ * export is then classified by walking its body and everything it calls:
+ * <ul>
+ * <li>{@link Purity#IMPURE} if it writes memory or globals, calls indirectly, or calls
+ *     a host function that is not known to be side-effect free;</li>
+ * <li>{@link Purity#READS_PLANNING_VARIABLES} if it calls a variable accessor (or, for
+ *     models with planning list variables, a list accessor), loads from a variable
+ *     field's offset, or loads from an address it computed;</li>
+ * <li>{@link Purity#PURE_ON_FACTS} otherwise: its result only depends on its arguments
+ *     and on problem facts, which do not change during a solve.</li>
+ * </ul>
+ * A load is only known to read a field if its address is an argument, or a pointer
+ * loaded from one (directly or through a local assigned once), with the field's offset
+ * as the load's immediate; offsets declared in the model's accessors count as variable
+ * offsets too. Any other address (pointer arithmetic, constants, values from
+ * globals or from calls) could be a variable field, so such loads count as variable
+ * reads, and so do loads of a callee from a parameter that one of its callers passes such
+ * an address. Offsets are compared without knowing which class a pointer refers to, so a
+ * function reading a fact field at the same offset as some variable field is not
+ * considered pure either. Functions that spill to the shadow stack (writing the stack
+ * pointer global) are classified as impure.
+ */
+public final class PurityAnalysis {
+    private static final String HOST_MODULE = "host";
+
+    /**
+     * Host functions that neither write memory nor depend on anything but their
+     * arguments and immutable data.
+     */
+    private static final Set<String> PURE_HOST_FUNCTIONS = Set.of("hround", "hsin", "hcos", "hasin", "hacos",
+            "hatan", "hatan2", "hstringEquals", "hprecomputed0", "hprecomputed1", "hprecomputed2");
+
+    /**
+     * Host functions that read lists, whose contents change with planning list variables.
+     */
+    private static final Set<String> LIST_READING_HOST_FUNCTIONS = Set.of("hgetItem", "hsize", "hlistContainsString");
+
+    // Origin of a value that is not known to be derived from a parameter
+    private static final int COMPUTED = -1;
+
+    public enum Purity {
+        PURE_ON_FACTS,
+        READS_PLANNING_VARIABLES,
+        IMPURE
+    }
+
+    private static final PurityAnalysis EMPTY = new PurityAnalysis(Map.of());
+
+    private final Map<String, Purity> exportPurity;
+
+    private PurityAnalysis(Map<String, Purity> exportPurity) {
+        this.exportPurity = exportPurity;
+    }
+
+    /**
+     * @return an analysis that classifies every function as {@link Purity#IMPURE}
+     */
+    public static PurityAnalysis empty() {
+        return EMPTY;
+    }
+
+    /**
+     * Classify the exported functions of the module under the planning problem's domain model.
+     */
+    public static PurityAnalysis analyze(WasmModule module, PlanningProblem planningProblem) {
+        var variableAccessors = new HashSet<String>();
+        var accessorOffsets = new HashMap<String, Integer>();
+        var hasListVariables = false;
+        for (var domainObject : planningProblem.getDomainObjectMap().values()) {
+            for (var field : domainObject.getFieldDescriptorMap().values()) {
+                var annotations = field.getAnnotations();
+                if (annotations == null || field.getAccessor() == null) {
+                    continue;
+                }
+                for (var annotation : annotations) {
+                    if (annotation instanceof PlanningVariableAnnotation || annotation instanceof ShadowVariableAnnotation) {
+                        addIfPresent(variableAccessors, field.getAccessor().getterFunctionName());
+                        addIfPresent(variableAccessors, field.getAccessor().setterFunctionName());
+                        var offset = field.getAccessor().offset();
+                        if (offset != null) {
+                            // Generated classes access the field directly, whatever the exports do
+                            putIfPresent(accessorOffsets, field.getAccessor().getterFunctionName(), offset);
+                            putIfPresent(accessorOffsets, field.getAccessor().setterFunctionName(), offset);
+                        }
+                    }
+                    hasListVariables |= annotation instanceof DomainPlanningListVariable;
+                }
+            }
+        }
+        var listAccessors = new HashSet<String>();
+        if (hasListVariables) {
+            var listAccessor = planningProblem.getListAccessor();
+            addIfPresent(listAccessors, listAccessor.getItemFunction());
+            addIfPresent(listAccessors, listAccessor.getSizeFunction());
+        }
+        return analyze(module, variableAccessors, accessorOffsets, listAccessors);
+    }
+
+    /**
+     * @param variableAccessors exports that get or set planning or shadow variables
+     * @param listAccessors exports that read list contents, if lists can be planning variables;
+     *        when not empty, list-reading host functions also count as reading variables
+     */
+    public static PurityAnalysis analyze(WasmModule module, Set<String> variableAccessors, Set<String> listAccessors) {
+        return analyze(module, variableAccessors, Map.of(), listAccessors);
+    }
+
+    /**
+     * @param accessorOffsets declared offsets of the fields of variable accessors, by accessor;
+     *        variable offsets in addition to those the accessors' bodies access
+     */
+    public static PurityAnalysis analyze(WasmModule module, Set<String> variableAccessors,
+            Map<String, Integer> accessorOffsets, Set<String> listAccessors) {
+        return new Analyzer(module, variableAccessors, accessorOffsets, listAccessors).analyze();
+    }
+
+    private static void addIfPresent(Set<String> names, String name) {
+        if (name != null) {
+            names.add(name);
+        }
+    }
+
+    private static void putIfPresent(Map<String, Integer> offsets, String name, int offset) {
+        if (name != null) {
+            offsets.put(name, offset);
+        }
+    }
+
+    /**
+     * @return the classification of the export, or {@link Purity#IMPURE} if it is not a known function export
+     */
+    public Purity get(String exportName) {
+        return exportPurity.getOrDefault(exportName, Purity.IMPURE);
+    }
+
+    public boolean isPureOnFacts(String exportName) {
+        return get(exportName) == Purity.PURE_ON_FACTS;
+    }
+
+    /**
+     * @return the classification of every function export, sorted by name
+     */
+    public Map<String, Purity> getExportPurity() {
+        return exportPurity;
+    }
+
+    /**
+     * What a function body does, not including the functions it calls.
+     *
+     * @param computedLoads whether some load's address is not derived from a parameter
+     * @param baseParams the parameters that addresses of loads are derived from
+     */
+    private record BodySummary(boolean writes, boolean callsUnknown, boolean readsLists,
+            Set<Integer> loadOffsets, Set<Integer> storeOffsets, List<Integer> callees,
+            boolean computedLoads, Set<Integer> baseParams, List<CallSite> callSites) {
+        static BodySummary ofImport(boolean callsUnknown, boolean readsLists) {
+            return new BodySummary(false, callsUnknown, readsLists, Set.of(), Set.of(), List.of(), false, Set.of(),
+                    List.of());
+        }
+    }
+
+    /**
+     * @param argumentOrigins for each argument, the parameter of the caller it is derived
+     *        from, or {@link #COMPUTED}
+     */
+    private record CallSite(int callee, int[] argumentOrigins) {}
+
+    private static final class Analyzer {
+        private final WasmModule module;
+        private final int importedFunctionCount;
+        private final Map<Integer, String> functionImports = new HashMap<>();
+        private final Map<String, Integer> functionExports = new HashMap<>();
+        private final List<Integer> importTypes = new ArrayList<>();
+        private final Set<String> variableAccessors;
+        private final Map<String, Integer> accessorOffsets;
+        private final Set<String> listAccessors;
+        private final Map<Integer, BodySummary> summaries = new HashMap<>();
+
+        Analyzer(WasmModule module, Set<String> variableAccessors, Map<String, Integer> accessorOffsets,
+                Set<String> listAccessors) {
+            this.module = module;
+            this.variableAccessors = variableAccessors;
+            this.accessorOffsets = accessorOffsets;
+            this.listAccessors = listAccessors;
+
+            var importSection = module.importSection();
+            int functionIndex = 0;
+            for (int i = 0; i < importSection.importCount(); i++) {
+                var importEntry = importSection.getImport(i);
+                if (importEntry.importType() == ExternalType.FUNCTION) {
+                    functionImports.put(functionIndex++,
+                            HOST_MODULE.equals(importEntry.module()) ? importEntry.name() : null);
+                    importTypes.add(((FunctionImport) importEntry).typeIndex());
+                }
+            }
+            this.importedFunctionCount = functionIndex;
+
+            var exportSection = module.exportSection();
+            for (int i = 0; i < exportSection.exportCount(); i++) {
+                var exportEntry = exportSection.getExport(i);
+                if (exportEntry.exportType() == ExternalType.FUNCTION) {
+                    functionExports.put(exportEntry.name(), (int) exportEntry.index());
+                }
+            }
+        }
+
+        PurityAnalysis analyze() {
+            // Offsets of variable fields, as declared and as accessed by the variable getters and setters
+            var variableOffsets = new HashSet<Integer>();
+            var variableOffsetsKnown = true;
+            var variableFunctions = new HashSet<Integer>();
+            for (var name : variableAccessors) {
+                var index = functionExports.get(name);
+                var offsets = new HashSet<Integer>();
+                if (accessorOffsets.containsKey(name)) {
+                    offsets.add(accessorOffsets.get(name));
+                }
+                if (index != null) {
+                    variableFunctions.add(index);
+                    for (var function : reachableFrom(index)) {
+                        offsets.addAll(summarize(function).loadOffsets());
+                        offsets.addAll(summarize(function).storeOffsets());
+                    }
+                }
+                variableOffsets.addAll(offsets);
+                // An accessor without a declared offset or memory accesses of its own (e.g.
+                // one calling a host function) hides its field's offset
+                variableOffsetsKnown &= (index == null) || !offsets.isEmpty();
+            }
+            var listFunctions = new HashSet<Integer>();
+            for (var name : listAccessors) {
+                var index = functionExports.get(name);
+                if (index != null) {
+                    listFunctions.add(index);
+                }
+            }
+
+            var variableReaders = new HashSet<Integer>(variableFunctions);
+            variableReaders.addAll(listFunctions);
+
+            var out = new TreeMap<String, Purity>();
+            for (var exportEntry : functionExports.entrySet()) {
+                out.put(exportEntry.getKey(), classify(exportEntry.getValue(), variableReaders, variableOffsets,
+                        variableOffsetsKnown));
+            }
+            return new PurityAnalysis(Collections.unmodifiableMap(out));
+        }
+
+        private Purity classify(int functionIndex, Set<Integer> variableReaders, Set<Integer> variableOffsets,
+                boolean variableOffsetsKnown) {
+            var reachable = reachableFrom(functionIndex);
+            var readsVariables = readsComputedAddresses(functionIndex, reachable);
+            for (var function : reachable) {
+                var summary = summarize(function);
+                if (summary.writes() || summary.callsUnknown()) {
+                    return Purity.IMPURE;
+                }
+                if (variableReaders.contains(function) || (summary.readsLists() && !listAccessors.isEmpty())) {
+                    readsVariables = true;
+                    continue;
+                }
+                for (var offset : summary.loadOffsets()) {
+                    if (!variableOffsetsKnown || variableOffsets.contains(offset)) {
+                        readsVariables = true;
+                        break;
+                    }
+                }
+            }
+            return readsVariables ? Purity.READS_PLANNING_VARIABLES : Purity.PURE_ON_FACTS;
+        }
+
+        /**
+         * @return true if a load of the function or a function it calls has an address that is
+         *         not derived from the function's arguments
+         */
+        private boolean readsComputedAddresses(int functionIndex, Set<Integer> reachable) {
+            // Parameters of each function that some call site passes a computed value; the
+            // parameters of the function itself are its arguments
+            var computedParams = new HashMap<Integer, Set<Integer>>();
+            var changed = true;
+            while (changed) {
+                changed = false;
+                for (var function : reachable) {
+                    var callerComputed = computedParams.getOrDefault(function, Set.of());
+                    for (var callSite : summarize(function).callSites()) {
+                        var origins = callSite.argumentOrigins();
+                        for (int i = 0; i < origins.length; i++) {
+                            if ((origins[i] == COMPUTED || callerComputed.contains(origins[i]))
+                                    && computedParams.computeIfAbsent(callSite.callee(), _ -> new HashSet<>()).add(i)) {
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+            for (var function : reachable) {
+                var summary = summarize(function);
+                if (summary.computedLoads()) {
+                    return true;
+                }
+                var functionComputed = computedParams.getOrDefault(function, Set.of());
+                for (var param : summary.baseParams()) {
+                    if (functionComputed.contains(param)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private Set<Integer> reachableFrom(int functionIndex) {
+            var reachable = new HashSet<Integer>();
+            var pending = new ArrayList<Integer>();
+            pending.add(functionIndex);
+            while (!pending.isEmpty()) {
+                var function = pending.removeLast();
+                if (reachable.add(function)) {
+                    pending.addAll(summarize(function).callees());
+                }
+            }
+            return reachable;
+        }
+
+        private BodySummary summarize(int functionIndex) {
+            var summary = summaries.get(functionIndex);
+            if (summary == null) {
+                summary = (functionIndex < importedFunctionCount)
+                        ? summarizeImport(functionImports.get(functionIndex))
+                        : summarizeBody(functionIndex);
+                summaries.put(functionIndex, summary);
+            }
+            return summary;
+        }
+
+        private static BodySummary summarizeImport(String hostFunctionName) {
+            if (hostFunctionName != null && PURE_HOST_FUNCTIONS.contains(hostFunctionName)) {
+                return BodySummary.ofImport(false, false);
+            }
+            if (hostFunctionName != null && LIST_READING_HOST_FUNCTIONS.contains(hostFunctionName)) {
+                return BodySummary.ofImport(false, true);
+            }
+            return BodySummary.ofImport(true, false);
+        }
+
+        private int paramCount(int functionIndex) {
+            int typeIndex = (functionIndex < importedFunctionCount)
+                    ? importTypes.get(functionIndex)
+                    : module.functionSection().getFunctionType(functionIndex - importedFunctionCount);
+            return module.typeSection().getType(typeIndex).params().size();
+        }
+
+        private BodySummary summarizeBody(int functionIndex) {
+            var body = module.codeSection().getFunctionBody(functionIndex - importedFunctionCount);
+            var instructions = body.instructions();
+            var writes = false;
+            var callsUnknown = false;
+            var loadOffsets = new HashSet<Integer>();
+            var storeOffsets = new HashSet<Integer>();
+            var callees = new ArrayList<Integer>();
+            var computedLoads = false;
+            var baseParams = new HashSet<Integer>();
+            var callSites = new ArrayList<CallSite>();
+
+            // The parameter each local's value is derived from: a parameter that is never
+            // written is its own origin, and a local written once, at the top level of the
+            // body, before it is read, has the origin of the value written
+            int paramCount = paramCount(functionIndex);
+            var writeCounts = new HashMap<Integer, Integer>();
+            for (var instruction : instructions) {
+                var opcode = instruction.opcode().name();
+                if (opcode.equals("LOCAL_SET") || opcode.equals("LOCAL_TEE")) {
+                    writeCounts.merge((int) instruction.operand(0), 1, Integer::sum);
+                }
+            }
+            var localOrigins = new HashMap<Integer, Integer>();
+            for (int param = 0; param < paramCount; param++) {
+                if (!writeCounts.containsKey(param)) {
+                    localOrigins.put(param, param);
+                }
+            }
+            var readLocals = new HashSet<Integer>();
+            // The origin of the value each instruction leaves on top of the stack
+            var origins = new int[instructions.size()];
+            int depth = 0;
+
+            for (int i = 0; i < instructions.size(); i++) {
+                var instruction = instructions.get(i);
+                var opcode = instruction.opcode().name();
+                int previousOrigin = (i > 0) ? origins[i - 1] : COMPUTED;
+                origins[i] = COMPUTED;
+                if (opcode.equals("LOCAL_GET")) {
+                    int local = (int) instruction.operand(0);
+                    readLocals.add(local);
+                    origins[i] = localOrigins.getOrDefault(local, COMPUTED);
+                } else if (opcode.equals("LOCAL_SET") || opcode.equals("LOCAL_TEE")) {
+                    int local = (int) instruction.operand(0);
+                    if (local >= paramCount && depth == 0 && writeCounts.get(local) == 1 && !readLocals.contains(local)
+                            && previousOrigin != COMPUTED) {
+                        localOrigins.put(local, previousOrigin);
+                    }
+                    if (opcode.equals("LOCAL_TEE")) {
+                        origins[i] = previousOrigin;
+                    }
+                } else if (opcode.equals("BLOCK") || opcode.equals("LOOP") || opcode.equals("IF")
+                        || opcode.startsWith("TRY")) {
+                    depth++;
+                } else if (opcode.equals("END")) {
+                    depth--;
+                } else if (opcode.equals("CALL") || opcode.equals("RETURN_CALL")) {
+                    int callee = (int) instruction.operand(0);
+                    callees.add(callee);
+                    callSites.add(new CallSite(callee, argumentOrigins(instructions, origins, i, paramCount(callee))));
+                } else if (opcode.contains("CALL")) {
+                    // call_indirect and call_ref: the target is not known statically
+                    callsUnknown = true;
+                } else if (opcode.contains("_LOAD") && !opcode.startsWith("V128")) {
+                    // Memory instructions have (align, offset) operands; the address is the value
+                    // left by the previous instruction if that instruction produces one
+                    loadOffsets.add((int) instruction.operand(1));
+                    if (previousOrigin == COMPUTED) {
+                        computedLoads = true;
+                    } else {
+                        baseParams.add(previousOrigin);
+                        // A loaded pointer navigates from the same argument
+                        origins[i] = previousOrigin;
+                    }
+                } else if (opcode.contains("_STORE") && !opcode.startsWith("V128")) {
+                    writes = true;
+                    storeOffsets.add((int) instruction.operand(1));
+                } else if (opcode.startsWith("V128")
+                        || (opcode.startsWith("MEMORY_") && !opcode.equals("MEMORY_SIZE"))
+                        || opcode.equals("DATA_DROP") || opcode.equals("GLOBAL_SET")
+                        || opcode.startsWith("TABLE_") || opcode.equals("ELEM_DROP")) {
+                    writes = true;
+                }
+            }
+            return new BodySummary(writes, callsUnknown, false, loadOffsets, storeOffsets, callees, computedLoads,
+                    baseParams, callSites);
+        }
+
+        /**
+         * @return the origins of the arguments of the call at {@code callIndex}, all computed
+         *         unless each argument is a local or constant, optionally followed by loads
+         */
+        private static int[] argumentOrigins(List<Instruction> instructions, int[] origins, int callIndex,
+                int argumentCount) {
+            var out = new int[argumentCount];
+            Arrays.fill(out, COMPUTED);
+            int i = callIndex - 1;
+            for (int argument = argumentCount - 1; argument >= 0; argument--) {
+                int end = i;
+                // Instructions that replace the top of the stack
+                while (i >= 0 && isUnaryLoad(instructions.get(i))) {
+                    i--;
+                }
+                if (i < 0) {
+                    return out;
+                }
+                var opcode = instructions.get(i).opcode().name();
+                if (!opcode.equals("LOCAL_GET") && !opcode.endsWith("_CONST")) {
+                    Arrays.fill(out, COMPUTED);
+                    return out;
+                }
+                out[argument] = origins[end];
+                i--;
+            }
+            return out;
+        }
+
+        private static boolean isUnaryLoad(Instruction instruction) {
+            var opcode = instruction.opcode().name();
+            return opcode.equals("LOCAL_TEE") || (opcode.contains("_LOAD") && !opcode.startsWith("V128"));
+        }
+    }
+}
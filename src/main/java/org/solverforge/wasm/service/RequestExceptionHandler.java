@@ -13,6 +13,19 @@ public class RequestExceptionHandler implements ExceptionMapper<Exception> {
 
     @Override
     public Response toResponse(Exception exception) {
+        if (exception instanceof SolveScheduler.RejectedException rejected) {
+            // Overload is expected, not a bad request; the response carries Retry-After
+            return rejected.getResponse();
+        }
+        if (exception instanceof ModuleCache.UnusableModuleException unusable) {
+            // A known module, so not a 404; the response carries the compiler's or the cache's message
+            Log.warn(exception.getMessage(), exception.getCause());
+            return unusable.getResponse();
+        }
+        if (exception instanceof jakarta.ws.rs.NotFoundException) {
+            // An unknown module or solve id, which the client can tell from a malformed request
+            return Response.status(Response.Status.NOT_FOUND).entity(exception.getMessage()).build();
+        }
         exception.printStackTrace();
         // Include full cause chain for better debugging
         StringBuilder msg = new StringBuilder();
@@ -0,0 +1,307 @@
+package org.solverforge.wasm.service;
+
+import static org.solverforge.wasm.service.HostFunctionProvider.BACKING_ARRAY_OFFSET;
+import static org.solverforge.wasm.service.HostFunctionProvider.CAPACITY_OFFSET;
+import static org.solverforge.wasm.service.HostFunctionProvider.LIST_HEADER_SIZE;
+import static org.solverforge.wasm.service.HostFunctionProvider.SIZE_OFFSET;
+import static org.solverforge.wasm.service.HostFunctionProvider.WORD_SIZE;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.solverforge.wasm.service.classgen.Allocator;
+import org.solverforge.wasm.service.dto.DomainObject;
+
+import org.jspecify.annotations.Nullable;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+
+/**
+ * Deep copies a solution in WASM memory, for solution cloning.
+ *
+ * Each object, list and string reachable from the solution is copied with a single bulk
+ * copy of its bytes, after which the pointers it holds are relocated to their copies.
+ * Objects referenced more than once (such as planning values) are copied once, so the
+ * copy has the same shape as the original. Objects are read and allocated using the host
+ * memory layout (see {@link ObjectLayout}), and so are lists of modules using the host list
+ * layout, so the cost is proportional to the size of the solution in memory. Lists of
+ * other modules are read and built through the module's list exports (see {@link ModuleLists}).
+ *
+ * If the solution class declares a clone function in its mapper, that function is called
+ * instead.
+ */
+public final class SolutionGraphCopier {
+    // Bytes read at a time when looking for the end of a string
+    private static final int STRING_CHUNK_SIZE = 64;
+
+    private final Map<String, DomainObject> domainObjectMap;
+    private final String solutionClassName;
+    private final @Nullable String cloneFunctionName;
+
+    /**
+     * Size and pointer fields of each domain class, computed on first use.
+     */
+    private final Map<String, CopyLayout> objectLayoutMap = new ConcurrentHashMap<>();
+
+    private enum PointerKind {
+        STRING,
+        OBJECT,
+        LIST,
+        // Pointers the copy does not own, such as the score; they are cleared
+        NONE
+    }
+
+    /**
+     * @param type the referenced class for objects, the element type for lists
+     */
+    private record PointerField(int offset, PointerKind kind, String type) {}
+
+    private record CopyLayout(int size, List<PointerField> pointerFields) {}
+
+    private record PendingObject(int pointer, CopyLayout layout) {}
+
+    /**
+     * A copied solution.
+     *
+     * @param memoryPointers the objects and lists of the copy, or null if they are unknown
+     *        because the copy was made by the module's clone function
+     */
+    public record CopiedSolution(int pointer, int @Nullable [] memoryPointers) {}
+
+    public SolutionGraphCopier(Map<String, DomainObject> domainObjectMap) {
+        this.domainObjectMap = domainObjectMap;
+        this.solutionClassName = HostFunctionProvider.findSolutionClass(domainObjectMap);
+        var mapper = domainObjectMap.get(solutionClassName).getDomainObjectMapper();
+        this.cloneFunctionName = (mapper != null) ? mapper.cloneFunction() : null;
+    }
+
+    /**
+     * Copy the solution at {@code solutionPointer}.
+     */
+    public CopiedSolution copy(Instance instance, Allocator allocator, int solutionPointer) {
+        if (cloneFunctionName != null) {
+            return new CopiedSolution((int) instance.export(cloneFunctionName).apply(solutionPointer)[0], null);
+        }
+        return new Copy(instance.memory(), allocator, ModuleLists.of(instance)).copyGraph(solutionPointer, solutionClassName);
+    }
+
+    private CopyLayout getObjectLayout(String className) {
+        return objectLayoutMap.computeIfAbsent(className, _ -> {
+            var layout = ObjectLayout.of(domainObjectMap.get(className));
+            var pointerFields = new ArrayList<PointerField>();
+            for (var fieldLayout : layout.fields()) {
+                String type = fieldLayout.field().getType();
+                if (type.endsWith("[]")) {
+                    pointerFields.add(new PointerField(fieldLayout.offset(), PointerKind.LIST,
+                            type.substring(0, type.length() - 2)));
+                } else if (type.equals("String")) {
+                    pointerFields.add(new PointerField(fieldLayout.offset(), PointerKind.STRING, type));
+                } else if (!HostFunctionProvider.isPrimitiveType(type)) {
+                    var kind = domainObjectMap.containsKey(type) ? PointerKind.OBJECT : PointerKind.NONE;
+                    pointerFields.add(new PointerField(fieldLayout.offset(), kind, type));
+                }
+            }
+            return new CopyLayout(layout.size(), pointerFields);
+        });
+    }
+
+    /**
+     * A single copy of a solution graph.
+     */
+    private final class Copy {
+        private final Memory memory;
+        private final Allocator allocator;
+        private final ModuleLists lists;
+
+        /**
+         * Copies of the objects, lists and strings copied so far, by original pointer.
+         */
+        private final Map<Integer, Integer> copies = new HashMap<>();
+
+        /**
+         * Copied objects whose pointer fields still point to the originals.
+         */
+        private final ArrayDeque<PendingObject> pending = new ArrayDeque<>();
+
+        private int[] graphPointers = new int[64];
+        private int graphPointerCount;
+
+        Copy(Memory memory, Allocator allocator, ModuleLists lists) {
+            this.memory = memory;
+            this.allocator = allocator;
+            this.lists = lists;
+        }
+
+        CopiedSolution copyGraph(int pointer, String className) {
+            int copy = copyShallow(pointer, getObjectLayout(className));
+
+            // Relocate iteratively, since reference chains can be arbitrarily long
+            PendingObject object;
+            while ((object = pending.poll()) != null) {
+                relocatePointerFields(object);
+            }
+            return new CopiedSolution(copy, Arrays.copyOf(graphPointers, graphPointerCount));
+        }
+
+        private void addGraphPointer(int pointer) {
+            if (graphPointerCount == graphPointers.length) {
+                graphPointers = Arrays.copyOf(graphPointers, graphPointerCount * 2);
+            }
+            graphPointers[graphPointerCount++] = pointer;
+        }
+
+        private int copyShallow(int pointer, CopyLayout layout) {
+            if (pointer == 0) {
+                return 0;
+            }
+            var existing = copies.get(pointer);
+            if (existing != null) {
+                return existing;
+            }
+            int copy = allocator.allocate(layout.size());
+            memory.copy(copy, pointer, layout.size());
+            copies.put(pointer, copy);
+            addGraphPointer(copy);
+            if (!layout.pointerFields().isEmpty()) {
+                pending.add(new PendingObject(copy, layout));
+            }
+            return copy;
+        }
+
+        private void relocatePointerFields(PendingObject object) {
+            for (var pointerField : object.layout().pointerFields()) {
+                int ptr = object.pointer() + pointerField.offset();
+                int original = memory.readInt(ptr);
+                int relocated = switch (pointerField.kind()) {
+                    case STRING -> copyString(original);
+                    case OBJECT -> copyShallow(original, getObjectLayout(pointerField.type()));
+                    case LIST -> copyList(original, pointerField.type());
+                    case NONE -> 0;
+                };
+                memory.writeI32(ptr, relocated);
+            }
+        }
+
+        private int copyList(int list, String elementType) {
+            if (list == 0) {
+                return 0;
+            }
+            var existing = copies.get(list);
+            if (existing != null) {
+                return existing;
+            }
+            if (!lists.hasHostLayout()) {
+                return copyListThroughExports(list, elementType);
+            }
+            int size = memory.readInt(list + SIZE_OFFSET);
+            int capacity = memory.readInt(list + CAPACITY_OFFSET);
+            int backingArray = memory.readInt(list + BACKING_ARRAY_OFFSET);
+
+            int copy = allocator.allocate(LIST_HEADER_SIZE);
+            int copyBackingArray = allocator.allocate(WORD_SIZE * capacity);
+            memory.copy(copyBackingArray, backingArray, WORD_SIZE * size);
+            memory.writeI32(copy + SIZE_OFFSET, size);
+            memory.writeI32(copy + CAPACITY_OFFSET, capacity);
+            memory.writeI32(copy + BACKING_ARRAY_OFFSET, copyBackingArray);
+            copies.put(list, copy);
+            addGraphPointer(copy);
+
+            switch (elementType) {
+                // Dates and date-times are stored in lists as an epoch day/second directly
+                case "int", "boolean", "LocalDate", "LocalDateTime" -> {
+                }
+                case "String" -> {
+                    for (int i = 0; i < size; i++) {
+                        int ptr = copyBackingArray + WORD_SIZE * i;
+                        memory.writeI32(ptr, copyString(memory.readInt(ptr)));
+                    }
+                }
+                default -> {
+                    if (!domainObjectMap.containsKey(elementType)) {
+                        // Elements of unknown types are not serialized either, so they are dropped
+                        memory.writeI32(copy + SIZE_OFFSET, 0);
+                        return copy;
+                    }
+                    var elementLayout = getObjectLayout(elementType);
+                    for (int i = 0; i < size; i++) {
+                        int ptr = copyBackingArray + WORD_SIZE * i;
+                        memory.writeI32(ptr, copyShallow(memory.readInt(ptr), elementLayout));
+                    }
+                }
+            }
+            return copy;
+        }
+
+        private int copyListThroughExports(int list, String elementType) {
+            int size = lists.size(list);
+            int copy = lists.newList(size);
+            copies.put(list, copy);
+            addGraphPointer(copy);
+
+            switch (elementType) {
+                case "int", "boolean", "LocalDate", "LocalDateTime" -> {
+                    for (int i = 0; i < size; i++) {
+                        lists.append(copy, lists.getItem(list, i));
+                    }
+                }
+                case "String" -> {
+                    for (int i = 0; i < size; i++) {
+                        lists.append(copy, copyString(lists.getItem(list, i)));
+                    }
+                }
+                default -> {
+                    if (!domainObjectMap.containsKey(elementType)) {
+                        // Elements of unknown types are not serialized either, so they are dropped
+                        return copy;
+                    }
+                    var elementLayout = getObjectLayout(elementType);
+                    for (int i = 0; i < size; i++) {
+                        lists.append(copy, copyShallow(lists.getItem(list, i), elementLayout));
+                    }
+                }
+            }
+            return copy;
+        }
+
+        private int copyString(int string) {
+            if (string == 0) {
+                return 0;
+            }
+            var existing = copies.get(string);
+            if (existing != null) {
+                return existing;
+            }
+            int length = stringLength(string);
+            // Include the NUL terminator
+            int copy = allocator.allocate(length + 1);
+            memory.copy(copy, string, length + 1);
+            copies.put(string, copy);
+            return copy;
+        }
+
+        // Finds the NUL terminator with bulk reads, instead of a memory call per byte
+        private int stringLength(int string) {
+            int memorySize = memory.pages() * Memory.PAGE_SIZE;
+            int length = 0;
+            while (true) {
+                int chunkSize = Math.min(STRING_CHUNK_SIZE, memorySize - (string + length));
+                if (chunkSize <= 0) {
+                    throw new IllegalStateException("String at " + string + " is not NUL terminated");
+                }
+                byte[] chunk = memory.readBytes(string + length, chunkSize);
+                for (int i = 0; i < chunkSize; i++) {
+                    if (chunk[i] == 0) {
+                        return length + i;
+                    }
+                }
+                length += chunkSize;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package org.solverforge.wasm.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.solverforge.wasm.service.dto.DomainObject;
+import org.solverforge.wasm.service.dto.FieldDescriptor;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Serializes a solution in WASM memory to JSON, dynamically based on the domain model.
+ *
+ * Objects and lists are read directly from linear memory and written as UTF-8 to an
+ * output stream, so no String (or StringBuilder) of the whole solution is created.
+ * Lists are read as described in {@link ModuleLists}; for a module whose lists do not have
+ * the host layout, this calls into the instance, so it must be done by the thread using it.
+ */
+public final class SolutionJsonWriter {
+    private final JsonFactory jsonFactory;
+    private final Map<String, DomainObject> domainObjectMap;
+    private final String solutionClassName;
+
+    /**
+     * Fields of each domain class, with their offsets and pre-encoded names.
+     */
+    private final Map<String, List<SerializedField>> serializedFieldsMap = new ConcurrentHashMap<>();
+
+    private record SerializedField(SerializedString name, FieldDescriptor field, int offset) {}
+
+    public SolutionJsonWriter(JsonFactory jsonFactory, Map<String, DomainObject> domainObjectMap) {
+        this.jsonFactory = jsonFactory;
+        this.domainObjectMap = domainObjectMap;
+        this.solutionClassName = HostFunctionProvider.findSolutionClass(domainObjectMap);
+    }
+
+    /**
+     * Write the solution at {@code solutionPointer} as JSON to {@code out}.
+     * The output stream is flushed but not closed.
+     */
+    public void write(Instance instance, int solutionPointer, OutputStream out) throws IOException {
+        var memory = instance.memory();
+        var lists = ModuleLists.of(instance);
+        try (var generator = jsonFactory.createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartObject();
+            for (var serializedField : getSerializedFields(solutionClassName)) {
+                // Skip score field in serialization
+                if (HostFunctionProvider.hasPlanningScoreAnnotation(serializedField.field())) {
+                    continue;
+                }
+                writeField(memory, lists, solutionPointer, serializedField, generator);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private List<SerializedField> getSerializedFields(String className) {
+        return serializedFieldsMap.computeIfAbsent(className, _ -> {
+            var out = new ArrayList<SerializedField>();
+            for (var fieldLayout : ObjectLayout.of(domainObjectMap.get(className)).fields()) {
+                out.add(new SerializedField(new SerializedString(fieldLayout.name()), fieldLayout.field(),
+                        fieldLayout.offset()));
+            }
+            return out;
+        });
+    }
+
+    private void writeField(Memory memory, ModuleLists lists, int objectPointer, SerializedField serializedField,
+            JsonGenerator generator) throws IOException {
+        String type = serializedField.field().getType();
+        int ptr = objectPointer + serializedField.offset();
+
+        generator.writeFieldName(serializedField.name());
+        if (type.endsWith("[]")) {
+            writeCollection(memory, lists, memory.readInt(ptr), type.substring(0, type.length() - 2), generator);
+        } else if (HostFunctionProvider.isPrimitiveType(type)) {
+            writePrimitive(memory, ptr, type, generator);
+        } else {
+            // Object references are serialized in full (may infinite loop on circular references)
+            writeObject(memory, lists, memory.readInt(ptr), type, generator);
+        }
+    }
+
+    /**
+     * Write a list. Handles String[], LocalDate[], int[] and object arrays.
+     */
+    private void writeCollection(Memory memory, ModuleLists lists, int listPtr, String elementType,
+            JsonGenerator generator) throws IOException {
+        generator.writeStartArray();
+        if (listPtr != 0) {
+            int length = lists.size(listPtr);
+            for (int i = 0; i < length; i++) {
+                int element = lists.getItem(listPtr, i);
+                switch (elementType) {
+                    case "String" -> writeString(memory, element, generator);
+                    // Dates and date-times are stored in lists as an epoch day/second directly
+                    case "int", "LocalDate", "LocalDateTime" -> generator.writeNumber(element);
+                    default -> writeObject(memory, lists, element, elementType, generator);
+                }
+            }
+        }
+        generator.writeEndArray();
+    }
+
+    private void writeObject(Memory memory, ModuleLists lists, int objectPtr, String className,
+            JsonGenerator generator) throws IOException {
+        if (objectPtr == 0 || !domainObjectMap.containsKey(className)) {
+            generator.writeNull();
+            return;
+        }
+        generator.writeStartObject();
+        for (var serializedField : getSerializedFields(className)) {
+            writeField(memory, lists, objectPtr, serializedField, generator);
+        }
+        generator.writeEndObject();
+    }
+
+    private void writePrimitive(Memory memory, int ptr, String type, JsonGenerator generator) throws IOException {
+        switch (type) {
+            case "int" -> generator.writeNumber(memory.readInt(ptr));
+            case "long" -> generator.writeNumber(memory.readLong(ptr));
+            case "float" -> generator.writeNumber(memory.readFloat(ptr));
+            case "double" -> generator.writeNumber(memory.readDouble(ptr));
+            case "boolean" -> generator.writeBoolean(memory.readInt(ptr) != 0);
+            case "String" -> writeString(memory, memory.readInt(ptr), generator);
+            case "LocalDate" -> {
+                // Read epoch day (long) and convert back to ISO date string
+                long epochDay = memory.readLong(ptr);
+                generator.writeString(LocalDate.ofEpochDay(epochDay).toString());
+            }
+            case "LocalDateTime" -> {
+                // Read epoch second (long) and convert back to ISO datetime string
+                long epochSecond = memory.readLong(ptr);
+                generator.writeString(LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC).toString());
+            }
+            default -> generator.writeNumber(memory.readInt(ptr));
+        }
+    }
+
+    private void writeString(Memory memory, int strPtr, JsonGenerator generator) throws IOException {
+        if (strPtr == 0) {
+            generator.writeNull();
+        } else {
+            generator.writeString(memory.readCString(strPtr));
+        }
+    }
+}
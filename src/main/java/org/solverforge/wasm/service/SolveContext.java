@@ -0,0 +1,118 @@
+package org.solverforge.wasm.service;
+
+import java.util.function.Supplier;
+
+import org.solverforge.wasm.service.classgen.Allocator;
+import org.solverforge.wasm.service.classgen.DomainObjectClassLoader;
+import org.solverforge.wasm.service.classgen.WasmListAccessor;
+
+import org.apache.commons.collections4.map.ConcurrentReferenceHashMap;
+import org.jspecify.annotations.Nullable;
+
+import com.dylibso.chicory.runtime.Instance;
+
+/**
+ * Everything a solve needs besides the solver: its WASM instance, the generated classes,
+ * and the caches and accessors bound to the instance.
+ *
+ * A context is found in one of two ways:
+ * <ul>
+ * <li>{@link #of(Instance)}, from the instance of a WASM object. Generated domain objects
+ *     and wrappers resolve their context once and keep it (see
+ *     {@link org.solverforge.wasm.service.classgen.WasmObject#getSolveContext()}). This works
+ *     on any thread, including the solver's own threads.</li>
+ * <li>{@link #current()}, for code that runs inside {@link #call(Supplier)} or
+ *     {@link #run(Runnable)} but has no WASM object at hand, such as binding constraint
+ *     functions when the constraints are defined.</li>
+ * </ul>
+ * {@link #call(Supplier)} and {@link #run(Runnable)} bind the context for their extent and
+ * restore the previous binding afterward, like {@code ScopedValue.where(...).call(...)}. The
+ * binding can become a {@code ScopedValue} once those are final, without changing callers.
+ */
+public record SolveContext(
+        Instance instance,
+        DomainObjectClassLoader classLoader,
+        ExportCache exportCache,
+        FunctionCache functionCache,
+        WasmListAccessor listAccessor,
+        Allocator allocator,
+        SolutionGraphCopier solutionCopier) {
+
+    private static final ThreadLocal<SolveContext> CURRENT = new ThreadLocal<>();
+
+    // Weak keys: an instance dropped from the pool takes its context with it
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static final ConcurrentReferenceHashMap<Instance, SolveContext> BY_INSTANCE =
+            (ConcurrentReferenceHashMap) new ConcurrentReferenceHashMap.Builder<>()
+                    .weakKeys().strongValues().get();
+
+    /**
+     * @return the context bound by the enclosing {@link #call(Supplier)} or {@link #run(Runnable)}, or null if none
+     */
+    public static @Nullable SolveContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the context bound by the enclosing {@link #call(Supplier)} or {@link #run(Runnable)}
+     * @throws IllegalStateException if there is none
+     */
+    public static SolveContext requireCurrent() {
+        var context = CURRENT.get();
+        if (context == null) {
+            throw new IllegalStateException("Impossible state: no solve context is bound to the current thread");
+        }
+        return context;
+    }
+
+    /**
+     * @return the open context of the solve using the instance, or null if none
+     */
+    public static @Nullable SolveContext of(Instance instance) {
+        return BY_INSTANCE.get(instance);
+    }
+
+    /**
+     * Register this context for its instance, so objects of the instance find it.
+     */
+    public SolveContext open() {
+        BY_INSTANCE.put(instance, this);
+        return this;
+    }
+
+    /**
+     * Unregister this context and close its function cache. The instance can be
+     * used by another solve afterward.
+     */
+    public void close() {
+        BY_INSTANCE.remove(instance, this);
+        functionCache.close();
+    }
+
+    /**
+     * Run the supplier with this context as the {@link #current()} one.
+     */
+    public <T> T call(Supplier<T> supplier) {
+        var previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return supplier.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    /**
+     * Run the runnable with this context as the {@link #current()} one.
+     */
+    public void run(Runnable runnable) {
+        call(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,356 @@
+package org.solverforge.wasm.service;
+
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.HttpHeaders;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Admission control for solves.
+ *
+ * Solves are CPU-bound, so at most {@code maxSlots} of them run at the same time; a solve
+ * that runs several solvers in parallel (a portfolio or a partitioned solve) takes a slot
+ * per solver thread. Solves waiting for slots are queued by priority, then in order of
+ * submission, and fail if they wait longer than the queue timeout. A queued solve does
+ * not start before the ones ahead of it, even if fewer slots would fit it.
+ *
+ * Every admitted solve reserves its estimated memory until it ends. A solve is rejected
+ * with a {@link RejectedException} (HTTP 429 with a Retry-After header) when the queue is
+ * full, or when its memory would exceed the budget together with the admitted ones.
+ */
+public final class SolveScheduler {
+    private static final Comparator<Ticket<?>> QUEUE_ORDER = Comparator
+            .<Ticket<?>> comparingInt(ticket -> -ticket.request.priority())
+            .thenComparingLong(ticket -> ticket.sequence);
+
+    // Assumed duration of a solve until one has finished
+    private static final long INITIAL_RUN_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MAX_RETRY_AFTER_SECONDS = 3600;
+
+    private static final ScheduledExecutorService TIMEOUTS = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("solve-queue-timeout").daemon().factory());
+
+    /**
+     * @param maxSlots the number of solver threads that may run at the same time
+     * @param queueCapacity the number of solves that may wait for slots
+     * @param memoryBudgetBytes the total estimated memory of the admitted solves
+     * @param queueTimeoutMillis how long a solve may wait for slots; 0 for no limit
+     */
+    public record Limits(int maxSlots, int queueCapacity, long memoryBudgetBytes, long queueTimeoutMillis) {
+        public Limits {
+            if (maxSlots < 1) {
+                throw new IllegalArgumentException("At least one solve slot is needed, got %d.".formatted(maxSlots));
+            }
+        }
+    }
+
+    /**
+     * @param priority solves with a higher priority leave the queue first
+     * @param slots the number of solver threads the solve runs
+     * @param estimatedBytes the estimated memory the solve needs
+     */
+    public record Request(int priority, int slots, long estimatedBytes) {}
+
+    /**
+     * Snapshot of the scheduler's load.
+     */
+    public record Stats(int usedSlots, int maxSlots, int queued, long reservedBytes, long memoryBudgetBytes,
+            long rejected, long expired) {}
+
+    /**
+     * Thrown when a solve is not admitted, or waited too long in the queue; mapped to
+     * HTTP 429 Too Many Requests.
+     */
+    public static final class RejectedException extends WebApplicationException {
+        public RejectedException(String message, long retryAfterSeconds) {
+            super(message, Response.status(Response.Status.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                    .type(MediaType.TEXT_PLAIN)
+                    .entity(message)
+                    .build());
+        }
+    }
+
+    /**
+     * An admitted solve. Its result completes when the solve ends, exceptionally if the
+     * solve failed, timed out in the queue or was cancelled before it started.
+     */
+    public final class Ticket<T> {
+        private final long sequence;
+        private final Request request;
+        private final IntFunction<T> task;
+        private final long submittedNanos = System.nanoTime();
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        // Guarded by the scheduler
+        private boolean queued = true;
+        private @Nullable ScheduledFuture<?> timeout;
+        // When it left the queue: started, expired or cancelled
+        private volatile long dequeuedNanos;
+        private volatile long finishedNanos;
+
+        private Ticket(long sequence, Request request, IntFunction<T> task) {
+            this.sequence = sequence;
+            this.request = request;
+            this.task = task;
+        }
+
+        public CompletableFuture<T> result() {
+            return result;
+        }
+
+        /**
+         * @return the number of slots the solve was admitted with, at most {@code maxSlots}
+         */
+        public int getSlots() {
+            return request.slots();
+        }
+
+        public boolean isQueued() {
+            synchronized (SolveScheduler.this) {
+                return queued;
+            }
+        }
+
+        /**
+         * @return the 1-based position of the solve in the queue, or 0 if it is not queued
+         */
+        public int getQueuePosition() {
+            synchronized (SolveScheduler.this) {
+                if (!queued) {
+                    return 0;
+                }
+                int position = 1;
+                for (var other : queue) {
+                    if (QUEUE_ORDER.compare(other, this) < 0) {
+                        position++;
+                    }
+                }
+                return position;
+            }
+        }
+
+        /**
+         * @return how long the solve waited, or has been waiting, in the queue
+         */
+        public long getQueueTimeMillis() {
+            var dequeued = dequeuedNanos;
+            var end = (dequeued != 0) ? dequeued : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - submittedNanos);
+        }
+
+        /**
+         * @return how long the solve ran, or has been running; 0 if it did not start
+         */
+        public long getRunTimeMillis() {
+            var dequeued = dequeuedNanos;
+            var finished = finishedNanos;
+            if (dequeued == 0 || (finished == 0 && result.isDone())) {
+                // Queued, or left the queue without running
+                return 0L;
+            }
+            var end = (finished != 0) ? finished : System.nanoTime();
+            return TimeUnit.NANOSECONDS.toMillis(end - dequeued);
+        }
+
+        /**
+         * Remove the solve from the queue; a solve that already started is not affected.
+         *
+         * @return true if the solve was removed
+         */
+        public boolean cancel() {
+            if (!dequeue(this)) {
+                return false;
+            }
+            result.cancel(false);
+            return true;
+        }
+    }
+
+    private final Limits limits;
+    private final ExecutorService executor = Executors.newCachedThreadPool(
+            Thread.ofPlatform().name("solver-", 0).daemon().factory());
+
+    // Guarded by this
+    private final PriorityQueue<Ticket<?>> queue = new PriorityQueue<>(QUEUE_ORDER);
+    private long nextSequence;
+    private int usedSlots;
+    private long reservedBytes;
+    private long averageRunNanos = INITIAL_RUN_NANOS;
+    private long rejected;
+    private long expired;
+    // Advanced whenever a solve joins or leaves the queue
+    private final Phaser queueChanges = new Phaser(1);
+
+    public SolveScheduler(Limits limits) {
+        this.limits = limits;
+    }
+
+    public Limits getLimits() {
+        return limits;
+    }
+
+    /**
+     * @return the current queue phase, to pass to {@link #awaitQueueChange}
+     */
+    public int getQueuePhase() {
+        return queueChanges.getPhase();
+    }
+
+    /**
+     * Wait until a solve joins or leaves the queue after the given phase, which may change
+     * the position of the solves in it, start them or end them.
+     */
+    public void awaitQueueChange(int phase) throws InterruptedException {
+        queueChanges.awaitAdvanceInterruptibly(phase);
+    }
+
+    /**
+     * Admit the task, to run on a solver thread once slots are free.
+     *
+     * @throws RejectedException if the queue is full, or the memory budget would be exceeded
+     * @throws jakarta.ws.rs.BadRequestException if the task alone needs more than the memory budget
+     */
+    public <T> Ticket<T> submit(Request request, Supplier<T> task) {
+        return submit(request, _ -> task.get());
+    }
+
+    /**
+     * Admit the task, to run on a solver thread once slots are free. The task gets the
+     * number of slots the solve was admitted with, which is less than requested if the
+     * request asked for more than {@code maxSlots}; it should not run more solver
+     * threads than that.
+     *
+     * @throws RejectedException if the queue is full, or the memory budget would be exceeded
+     * @throws jakarta.ws.rs.BadRequestException if the task alone needs more than the memory budget
+     */
+    public synchronized <T> Ticket<T> submit(Request request, IntFunction<T> task) {
+        if (request.estimatedBytes() > limits.memoryBudgetBytes()) {
+            throw new jakarta.ws.rs.BadRequestException(
+                    "The solve needs an estimated %d MB, more than the memory budget of %d MB."
+                            .formatted(toMegabytes(request.estimatedBytes()), toMegabytes(limits.memoryBudgetBytes())));
+        }
+        if (queue.size() >= limits.queueCapacity()) {
+            rejected++;
+            throw new RejectedException("The solve queue is full (%d solves waiting)."
+                    .formatted(queue.size()), retryAfterSeconds());
+        }
+        if (reservedBytes + request.estimatedBytes() > limits.memoryBudgetBytes()) {
+            rejected++;
+            throw new RejectedException("The solve needs an estimated %d MB, but only %d MB of the memory budget are free."
+                    .formatted(toMegabytes(request.estimatedBytes()),
+                            toMegabytes(limits.memoryBudgetBytes() - reservedBytes)),
+                    retryAfterSeconds());
+        }
+        var slots = Math.clamp(request.slots(), 1, limits.maxSlots());
+        var ticket = new Ticket<>(nextSequence++, new Request(request.priority(), slots, request.estimatedBytes()), task);
+        reservedBytes += request.estimatedBytes();
+        queue.add(ticket);
+        if (limits.queueTimeoutMillis() > 0) {
+            ticket.timeout = TIMEOUTS.schedule(() -> expire(ticket), limits.queueTimeoutMillis(), TimeUnit.MILLISECONDS);
+        }
+        queueChanges.arrive();
+        dispatch();
+        return ticket;
+    }
+
+    public synchronized Stats getStats() {
+        return new Stats(usedSlots, limits.maxSlots(), queue.size(), reservedBytes, limits.memoryBudgetBytes(),
+                rejected, expired);
+    }
+
+    // Start queued tickets, in queue order, while their slots are free
+    private synchronized void dispatch() {
+        while (!queue.isEmpty() && usedSlots + queue.peek().request.slots() <= limits.maxSlots()) {
+            var ticket = queue.poll();
+            ticket.queued = false;
+            if (ticket.timeout != null) {
+                ticket.timeout.cancel(false);
+            }
+            usedSlots += ticket.request.slots();
+            ticket.dequeuedNanos = System.nanoTime();
+            queueChanges.arrive();
+            executor.execute(() -> run(ticket));
+        }
+    }
+
+    private <T> void run(Ticket<T> ticket) {
+        T value = null;
+        Throwable failure = null;
+        try {
+            value = ticket.task.apply(ticket.request.slots());
+        } catch (Throwable e) {
+            failure = e;
+        }
+        finish(ticket);
+        if (failure != null) {
+            ticket.result.completeExceptionally(failure);
+        } else {
+            ticket.result.complete(value);
+        }
+    }
+
+    private synchronized void finish(Ticket<?> ticket) {
+        usedSlots -= ticket.request.slots();
+        reservedBytes -= ticket.request.estimatedBytes();
+        ticket.finishedNanos = System.nanoTime();
+        var runNanos = ticket.finishedNanos - ticket.dequeuedNanos;
+        averageRunNanos = (averageRunNanos * 7 + runNanos) / 8;
+        dispatch();
+    }
+
+    private void expire(Ticket<?> ticket) {
+        if (!dequeue(ticket)) {
+            return;
+        }
+        long retryAfterSeconds;
+        synchronized (this) {
+            expired++;
+            retryAfterSeconds = retryAfterSeconds();
+        }
+        ticket.result.completeExceptionally(new RejectedException(
+                "The solve waited longer than %d ms in the queue.".formatted(limits.queueTimeoutMillis()),
+                retryAfterSeconds));
+    }
+
+    private synchronized boolean dequeue(Ticket<?> ticket) {
+        if (!ticket.queued || !queue.remove(ticket)) {
+            return false;
+        }
+        ticket.queued = false;
+        ticket.dequeuedNanos = System.nanoTime();
+        if (ticket.timeout != null) {
+            ticket.timeout.cancel(false);
+        }
+        reservedBytes -= ticket.request.estimatedBytes();
+        queueChanges.arrive();
+        // The head may have been waiting behind this ticket
+        dispatch();
+        return true;
+    }
+
+    // Time until the queue ahead of a new solve is expected to drain
+    private synchronized long retryAfterSeconds() {
+        var rounds = 1 + (long) queue.size() / limits.maxSlots();
+        var seconds = TimeUnit.NANOSECONDS.toSeconds(averageRunNanos * rounds);
+        return Math.clamp(seconds, 1, MAX_RETRY_AFTER_SECONDS);
+    }
+
+    private static long toMegabytes(long bytes) {
+        return bytes / (1024 * 1024);
+    }
+}
@@ -2,62 +2,83 @@ package org.solverforge.wasm.service;
 
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Paths;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiFunction;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.IntFunction;
 
 import jakarta.inject.Inject;
 import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.sse.OutboundSseEvent;
+import jakarta.ws.rs.sse.Sse;
 
 import ai.timefold.solver.core.api.score.Score;
 import ai.timefold.solver.core.api.score.analysis.ScoreAnalysis;
+import ai.timefold.solver.core.api.score.stream.ConstraintProvider;
 import ai.timefold.solver.core.api.solver.SolutionManager;
+import ai.timefold.solver.core.api.solver.Solver;
 import ai.timefold.solver.core.api.solver.SolverFactory;
 import ai.timefold.solver.core.api.solver.SolverJob;
 import ai.timefold.solver.core.api.solver.SolverManager;
 import ai.timefold.solver.core.api.solver.SolverStatus;
+import ai.timefold.solver.core.config.constructionheuristic.ConstructionHeuristicPhaseConfig;
+import ai.timefold.solver.core.config.localsearch.LocalSearchPhaseConfig;
 import ai.timefold.solver.core.config.solver.SolverConfig;
+import ai.timefold.solver.core.impl.phase.event.PhaseLifecycleListenerAdapter;
+import ai.timefold.solver.core.impl.solver.DefaultSolver;
+import ai.timefold.solver.core.impl.solver.scope.SolverScope;
 import ai.timefold.solver.core.impl.util.MutableReference;
 import org.solverforge.wasm.service.classgen.Allocator;
 import org.solverforge.wasm.service.classgen.ConstraintProviderClassGenerator;
 import org.solverforge.wasm.service.classgen.DomainObjectClassGenerator;
 import org.solverforge.wasm.service.classgen.DomainObjectClassLoader;
 import org.solverforge.wasm.service.classgen.WasmListAccessor;
+import org.solverforge.wasm.service.dto.PlanningPartitioning;
+import org.solverforge.wasm.service.dto.PlanningPortfolio;
 import org.solverforge.wasm.service.dto.PlanningProblem;
+import org.solverforge.wasm.service.dto.RawJson;
 import org.solverforge.wasm.service.dto.SolveResult;
 
 import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.logging.Logger;
+import org.jspecify.annotations.Nullable;
 
-import com.dylibso.chicory.compiler.MachineFactoryCompiler;
-import com.dylibso.chicory.runtime.ByteArrayMemory;
 import com.dylibso.chicory.runtime.HostFunction;
-import com.dylibso.chicory.runtime.ImportFunction;
-import com.dylibso.chicory.runtime.ImportValues;
 import com.dylibso.chicory.runtime.Instance;
-import com.dylibso.chicory.wasi.WasiOptions;
-import com.dylibso.chicory.wasi.WasiPreview1;
-import com.dylibso.chicory.wasm.Parser;
-import com.dylibso.chicory.wasm.WasmModule;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.smallrye.common.annotation.Blocking;
+import io.smallrye.common.annotation.NonBlocking;
+import io.smallrye.common.annotation.RunOnVirtualThread;
+import io.smallrye.mutiny.Multi;
+import io.smallrye.mutiny.Uni;
+import io.smallrye.mutiny.subscription.BackPressureStrategy;
+import io.smallrye.mutiny.subscription.MultiEmitter;
+
 @Path("/")
 public class SolverResource {
     private static final Logger LOG = Logger.getLogger(SolverResource.class);
 
-    // Cache parsed WASM modules by SHA-256 hash to avoid re-parsing
-    private static final ConcurrentHashMap<String, WasmModule> MODULE_CACHE = new ConcurrentHashMap<>();
-
     // Storage for active async solves
     private static final ConcurrentHashMap<String, ActiveSolve> ACTIVE_SOLVES = new ConcurrentHashMap<>();
 
@@ -82,16 +103,19 @@ public class SolverResource {
         String state,
         long timeSpentMs,
         Object bestScore,  // ScoreDto or null
-        String error
+        String error,
+        Integer queuePosition,  // 1-based while QUEUED, else null
+        long queueTimeMs
+    ) {}
+    public record BestSolutionResponse(RawJson solution, Object score) {}
+    public record SolveEvent(
+        String state,
+        long timeSpentMs,
+        Object bestScore,
+        RawJson solution,  // only if requested
+        String error,
+        Integer queuePosition
     ) {}
-    public record BestSolutionResponse(String solution, Object score) {}
-
-    public static ThreadLocal<Instance> INSTANCE = new ThreadLocal<>();
-    public static ThreadLocal<ExportCache> EXPORT_CACHE = new ThreadLocal<>();
-    public static ThreadLocal<FunctionCache> FUNCTION_CACHE = new ThreadLocal<>();
-    public static ThreadLocal<WasmListAccessor> LIST_ACCESSOR = new ThreadLocal<>();
-    public static ThreadLocal<Allocator> ALLOCATOR = new ThreadLocal<>();
-    public static ThreadLocal<DomainObjectClassLoader> GENERATED_CLASS_LOADER = new ThreadLocal<>();
 
     @Inject
     ObjectMapper objectMapper;
@@ -99,67 +123,256 @@ public class SolverResource {
     @ConfigProperty(name = "generatedClassPath", defaultValue = "")
     Optional<String> generatedClassPath;
 
+    @ConfigProperty(name = "classCachePath")
+    Optional<String> classCachePath;
+
+    @ConfigProperty(name = "moduleCacheMaxSize", defaultValue = "32")
+    int moduleCacheMaxSize;
+
+    @ConfigProperty(name = "modelCacheMaxSize", defaultValue = "64")
+    int modelCacheMaxSize;
+
+    @ConfigProperty(name = "bestSolutionMinIntervalMs", defaultValue = "0")
+    long bestSolutionMinIntervalMs;
+
+    @ConfigProperty(name = "instancePoolSize", defaultValue = "4")
+    int instancePoolSize;
+
+    @ConfigProperty(name = "instancePoolMaxMemoryMb", defaultValue = "512")
+    int instancePoolMaxMemoryMb;
+
+    @ConfigProperty(name = "memoizeFunctions", defaultValue = "false")
+    boolean memoizeFunctions;
+
+    @ConfigProperty(name = "functionCacheMaxMemoryMb", defaultValue = "256")
+    int functionCacheMaxMemoryMb;
+
+    @ConfigProperty(name = "solveMaxConcurrent")
+    Optional<Integer> solveMaxConcurrent;
+
+    @ConfigProperty(name = "solveQueueCapacity", defaultValue = "64")
+    int solveQueueCapacity;
+
+    @ConfigProperty(name = "solveQueueTimeoutMs", defaultValue = "0")
+    long solveQueueTimeoutMs;
+
+    @ConfigProperty(name = "solveMemoryBudgetMb")
+    Optional<Long> solveMemoryBudgetMb;
+
+    @ConfigProperty(name = "finishedSolveTtlMs", defaultValue = "3600000")
+    long finishedSolveTtlMs;
+
+    @ConfigProperty(name = "finishedSolveSpillPath")
+    Optional<String> finishedSolveSpillPath;
+
+    @ConfigProperty(name = "finishedSolveSpillThresholdKb", defaultValue = "1024")
+    long finishedSolveSpillThresholdKb;
+
+    // Heap used by a solve besides its problem: the WASM instance, caches and solver state
+    private static final long SOLVE_BASE_MEMORY_BYTES = 16L * 1024 * 1024;
+    // Heap used per character of problem JSON: the problem objects in linear memory, the
+    // best solution clones and the serialized solutions
+    private static final long SOLVE_MEMORY_PER_PROBLEM_CHAR = 16;
+
+    // Created from the configuration on first use; the scheduler is published last
+    private static volatile FinishedSolves finishedSolves;
+    private static volatile SolveScheduler scheduler;
+
+    private SolveScheduler getScheduler() {
+        var current = scheduler;
+        if (current == null) {
+            createSolveState();
+            current = scheduler;
+        }
+        return current;
+    }
+
+    private FinishedSolves getFinishedSolves() {
+        var current = finishedSolves;
+        if (current == null) {
+            createSolveState();
+            current = finishedSolves;
+        }
+        return current;
+    }
+
+    private void createSolveState() {
+        synchronized (SolverResource.class) {
+            if (scheduler != null) {
+                return;
+            }
+            finishedSolves = new FinishedSolves(finishedSolveTtlMs, finishedSolveSpillPath.map(Paths::get),
+                    finishedSolveSpillThresholdKb * 1024L);
+            scheduler = new SolveScheduler(new SolveScheduler.Limits(
+                    solveMaxConcurrent.orElseGet(() -> Runtime.getRuntime().availableProcessors()),
+                    solveQueueCapacity,
+                    solveMemoryBudgetMb.map(mb -> mb * 1024L * 1024L)
+                            .orElseGet(() -> Runtime.getRuntime().maxMemory() / 2),
+                    solveQueueTimeoutMs));
+        }
+    }
+
     /**
-     * Compute SHA-256 hash of WASM bytes for cache key.
+     * Snapshot of the async solves, reported by the diagnostics endpoint.
+     *
+     * @param live the solves not yet compacted, queued or running
+     * @param scheduler the load of the scheduler; its reserved bytes estimate the memory
+     *        held by live solves, including {@code /solve} ones. Null before the first solve.
+     * @param finished the compacted results of ended solves. Null before the first solve.
      */
-    private static String computeWasmHash(byte[] wasmBytes) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] hash = digest.digest(wasmBytes);
-            return HexFormat.of().formatHex(hash);
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("SHA-256 not available", e);
+    public record AsyncSolveStats(int live, SolveScheduler.@Nullable Stats scheduler,
+            FinishedSolves.@Nullable Stats finished) {}
+
+    static AsyncSolveStats getAsyncSolveStats() {
+        var currentScheduler = scheduler;
+        var currentFinishedSolves = finishedSolves;
+        return new AsyncSolveStats(ASYNC_CONTEXTS.size(),
+                (currentScheduler != null) ? currentScheduler.getStats() : null,
+                (currentFinishedSolves != null) ? currentFinishedSolves.getStats() : null);
+    }
+
+    /**
+     * The slots and estimated memory of a solve: a portfolio runs a solver with its own copy
+     * of the problem per replica, and a partitioned solve a solver per thread. Only as many
+     * replicas as there are slots run at the same time, so only those are charged.
+     */
+    private SolveScheduler.Request schedulingRequest(PlanningProblem planningProblem) {
+        var problemBytes = SOLVE_MEMORY_PER_PROBLEM_CHAR * planningProblem.getProblem().length();
+        var portfolio = planningProblem.getPortfolio();
+        var partitioning = planningProblem.getPartitioning();
+        if (portfolio != null) {
+            var replicas = Math.min(portfolio.replicas(), getScheduler().getLimits().maxSlots());
+            return new SolveScheduler.Request(planningProblem.getPriority(), replicas,
+                    replicas * (SOLVE_BASE_MEMORY_BYTES + problemBytes));
+        }
+        if (partitioning != null) {
+            // The parts hold the problem once, and the merged solution another time
+            var threads = partitioning.threadLimitOrDefault();
+            return new SolveScheduler.Request(planningProblem.getPriority(), threads,
+                    threads * SOLVE_BASE_MEMORY_BYTES + 2 * problemBytes);
         }
+        return new SolveScheduler.Request(planningProblem.getPriority(), 1, SOLVE_BASE_MEMORY_BYTES + problemBytes);
     }
 
     /**
-     * Get or parse WASM module, using cache to avoid re-parsing.
+     * Run the task on a solver thread once the scheduler admits it, passing it the number
+     * of slots admitted (see {@link SolveScheduler#submit(SolveScheduler.Request, IntFunction)}). Admission happens on
+     * subscription, and cancelling the subscription, e.g. when the client disconnects,
+     * drops the task if it is still queued.
      */
-    private static WasmModule getOrParseModule(byte[] wasmBytes) {
-        String hash = computeWasmHash(wasmBytes);
-        return MODULE_CACHE.computeIfAbsent(hash, k -> {
-            LOG.infof("Parsing new WASM module (hash=%s, size=%d bytes)", hash.substring(0, 16), wasmBytes.length);
-            return Parser.parse(wasmBytes);
+    private <T> Uni<T> scheduled(SolveScheduler.Request request, IntFunction<T> task) {
+        return Uni.createFrom().deferred(() -> {
+            var ticket = getScheduler().submit(request, task);
+            return Uni.createFrom().completionStage(ticket.result())
+                    .onCancellation().invoke(ticket::cancel);
         });
     }
 
-    private Instance createWasmInstance(PlanningProblem planningProblem) {
-        var hostFunctions = new HostFunctionProvider(objectMapper, planningProblem).createHostFunctions();
+    private Optional<ClassCache> getClassCache() {
+        return ClassCache.fromPath(classCachePath);
+    }
 
-        // Use cached WASM module to avoid re-parsing
-        var module = getOrParseModule(planningProblem.getWasm());
+    private ModuleCache.CompiledModule getCompiledModule(PlanningProblem planningProblem) {
+        var wasm = planningProblem.getWasm();
+        if (wasm == null) {
+            // Module registered via POST /modules
+            var wasmHash = planningProblem.getWasmHash();
+            return ModuleCache.get(wasmHash, getClassCache(), moduleCacheMaxSize)
+                    .orElseThrow(() -> new jakarta.ws.rs.NotFoundException("WASM module not found: " + wasmHash));
+        }
+        // Use cached compiled WASM module to avoid re-parsing and re-compiling
+        return ModuleCache.getOrCompile(wasm, getClassCache(), moduleCacheMaxSize);
+    }
 
-        var instanceBuilder = Instance.builder(module)
-                .withMemoryFactory(ByteArrayMemory::new)
-                .withMachineFactory(MachineFactoryCompiler::compile);
+    private InstancePool.PooledInstance acquireWasmInstance(PlanningProblem planningProblem,
+            ModuleCache.CompiledModule compiledModule) {
+        var hostFunctions = new HostFunctionProvider(objectMapper, planningProblem).createHostFunctions();
+        return InstancePool.acquire(compiledModule, hostFunctions, memoizeFunctions);
+    }
 
-        var optionsBuilder = WasiOptions.builder()
-                .inheritSystem();
+    private void releaseWasmInstance(InstancePool.PooledInstance pooledInstance, Allocator allocator) {
+        if (allocator != null) {
+            allocator.close();
+        }
+        InstancePool.release(pooledInstance, instancePoolSize, instancePoolMaxMemoryMb * 1024L * 1024L);
+    }
 
-        for (var environmentEntry : System.getenv().entrySet()) {
-            optionsBuilder.withEnvironment(environmentEntry.getKey(), environmentEntry.getValue());
+    /**
+     * Run the function with the context of a solve on a pooled instance of its own, then
+     * return the instance to the pool.
+     */
+    private <T> T usingSolveContext(PlanningProblem planningProblem, ModuleCache.CompiledModule compiledModule,
+            ModelCache.GeneratedModel generatedModel, Function<SolveContext, T> function) {
+        var pooledInstance = acquireWasmInstance(planningProblem, compiledModule);
+        SolveContext context = null;
+        try {
+            var solveContext = openSolveContext(pooledInstance.instance(), generatedModel, planningProblem);
+            context = solveContext;
+            return solveContext.call(() -> function.apply(solveContext));
+        } finally {
+            releaseWasmInstance(pooledInstance, context != null ? context.allocator() : null);
+            if (context != null) {
+                context.close();
+            }
         }
+    }
 
-        var options = optionsBuilder.build();
-        // create our instance of wasip1
-        var wasi = WasiPreview1.builder().withOptions(options).build();
+    /**
+     * Create and open the context of a solve on the instance; the caller must close it.
+     */
+    private SolveContext openSolveContext(Instance wasmInstance, ModelCache.GeneratedModel generatedModel,
+            PlanningProblem planningProblem) {
+        return new SolveContext(wasmInstance,
+                generatedModel.classLoader(),
+                new ExportCache(wasmInstance),
+                FunctionCache.forSolve(wasmInstance, generatedModel.purity(), functionCacheMaxMemoryMb * 1024L * 1024L),
+                new WasmListAccessor(wasmInstance, planningProblem.getListAccessor()),
+                new Allocator(wasmInstance, planningProblem.getAllocator(), planningProblem.getDeallocator(),
+                        planningProblem.getSolutionDeallocator()),
+                new SolutionGraphCopier(planningProblem.getDomainObjectMap()))
+                .open();
+    }
 
-        var importFunctions = hostFunctions.toArray(new ImportFunction[0]);
-        instanceBuilder.withImportValues(ImportValues.builder()
-                .addFunction(importFunctions)
-                .addFunction(wasi.toHostFunctions())
-                .build());
+    private BestSolutionHolder createBestSolutionHolder(PlanningProblem planningProblem, long minIntervalMillis) {
+        return createBestSolutionHolder(planningProblem, planningProblem.getProblem(), minIntervalMillis);
+    }
 
-        var out = instanceBuilder.build();
-        out.initialize(true);
-        return out;
+    private BestSolutionHolder createBestSolutionHolder(PlanningProblem planningProblem, String problem,
+            long minIntervalMillis) {
+        var solutionJsonWriter = new SolutionJsonWriter(objectMapper.getFactory(), planningProblem.getDomainObjectMap());
+        return new BestSolutionHolder(solutionJsonWriter, RawJson.of(problem), minIntervalMillis);
     }
 
-    private Object convertPlanningProblem(Instance wasmInstance, DomainObjectClassLoader classLoader, PlanningProblem planningProblem) {
+    private SolverConfig createSolverConfig(PlanningProblem planningProblem, ModelCache.GeneratedModel generatedModel) {
+        var classLoader = generatedModel.classLoader();
         var solutionClass = classLoader.getClassForDomainClassName(planningProblem.getSolutionClass());
-        var allocator = ALLOCATOR.get();
+        var entityClassList = new ArrayList<Class<?>>(planningProblem.getEntityClassList().size());
+        for (var entityClass : planningProblem.getEntityClassList()) {
+            entityClassList.add(classLoader.getClassForDomainClassName(entityClass));
+        }
+
+        var solverConfig = new SolverConfig();
+        solverConfig.setSolutionClass(solutionClass);
+        solverConfig.setEntityClassList(entityClassList);
+        solverConfig.setEnvironmentMode(planningProblem.getEnvironmentMode());
+
+        solverConfig.withConstraintProviderClass(generatedModel.constraintProviderClass());
+        solverConfig.withTerminationConfig(planningProblem.terminationConfig());
+        return solverConfig;
+    }
+
+    private Object convertPlanningProblem(SolveContext solveContext, PlanningProblem planningProblem) {
+        return convertPlanningProblem(solveContext, planningProblem, planningProblem.getProblem());
+    }
+
+    /**
+     * @param problem the problem or solution JSON to convert, in the format of {@link PlanningProblem#getProblem()}
+     */
+    private Object convertPlanningProblem(SolveContext solveContext, PlanningProblem planningProblem, String problem) {
+        var solutionClass = solveContext.classLoader().getClassForDomainClassName(planningProblem.getSolutionClass());
         try {
-            return solutionClass.getConstructor(Allocator.class, Instance.class, String.class).newInstance(allocator, wasmInstance, planningProblem.getProblem());
+            return solutionClass.getConstructor(Allocator.class, Instance.class, String.class)
+                    .newInstance(solveContext.allocator(), solveContext.instance(), problem);
         } catch (InvocationTargetException e) {
             // Extract the actual cause from the reflection wrapper
             throw new RuntimeException("Failed to construct solution: " + e.getTargetException().getMessage(), e.getTargetException());
@@ -168,76 +381,125 @@ public class SolverResource {
         }
     }
 
-    private <T> T usingGeneratedSolverAndPlanningProblem(PlanningProblem planningProblem, BiFunction<Object, SolverFactory<Object>, T> resultFunction) {
-        var solverConfig = new SolverConfig();
-
-        var domainObjectClassGenerator = new DomainObjectClassGenerator();
-        var wasmInstance = createWasmInstance(planningProblem);
+    /**
+     * Get the generated domain classes and constraint provider for the planning problem,
+     * reusing them when a request with the same model was seen before.
+     */
+    private ModelCache.GeneratedModel getGeneratedModel(PlanningProblem planningProblem,
+            ModuleCache.CompiledModule compiledModule) {
+        var fingerprint = ClassCache.fingerprint(compiledModule.hash(), planningProblem);
+        if (fingerprint.isEmpty()) {
+            return defineGeneratedModel(planningProblem, compiledModule, Optional.empty());
+        }
+        return ModelCache.getOrDefine(fingerprint.get(), modelCacheMaxSize,
+                () -> defineGeneratedModel(planningProblem, compiledModule, fingerprint));
+    }
 
-        try {
+    /**
+     * Defines the generated domain classes and constraint provider in a new class loader,
+     * loading them from the class cache when available, and classifies the module's
+     * exports under the model.
+     */
+    @SuppressWarnings("unchecked")
+    private ModelCache.GeneratedModel defineGeneratedModel(PlanningProblem planningProblem,
+            ModuleCache.CompiledModule compiledModule, Optional<String> fingerprint) {
+        var purity = PurityAnalysis.analyze(compiledModule.module(), planningProblem);
+        var classCache = getClassCache();
+        var cachedClasses = classCache.flatMap(cache -> fingerprint.flatMap(cache::loadGeneratedClasses));
+        if (cachedClasses.isPresent()) {
             var classLoader = new DomainObjectClassLoader();
-            GENERATED_CLASS_LOADER.set(classLoader);
-            INSTANCE.set(wasmInstance);
-            EXPORT_CACHE.set(new ExportCache(wasmInstance));
-            FUNCTION_CACHE.set(new FunctionCache());
-            LIST_ACCESSOR.set(new WasmListAccessor(wasmInstance, planningProblem.getListAccessor()));
-            ALLOCATOR.set(new Allocator(wasmInstance, planningProblem.getAllocator(), planningProblem.getDeallocator(),
-                    planningProblem.getSolutionDeallocator()));
-
-            domainObjectClassGenerator.prepareClassesForPlanningProblem(planningProblem);
-
-            var solutionClass = classLoader.getClassForDomainClassName(planningProblem.getSolutionClass());
-            var entityClassList = new ArrayList<Class<?>>(planningProblem.getEntityClassList().size());
-            for (var entityClass : planningProblem.getEntityClassList()) {
-                entityClassList.add(classLoader.getClassForDomainClassName(entityClass));
+            cachedClasses.get().forEach(classLoader::addClass);
+            try {
+                // Define every class now, so a broken entry is regenerated rather than failing a solve
+                cachedClasses.get().keySet().forEach(classLoader::getClassForDomainClassName);
+                var constraintProviderClass = (Class<? extends ConstraintProvider>) classLoader.getClassForDomainClassName(
+                        ConstraintProviderClassGenerator.CONSTRAINT_PROVIDER_CLASS_NAME);
+                return new ModelCache.GeneratedModel(classLoader, constraintProviderClass, purity);
+            } catch (RuntimeException | LinkageError e) {
+                LOG.warnf(e, "Ignoring unusable generated classes %s", fingerprint.get());
+                classCache.get().discardGeneratedClasses(fingerprint.get());
             }
+        }
 
-            solverConfig.setSolutionClass(solutionClass);
-            solverConfig.setEntityClassList(entityClassList);
-            solverConfig.setEnvironmentMode(planningProblem.getEnvironmentMode());
-
-            var constraintProviderClass = new ConstraintProviderClassGenerator()
-                    .defineConstraintProviderClass(planningProblem);
-
-            generatedClassPath.ifPresent(s -> classLoader.dumpGeneratedClasses(Paths.get(s)));
-
-            solverConfig.withConstraintProviderClass(constraintProviderClass);
-
-            solverConfig.withTerminationConfig(planningProblem.terminationConfig());
+        var classLoader = new DomainObjectClassLoader();
+        new DomainObjectClassGenerator(classLoader, FieldAccessAnalysis.analyze(compiledModule.module()))
+                .prepareClassesForPlanningProblem(planningProblem);
+        var constraintProviderClass = new ConstraintProviderClassGenerator(classLoader)
+                .defineConstraintProviderClass(planningProblem);
+
+        generatedClassPath.ifPresent(s -> classLoader.dumpGeneratedClasses(Paths.get(s)));
+        classCache.ifPresent(cache -> fingerprint.ifPresent(
+                key -> cache.storeGeneratedClasses(key, classLoader.getGeneratedClasses())));
+        return new ModelCache.GeneratedModel(classLoader, constraintProviderClass, purity);
+    }
 
-            var solverFactory = SolverFactory.create(solverConfig);
-            var solverInput = convertPlanningProblem(wasmInstance, classLoader, planningProblem);
+    /**
+     * Run the function with a solver factory and the converted problem, in the context of a
+     * solve on a pooled instance. The instance is reused and the context closed once the
+     * function returns, so its result must not reference domain objects.
+     */
+    private <T> T usingGeneratedSolverAndPlanningProblem(PlanningProblem planningProblem,
+            BiFunction<Object, SolverFactory<Object>, T> resultFunction) {
+        var compiledModule = getCompiledModule(planningProblem);
+        var pooledInstance = acquireWasmInstance(planningProblem, compiledModule);
+        var wasmInstance = pooledInstance.instance();
 
-            return resultFunction.apply(solverInput, solverFactory);
+        SolveContext context = null;
+        try {
+            var generatedModel = getGeneratedModel(planningProblem, compiledModule);
+            var solveContext = openSolveContext(wasmInstance, generatedModel, planningProblem);
+            context = solveContext;
+            return solveContext.call(() -> {
+                var solverFactory = SolverFactory.create(createSolverConfig(planningProblem, generatedModel));
+                var solverInput = convertPlanningProblem(solveContext, planningProblem);
+
+                return resultFunction.apply(solverInput, solverFactory);
+            });
         } finally {
-            GENERATED_CLASS_LOADER.remove();
-            LIST_ACCESSOR.remove();
-            FUNCTION_CACHE.remove();
-            EXPORT_CACHE.remove();
-            INSTANCE.remove();
-            ALLOCATOR.remove();
+            releaseWasmInstance(pooledInstance, context != null ? context.allocator() : null);
+            if (context != null) {
+                context.close();
+            }
         }
     }
 
+    /**
+     * Solve the problem on a solver thread once the scheduler admits it. The request does
+     * not hold an HTTP thread while it is queued or solving.
+     *
+     * Blocking, so the body is read and deserialized on a worker thread rather than on
+     * the event loop, which keeps answering status polls while a large problem uploads.
+     */
     @POST
     @Path("solve")
-    public SolveResult solve(PlanningProblem planningProblem) {
+    @Blocking
+    public Uni<SolveResult> solve(PlanningProblem planningProblem) {
+        if (planningProblem.getPortfolio() != null && planningProblem.getPartitioning() != null) {
+            throw new jakarta.ws.rs.BadRequestException("A problem cannot have both a portfolio and a partitioning.");
+        }
+        return scheduled(schedulingRequest(planningProblem), slots -> runSolve(planningProblem, slots));
+    }
+
+    private SolveResult runSolve(PlanningProblem planningProblem, int slots) {
+        if (planningProblem.getPortfolio() != null) {
+            return solvePortfolio(planningProblem, planningProblem.getPortfolio(), slots);
+        }
+        if (planningProblem.getPartitioning() != null) {
+            return solvePartitioned(planningProblem, planningProblem.getPartitioning(), slots);
+        }
         return usingGeneratedSolverAndPlanningProblem(planningProblem, (solverInput, solverFactory) -> {
             var solver = solverFactory.buildSolver();
 
-            // Copy the solution into a map; we don't know enough from the WASM
-            // to create an accurate planning clone that cannot be corrupted by
-            // constraints/setters
-            MutableReference<SolveResult> bestSolutionRef = new MutableReference<>(
-                    new SolveResult(planningProblem.getProblem(), null, null));
-            solver.addEventListener(event -> {
-                bestSolutionRef.setValue(new SolveResult(event.getNewBestSolution().toString(), event.getNewBestScore(), null));
-            });
+            // Only the best solution clone is tracked while solving; it is
+            // serialized once the solve ends
+            var bestSolution = createBestSolutionHolder(planningProblem, 0L);
+            solver.addEventListener(event -> bestSolution.update(event.getNewBestSolution(), event.getNewBestScore()));
 
             solver.solve(solverInput);
+            bestSolution.close();
 
             // Extract metrics from DefaultSolver
-            var result = bestSolutionRef.getValue();
+            var result = bestSolution.get();
             var defaultSolver = (ai.timefold.solver.core.impl.solver.DefaultSolver<?>) solver;
             var stats = new org.solverforge.wasm.service.dto.SolverStats(
                     defaultSolver.getTimeMillisSpent(),
@@ -249,12 +511,396 @@ public class SolverResource {
         });
     }
 
+    /**
+     * Analyze the solution on a solver thread, like a solve with a single solver. Blocking
+     * for the same reason as {@link #solve}.
+     *
+     * The analysis references domain objects, which read the memory of the instance, so it
+     * is serialized before the solve context is closed and the instance reused.
+     */
     @POST
     @Path("analyze")
-    public ScoreAnalysis<?> analyze(PlanningProblem planningProblem) {
-        return usingGeneratedSolverAndPlanningProblem(planningProblem, (solverInput, solverFactory) -> {
-            var solutionManager = SolutionManager.create(SolverManager.create(solverFactory));
-            return solutionManager.analyze(solverInput);
+    @Blocking
+    public Uni<RawJson> analyze(PlanningProblem planningProblem) {
+        var request = new SolveScheduler.Request(planningProblem.getPriority(), 1,
+                SOLVE_BASE_MEMORY_BYTES + SOLVE_MEMORY_PER_PROBLEM_CHAR * planningProblem.getProblem().length());
+        return scheduled(request, _ -> usingGeneratedSolverAndPlanningProblem(planningProblem,
+                (solverInput, solverFactory) -> {
+                    var solutionManager = SolutionManager.create(SolverManager.create(solverFactory));
+                    ScoreAnalysis<?> analysis = solutionManager.analyze(solverInput);
+                    try {
+                        return RawJson.of(objectMapper.writeValueAsBytes(analysis));
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Unable to serialize the score analysis", e);
+                    }
+                }));
+    }
+
+    // ============================================================================
+    // Portfolio Solving
+    // ============================================================================
+
+    /**
+     * Race the replicas of the portfolio on the problem and return the best solution any
+     * of them found. Every replica solves on its own WASM instance and thread. If the
+     * portfolio has a sync interval, replicas behind the best one are restarted from the
+     * best solution at every interval until the spent limit is reached.
+     *
+     * @param slots the number of slots the solve was admitted with; replicas beyond it wait
+     *        for a thread, and start from the best solution if they were restarted meanwhile
+     */
+    private SolveResult solvePortfolio(PlanningProblem planningProblem, PlanningPortfolio portfolio, int slots) {
+        var syncInterval = portfolio.syncIntervalDuration();
+        var spentLimit = planningProblem.terminationConfig().getSpentLimit();
+        if (syncInterval != null && spentLimit == null) {
+            throw new jakarta.ws.rs.BadRequestException("A portfolio with a syncInterval requires a termination spentLimit.");
+        }
+        var compiledModule = getCompiledModule(planningProblem);
+        var generatedModel = getGeneratedModel(planningProblem, compiledModule);
+
+        var startNanos = System.nanoTime();
+        var deadlineNanos = (syncInterval != null) ? startNanos + spentLimit.toNanos() : Long.MAX_VALUE;
+        var replicas = new ArrayList<PortfolioReplica>(portfolio.replicas());
+        var futures = new ArrayList<Future<?>>(portfolio.replicas());
+        // One thread per slot the solve was admitted with, which is at most maxSlots
+        var executor = Executors.newFixedThreadPool(Math.min(portfolio.replicas(), slots),
+                Thread.ofPlatform().name("portfolio-replica-", 0).factory());
+        try {
+            for (int i = 0; i < portfolio.replicas(); i++) {
+                var replica = new PortfolioReplica(i, planningProblem, compiledModule, generatedModel, deadlineNanos);
+                replicas.add(replica);
+                futures.add(executor.submit(replica));
+            }
+            if (syncInterval != null) {
+                cooperate(replicas, futures, syncInterval, deadlineNanos);
+            }
+            for (var future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the portfolio to finish", e);
+        } catch (ExecutionException e) {
+            throw failure(e, "Portfolio replica failed");
+        } finally {
+            // Replicas still running after a failure must not outlive the request
+            replicas.forEach(PortfolioReplica::stop);
+            executor.shutdownNow();
+        }
+
+        PortfolioReplica winner = null;
+        long scoreCalculationCount = 0;
+        long moveEvaluationCount = 0;
+        for (var replica : replicas) {
+            scoreCalculationCount += replica.scoreCalculationCount;
+            moveEvaluationCount += replica.moveEvaluationCount;
+            if (replica.best != null && (winner == null || isBetter(replica.best.score(), winner.best.score()))) {
+                winner = replica;
+            }
+        }
+        if (winner == null) {
+            throw new IllegalStateException("Impossible state: no portfolio replica finished a solve");
+        }
+        var timeMillisSpent = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        var stats = new org.solverforge.wasm.service.dto.SolverStats(
+                timeMillisSpent,
+                scoreCalculationCount,
+                scoreCalculationCount * 1000L / timeMillisSpent,
+                moveEvaluationCount,
+                moveEvaluationCount * 1000L / timeMillisSpent);
+        LOG.debugf("Portfolio of %d replicas finished; replica %d found the best score %s",
+                replicas.size(), winner.index, winner.best.score());
+        return new SolveResult(winner.best.solution(), winner.best.score(), stats);
+    }
+
+    /**
+     * Every sync interval until the deadline, restart the replicas behind the leader from
+     * the leader's best solution.
+     */
+    private static void cooperate(List<PortfolioReplica> replicas, List<Future<?>> futures, Duration syncInterval,
+            long deadlineNanos) throws InterruptedException {
+        while (futures.stream().anyMatch(future -> !future.isDone())) {
+            var sleepNanos = Math.min(syncInterval.toNanos(), deadlineNanos - System.nanoTime());
+            if (sleepNanos <= 0) {
+                return;
+            }
+            TimeUnit.NANOSECONDS.sleep(sleepNanos);
+
+            PortfolioReplica leader = null;
+            Score<?> leaderScore = null;
+            for (var replica : replicas) {
+                var score = replica.getScore();
+                if (score != null && (leaderScore == null || isBetter(score, leaderScore))) {
+                    leader = replica;
+                    leaderScore = score;
+                }
+            }
+            if (leader == null) {
+                continue;
+            }
+            String leaderSolution = null;
+            for (var replica : replicas) {
+                var score = replica.getScore();
+                if (replica != leader && (score == null || isBetter(leaderScore, score))) {
+                    if (leaderSolution == null) {
+                        leaderSolution = leader.getBestSolutionJson();
+                    }
+                    replica.restartFrom(leaderSolution);
+                }
+            }
+        }
+    }
+
+    private static RuntimeException failure(ExecutionException e, String message) {
+        if (e.getCause() instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        return new IllegalStateException(message, e.getCause());
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static boolean isBetter(Score<?> score, Score<?> other) {
+        return ((Score) score).compareTo(other) > 0;
+    }
+
+    /**
+     * Terminate the solver as soon as it starts solving if {@code stopRequested} is true by then.
+     *
+     * {@code solve()} clears earlier {@code terminateEarly()} calls when it starts, so a
+     * request to stop made after the solver was published but before it started would be
+     * lost; together with calling {@code terminateEarly()} on the published solver, this
+     * check catches requests made at any time.
+     */
+    private static void terminateIfStopRequested(Solver<Object> solver, BooleanSupplier stopRequested) {
+        ((DefaultSolver<Object>) solver).addPhaseLifecycleListener(new PhaseLifecycleListenerAdapter<>() {
+            @Override
+            public void solvingStarted(SolverScope<Object> solverScope) {
+                if (stopRequested.getAsBoolean()) {
+                    solver.terminateEarly();
+                }
+            }
+        });
+    }
+
+    /**
+     * One solver of a portfolio. It solves in rounds, each on a fresh pooled instance, and
+     * starts a new round only when asked to restart from another replica's solution.
+     */
+    private final class PortfolioReplica implements Runnable {
+        private final int index;
+        private final PlanningProblem planningProblem;
+        private final ModuleCache.CompiledModule compiledModule;
+        private final ModelCache.GeneratedModel generatedModel;
+        private final long deadlineNanos;
+
+        private volatile @Nullable Solver<Object> solver;
+        private volatile @Nullable BestSolutionHolder bestSolution;
+        private volatile @Nullable String restartProblem;
+        private volatile boolean stopped;
+
+        // Written by the replica's thread, read once it is done
+        private BestSolutionHolder.@Nullable SolutionJson best;
+        private long scoreCalculationCount;
+        private long moveEvaluationCount;
+
+        private PortfolioReplica(int index, PlanningProblem planningProblem, ModuleCache.CompiledModule compiledModule,
+                ModelCache.GeneratedModel generatedModel, long deadlineNanos) {
+            this.index = index;
+            this.planningProblem = planningProblem;
+            this.compiledModule = compiledModule;
+            this.generatedModel = generatedModel;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void run() {
+            // A replica waiting for a thread may have been stopped, or restarted, meanwhile
+            if (stopped) {
+                return;
+            }
+            var problem = planningProblem.getProblem();
+            var startProblem = restartProblem;
+            if (startProblem != null) {
+                restartProblem = null;
+                problem = startProblem;
+            }
+            for (int round = 0;; round++) {
+                solveRound(problem, round);
+                var nextProblem = restartProblem;
+                restartProblem = null;
+                if (nextProblem == null || stopped || System.nanoTime() >= deadlineNanos) {
+                    return;
+                }
+                problem = nextProblem;
+            }
+        }
+
+        private void solveRound(String problem, int round) {
+            usingSolveContext(planningProblem, compiledModule, generatedModel, solveContext -> {
+                var solverConfig = createSolverConfig(planningProblem, generatedModel);
+                configureReplica(solverConfig, round);
+                Solver<Object> roundSolver = SolverFactory.create(solverConfig).buildSolver();
+                var roundBestSolution = createBestSolutionHolder(planningProblem, problem, 0L);
+                roundSolver.addEventListener(
+                        event -> roundBestSolution.update(event.getNewBestSolution(), event.getNewBestScore()));
+                terminateIfStopRequested(roundSolver, () -> stopped || restartProblem != null);
+                var solverInput = convertPlanningProblem(solveContext, planningProblem, problem);
+
+                bestSolution = roundBestSolution;
+                solver = roundSolver;
+                if (stopped) {
+                    return null;
+                }
+                try {
+                    roundSolver.solve(solverInput);
+                } finally {
+                    solver = null;
+                    roundBestSolution.close();
+                }
+
+                var result = roundBestSolution.get();
+                if (result.score() != null && (best == null || isBetter(result.score(), best.score()))) {
+                    best = result;
+                }
+                var defaultSolver = (ai.timefold.solver.core.impl.solver.DefaultSolver<?>) roundSolver;
+                scoreCalculationCount += defaultSolver.getScoreCalculationCount();
+                moveEvaluationCount += defaultSolver.getMoveEvaluationCount();
+                return null;
+            });
+        }
+
+        private void configureReplica(SolverConfig solverConfig, int round) {
+            var portfolio = planningProblem.getPortfolio();
+            // Distinct across replicas and rounds
+            solverConfig.setRandomSeed((long) round * portfolio.replicas() + index);
+            var localSearchType = portfolio.localSearchType(index);
+            if (localSearchType != null) {
+                solverConfig.setPhaseConfigList(List.of(
+                        new ConstructionHeuristicPhaseConfig(),
+                        new LocalSearchPhaseConfig().withLocalSearchType(localSearchType)));
+            }
+            if (deadlineNanos != Long.MAX_VALUE) {
+                // A restarted round only gets the time left
+                var remainingNanos = Math.max(0L, deadlineNanos - System.nanoTime());
+                solverConfig.getTerminationConfig().setSpentLimit(Duration.ofNanos(remainingNanos));
+            }
+        }
+
+        private @Nullable Score<?> getScore() {
+            var holder = bestSolution;
+            return (holder != null) ? holder.getScore() : null;
+        }
+
+        private String getBestSolutionJson() {
+            return bestSolution.get().solution().toString();
+        }
+
+        /**
+         * End the current round and start the next from the given solution.
+         */
+        private void restartFrom(String solution) {
+            restartProblem = solution;
+            var currentSolver = solver;
+            if (currentSolver != null) {
+                currentSolver.terminateEarly();
+            }
+        }
+
+        private void stop() {
+            stopped = true;
+            restartProblem = null;
+            var currentSolver = solver;
+            if (currentSolver != null) {
+                currentSolver.terminateEarly();
+            }
+        }
+    }
+
+    // ============================================================================
+    // Partitioned Solving
+    // ============================================================================
+
+    // A solved part of a partitioned problem
+    private record PartResult(RawJson solution, long scoreCalculationCount, long moveEvaluationCount) {}
+
+    /**
+     * Solve the parts of the problem (see {@link ProblemPartitioner}) in parallel, each on
+     * its own WASM instance and thread, then merge them and score the merged solution with
+     * all constraints.
+     *
+     * @param slots the number of slots the solve was admitted with; parts beyond it wait for a thread
+     */
+    private SolveResult solvePartitioned(PlanningProblem planningProblem, PlanningPartitioning partitioning,
+            int slots) {
+        var partitions = new ProblemPartitioner(objectMapper, planningProblem, partitioning.groupBy())
+                .partition(planningProblem.getProblem());
+        var compiledModule = getCompiledModule(planningProblem);
+        var generatedModel = getGeneratedModel(planningProblem, compiledModule);
+
+        var startNanos = System.nanoTime();
+        var parts = partitions.getParts();
+        var partResults = new ArrayList<PartResult>(parts.size());
+        // One thread per slot the solve was admitted with, which is at most the thread limit
+        var executor = Executors.newFixedThreadPool(Math.min(parts.size(), slots));
+        try {
+            var futures = new ArrayList<Future<PartResult>>(parts.size());
+            for (var part : parts) {
+                futures.add(executor.submit(() -> solvePart(planningProblem, compiledModule, generatedModel, part)));
+            }
+            for (var future : futures) {
+                partResults.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the parts to be solved", e);
+        } catch (ExecutionException e) {
+            throw failure(e, "Solving a part failed");
+        } finally {
+            // Interrupting the remaining parts' threads terminates their solvers
+            executor.shutdownNow();
+        }
+
+        var merged = partitions.merge(partResults.stream().map(PartResult::solution).toList());
+        var result = usingSolveContext(planningProblem, compiledModule, generatedModel, solveContext -> {
+            var solverFactory = SolverFactory.create(createSolverConfig(planningProblem, generatedModel));
+            var solution = convertPlanningProblem(solveContext, planningProblem, merged);
+            Score<?> score = SolutionManager.create(solverFactory).update(solution);
+            var bestSolution = createBestSolutionHolder(planningProblem, merged, 0L);
+            bestSolution.update(solution, score);
+            bestSolution.close();
+            return bestSolution.get();
+        });
+
+        long scoreCalculationCount = 0;
+        long moveEvaluationCount = 0;
+        for (var partResult : partResults) {
+            scoreCalculationCount += partResult.scoreCalculationCount();
+            moveEvaluationCount += partResult.moveEvaluationCount();
+        }
+        var timeMillisSpent = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+        var stats = new org.solverforge.wasm.service.dto.SolverStats(
+                timeMillisSpent,
+                scoreCalculationCount,
+                scoreCalculationCount * 1000L / timeMillisSpent,
+                moveEvaluationCount,
+                moveEvaluationCount * 1000L / timeMillisSpent);
+        return new SolveResult(result.solution(), result.score(), stats);
+    }
+
+    private PartResult solvePart(PlanningProblem planningProblem, ModuleCache.CompiledModule compiledModule,
+            ModelCache.GeneratedModel generatedModel, String part) {
+        return usingSolveContext(planningProblem, compiledModule, generatedModel, solveContext -> {
+            Solver<Object> solver = SolverFactory.create(createSolverConfig(planningProblem, generatedModel)).buildSolver();
+            var bestSolution = createBestSolutionHolder(planningProblem, part, 0L);
+            solver.addEventListener(event -> bestSolution.update(event.getNewBestSolution(), event.getNewBestScore()));
+            try {
+                solver.solve(convertPlanningProblem(solveContext, planningProblem, part));
+            } finally {
+                bestSolution.close();
+            }
+            var defaultSolver = (ai.timefold.solver.core.impl.solver.DefaultSolver<?>) solver;
+            return new PartResult(bestSolution.get().solution(), defaultSolver.getScoreCalculationCount(),
+                    defaultSolver.getMoveEvaluationCount());
         });
     }
 
@@ -262,188 +908,354 @@ public class SolverResource {
     // Async Solving Endpoints
     // ============================================================================
 
-    // Executor for background solves
-    private static final java.util.concurrent.ExecutorService SOLVE_EXECUTOR =
-        java.util.concurrent.Executors.newCachedThreadPool();
-
-    // Active async solve context (keeps WASM instance and class loader alive)
+    // Async solve, from its admission until it ends and is compacted (see FinishedSolves).
+    // Its WASM instance and class loader are only held, by its solver thread, while it runs.
     record AsyncSolveContext(
-        Instance wasmInstance,
-        DomainObjectClassLoader classLoader,
-        WasmListAccessor listAccessor,
-        ExportCache exportCache,
-        FunctionCache functionCache,
-        Allocator allocator,
-        ai.timefold.solver.core.api.solver.Solver<Object> solver,
-        MutableReference<String> bestSolution,
-        MutableReference<Score<?>> bestScore,
+        SolveScheduler.Ticket<Void> ticket,
+        BestSolutionHolder bestSolution,
+        java.util.concurrent.atomic.AtomicReference<Solver<Object>> solver,  // set once it starts
         java.util.concurrent.atomic.AtomicBoolean solving,
+        java.util.concurrent.atomic.AtomicBoolean stopRequested,
         MutableReference<String> errorMessage
-    ) {}
+    ) {
+        void stop() {
+            stopRequested.set(true);
+            var currentSolver = solver.get();
+            if (currentSolver != null) {
+                currentSolver.terminateEarly();
+            }
+        }
+
+        boolean isRunning() {
+            return solving.get() && !ticket.isQueued() && !ticket.result().isDone();
+        }
+    }
 
     private static final ConcurrentHashMap<String, AsyncSolveContext> ASYNC_CONTEXTS = new ConcurrentHashMap<>();
 
+    /**
+     * Admit the solve and return its id; it starts once the scheduler has free slots. The
+     * module and model are prepared before, so that invalid requests fail right away; this
+     * runs on a worker thread, which is not held once the solve is admitted.
+     */
     @POST
     @Path("solve/async")
     public AsyncSolveResponse solveAsync(PlanningProblem planningProblem) {
+        if (planningProblem.getPortfolio() != null || planningProblem.getPartitioning() != null) {
+            throw new jakarta.ws.rs.BadRequestException("Portfolio and partitioned solving are only supported by /solve.");
+        }
         String solveId = UUID.randomUUID().toString();
 
-        // Set up the WASM context
-        var domainObjectClassGenerator = new DomainObjectClassGenerator();
-        var wasmInstance = createWasmInstance(planningProblem);
-        var classLoader = new DomainObjectClassLoader();
-        var listAccessor = new WasmListAccessor(wasmInstance, planningProblem.getListAccessor());
-        var exportCache = new ExportCache(wasmInstance);
-        var functionCache = new FunctionCache();
-        var allocator = new Allocator(wasmInstance, planningProblem.getAllocator(), planningProblem.getDeallocator(),
-                planningProblem.getSolutionDeallocator());
-
-        // Set ThreadLocals for class generation
-        GENERATED_CLASS_LOADER.set(classLoader);
-        INSTANCE.set(wasmInstance);
-        EXPORT_CACHE.set(exportCache);
-        FUNCTION_CACHE.set(functionCache);
-        LIST_ACCESSOR.set(listAccessor);
-        ALLOCATOR.set(allocator);
-
-        try {
-            domainObjectClassGenerator.prepareClassesForPlanningProblem(planningProblem);
-
-            var solutionClass = classLoader.getClassForDomainClassName(planningProblem.getSolutionClass());
-            var entityClassList = new ArrayList<Class<?>>(planningProblem.getEntityClassList().size());
-            for (var entityClass : planningProblem.getEntityClassList()) {
-                entityClassList.add(classLoader.getClassForDomainClassName(entityClass));
-            }
+        var compiledModule = getCompiledModule(planningProblem);
+        var generatedModel = getGeneratedModel(planningProblem, compiledModule);
 
-            var solverConfig = new SolverConfig();
-            solverConfig.setSolutionClass(solutionClass);
-            solverConfig.setEntityClassList(entityClassList);
-            solverConfig.setEnvironmentMode(planningProblem.getEnvironmentMode());
-
-            var constraintProviderClass = new ConstraintProviderClassGenerator()
-                    .defineConstraintProviderClass(planningProblem);
-
-            generatedClassPath.ifPresent(s -> classLoader.dumpGeneratedClasses(Paths.get(s)));
-
-            solverConfig.withConstraintProviderClass(constraintProviderClass);
-            solverConfig.withTerminationConfig(planningProblem.terminationConfig());
-
-            var solverFactory = SolverFactory.create(solverConfig);
-            var solver = solverFactory.buildSolver();
+        // The solve may start right away; it waits until its context is registered
+        var registered = new java.util.concurrent.CompletableFuture<AsyncSolveContext>();
+        var ticket = getScheduler().submit(schedulingRequest(planningProblem), () -> {
+            runAsyncSolve(planningProblem, compiledModule, generatedModel, registered.join());
+            return null;
+        });
+        // Track best solution; it is serialized when requested or when the solve ends
+        var context = new AsyncSolveContext(ticket,
+                createBestSolutionHolder(planningProblem, bestSolutionMinIntervalMs),
+                new java.util.concurrent.atomic.AtomicReference<>(),
+                new java.util.concurrent.atomic.AtomicBoolean(true),
+                new java.util.concurrent.atomic.AtomicBoolean(),
+                new MutableReference<>(null));
+        ASYNC_CONTEXTS.put(solveId, context);
+        registered.complete(context);
+        // Solves that end without running, e.g. stopped while queued, never close their holder
+        ticket.result().whenComplete((_, _) -> context.bestSolution().close());
+        // Spilling the solution may write a file, so it is not done on the thread ending the solve,
+        // which is the event loop when a queued solve is stopped
+        ticket.result().whenCompleteAsync((_, _) -> compact(solveId, context), COMPACTION_EXECUTOR);
+        return new AsyncSolveResponse(solveId);
+    }
 
-            // Convert the problem
-            var solverInput = convertPlanningProblem(wasmInstance, classLoader, planningProblem);
+    private static final java.util.concurrent.ExecutorService COMPACTION_EXECUTOR =
+        java.util.concurrent.Executors.newVirtualThreadPerTaskExecutor();
 
-            // Track best solution
-            var bestSolutionRef = new MutableReference<String>(planningProblem.getProblem());
-            var bestScoreRef = new MutableReference<Score<?>>(null);
-            var solving = new java.util.concurrent.atomic.AtomicBoolean(true);
-            var errorMessageRef = new MutableReference<String>(null);
+    /**
+     * Replace the context of an ended async solve with its final solution, score and
+     * statistics, dropping its solver, best solution holder and request.
+     */
+    private void compact(String solveId, AsyncSolveContext context) {
+        try {
+            var bestSolution = context.bestSolution().get();
+            getFinishedSolves().put(solveId, bestSolution.solution(), bestSolution.score(), getError(context),
+                    context.ticket().getRunTimeMillis(), context.ticket().getQueueTimeMillis());
+        } catch (RuntimeException e) {
+            LOG.error("Failed to compact solve " + solveId, e);
+            return;
+        }
+        if (!ASYNC_CONTEXTS.remove(solveId, context)) {
+            // Deleted meanwhile
+            getFinishedSolves().remove(solveId);
+        }
+    }
 
-            solver.addEventListener(event -> {
-                bestSolutionRef.setValue(event.getNewBestSolution().toString());
-                bestScoreRef.setValue(event.getNewBestScore());
-            });
+    private static String getError(AsyncSolveContext context) {
+        var error = context.errorMessage().getValue();
+        var result = context.ticket().result();
+        if (error == null && result.isCompletedExceptionally() && !result.isCancelled()) {
+            // Timed out in the queue
+            error = describeFailure(result.exceptionNow());
+        }
+        return error;
+    }
 
-            // Store context for later queries
-            var context = new AsyncSolveContext(
-                wasmInstance, classLoader, listAccessor, exportCache, functionCache,
-                allocator, solver, bestSolutionRef, bestScoreRef, solving, errorMessageRef
-            );
-            ASYNC_CONTEXTS.put(solveId, context);
-
-            // Run solve in background with proper ThreadLocal context
-            SOLVE_EXECUTOR.submit(() -> {
-                GENERATED_CLASS_LOADER.set(classLoader);
-                INSTANCE.set(wasmInstance);
-                EXPORT_CACHE.set(exportCache);
-                FUNCTION_CACHE.set(functionCache);
-                LIST_ACCESSOR.set(listAccessor);
-                ALLOCATOR.set(allocator);
-                try {
+    /**
+     * Set up the WASM context of an admitted async solve and solve it on the current solver thread.
+     */
+    private void runAsyncSolve(PlanningProblem planningProblem, ModuleCache.CompiledModule compiledModule,
+            ModelCache.GeneratedModel generatedModel, AsyncSolveContext context) {
+        InstancePool.PooledInstance pooledInstance = null;
+        SolveContext solveContext = null;
+        try {
+            pooledInstance = acquireWasmInstance(planningProblem, compiledModule);
+            var openedContext = openSolveContext(pooledInstance.instance(), generatedModel, planningProblem);
+            solveContext = openedContext;
+            openedContext.run(() -> {
+                var solverFactory = SolverFactory.create(createSolverConfig(planningProblem, generatedModel));
+                Solver<Object> solver = solverFactory.buildSolver();
+                var solverInput = convertPlanningProblem(openedContext, planningProblem);
+                solver.addEventListener(
+                        event -> context.bestSolution().update(event.getNewBestSolution(), event.getNewBestScore()));
+                terminateIfStopRequested(solver, context.stopRequested()::get);
+
+                context.solver().set(solver);
+                if (!context.stopRequested().get()) {
                     solver.solve(solverInput);
-                } catch (Exception e) {
-                    LOG.error("Solve failed", e);
-                    // Capture full exception chain for diagnostics
-                    var sb = new StringBuilder();
-                    sb.append(e.getClass().getName()).append(": ").append(e.getMessage());
-                    Throwable cause = e.getCause();
-                    while (cause != null) {
-                        sb.append("\n  Caused by: ").append(cause.getClass().getName())
-                          .append(": ").append(cause.getMessage());
-                        cause = cause.getCause();
-                    }
-                    errorMessageRef.setValue(sb.toString());
-                } finally {
-                    solving.set(false);
-                    GENERATED_CLASS_LOADER.remove();
-                    LIST_ACCESSOR.remove();
-                    FUNCTION_CACHE.remove();
-                    EXPORT_CACHE.remove();
-                    INSTANCE.remove();
-                    ALLOCATOR.remove();
                 }
             });
-
-            return new AsyncSolveResponse(solveId);
+        } catch (Exception e) {
+            LOG.error("Solve failed", e);
+            context.errorMessage().setValue(describeFailure(e));
         } finally {
-            // Clean up ThreadLocals from setup thread (context is preserved in ASYNC_CONTEXTS)
-            GENERATED_CLASS_LOADER.remove();
-            LIST_ACCESSOR.remove();
-            FUNCTION_CACHE.remove();
-            EXPORT_CACHE.remove();
-            INSTANCE.remove();
-            ALLOCATOR.remove();
+            try {
+                // Serialize the final best solution before the instance is reused
+                context.bestSolution().close();
+            } catch (RuntimeException e) {
+                LOG.error("Failed to serialize best solution", e);
+            }
+            if (pooledInstance != null) {
+                releaseWasmInstance(pooledInstance, solveContext != null ? solveContext.allocator() : null);
+            }
+            if (solveContext != null) {
+                solveContext.close();
+            }
+            context.solving().set(false);
         }
     }
 
+    // Full exception chain, for diagnostics
+    private static String describeFailure(Throwable e) {
+        var sb = new StringBuilder();
+        sb.append(e.getClass().getName()).append(": ").append(e.getMessage());
+        Throwable cause = e.getCause();
+        while (cause != null) {
+            sb.append("\n  Caused by: ").append(cause.getClass().getName())
+              .append(": ").append(cause.getMessage());
+            cause = cause.getCause();
+        }
+        return sb.toString();
+    }
+
+    // Lookups only, so polls run on the event loop and are not delayed by busy worker threads
     @GET
+    @NonBlocking
     @Path("solve/{id}/status")
     public SolveStatusResponse getSolveStatus(@PathParam("id") String solveId) {
         var context = ASYNC_CONTEXTS.get(solveId);
         if (context == null) {
-            throw new jakarta.ws.rs.NotFoundException("Solve not found: " + solveId);
+            var finished = getFinishedSolve(solveId);
+            return new SolveStatusResponse("TERMINATED", finished.timeSpentMs(), finished.score(), finished.error(),
+                    null, finished.queueTimeMs());
         }
 
-        String state = context.solving().get() ? "RUNNING" : "TERMINATED";
-        Score<?> bestScore = context.bestScore().getValue();
-        String error = context.errorMessage().getValue();
+        var ticket = context.ticket();
+        if (ticket.isQueued()) {
+            return new SolveStatusResponse("QUEUED", 0L, null, null, ticket.getQueuePosition(),
+                    ticket.getQueueTimeMillis());
+        }
+        String state = context.isRunning() ? "RUNNING" : "TERMINATED";
+        Score<?> bestScore = context.bestSolution().getScore();
+        String error = getError(context);
 
-        return new SolveStatusResponse(state, 0L, bestScore, error);
+        return new SolveStatusResponse(state, ticket.getRunTimeMillis(), bestScore, error, null,
+                ticket.getQueueTimeMillis());
     }
 
+    private FinishedSolves.FinishedSolve getFinishedSolve(String solveId) {
+        var finished = getFinishedSolves().get(solveId);
+        if (finished == null) {
+            throw new jakarta.ws.rs.NotFoundException("Solve not found: " + solveId);
+        }
+        return finished;
+    }
+
+    // Serializes the best solution when it changed, so it runs on a virtual thread of its own
     @GET
+    @RunOnVirtualThread
     @Path("solve/{id}/best")
     public BestSolutionResponse getBestSolution(@PathParam("id") String solveId) {
         var context = ASYNC_CONTEXTS.get(solveId);
         if (context == null) {
-            throw new jakarta.ws.rs.NotFoundException("Solve not found: " + solveId);
+            var finished = getFinishedSolve(solveId);
+            return new BestSolutionResponse(finished.getSolution(), finished.score());
         }
 
-        String solution = context.bestSolution().getValue();
-        Score<?> score = context.bestScore().getValue();
+        var bestSolution = context.bestSolution().get();
+        return new BestSolutionResponse(bestSolution.solution(), bestSolution.score());
+    }
 
-        return new BestSolutionResponse(solution, score);
+    /**
+     * Stream the progress of an async solve as server-sent events: a {@code status} event
+     * whenever its state changes, a {@code best} event for every new best score and a final
+     * {@code end} event, after which the stream completes.
+     *
+     * The solver thread only advances the best solution holder's phase; each stream waits
+     * for it on a virtual thread of its own, and for the scheduler's queue phase while the
+     * solve is queued. Once the holder is closed, the stream waits for the solve's result
+     * to send the {@code end} event. Best solutions found while a stream is waiting
+     * out {@code minIntervalMs}, or while its client is not reading, are coalesced into the
+     * latest one, so a slow client never holds up the solver.
+     *
+     * @param includeSolution whether {@code best} and {@code end} events carry the solution,
+     *        which is serialized when it is sent
+     * @param minIntervalMs minimum time between {@code best} events
+     */
+    @GET
+    @Path("solve/{id}/events")
+    @Produces(MediaType.SERVER_SENT_EVENTS)
+    public Multi<OutboundSseEvent> streamSolveEvents(@PathParam("id") String solveId, @Context Sse sse,
+            @QueryParam("solution") boolean includeSolution,
+            @QueryParam("minIntervalMs") @DefaultValue("0") long minIntervalMs) {
+        // Unknown ids fail with 404 before the stream starts
+        getSolveStatus(solveId);
+        return Multi.createFrom().emitter(emitter -> {
+            var pump = Thread.ofVirtual().name("solve-events-" + solveId).unstarted(
+                    () -> pumpSolveEvents(solveId, sse, includeSolution, minIntervalMs, emitter));
+            emitter.onTermination(pump::interrupt);
+            pump.start();
+        }, BackPressureStrategy.LATEST);
+    }
+
+    private void pumpSolveEvents(String solveId, Sse sse, boolean includeSolution, long minIntervalMs,
+            MultiEmitter<? super OutboundSseEvent> emitter) {
+        try {
+            SolveStatusResponse lastStatus = null;
+            Score<?> lastScore = null;
+            long lastBestNanos = 0;
+            while (!emitter.isCancelled()) {
+                var context = ASYNC_CONTEXTS.get(solveId);
+                // Read before the state, so a change meanwhile is not missed
+                var queuePhase = getScheduler().getQueuePhase();
+                var phase = (context != null) ? context.bestSolution().getUpdatePhase() : 0;
+                var status = getSolveStatus(solveId);
+                if (context == null || "TERMINATED".equals(status.state())) {
+                    RawJson solution = null;
+                    if (includeSolution) {
+                        solution = (context != null) ? context.bestSolution().get().solution()
+                                : getFinishedSolve(solveId).getSolution();
+                    }
+                    emitter.emit(solveEvent(sse, "end", status, status.bestScore(), solution));
+                    emitter.complete();
+                    return;
+                }
+                if (lastStatus == null || !status.state().equals(lastStatus.state())
+                        || !java.util.Objects.equals(status.queuePosition(), lastStatus.queuePosition())) {
+                    emitter.emit(solveEvent(sse, "status", status, status.bestScore(), null));
+                    lastStatus = status;
+                }
+                if ("QUEUED".equals(status.state())) {
+                    // Started, ended or moved up once the queue changes
+                    getScheduler().awaitQueueChange(queuePhase);
+                    continue;
+                }
+
+                var bestSolution = context.bestSolution();
+                var bestScore = bestSolution.getScore();
+                if (bestScore != null && !bestScore.equals(lastScore)) {
+                    var waitNanos = TimeUnit.MILLISECONDS.toNanos(minIntervalMs) - (System.nanoTime() - lastBestNanos);
+                    if (lastScore != null && waitNanos > 0) {
+                        // Best solutions found while waiting replace this one
+                        TimeUnit.NANOSECONDS.sleep(waitNanos);
+                    }
+                    if (includeSolution) {
+                        // May be an earlier best solution, if it is serialized at most every bestSolutionMinIntervalMs
+                        var solutionJson = bestSolution.get();
+                        if (java.util.Objects.equals(solutionJson.score(), lastScore)) {
+                            // Already sent; the latest one is serialized once the interval has passed
+                            TimeUnit.NANOSECONDS.sleep(
+                                    Math.max(bestSolution.getSerializationDelayNanos(), TimeUnit.MILLISECONDS.toNanos(1)));
+                            continue;
+                        }
+                        emitter.emit(solveEvent(sse, "best", status, solutionJson.score(), solutionJson.solution()));
+                        lastScore = solutionJson.score();
+                    } else {
+                        // The latest one, if more were found while waiting
+                        lastScore = bestSolution.getScore();
+                        emitter.emit(solveEvent(sse, "best", status, lastScore, null));
+                    }
+                    lastBestNanos = System.nanoTime();
+                    continue;
+                }
+                if (phase < 0) {
+                    // Closed: the solve ends once its task returns, which is about to happen
+                    context.ticket().result().handle((_, _) -> null).join();
+                    continue;
+                }
+                bestSolution.awaitUpdate(phase);
+            }
+        } catch (InterruptedException e) {
+            // The client went away
+        } catch (jakarta.ws.rs.NotFoundException e) {
+            // Deleted, or evicted, meanwhile
+            emitter.complete();
+        } catch (RuntimeException e) {
+            LOG.error("Failed to stream events of solve " + solveId, e);
+            emitter.fail(e);
+        }
+    }
+
+    private static OutboundSseEvent solveEvent(Sse sse, String name, SolveStatusResponse status, Object score,
+            RawJson solution) {
+        return sse.newEventBuilder()
+                .name(name)
+                .mediaType(MediaType.APPLICATION_JSON_TYPE)
+                .data(SolveEvent.class, new SolveEvent(status.state(), status.timeSpentMs(), score, solution,
+                        status.error(), status.queuePosition()))
+                .build();
     }
 
     @POST
+    @NonBlocking
     @Path("solve/{id}/stop")
     public void stopSolve(@PathParam("id") String solveId) {
         var context = ASYNC_CONTEXTS.get(solveId);
         if (context == null) {
-            throw new jakarta.ws.rs.NotFoundException("Solve not found: " + solveId);
+            // Already ended
+            getFinishedSolve(solveId);
+            return;
         }
 
-        context.solver().terminateEarly();
-        // Note: context cleanup happens when solve thread exits
+        // A queued solve is dropped from the queue, a running one terminated early
+        if (!context.ticket().cancel()) {
+            context.stop();
+        }
+        // Note: the context is compacted once the solve thread exits
     }
 
+    // Deleting a spilled solution touches the file system, so it runs on a virtual thread
     @DELETE
+    @RunOnVirtualThread
     @Path("solve/{id}")
     public void deleteSolve(@PathParam("id") String solveId) {
         var context = ASYNC_CONTEXTS.remove(solveId);
-        if (context != null && context.solving().get()) {
-            context.solver().terminateEarly();
+        if (context != null && !context.ticket().cancel() && context.solving().get()) {
+            context.stop();
         }
+        getFinishedSolves().remove(solveId);
     }
 }
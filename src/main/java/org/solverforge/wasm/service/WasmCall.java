@@ -0,0 +1,367 @@
+package org.solverforge.wasm.service;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jspecify.annotations.Nullable;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.types.ExternalType;
+
+/**
+ * Calls an exported WASM function with primitive arguments and result, without the
+ * argument and result arrays of {@link ExportFunction#apply(long...)}.
+ *
+ * The Chicory compiler turns each WASM function into a static method {@code func_<index>}
+ * of the generated machine classes, taking the function's parameters as int, long, float
+ * or double followed by the memory and the instance. A call resolves that method once and
+ * invokes it through a method handle, converting arguments and result from and to the raw
+ * i64 values {@code apply} uses. Functions without such a method (imported functions, or
+ * functions of an interpreted instance) and functions returning several values are called
+ * through {@code apply} instead.
+ *
+ * Like the instance, a call must only be used by one thread at a time.
+ */
+public final class WasmCall {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final int MAX_ARITY = 5;
+
+    private static final MethodHandle GET_MEMORY;
+    private static final MethodHandle GET_INSTANCE;
+
+    static {
+        try {
+            GET_INSTANCE = LOOKUP.findGetter(WasmCall.class, "instance", Instance.class);
+            GET_MEMORY = MethodHandles.filterReturnValue(GET_INSTANCE,
+                    LOOKUP.findVirtual(Instance.class, "memory", MethodType.methodType(Memory.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Static methods compiled from WASM functions, by name, per machine class
+    private static final ClassValue<Map<String, Method>> COMPILED_FUNCTIONS = new ClassValue<>() {
+        @Override
+        protected Map<String, Method> computeValue(Class<?> machineClass) {
+            return findCompiledFunctions(machineClass);
+        }
+    };
+
+    private final Instance instance;
+    private final String name;
+    private final ExportFunction function;
+    // The compiled function taking raw i64 values, then the memory and the instance;
+    // null if the function is called through apply
+    private final @Nullable MethodHandle compiled;
+    // The compiled function bound to the instance, taking and returning raw i64 values like apply
+    private final @Nullable MethodHandle direct;
+
+    private WasmCall(Instance instance, String name, ExportFunction function, @Nullable MethodHandle compiled) {
+        this.instance = instance;
+        this.name = name;
+        this.function = function;
+        this.compiled = compiled;
+        this.direct = (compiled != null)
+                ? MethodHandles.insertArguments(compiled, compiled.type().parameterCount() - 2, instance.memory(), instance)
+                : null;
+    }
+
+    /**
+     * Create a call of the export, calling the compiled function directly if possible.
+     * Resolving the compiled function is much slower than a call; callers should keep
+     * the result (see {@link ExportCache}).
+     */
+    public static WasmCall of(Instance instance, String exportName) {
+        var function = instance.export(exportName);
+        return new WasmCall(instance, exportName, function, findCompiledHandle(instance, exportName));
+    }
+
+    /**
+     * Create a call of the export that always goes through {@link ExportFunction#apply(long...)};
+     * cheap to create, for calls made outside a solve.
+     */
+    public static WasmCall ofExport(Instance instance, String exportName) {
+        return new WasmCall(instance, exportName, instance.export(exportName), null);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return true if calls invoke the compiled function directly
+     */
+    public boolean isDirect() {
+        return direct != null;
+    }
+
+    /**
+     * A method handle of type {@code (long...)long} making this call with the given number of
+     * arguments. For a direct call this is the adapted compiled function itself, so code
+     * invoking it as a constant (see {@link org.solverforge.wasm.service.classgen.CallSiteClassGenerator})
+     * lets the JIT inline the function's body.
+     */
+    public MethodHandle asMethodHandle(int arity) {
+        if (direct != null && direct.type().parameterCount() == arity) {
+            return direct;
+        }
+        if (arity < 0 || arity > MAX_ARITY) {
+            throw new IllegalArgumentException("Unexpected arity: " + arity);
+        }
+        try {
+            return LOOKUP.findVirtual(WasmCall.class, "call" + arity,
+                    MethodType.methodType(long.class, Collections.nCopies(arity, long.class))).bindTo(this);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A method handle of type {@code (WasmCall, long...)long} making the given call with the
+     * given number of arguments. Unlike {@link #asMethodHandle(int)} it is not bound to this
+     * call: for a direct call it is the adapted compiled function, taking the instance and
+     * memory from the call it is given. It can therefore be kept as a constant for the calls
+     * of this export by every instance of the same compiled module, which are direct or not
+     * alike.
+     */
+    public MethodHandle asUnboundMethodHandle(int arity) {
+        if (compiled != null && compiled.type().parameterCount() == arity + 2) {
+            var handle = MethodHandles.filterArguments(compiled, arity, GET_MEMORY, GET_INSTANCE);
+            var reorder = new int[arity + 2];
+            for (int i = 0; i < arity; i++) {
+                reorder[i] = i + 1;
+            }
+            return MethodHandles.permuteArguments(handle,
+                    MethodType.methodType(long.class, Collections.nCopies(arity, long.class))
+                            .insertParameterTypes(0, WasmCall.class),
+                    reorder);
+        }
+        if (arity < 0 || arity > MAX_ARITY) {
+            throw new IllegalArgumentException("Unexpected arity: " + arity);
+        }
+        try {
+            return LOOKUP.findVirtual(WasmCall.class, "call" + arity,
+                    MethodType.methodType(long.class, Collections.nCopies(arity, long.class)));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Results are returned as raw i64 values (i32 sign-extended, floats as their bits), and 0 for no result
+
+    public long call0() {
+        if (direct == null) {
+            return firstResult(function.apply());
+        }
+        try {
+            return (long) direct.invokeExact();
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long call1(long p1) {
+        if (direct == null) {
+            return firstResult(function.apply(p1));
+        }
+        try {
+            return (long) direct.invokeExact(p1);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long call2(long p1, long p2) {
+        if (direct == null) {
+            return firstResult(function.apply(p1, p2));
+        }
+        try {
+            return (long) direct.invokeExact(p1, p2);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long call3(long p1, long p2, long p3) {
+        if (direct == null) {
+            return firstResult(function.apply(p1, p2, p3));
+        }
+        try {
+            return (long) direct.invokeExact(p1, p2, p3);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long call4(long p1, long p2, long p3, long p4) {
+        if (direct == null) {
+            return firstResult(function.apply(p1, p2, p3, p4));
+        }
+        try {
+            return (long) direct.invokeExact(p1, p2, p3, p4);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    public long call5(long p1, long p2, long p3, long p4, long p5) {
+        if (direct == null) {
+            return firstResult(function.apply(p1, p2, p3, p4, p5));
+        }
+        try {
+            return (long) direct.invokeExact(p1, p2, p3, p4, p5);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static long firstResult(long @Nullable [] results) {
+        return (results == null || results.length == 0) ? 0 : results[0];
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (e instanceof Error error) {
+            throw error;
+        }
+        return new IllegalStateException(e);
+    }
+
+    // ========== Resolution ==========
+
+    private static @Nullable MethodHandle findCompiledHandle(Instance instance, String exportName) {
+        try {
+            var functionIndex = findFunctionIndex(instance, exportName);
+            if (functionIndex < 0) {
+                return null;
+            }
+            var method = COMPILED_FUNCTIONS.get(instance.getMachine().getClass()).get("func_" + functionIndex);
+            if (method == null) {
+                return null;
+            }
+            return adapt(LOOKUP.unreflect(method));
+        } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+            // Compiled classes not laid out as expected; apply still works
+            return null;
+        }
+    }
+
+    private static int findFunctionIndex(Instance instance, String exportName) {
+        var exportSection = instance.module().exportSection();
+        for (int i = 0; i < exportSection.exportCount(); i++) {
+            var exportEntry = exportSection.getExport(i);
+            if (exportEntry.exportType() == ExternalType.FUNCTION && exportEntry.name().equals(exportName)) {
+                return (int) exportEntry.index();
+            }
+        }
+        return -1;
+    }
+
+    private static Map<String, Method> findCompiledFunctions(Class<?> machineClass) {
+        var out = new HashMap<String, Method>();
+        var classLoader = machineClass.getClassLoader();
+        addCompiledFunctions(out, machineClass);
+        for (var nestedClass : machineClass.getDeclaredClasses()) {
+            addCompiledFunctions(out, nestedClass);
+        }
+        // Functions of large modules are split over function group classes
+        for (var prefix : new String[] { machineClass.getName() + "FuncGroup_", machineClass.getName() + "$FuncGroup_" }) {
+            for (int group = 0;; group++) {
+                try {
+                    addCompiledFunctions(out, Class.forName(prefix + group, false, classLoader));
+                } catch (ClassNotFoundException e) {
+                    break;
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void addCompiledFunctions(Map<String, Method> out, Class<?> compiledClass) {
+        for (var method : compiledClass.getDeclaredMethods()) {
+            if (method.getName().startsWith("func_") && Modifier.isStatic(method.getModifiers())
+                    && isCompiledFunctionSignature(method) && method.trySetAccessible()) {
+                out.put(method.getName(), method);
+            }
+        }
+    }
+
+    private static boolean isCompiledFunctionSignature(Method method) {
+        var parameterTypes = method.getParameterTypes();
+        var arity = parameterTypes.length - 2;
+        if (arity < 0 || arity > MAX_ARITY
+                || parameterTypes[arity] != Memory.class || parameterTypes[arity + 1] != Instance.class) {
+            return false;
+        }
+        for (int i = 0; i < arity; i++) {
+            if (!isWasmValueType(parameterTypes[i])) {
+                return false;
+            }
+        }
+        return method.getReturnType() == void.class || isWasmValueType(method.getReturnType());
+    }
+
+    private static boolean isWasmValueType(Class<?> type) {
+        return type == int.class || type == long.class || type == float.class || type == double.class;
+    }
+
+    /**
+     * Adapt a compiled function of type (params..., Memory, Instance)result to (long..., Memory, Instance)long.
+     */
+    private static MethodHandle adapt(MethodHandle compiled) throws ReflectiveOperationException {
+        var type = compiled.type();
+        var arity = type.parameterCount() - 2;
+        var handle = compiled;
+
+        var argumentFilters = new MethodHandle[arity];
+        for (int i = 0; i < arity; i++) {
+            var parameterType = type.parameterType(i);
+            if (parameterType == float.class) {
+                argumentFilters[i] = LOOKUP.findStatic(WasmCall.class, "toF32", MethodType.methodType(float.class, long.class));
+            } else if (parameterType == double.class) {
+                argumentFilters[i] = LOOKUP.findStatic(Double.class, "longBitsToDouble", MethodType.methodType(double.class, long.class));
+            }
+        }
+        handle = MethodHandles.filterArguments(handle, 0, argumentFilters);
+
+        var returnType = type.returnType();
+        if (returnType == void.class) {
+            var noResult = MethodHandles.dropArguments(MethodHandles.constant(long.class, 0L), 0,
+                    handle.type().parameterList());
+            handle = MethodHandles.foldArguments(noResult, handle);
+        } else if (returnType == float.class) {
+            handle = MethodHandles.filterReturnValue(handle,
+                    LOOKUP.findStatic(WasmCall.class, "fromF32", MethodType.methodType(long.class, float.class)));
+        } else if (returnType == double.class) {
+            handle = MethodHandles.filterReturnValue(handle,
+                    LOOKUP.findStatic(Double.class, "doubleToRawLongBits", MethodType.methodType(long.class, double.class)));
+        }
+
+        // Remaining i32 arguments are truncated and an i32 result is sign-extended
+        var rawParameters = new Class<?>[arity + 2];
+        Arrays.fill(rawParameters, long.class);
+        rawParameters[arity] = Memory.class;
+        rawParameters[arity + 1] = Instance.class;
+        return MethodHandles.explicitCastArguments(handle, MethodType.methodType(long.class, rawParameters));
+    }
+
+    private static float toF32(long raw) {
+        return Float.intBitsToFloat((int) raw);
+    }
+
+    private static long fromF32(float value) {
+        return Float.floatToRawIntBits(value);
+    }
+}
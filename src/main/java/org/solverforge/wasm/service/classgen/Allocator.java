@@ -1,35 +1,75 @@
 package org.solverforge.wasm.service.classgen;
 
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.function.IntConsumer;
 import java.util.function.IntUnaryOperator;
 
+import org.solverforge.wasm.service.WasmCall;
+
 import com.dylibso.chicory.runtime.Instance;
 
 public class Allocator {
+    // A solution to free once the solver thread gets to it
+    private record DeferredFree(int pointer, Runnable beforeFree) {}
+
     private final IntUnaryOperator alloc;
     private final IntConsumer dealloc;
     private final IntConsumer solutionDealloc;
+    // Guarded by this, so a free is either done before close() returns or not at all
+    private boolean closed = false;
+    private final ConcurrentLinkedQueue<DeferredFree> deferredSolutionFrees = new ConcurrentLinkedQueue<>();
 
     public Allocator(Instance instance, String allocFunctionName, String deallocFunctionName,
             String solutionDeallocFunctionName) {
-        var allocFunction = instance.export(allocFunctionName);
-        var deallocFunction = instance.export(deallocFunctionName);
-        var solutionDeallocFunction = instance.export(solutionDeallocFunctionName);
+        var allocFunction = WasmCall.of(instance, allocFunctionName);
+        var deallocFunction = WasmCall.of(instance, deallocFunctionName);
+        var solutionDeallocFunction = WasmCall.of(instance, solutionDeallocFunctionName);
 
-        alloc = memorySize -> (int) allocFunction.apply(memorySize)[0];
-        dealloc = deallocFunction::apply;
-        solutionDealloc = solutionDeallocFunction::apply;
+        alloc = memorySize -> (int) allocFunction.call1(memorySize);
+        dealloc = deallocFunction::call1;
+        solutionDealloc = solutionDeallocFunction::call1;
     }
 
     public int allocate(int memorySize) {
         return alloc.applyAsInt(memorySize);
     }
 
-    public void free(int pointer) {
-        dealloc.accept(pointer);
+    public synchronized void free(int pointer) {
+        if (!closed) {
+            dealloc.accept(pointer);
+        }
+    }
+
+    /**
+     * Free a solution, running {@code beforeFree} first, the next time the thread using the
+     * instance calls {@link #freeDeferredSolutions()}. May be called from any thread, such
+     * as a cleaner's, since it does not touch the instance, which is not thread-safe.
+     */
+    public void deferFreeSolution(int pointer, Runnable beforeFree) {
+        deferredSolutionFrees.add(new DeferredFree(pointer, beforeFree));
+    }
+
+    /**
+     * Free the solutions passed to {@link #deferFreeSolution} so far. Called by the thread
+     * using the instance, between calls into it. Nothing is freed once this allocator is
+     * closed, and {@link #close()} waits for running frees to finish.
+     */
+    public synchronized void freeDeferredSolutions() {
+        DeferredFree deferred;
+        while (!closed && (deferred = deferredSolutionFrees.poll()) != null) {
+            deferred.beforeFree().run();
+            solutionDealloc.accept(deferred.pointer());
+        }
     }
 
-    public void freeSolution(int pointer) {
-        solutionDealloc.accept(pointer);
+    /**
+     * Stops freeing memory through this allocator. Called once the solve that owns the
+     * instance is done, so frees deferred by late cleaners are dropped instead of freeing
+     * memory of a pooled instance that has since been restored and handed to another
+     * request. Waits for a running free to finish.
+     */
+    public synchronized void close() {
+        closed = true;
+        deferredSolutionFrees.clear();
     }
 }
@@ -0,0 +1,213 @@
+package org.solverforge.wasm.service.classgen;
+
+import static org.solverforge.wasm.service.classgen.DomainObjectClassGenerator.getDescriptor;
+import static org.solverforge.wasm.service.classgen.DomainObjectClassGenerator.objectDesc;
+import static org.solverforge.wasm.service.classgen.DomainObjectClassGenerator.voidDesc;
+
+import java.lang.classfile.ClassFile;
+import java.lang.classfile.TypeKind;
+import java.lang.constant.ClassDesc;
+import java.lang.constant.ConstantDesc;
+import java.lang.constant.ConstantDescs;
+import java.lang.constant.DynamicConstantDesc;
+import java.lang.constant.MethodTypeDesc;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+/**
+ * Implements functional interfaces with a dedicated hidden class per target.
+ *
+ * Lambdas of the same shape share one class, so a call inside a lambda that differs per
+ * captured value (such as the WASM function it calls) sees every function of the model,
+ * and the JIT cannot inline any of them into the constraint streams. Each class defined
+ * here has its target as a constant (its class data), so the call of the target is
+ * monomorphic and the JIT can inline through it down to the compiled WASM function.
+ *
+ * The values a target needs that differ per solve, such as the WASM instance, are not part
+ * of the constant: they are bound per instance of the class (see {@link CallSiteClass}), so
+ * a class can be kept and reused by every solve of a model, along with the code the JIT
+ * compiled for it.
+ *
+ * The classes are not strongly reachable from their class loader, and are unloaded once
+ * nothing references them.
+ */
+public final class CallSiteClassGenerator {
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassDesc methodHandleDesc = ConstantDescs.CD_MethodHandle;
+
+    private static final ClassDesc callSiteDesc = ClassDesc.of(CallSiteClassGenerator.class.getPackageName(),
+            "WasmCallSite");
+
+    private static final ClassDesc boundDesc = ConstantDescs.CD_Object.arrayType();
+
+    private static final ConstantDesc targetDesc = DynamicConstantDesc.ofNamed(
+            ConstantDescs.BSM_CLASS_DATA, ConstantDescs.DEFAULT_NAME, methodHandleDesc);
+
+    private static final MethodHandle GET_BOUND_VALUE = MethodHandles.arrayElementGetter(Object[].class);
+
+    private CallSiteClassGenerator() {
+    }
+
+    /**
+     * A class implementing a functional interface by invoking its target, whose instances
+     * each pass their own bound values as the target's leading arguments.
+     */
+    public static final class CallSiteClass<T> {
+        private final Class<T> functionalInterface;
+        private final List<Class<?>> boundTypes;
+        // (Object[])Object
+        private final MethodHandle constructor;
+
+        private CallSiteClass(Class<T> functionalInterface, List<Class<?>> boundTypes, MethodHandle constructor) {
+            this.functionalInterface = functionalInterface;
+            this.boundTypes = boundTypes;
+            this.constructor = constructor;
+        }
+
+        /**
+         * @param boundValues the target's leading arguments, of the types it declares
+         */
+        public T newInstance(Object... boundValues) {
+            if (boundValues.length != boundTypes.size()) {
+                throw new IllegalArgumentException("Expected %d bound values, got %d"
+                        .formatted(boundTypes.size(), boundValues.length));
+            }
+            for (int i = 0; i < boundValues.length; i++) {
+                if (!boundTypes.get(i).isInstance(boundValues[i])) {
+                    throw new IllegalArgumentException("Bound value %d is not a %s"
+                            .formatted(i, boundTypes.get(i).getName()));
+                }
+            }
+            try {
+                return functionalInterface.cast((Object) constructor.invokeExact(boundValues.clone()));
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Unable to implement %s".formatted(functionalInterface.getName()), e);
+            }
+        }
+    }
+
+    /**
+     * Create an instance of a new class implementing the functional interface by invoking the target.
+     *
+     * @param target a method handle convertible with {@link MethodHandle#asType} to the type of the
+     *        interface's abstract method
+     */
+    public static <T> T implement(Class<T> functionalInterface, MethodHandle target) {
+        return define(functionalInterface, target, 0).newInstance();
+    }
+
+    /**
+     * Define a new class implementing the functional interface by invoking the target.
+     *
+     * @param target a method handle taking {@code boundCount} leading arguments of reference
+     *        types, bound by {@link CallSiteClass#newInstance}, and otherwise convertible with
+     *        {@link MethodHandle#asType} to the type of the interface's abstract method
+     */
+    public static <T> CallSiteClass<T> define(Class<T> functionalInterface, MethodHandle target, int boundCount) {
+        var method = getFunctionalMethod(functionalInterface);
+        var methodType = MethodType.methodType(method.getReturnType(), method.getParameterTypes());
+        var invokeTypeDesc = methodType.insertParameterTypes(0, Object[].class).describeConstable().orElseThrow();
+
+        var boundTypes = List.copyOf(target.type().parameterList().subList(0, boundCount));
+        for (var boundType : boundTypes) {
+            if (boundType.isPrimitive()) {
+                throw new IllegalArgumentException("Bound argument type %s is primitive".formatted(boundType));
+            }
+        }
+
+        var classBytes = ClassFile.of().build(callSiteDesc, classBuilder -> {
+            classBuilder.withFlags(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SYNTHETIC);
+            classBuilder.withInterfaceSymbols(getDescriptor(functionalInterface));
+            classBuilder.withField("bound", boundDesc, ClassFile.ACC_PRIVATE | ClassFile.ACC_FINAL);
+
+            classBuilder.withMethodBody("<init>", MethodTypeDesc.of(voidDesc, boundDesc), ClassFile.ACC_PUBLIC,
+                    codeBuilder -> {
+                        codeBuilder.aload(0);
+                        codeBuilder.invokespecial(objectDesc, "<init>", MethodTypeDesc.of(voidDesc));
+                        codeBuilder.aload(0);
+                        codeBuilder.aload(1);
+                        codeBuilder.putfield(callSiteDesc, "bound", boundDesc);
+                        codeBuilder.return_();
+                    });
+
+            classBuilder.withMethodBody(method.getName(), methodType.describeConstable().orElseThrow(),
+                    ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL,
+                    codeBuilder -> {
+                        codeBuilder.ldc(targetDesc);
+                        codeBuilder.aload(0);
+                        codeBuilder.getfield(callSiteDesc, "bound", boundDesc);
+                        var slot = 1;
+                        for (var parameterType : method.getParameterTypes()) {
+                            var typeKind = TypeKind.from(parameterType);
+                            codeBuilder.loadLocal(typeKind, slot);
+                            slot += typeKind.slotSize();
+                        }
+                        codeBuilder.invokevirtual(methodHandleDesc, "invokeExact", invokeTypeDesc);
+                        codeBuilder.return_(TypeKind.from(method.getReturnType()));
+                    });
+        });
+
+        try {
+            var callSiteLookup = LOOKUP.defineHiddenClassWithClassData(classBytes,
+                    takeBoundValues(target.asType(methodType.insertParameterTypes(0, boundTypes)), boundTypes), true);
+            var constructor = callSiteLookup.findConstructor(callSiteLookup.lookupClass(),
+                    MethodType.methodType(void.class, Object[].class));
+            return new CallSiteClass<>(functionalInterface, boundTypes,
+                    constructor.asType(MethodType.methodType(Object.class, Object[].class)));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Unable to implement %s".formatted(functionalInterface.getName()), e);
+        }
+    }
+
+    /**
+     * Adapt a target of type (bound..., params...)result to (Object[], params...)result,
+     * taking its leading arguments from the array.
+     */
+    private static MethodHandle takeBoundValues(MethodHandle target, List<Class<?>> boundTypes) {
+        var boundCount = boundTypes.size();
+        if (boundCount == 0) {
+            return MethodHandles.dropArguments(target, 0, Object[].class);
+        }
+        var getters = new MethodHandle[boundCount];
+        for (int i = 0; i < boundCount; i++) {
+            getters[i] = MethodHandles.insertArguments(GET_BOUND_VALUE, 1, i)
+                    .asType(MethodType.methodType(boundTypes.get(i), Object[].class));
+        }
+        var handle = MethodHandles.filterArguments(target, 0, getters);
+        var reorder = new int[handle.type().parameterCount()];
+        for (int i = boundCount; i < reorder.length; i++) {
+            reorder[i] = i - boundCount + 1;
+        }
+        var type = target.type().dropParameterTypes(0, boundCount).insertParameterTypes(0, Object[].class);
+        return MethodHandles.permuteArguments(handle, type, reorder);
+    }
+
+    private static Method getFunctionalMethod(Class<?> functionalInterface) {
+        if (!functionalInterface.isInterface()) {
+            throw new IllegalArgumentException("%s is not an interface".formatted(functionalInterface.getName()));
+        }
+        Method out = null;
+        for (var method : functionalInterface.getMethods()) {
+            if (!Modifier.isAbstract(method.getModifiers())) {
+                continue;
+            }
+            if (out != null) {
+                throw new IllegalArgumentException("%s has more than one abstract method".formatted(functionalInterface.getName()));
+            }
+            out = method;
+        }
+        if (out == null) {
+            throw new IllegalArgumentException("%s has no abstract method".formatted(functionalInterface.getName()));
+        }
+        return out;
+    }
+}
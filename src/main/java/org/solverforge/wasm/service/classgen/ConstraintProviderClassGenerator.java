@@ -7,10 +7,9 @@ import java.lang.classfile.TypeKind;
 import java.lang.classfile.constantpool.ConstantPoolBuilder;
 import java.lang.constant.ClassDesc;
 import java.lang.constant.MethodTypeDesc;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.List;
-import java.util.function.Consumer;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.function.Function;
 
 import ai.timefold.solver.core.api.score.Score;
@@ -24,7 +23,6 @@ import ai.timefold.solver.core.api.score.stream.ConstraintFactory;
 import ai.timefold.solver.core.api.score.stream.ConstraintProvider;
 import ai.timefold.solver.core.api.score.stream.bi.BiJoiner;
 import ai.timefold.solver.core.api.score.stream.uni.UniConstraintStream;
-import org.solverforge.wasm.service.SolverResource;
 import org.solverforge.wasm.service.dto.PlanningProblem;
 import org.solverforge.wasm.service.dto.WasmConstraint;
 import org.solverforge.wasm.service.dto.WasmFunction;
@@ -48,16 +46,30 @@ import org.solverforge.wasm.service.dto.constraint.joiner.DataJoiner;
 import static org.solverforge.wasm.service.classgen.DomainObjectClassGenerator.*;
 
 public class ConstraintProviderClassGenerator {
-    private int functionCount = 0;
-    private final List<Consumer<Class<?>>> classInitializerList = new ArrayList<>();
+    public static final String CONSTRAINT_PROVIDER_CLASS_NAME = "MyConstraintProvider";
+
+    private final DomainObjectClassLoader classLoader;
     private final ConstantPoolBuilder constantPool;
 
+    /**
+     * Function cache IDs of the functions used by the generated class, by function name.
+     */
+    private final Map<String, Integer> functionIdMap = new HashMap<>();
+
     static final ClassDesc constraintProviderDesc = getDescriptor(ConstraintProvider.class);
     static final ClassDesc constraintFactoryDesc = getDescriptor(ConstraintFactory.class);
 
     static final ClassDesc constraintDesc = getDescriptor(Constraint.class);
 
-    public ConstraintProviderClassGenerator() {
+    static final ClassDesc functionTypeDesc = getDescriptor(FunctionType.class);
+    static final ClassDesc wasmFunctionDesc = getDescriptor(WasmFunction.class);
+
+    /**
+     * @param classLoader the class loader the domain classes were defined in, and the
+     *        constraint provider is defined in
+     */
+    public ConstraintProviderClassGenerator(DomainObjectClassLoader classLoader) {
+        this.classLoader = classLoader;
         constantPool = ConstantPoolBuilder.of();
     }
 
@@ -85,7 +97,7 @@ public class ConstraintProviderClassGenerator {
     }
 
     public Class<? extends ConstraintProvider> defineConstraintProviderClass(PlanningProblem planningProblem) {
-        var constraintProviderClassName = "MyConstraintProvider";
+        var constraintProviderClassName = CONSTRAINT_PROVIDER_CLASS_NAME;
         var classFile = ClassFile.of();
         var scoreType = getScoreType(planningProblem);
         var scoreDesc = getDescriptor(scoreType);
@@ -123,12 +135,8 @@ public class ConstraintProviderClassGenerator {
                         codeBuilder.return_(TypeKind.REFERENCE);
                     });
         });
-        SolverResource.GENERATED_CLASS_LOADER.get().addClass(constraintProviderClassName, classBytes);
-        var out = SolverResource.GENERATED_CLASS_LOADER.get().getClassForDomainClassName(constraintProviderClassName);
-        for (var initializer : classInitializerList) {
-            initializer.accept(out);
-        }
-        classInitializerList.clear();
+        classLoader.addClass(constraintProviderClassName, classBytes);
+        var out = classLoader.getClassForDomainClassName(constraintProviderClassName);
         return (Class<? extends ConstraintProvider>) out;
     }
 
@@ -151,24 +159,41 @@ public class ConstraintProviderClassGenerator {
 
     public ClassDesc loadFunctionOfSize(DataStreamInfo dataStreamInfo, int argCount, FunctionType functionType,
             WasmFunction function) {
-        var functionInstance = functionType.getFunction(argCount, function);
-        var functionFieldName = "$function" + functionCount;
         var functionClassDesc = functionType.getClassDescriptor(dataStreamInfo.dataStream(), argCount);
-        functionCount++;
-        dataStreamInfo.classBuilder().withField(functionFieldName, functionClassDesc, ClassFile.ACC_PUBLIC | ClassFile.ACC_STATIC);
-        classInitializerList.add(clazz -> {
-            try {
-                clazz.getField(functionFieldName).set(null, functionInstance);
-            } catch (IllegalAccessException | NoSuchFieldException e) {
-                throw new RuntimeException(e);
-            } catch (IllegalArgumentException e) {
-                throw new RuntimeException("Type mismatch: expected %s but got %s".formatted(functionClassDesc, functionInstance.getClass().getInterfaces()[0]), e);
-            }
-        });
-        dataStreamInfo.codeBuilder().getstatic(dataStreamInfo.generatedClassDesc(), functionFieldName, functionClassDesc);
+
+        // Only the function names are embedded; the function itself is bound to the
+        // current WASM instance when defineConstraints runs, so the generated bytecode
+        // does not depend on the instance it was generated for.
+        var codeBuilder = dataStreamInfo.codeBuilder();
+        codeBuilder.getstatic(functionTypeDesc, functionType.name(), functionTypeDesc);
+        codeBuilder.loadConstant(argCount);
+        codeBuilder.loadConstant(function.getWasmFunctionName());
+        loadNullableString(codeBuilder, function.getRelationFunctionName());
+        loadNullableString(codeBuilder, function.getHashFunctionName());
+        loadNullableString(codeBuilder, function.getComparatorFunctionName());
+        codeBuilder.loadConstant(getFunctionId(function.getWasmFunctionName()));
+        codeBuilder.invokestatic(wasmFunctionDesc, "of",
+                MethodTypeDesc.of(wasmFunctionDesc, stringDesc, stringDesc, stringDesc, stringDesc, intDesc));
+        codeBuilder.invokevirtual(functionTypeDesc, "getFunction", MethodTypeDesc.of(objectDesc, intDesc, wasmFunctionDesc));
+        codeBuilder.checkcast(functionClassDesc);
         return functionClassDesc;
     }
 
+    /**
+     * Dense ID of a function for the function cache, so cache lookups do not need its name.
+     */
+    int getFunctionId(String functionName) {
+        return functionIdMap.computeIfAbsent(functionName, _ -> functionIdMap.size());
+    }
+
+    private static void loadNullableString(CodeBuilder codeBuilder, String value) {
+        if (value == null) {
+            codeBuilder.aconst_null();
+        } else {
+            codeBuilder.loadConstant(value);
+        }
+    }
+
     private DataStream generateConstraintBody(ClassDesc generatedClass,
             ClassDesc scoreDesc,
             ClassBuilder classBuilder,
@@ -176,7 +201,6 @@ public class ConstraintProviderClassGenerator {
             WasmConstraint wasmConstraint) {
         DataStream dataStream = new DataStream();
         var dataStreamInfo = new DataStreamInfo(this, classBuilder, codeBuilder, dataStream, generatedClass);
-        var classLoader = SolverResource.GENERATED_CLASS_LOADER.get();
         for (var streamComponent : wasmConstraint.getStreamComponentList()) {
             var streamDesc = getDescriptor(dataStream.getConstraintStreamClass());
 
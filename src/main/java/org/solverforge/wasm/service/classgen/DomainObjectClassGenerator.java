@@ -24,6 +24,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 import ai.timefold.solver.core.api.domain.entity.PlanningEntity;
@@ -32,7 +33,8 @@ import ai.timefold.solver.core.api.score.buildin.bendable.BendableScore;
 import ai.timefold.solver.core.api.score.buildin.hardmediumsoft.HardMediumSoftScore;
 import ai.timefold.solver.core.api.score.buildin.hardsoft.HardSoftScore;
 import ai.timefold.solver.core.api.score.buildin.simple.SimpleScore;
-import org.solverforge.wasm.service.SolverResource;
+import org.solverforge.wasm.service.FieldAccessAnalysis;
+import org.solverforge.wasm.service.WasmCall;
 import org.solverforge.wasm.service.dto.DomainObject;
 import org.solverforge.wasm.service.dto.FieldDescriptor;
 import org.solverforge.wasm.service.dto.PlanningProblem;
@@ -52,6 +54,7 @@ public class DomainObjectClassGenerator {
     static final ClassDesc allocatorDesc = getDescriptor(Allocator.class);
     static final ClassDesc instanceDesc = getDescriptor(Instance.class);
     static final ClassDesc mapDesc = getDescriptor(Map.class);
+    static final ClassDesc wasmCallDesc = getDescriptor(WasmCall.class);
 
     static final ClassDesc booleanDesc = ClassDesc.ofDescriptor("Z");
     static final ClassDesc byteDesc = ClassDesc.ofDescriptor("B");
@@ -149,6 +152,23 @@ public class DomainObjectClassGenerator {
         codeBuilder.invokevirtual(getDescriptor(PrintStream.class), "println", MethodTypeDesc.of(voidDesc, typeDesc));
     }
 
+    private final DomainObjectClassLoader classLoader;
+    private final FieldAccessAnalysis fieldAccessAnalysis;
+
+    public DomainObjectClassGenerator(DomainObjectClassLoader classLoader) {
+        this(classLoader, FieldAccessAnalysis.empty());
+    }
+
+    /**
+     * @param classLoader the class loader the generated classes are defined in
+     * @param fieldAccessAnalysis the accessors of the module that only load or store a field,
+     *        whose fields generated classes access in linear memory directly
+     */
+    public DomainObjectClassGenerator(DomainObjectClassLoader classLoader, FieldAccessAnalysis fieldAccessAnalysis) {
+        this.classLoader = classLoader;
+        this.fieldAccessAnalysis = fieldAccessAnalysis;
+    }
+
     public void prepareClassesForPlanningProblem(PlanningProblem planningProblem) {
         for (var domainEntry : planningProblem.getDomainObjectMap().entrySet()) {
             prepareClassForDomainObject(domainEntry.getValue(), planningProblem);
@@ -426,7 +446,8 @@ public class DomainObjectClassGenerator {
                                 // Score is managed by the solver and not read from WASM, no sync needed
                                 if (finalIsPlanningScore) {
                                     codeBuilder.return_();
-                                } else if (field.getValue().getAccessor() != null && field.getValue().getAccessor().setterFunctionName() != null) {
+                                } else if (field.getValue().getAccessor() != null && (field.getValue().getAccessor().setterFunctionName() != null
+                                        || field.getValue().getAccessor().offset() != null)) {
                                     // Sync value to WASM memory (including shadow variables for cascading updates)
                                     writeWasmFieldUsingAccessor(field.getValue(), codeBuilder, valueBuilder -> {
                                         valueBuilder.loadLocal(getTypeKind(field.getValue().getType()), 1);
@@ -460,29 +481,16 @@ public class DomainObjectClassGenerator {
 
                                     // Call WASM update function: result = updateFunction(this.memoryPointer)
                                     sm.pushThis()
-                                      .getField(wasmObjectDesc, "wasmInstance", instanceDesc)
                                       .raw().loadConstant(updateFunctionName);
                                     sm.stack_push(StackMachine.StackType.REFERENCE, "updateFunctionName");
-                                    sm.invokeVirtual(instanceDesc, "export",
-                                            MethodTypeDesc.of(getDescriptor(ExportFunction.class), stringDesc));
-
-                                    // Prepare args array: new long[] { memoryPointer }
-                                    sm.pushInt(1)
-                                      .newArray(TypeKind.LONG)
-                                      .dup()
-                                      .pushInt(0)
-                                      .pushThis()
-                                      .getField(wasmObjectDesc, "memoryPointer", intDesc)
-                                      .i2l()
-                                      .arrayStore(StackMachine.StackType.LONG);
-
-                                    // Call the function
-                                    sm.invokeInterface(getDescriptor(ExportFunction.class), "apply",
-                                            MethodTypeDesc.of(longDesc.arrayType(), longDesc.arrayType()));
+                                    sm.invokeVirtual(wasmObjectDesc, "getWasmCall",
+                                            MethodTypeDesc.of(wasmCallDesc, stringDesc));
 
                                     // Get result (epoch seconds for datetime, or value for other types)
-                                    sm.pushInt(0)
-                                      .arrayLoad(StackMachine.StackType.LONG);
+                                    sm.pushThis()
+                                      .getField(wasmObjectDesc, "memoryPointer", intDesc)
+                                      .i2l()
+                                      .invokeVirtual(wasmCallDesc, "call1", MethodTypeDesc.of(longDesc, longDesc));
 
                                     // Save result to local 2 for reuse
                                     sm.storeLongLocal(2, "result");
@@ -491,29 +499,18 @@ public class DomainObjectClassGenerator {
                                     var setterFunctionName = field.getValue().getAccessor().setterFunctionName();
                                     if (setterFunctionName != null) {
                                         sm.pushThis()
-                                          .getField(wasmObjectDesc, "wasmInstance", instanceDesc)
                                           .raw().loadConstant(setterFunctionName);
                                         sm.stack_push(StackMachine.StackType.REFERENCE, "setterFunctionName");
-                                        sm.invokeVirtual(instanceDesc, "export",
-                                                MethodTypeDesc.of(getDescriptor(ExportFunction.class), stringDesc));
-
-                                        // Build args array: new long[] { memoryPointer, resultValue }
-                                        sm.pushInt(2)
-                                          .newArray(TypeKind.LONG)
-                                          .dup()
-                                          .pushInt(0)
-                                          .pushThis()
+                                        sm.invokeVirtual(wasmObjectDesc, "getWasmCall",
+                                                MethodTypeDesc.of(wasmCallDesc, stringDesc));
+
+                                        // setter(memoryPointer, resultValue)
+                                        sm.pushThis()
                                           .getField(wasmObjectDesc, "memoryPointer", intDesc)
                                           .i2l()
-                                          .arrayStore(StackMachine.StackType.LONG)
-                                          .dup()
-                                          .pushInt(1)
                                           .loadLongLocal(2, "result")
-                                          .arrayStore(StackMachine.StackType.LONG);
-
-                                        sm.invokeInterface(getDescriptor(ExportFunction.class), "apply",
-                                                MethodTypeDesc.of(longDesc.arrayType(), longDesc.arrayType()))
-                                          .pop1();
+                                          .invokeVirtual(wasmCallDesc, "call2", MethodTypeDesc.of(longDesc, longDesc, longDesc))
+                                          .pop2();
                                     }
 
                                     // Load result and check if null (0 = null marker)
@@ -627,39 +624,37 @@ public class DomainObjectClassGenerator {
                     codeBuilder.invokeinterface(getDescriptor(Memory.class), "readCString", MethodTypeDesc.of(stringDesc, intDesc));
 
                     codeBuilder.swap();
-                    codeBuilder.getstatic(getDescriptor(SolverResource.class), "ALLOCATOR", getDescriptor(ThreadLocal.class));
-                    codeBuilder.invokevirtual(getDescriptor(ThreadLocal.class), "get", MethodTypeDesc.of(objectDesc));
-                    codeBuilder.checkcast(allocatorDesc);
+                    codeBuilder.aload(0);
                     codeBuilder.swap();
-                    codeBuilder.invokevirtual(allocatorDesc, "free", MethodTypeDesc.of(voidDesc, intDesc));
+                    codeBuilder.invokevirtual(wasmObjectDesc, "free", MethodTypeDesc.of(voidDesc, intDesc));
 
                     codeBuilder.return_(TypeKind.REFERENCE);
                 });
             }
         });
 
-        SolverResource.GENERATED_CLASS_LOADER.get().addClass(domainObject.getName(), classBytes);
+        classLoader.addClass(domainObject.getName(), classBytes);
     }
 
-    private static void readWasmFieldUsingAccessor(FieldDescriptor fieldDescriptor,
+    private void readWasmFieldUsingAccessor(FieldDescriptor fieldDescriptor,
             CodeBuilder codeBuilder) {
-        var getterFunctionName = fieldDescriptor.getAccessor().getterFunctionName();
-        codeBuilder.aload(0);
-        codeBuilder.getfield(wasmObjectDesc, "wasmInstance", instanceDesc);
-        codeBuilder.loadConstant(getterFunctionName);
-        codeBuilder.invokevirtual(instanceDesc, "export", MethodTypeDesc.of(getDescriptor(ExportFunction.class), stringDesc));
-        codeBuilder.loadConstant(1);
-        codeBuilder.newarray(TypeKind.LONG);
-        codeBuilder.dup();
-        codeBuilder.loadConstant(0);
-        codeBuilder.aload(0);
-        codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
-        codeBuilder.i2l();
-        codeBuilder.lastore();
-
-        codeBuilder.invokeinterface(getDescriptor(ExportFunction.class), "apply", MethodTypeDesc.of(longDesc.arrayType(), longDesc.arrayType()));
-        codeBuilder.loadConstant(0);
-        codeBuilder.laload();
+        var directRead = getDirectRead(fieldDescriptor);
+        if (directRead.isPresent()) {
+            loadFieldAddress(codeBuilder, directRead.get());
+            if (directRead.get().type().isWide()) {
+                codeBuilder.invokeinterface(getDescriptor(Memory.class), "readLong", MethodTypeDesc.of(longDesc, intDesc));
+            } else {
+                codeBuilder.invokeinterface(getDescriptor(Memory.class), "readInt", MethodTypeDesc.of(intDesc, intDesc));
+                codeBuilder.i2l();
+            }
+        } else {
+            var getterFunctionName = fieldDescriptor.getAccessor().getterFunctionName();
+            loadWasmCall(codeBuilder, getterFunctionName);
+            codeBuilder.aload(0);
+            codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
+            codeBuilder.i2l();
+            codeBuilder.invokevirtual(wasmCallDesc, "call1", MethodTypeDesc.of(longDesc, longDesc));
+        }
 
         switch (fieldDescriptor.getType()) {
             case "int" -> {
@@ -699,8 +694,11 @@ public class DomainObjectClassGenerator {
                 var domainClassDesc = getWasmTypeDesc(fieldDescriptor.getType());
 
                 if (fieldDescriptor.getType().endsWith("[]")) {
+                    codeBuilder.aload(0);
+                    codeBuilder.getfield(wasmObjectDesc, "wasmInstance", instanceDesc);
+                    codeBuilder.swap();
                     codeBuilder.loadConstant(getWasmTypeDesc(fieldDescriptor.getType().substring(0, fieldDescriptor.getType().length() - 2)));
-                    codeBuilder.invokestatic(getDescriptor(WasmList.class), "ofExisting", MethodTypeDesc.of(getDescriptor(WasmList.class), intDesc, getDescriptor(Class.class)));
+                    codeBuilder.invokestatic(getDescriptor(WasmList.class), "ofExisting", MethodTypeDesc.of(getDescriptor(WasmList.class), instanceDesc, intDesc, getDescriptor(Class.class)));
 
                     // Set owner on the list for cache invalidation when list is modified
                     codeBuilder.dup();  // duplicate list reference (keep one for return)
@@ -738,25 +736,25 @@ public class DomainObjectClassGenerator {
      * This is critical for planning list variables where the field type might be String[] but
      * the actual element type (from the value range provider) is Visit.
      */
-    private static void readWasmListFieldUsingAccessor(FieldDescriptor fieldDescriptor,
+    private void readWasmListFieldUsingAccessor(FieldDescriptor fieldDescriptor,
             CodeBuilder codeBuilder, ClassDesc elementType) {
-        var getterFunctionName = fieldDescriptor.getAccessor().getterFunctionName();
-        codeBuilder.aload(0);
-        codeBuilder.getfield(wasmObjectDesc, "wasmInstance", instanceDesc);
-        codeBuilder.loadConstant(getterFunctionName);
-        codeBuilder.invokevirtual(instanceDesc, "export", MethodTypeDesc.of(getDescriptor(ExportFunction.class), stringDesc));
-        codeBuilder.loadConstant(1);
-        codeBuilder.newarray(TypeKind.LONG);
-        codeBuilder.dup();
-        codeBuilder.loadConstant(0);
-        codeBuilder.aload(0);
-        codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
-        codeBuilder.i2l();
-        codeBuilder.lastore();
-
-        codeBuilder.invokeinterface(getDescriptor(ExportFunction.class), "apply", MethodTypeDesc.of(longDesc.arrayType(), longDesc.arrayType()));
-        codeBuilder.loadConstant(0);
-        codeBuilder.laload();
+        var directRead = getDirectRead(fieldDescriptor);
+        if (directRead.isPresent()) {
+            loadFieldAddress(codeBuilder, directRead.get());
+            if (directRead.get().type().isWide()) {
+                codeBuilder.invokeinterface(getDescriptor(Memory.class), "readLong", MethodTypeDesc.of(longDesc, intDesc));
+            } else {
+                codeBuilder.invokeinterface(getDescriptor(Memory.class), "readInt", MethodTypeDesc.of(intDesc, intDesc));
+                codeBuilder.i2l();
+            }
+        } else {
+            var getterFunctionName = fieldDescriptor.getAccessor().getterFunctionName();
+            loadWasmCall(codeBuilder, getterFunctionName);
+            codeBuilder.aload(0);
+            codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
+            codeBuilder.i2l();
+            codeBuilder.invokevirtual(wasmCallDesc, "call1", MethodTypeDesc.of(longDesc, longDesc));
+        }
         codeBuilder.l2i();
 
         // Check for null pointer
@@ -770,8 +768,11 @@ public class DomainObjectClassGenerator {
 
         codeBuilder.labelBinding(notNullLabel);
         // Use the provided element type (e.g., Visit) instead of the field's declared element type (e.g., String)
+        codeBuilder.aload(0);
+        codeBuilder.getfield(wasmObjectDesc, "wasmInstance", instanceDesc);
+        codeBuilder.swap();
         codeBuilder.loadConstant(elementType);
-        codeBuilder.invokestatic(getDescriptor(WasmList.class), "ofExisting", MethodTypeDesc.of(getDescriptor(WasmList.class), intDesc, getDescriptor(Class.class)));
+        codeBuilder.invokestatic(getDescriptor(WasmList.class), "ofExisting", MethodTypeDesc.of(getDescriptor(WasmList.class), instanceDesc, intDesc, getDescriptor(Class.class)));
 
         // Set owner on the list for cache invalidation when list is modified
         codeBuilder.dup();  // duplicate list reference (keep one for return)
@@ -780,23 +781,18 @@ public class DomainObjectClassGenerator {
     }
 
     private void writeWasmFieldUsingAccessor(FieldDescriptor fieldDescriptor, CodeBuilder codeBuilder, Consumer<CodeBuilder> valueBuilder) {
-        var setterFunctionName = fieldDescriptor.getAccessor().setterFunctionName();
-        codeBuilder.aload(0);
-        codeBuilder.getfield(wasmObjectDesc, "wasmInstance", instanceDesc);
-        codeBuilder.loadConstant(setterFunctionName);
-        codeBuilder.invokevirtual(instanceDesc, "export", MethodTypeDesc.of(getDescriptor(ExportFunction.class), stringDesc));
-
-        codeBuilder.loadConstant(2);
-        codeBuilder.newarray(TypeKind.LONG);
-        codeBuilder.dup();
-        codeBuilder.dup();
-        codeBuilder.loadConstant(0);
-        codeBuilder.aload(0);
-        codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
-        codeBuilder.i2l();
-        codeBuilder.lastore();
+        var directWrite = getDirectWrite(fieldDescriptor);
+        if (directWrite.isPresent()) {
+            loadFieldAddress(codeBuilder, directWrite.get());
+            // Stack: [memory, int]; the value is converted to its raw long like the setter's argument
+        } else {
+            var setterFunctionName = fieldDescriptor.getAccessor().setterFunctionName();
+            loadWasmCall(codeBuilder, setterFunctionName);
+            codeBuilder.aload(0);
+            codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
+            codeBuilder.i2l();
+        }
 
-        codeBuilder.loadConstant(1);
         valueBuilder.accept(codeBuilder);
         switch (fieldDescriptor.getType()) {
             case "int" -> {
@@ -817,30 +813,30 @@ public class DomainObjectClassGenerator {
             }
             case "datetime", "localdatetime", "LocalDateTime" -> {
                 // Convert LocalDateTime to epoch seconds for WASM
-                // Stack before: [array, int, LocalDateTime]
+                // Stack before: [target, pointer, LocalDateTime]
                 var localDateTimeDesc = ClassDesc.of("java.time.LocalDateTime");
                 var zoneOffsetDesc = ClassDesc.of("java.time.ZoneOffset");
 
                 var isNotNullLabel = codeBuilder.newLabel();
                 var doneLabel = codeBuilder.newLabel();
-                codeBuilder.dup();  // [array, int, LocalDateTime, LocalDateTime]
-                codeBuilder.aconst_null();  // [array, int, LocalDateTime, LocalDateTime, null]
-                codeBuilder.if_acmpne(isNotNullLabel);  // [array, int, LocalDateTime]
+                codeBuilder.dup();  // [target, pointer, LocalDateTime, LocalDateTime]
+                codeBuilder.aconst_null();  // [target, pointer, LocalDateTime, LocalDateTime, null]
+                codeBuilder.if_acmpne(isNotNullLabel);  // [target, pointer, LocalDateTime]
 
                 // Null branch: replace with 0L
-                codeBuilder.pop();  // [array, int]
-                codeBuilder.loadConstant(0L);  // [array, int, long]
+                codeBuilder.pop();  // [target, pointer]
+                codeBuilder.loadConstant(0L);  // [target, pointer, long]
                 codeBuilder.goto_(doneLabel);
 
                 // Non-null branch: convert to epoch seconds
                 codeBuilder.labelBinding(isNotNullLabel);
-                // Stack: [array, int, LocalDateTime]
-                codeBuilder.getstatic(zoneOffsetDesc, "UTC", zoneOffsetDesc);  // [array, int, LocalDateTime, ZoneOffset]
+                // Stack: [target, pointer, LocalDateTime]
+                codeBuilder.getstatic(zoneOffsetDesc, "UTC", zoneOffsetDesc);  // [target, pointer, LocalDateTime, ZoneOffset]
                 codeBuilder.invokevirtual(localDateTimeDesc, "toEpochSecond",
-                        MethodTypeDesc.of(longDesc, zoneOffsetDesc));  // [array, int, long]
+                        MethodTypeDesc.of(longDesc, zoneOffsetDesc));  // [target, pointer, long]
 
                 codeBuilder.labelBinding(doneLabel);
-                // Stack: [array, int, long] - ready for lastore
+                // Stack: [target, pointer, long] - ready for the setter call or memory write
             }
             default -> {
                 var isNotNullLabel = codeBuilder.newLabel();
@@ -865,8 +861,63 @@ public class DomainObjectClassGenerator {
                 codeBuilder.labelBinding(doneLabel);
             }
         }
-        codeBuilder.lastore();
+        if (directWrite.isEmpty()) {
+            codeBuilder.invokevirtual(wasmCallDesc, "call2", MethodTypeDesc.of(longDesc, longDesc, longDesc));
+            codeBuilder.pop2();
+        } else if (directWrite.get().type().isWide()) {
+            codeBuilder.invokeinterface(getDescriptor(Memory.class), "writeLong", MethodTypeDesc.of(voidDesc, intDesc, longDesc));
+        } else {
+            codeBuilder.l2i();
+            codeBuilder.invokeinterface(getDescriptor(Memory.class), "writeI32", MethodTypeDesc.of(voidDesc, intDesc, intDesc));
+        }
+    }
+
+    /**
+     * The field's location in linear memory, if it is declared or its getter only loads it.
+     */
+    private Optional<FieldAccessAnalysis.FieldAccess> getDirectRead(FieldDescriptor fieldDescriptor) {
+        var accessor = fieldDescriptor.getAccessor();
+        if (accessor.offset() != null) {
+            return Optional.of(new FieldAccessAnalysis.FieldAccess(accessor.offset(),
+                    FieldAccessAnalysis.ValueType.ofFieldType(fieldDescriptor.getType())));
+        }
+        return fieldAccessAnalysis.getLoad(accessor.getterFunctionName());
+    }
+
+    /**
+     * The field's location in linear memory, if it is declared or its setter only stores it.
+     */
+    private Optional<FieldAccessAnalysis.FieldAccess> getDirectWrite(FieldDescriptor fieldDescriptor) {
+        var accessor = fieldDescriptor.getAccessor();
+        if (accessor.offset() != null) {
+            return Optional.of(new FieldAccessAnalysis.FieldAccess(accessor.offset(),
+                    FieldAccessAnalysis.ValueType.ofFieldType(fieldDescriptor.getType())));
+        }
+        return fieldAccessAnalysis.getStore(accessor.setterFunctionName());
+    }
+
+    /**
+     * Push this object's instance memory and the field's address.
+     */
+    private static void loadFieldAddress(CodeBuilder codeBuilder, FieldAccessAnalysis.FieldAccess fieldAccess) {
+        codeBuilder.aload(0);
+        codeBuilder.getfield(wasmObjectDesc, "wasmInstance", instanceDesc);
+        codeBuilder.invokevirtual(instanceDesc, "memory", MethodTypeDesc.of(getDescriptor(Memory.class)));
+        codeBuilder.aload(0);
+        codeBuilder.getfield(wasmObjectDesc, "memoryPointer", intDesc);
+        if (fieldAccess.offset() != 0) {
+            codeBuilder.loadConstant(fieldAccess.offset());
+            codeBuilder.iadd();
+        }
+    }
 
-        codeBuilder.invokeinterface(getDescriptor(ExportFunction.class), "apply", MethodTypeDesc.of(longDesc.arrayType(), longDesc.arrayType()));
+    /**
+     * Push the {@link WasmCall} of an export of this object's instance, which calls the
+     * export without allocating argument and result arrays.
+     */
+    private static void loadWasmCall(CodeBuilder codeBuilder, String exportName) {
+        codeBuilder.aload(0);
+        codeBuilder.loadConstant(exportName);
+        codeBuilder.invokevirtual(wasmObjectDesc, "getWasmCall", MethodTypeDesc.of(wasmCallDesc, stringDesc));
     }
 }
@@ -3,7 +3,8 @@ package org.solverforge.wasm.service.classgen;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class DomainObjectClassLoader extends ClassLoader {
@@ -11,7 +12,7 @@ public class DomainObjectClassLoader extends ClassLoader {
 
     public DomainObjectClassLoader() {
         super(Thread.currentThread().getContextClassLoader());
-        this.classNameToBytecode = new HashMap<>();
+        this.classNameToBytecode = new LinkedHashMap<>();
     }
 
     public void addClass(String className, byte[] bytecode) {
@@ -19,17 +20,24 @@ public class DomainObjectClassLoader extends ClassLoader {
     }
 
     public Class<?> loadClass(String name) throws ClassNotFoundException {
-        try {
-            return super.loadClass(name);
-        } catch (ClassNotFoundException e) {
-            if (classNameToBytecode.containsKey(name)) {
-                var bytecode = classNameToBytecode.get(name);
-                return defineClass(name, bytecode, 0, bytecode.length);
+        // Loaders are shared by concurrent requests for the same model (see ModelCache)
+        synchronized (getClassLoadingLock(name)) {
+            try {
+                return super.loadClass(name);
+            } catch (ClassNotFoundException e) {
+                if (classNameToBytecode.containsKey(name)) {
+                    var bytecode = classNameToBytecode.get(name);
+                    return defineClass(name, bytecode, 0, bytecode.length);
+                }
+                throw e;
             }
-            throw e;
         }
     }
 
+    public Map<String, byte[]> getGeneratedClasses() {
+        return Collections.unmodifiableMap(classNameToBytecode);
+    }
+
     public Class<?> getClassForDomainClassName(String className) {
         try {
             return loadClass(className);
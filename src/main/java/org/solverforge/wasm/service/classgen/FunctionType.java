@@ -5,12 +5,10 @@ import static org.solverforge.wasm.service.classgen.DomainObjectClassGenerator.g
 import java.lang.constant.ClassDesc;
 
 import ai.timefold.solver.core.api.function.TriFunction;
-import org.solverforge.wasm.service.SolverResource;
+import org.solverforge.wasm.service.SolveContext;
 import org.solverforge.wasm.service.dto.WasmFunction;
 import org.solverforge.wasm.service.dto.constraint.DataStream;
 
-import com.dylibso.chicory.runtime.Instance;
-
 public enum FunctionType {
     PREDICATE(WasmFunction::asPredicate),
     MAPPER(WasmFunction::asFunction),
@@ -19,9 +17,9 @@ public enum FunctionType {
     TO_INT(WasmFunction::asToIntFunction),
     TO_LONG(WasmFunction::asToLongFunction);
 
-    private final TriFunction<WasmFunction, Integer, Instance, Object> functionConvertor;
+    private final TriFunction<WasmFunction, Integer, SolveContext, Object> functionConvertor;
 
-    FunctionType(TriFunction<WasmFunction, Integer, Instance, Object> functionConvertor) {
+    FunctionType(TriFunction<WasmFunction, Integer, SolveContext, Object> functionConvertor) {
         this.functionConvertor = functionConvertor;
     }
 
@@ -35,6 +33,6 @@ public enum FunctionType {
     }
 
     public Object getFunction(int size, WasmFunction wasmFunction) {
-        return functionConvertor.apply(wasmFunction, size, SolverResource.INSTANCE.get());
+        return functionConvertor.apply(wasmFunction, size, SolveContext.requireCurrent());
     }
 }
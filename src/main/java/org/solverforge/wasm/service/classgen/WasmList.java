@@ -8,7 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.function.IntFunction;
 
-import org.solverforge.wasm.service.SolverResource;
+import org.solverforge.wasm.service.SolveContext;
 
 import org.apache.commons.collections4.map.ConcurrentReferenceHashMap;
 
@@ -60,27 +60,31 @@ public final class WasmList<Item_ extends WasmObject> extends AbstractList<Item_
         }
     }
 
-    private WasmList(int wasmListPointer, Class<Item_> itemClass) {
-        this(SolverResource.LIST_ACCESSOR.get(), WasmObject.ofExisting(
-                SolverResource.LIST_ACCESSOR.get().getWasmInstance(), wasmListPointer
-        ), itemClass);
-    }
-
     @SuppressWarnings("unchecked")
-    public static <Item_ extends WasmObject> WasmList<Item_> ofExisting(int memoryPointer, Class<Item_> itemClass) {
+    public static <Item_ extends WasmObject> WasmList<Item_> ofExisting(Instance wasmInstance, int memoryPointer,
+            Class<Item_> itemClass) {
         if (memoryPointer == 0) {
             return null;
         }
-        return (WasmList<Item_>) wasmInstanceToListCache.computeIfAbsent(SolverResource.LIST_ACCESSOR.get().getWasmInstance(), _ ->
+        return (WasmList<Item_>) wasmInstanceToListCache.computeIfAbsent(wasmInstance, _ ->
                 (ConcurrentReferenceHashMap) ConcurrentReferenceHashMap.builder()
                         .weakValues().get())
-                .computeIfAbsent(memoryPointer, ignored -> new WasmList<>(memoryPointer, itemClass));
+                .computeIfAbsent(memoryPointer, ignored -> new WasmList<>(getListAccessor(wasmInstance),
+                        WasmObject.ofExisting(wasmInstance, memoryPointer), itemClass));
+    }
+
+    private static WasmListAccessor getListAccessor(Instance wasmInstance) {
+        var context = SolveContext.of(wasmInstance);
+        if (context == null) {
+            throw new IllegalStateException("No solve is using the WASM instance of the list");
+        }
+        return context.listAccessor();
     }
 
     /**
      * Clears the list cache for the given WASM instance.
-     * Must be called when cloning solutions to prevent stale cached lists
-     * with outdated item references from being returned.
+     * Must be called when its memory is reset or freed wholesale, to prevent stale
+     * cached lists with outdated item references from being returned.
      */
     public static void clearCacheForInstance(Instance wasmInstance) {
         var instanceCache = wasmInstanceToListCache.get(wasmInstance);
@@ -89,6 +93,19 @@ public final class WasmList<Item_ extends WasmObject> extends AbstractList<Item_
         }
     }
 
+    /**
+     * Removes the cached lists at the given memory pointers, such as those of a solution
+     * being freed, so they are not returned for lists later allocated at the same address.
+     */
+    public static void evictFromCache(Instance wasmInstance, int[] memoryPointers) {
+        var instanceCache = wasmInstanceToListCache.get(wasmInstance);
+        if (instanceCache != null) {
+            for (int memoryPointer : memoryPointers) {
+                instanceCache.remove(memoryPointer);
+            }
+        }
+    }
+
     /**
      * Sets the entity that owns this list.
      * Called by the generated getter to establish ownership.
@@ -112,9 +129,8 @@ public final class WasmList<Item_ extends WasmObject> extends AbstractList<Item_
     }
 
     @SuppressWarnings("unchecked")
-    public static <Item_ extends WasmObject> WasmList<Item_> createNew(Class<Item_> itemClass) {
-        var listAccessor = SolverResource.LIST_ACCESSOR.get();
-
+    public static <Item_ extends WasmObject> WasmList<Item_> createNew(WasmListAccessor listAccessor,
+            Class<Item_> itemClass) {
         var backingObject = listAccessor.newInstance();
         return new WasmList<>(listAccessor, backingObject, itemClass);
     }
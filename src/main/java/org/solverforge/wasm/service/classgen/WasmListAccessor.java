@@ -7,6 +7,7 @@ import java.util.function.IntFunction;
 import java.util.function.IntSupplier;
 import java.util.function.IntUnaryOperator;
 
+import org.solverforge.wasm.service.WasmCall;
 import org.solverforge.wasm.service.dto.DomainListAccessor;
 
 import com.dylibso.chicory.runtime.Instance;
@@ -36,46 +37,46 @@ public final class WasmListAccessor {
     public WasmListAccessor(Instance instance, DomainListAccessor domainListAccessor) {
         this.wasmInstance = instance;
 
-        var domainCreateList = Optional.ofNullable(domainListAccessor.createFunction()).map(instance::export);
-        var domainGetListItem = Optional.ofNullable(domainListAccessor.getItemFunction()).map(instance::export);
-        var domainSetListItem = Optional.ofNullable(domainListAccessor.setItemFunction()).map(instance::export);
-        var domainGetListSize = Optional.ofNullable(domainListAccessor.getSizeFunction()).map(instance::export);
-        var domainAppendListItem = Optional.ofNullable(domainListAccessor.appendFunction()).map(instance::export);
-        var domainInsertListItem = Optional.ofNullable(domainListAccessor.insertFunction()).map(instance::export);
-        var domainRemoveListItem = Optional.ofNullable(domainListAccessor.removeFunction()).map(instance::export);
-        var domainDeallocListFunction = Optional.ofNullable(domainListAccessor.deallocator()).map(instance::export);
+        var domainCreateList = Optional.ofNullable(domainListAccessor.createFunction()).map(name -> WasmCall.of(instance, name));
+        var domainGetListItem = Optional.ofNullable(domainListAccessor.getItemFunction()).map(name -> WasmCall.of(instance, name));
+        var domainSetListItem = Optional.ofNullable(domainListAccessor.setItemFunction()).map(name -> WasmCall.of(instance, name));
+        var domainGetListSize = Optional.ofNullable(domainListAccessor.getSizeFunction()).map(name -> WasmCall.of(instance, name));
+        var domainAppendListItem = Optional.ofNullable(domainListAccessor.appendFunction()).map(name -> WasmCall.of(instance, name));
+        var domainInsertListItem = Optional.ofNullable(domainListAccessor.insertFunction()).map(name -> WasmCall.of(instance, name));
+        var domainRemoveListItem = Optional.ofNullable(domainListAccessor.removeFunction()).map(name -> WasmCall.of(instance, name));
+        var domainDeallocListFunction = Optional.ofNullable(domainListAccessor.deallocator()).map(name -> WasmCall.of(instance, name));
 
         createListFunction = domainCreateList.map(createList ->
-                        (IntSupplier) () -> (int) createList.apply()[0])
+                        (IntSupplier) () -> (int) createList.call0())
                 .orElse(() -> {
                     throw new UnsupportedOperationException("create");
                 });
         getListItemFunction = domainGetListItem.map(getItem ->
-                (IntBinaryOperator) (list, index) -> (int) getItem.apply(list, index)[0])
+                (IntBinaryOperator) (list, index) -> (int) getItem.call2(list, index))
                 .orElse((_, _) -> {
                     throw new UnsupportedOperationException("get");
                 });
-        setListItemFunction = domainSetListItem.map(setItem -> (IntTriConsumer) setItem::apply)
+        setListItemFunction = domainSetListItem.map(setItem -> (IntTriConsumer) setItem::call3)
                 .orElse((_, _, _) -> {
                     throw new UnsupportedOperationException("set");
                 });
-        getListSizeFunction = domainGetListSize.map(getSize -> (IntUnaryOperator) list -> (int) getSize.apply(list)[0])
+        getListSizeFunction = domainGetListSize.map(getSize -> (IntUnaryOperator) list -> (int) getSize.call1(list))
                 .orElse(_ -> {
                     throw new UnsupportedOperationException("size");
                 });
-        appendListFunction = domainAppendListItem.map(listAppend -> (IntBiConsumer) listAppend::apply)
+        appendListFunction = domainAppendListItem.map(listAppend -> (IntBiConsumer) listAppend::call2)
                 .orElse((_, _) -> {
                     throw new UnsupportedOperationException("append");
                 });
-        insertListFunction = domainInsertListItem.map(listInsert -> (IntTriConsumer) listInsert::apply)
+        insertListFunction = domainInsertListItem.map(listInsert -> (IntTriConsumer) listInsert::call3)
                 .orElse((_, _, _) -> {
                     throw new UnsupportedOperationException("insert");
                 });
-        removeListFunction = domainRemoveListItem.map(listRemove -> (IntBiConsumer) listRemove::apply)
+        removeListFunction = domainRemoveListItem.map(listRemove -> (IntBiConsumer) listRemove::call2)
                 .orElse((_, _) -> {
                     throw new UnsupportedOperationException("remove");
                 });
-        deallocListFunction = domainDeallocListFunction.map(dealloc -> (IntConsumer) dealloc::apply)
+        deallocListFunction = domainDeallocListFunction.map(dealloc -> (IntConsumer) dealloc::call1)
                 .orElse(_ -> {
                     throw new UnsupportedOperationException("dealloc");
                 });
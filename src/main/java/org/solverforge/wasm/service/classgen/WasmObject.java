@@ -9,10 +9,11 @@ import java.util.function.Function;
 import java.util.function.IntFunction;
 import java.util.function.ToIntFunction;
 
-import org.solverforge.wasm.service.FunctionCache;
-import org.solverforge.wasm.service.SolverResource;
+import org.solverforge.wasm.service.SolveContext;
+import org.solverforge.wasm.service.WasmCall;
 
 import org.apache.commons.collections4.map.ConcurrentReferenceHashMap;
+import org.jspecify.annotations.Nullable;
 
 import com.dylibso.chicory.runtime.Instance;
 
@@ -33,21 +34,61 @@ public class WasmObject implements Comparable<WasmObject> {
     private final ToIntFunction<Integer> hasher;
     private final BiPredicate<Integer, Integer> equalRelation;
 
+    // Context of the solve using this object's instance, resolved on first use
+    private @Nullable SolveContext solveContext;
+
+    /**
+     * @return the context of the solve using this object's instance, or null if none
+     */
+    public @Nullable SolveContext getSolveContext() {
+        var context = solveContext;
+        if (context == null && wasmInstance != null) {
+            // Immutable, so a racing thread at worst resolves it again
+            context = SolveContext.of(wasmInstance);
+            solveContext = context;
+        }
+        return context;
+    }
+
     /**
      * Called when a planning variable on this entity is modified.
      * Invalidates any cached function results involving this entity.
      */
     public void invalidateFunctionCache() {
-        FunctionCache cache = SolverResource.FUNCTION_CACHE.get();
-        if (cache != null) {
-            cache.invalidateEntity(memoryPointer);
+        var context = getSolveContext();
+        if (context != null) {
+            context.functionCache().invalidateEntity(memoryPointer);
+        }
+    }
+
+    /**
+     * @return a call of an export of this object's instance; used by generated domain classes.
+     *         Uses the export cache of the solve, and otherwise a call through
+     *         {@link com.dylibso.chicory.runtime.ExportFunction#apply(long...)}, which is cheap to create.
+     */
+    public WasmCall getWasmCall(String exportName) {
+        var context = getSolveContext();
+        if (context != null) {
+            return context.exportCache().getCall(exportName);
+        }
+        return WasmCall.ofExport(wasmInstance, exportName);
+    }
+
+    /**
+     * Free memory allocated in this object's instance, such as a string returned by an export;
+     * used by generated domain classes. Outside a solve the memory is left to the instance.
+     */
+    public void free(int pointer) {
+        var context = getSolveContext();
+        if (context != null) {
+            context.allocator().free(pointer);
         }
     }
 
     /**
      * Clears the entity cache for the given WASM instance.
-     * Must be called when cloning solutions to prevent stale cached entities
-     * with outdated shadow variable state from being returned.
+     * Must be called when its memory is reset or freed wholesale, to prevent stale
+     * cached entities with outdated shadow variable state from being returned.
      */
     public static void clearCacheForInstance(Instance wasmInstance) {
         var instanceCache = entityCache.get(wasmInstance);
@@ -56,10 +97,26 @@ public class WasmObject implements Comparable<WasmObject> {
         }
     }
 
+    /**
+     * Removes the cached entities at the given memory pointers, such as those of a solution
+     * being freed, so they are not returned for objects later allocated at the same address.
+     * Entities of other solutions stay cached.
+     */
+    public static void evictFromCache(Instance wasmInstance, int[] memoryPointers) {
+        var instanceCache = entityCache.get(wasmInstance);
+        if (instanceCache != null) {
+            for (int memoryPointer : memoryPointers) {
+                instanceCache.remove(memoryPointer);
+            }
+        }
+    }
+
     public static final Function<Integer, WasmObject> WRAPPING_INT = WasmObject::wrappingInt;
     public static final Function<Double, WasmObject> WRAPPING_DOUBLE = WasmObject::wrappingDouble;
     public static final Function<WasmObject, WasmList<WasmObject>> TO_LIST = WasmObject::asList;
-    public static final Function<Object, WasmObject> CONSTANT_NULL = _ -> new WasmObject(SolverResource.INSTANCE.get(), 0);
+    // Padding of complemented tuples; a null pointer needs no instance
+    private static final WasmObject NULL_POINTER = new WasmObject(null, 0);
+    public static final Function<Object, WasmObject> CONSTANT_NULL = _ -> NULL_POINTER;
 
     private static final BiPredicate<Integer, Integer> DEFAULT_EQUALS = Integer::equals;
     private static final ToIntFunction<Integer> DEFAULT_HASH = Object::hashCode;
@@ -139,7 +196,7 @@ public class WasmObject implements Comparable<WasmObject> {
     }
 
     public WasmList<WasmObject> asList() {
-        return WasmList.ofExisting(memoryPointer, WasmObject.class);
+        return WasmList.ofExisting(wasmInstance, memoryPointer, WasmObject.class);
     }
 
     public static WasmObject wrappingInt(int value) {
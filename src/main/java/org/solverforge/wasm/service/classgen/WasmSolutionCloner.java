@@ -1,14 +1,14 @@
 package org.solverforge.wasm.service.classgen;
 
 import java.lang.ref.Cleaner;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 
 import ai.timefold.solver.core.api.domain.solution.PlanningScore;
 import ai.timefold.solver.core.api.domain.solution.cloner.SolutionCloner;
-import ai.timefold.solver.core.api.solver.Solver;
 import ai.timefold.solver.core.impl.domain.common.ReflectionHelper;
 import org.solverforge.wasm.service.FunctionCache;
-import org.solverforge.wasm.service.SolverResource;
 
 import org.jspecify.annotations.NonNull;
 
@@ -17,42 +17,82 @@ import com.dylibso.chicory.runtime.Instance;
 public class WasmSolutionCloner implements SolutionCloner<WasmObject> {
     public static Cleaner solutionCleaner = Cleaner.create();
 
+    /**
+     * Pointer constructor and score accessors of a generated solution class.
+     */
+    private record SolutionClassAccessors(Constructor<?> constructor, Method scoreGetter, Method scoreSetter) {}
+
+    private static final ClassValue<SolutionClassAccessors> SOLUTION_CLASS_ACCESSORS = new ClassValue<>() {
+        @Override
+        protected SolutionClassAccessors computeValue(Class<?> solutionClass) {
+            try {
+                var constructor = solutionClass.getConstructor(Instance.class, int.class);
+                for (var method : solutionClass.getMethods()) {
+                    if (method.getAnnotation(PlanningScore.class) != null) {
+                        var propertyName = method.getName().substring(3);
+                        propertyName = propertyName.substring(0, 1).toLowerCase() + propertyName.substring(1);
+                        return new SolutionClassAccessors(constructor, method,
+                                ReflectionHelper.getSetterMethod(solutionClass, propertyName));
+                    }
+                }
+                throw new IllegalStateException("Impossible state: solution class does not have a PlanningScore annotation");
+            } catch (NoSuchMethodException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
     @Override
     public @NonNull WasmObject cloneSolution(@NonNull WasmObject original) {
-        var serialized = original.toString();
-        var allocator = SolverResource.ALLOCATOR.get();
-        var wasmInstance = SolverResource.INSTANCE.get();
+        var context = original.getSolveContext();
+        if (context == null) {
+            throw new IllegalStateException("Impossible state: no solve is using the instance of the solution");
+        }
+        var allocator = context.allocator();
+        var wasmInstance = context.instance();
+        var functionCache = context.functionCache();
+        // Copies the solver dropped since the last clone are freed here, on the solver thread
+        allocator.freeDeferredSolutions();
 
-        // Clear entity, list, and function caches to ensure fresh objects after cloning.
-        // Without this, cached entities from the original solution would be returned
-        // with stale shadow variable state, causing "Unexpected unassigned position" errors.
-        WasmObject.clearCacheForInstance(wasmInstance);
-        WasmList.clearCacheForInstance(wasmInstance);
-        FunctionCache functionCache = SolverResource.FUNCTION_CACHE.get();
-        if (functionCache != null) {
-            functionCache.clear();
+        // Copy the solution in linear memory; no JSON is involved
+        var copy = context.solutionCopier().copy(wasmInstance, allocator, original.getMemoryPointer());
+        var outMemoryLocation = copy.pointer();
+        var graphPointers = copy.memoryPointers();
+        if (graphPointers == null) {
+            // The module cloned the solution, so which addresses it reused is unknown.
+            // Clear entity, list, and function caches to ensure fresh objects after cloning.
+            // Without this, cached entities of freed objects would be returned with stale
+            // shadow variable state, causing "Unexpected unassigned position" errors.
+            clearCaches(wasmInstance, functionCache);
         }
 
         try {
-            var solutionClass = original.getClass();
-            var constructor = solutionClass.getConstructor(Allocator.class, Instance.class, String.class);
-            var out = constructor.newInstance(allocator, wasmInstance, serialized);
-            var outMemoryLocation = out.getMemoryPointer();
-            solutionCleaner.register(out, () -> {
-                allocator.freeSolution(outMemoryLocation);
-            });
-
-            for (var method : solutionClass.getMethods()) {
-                if (method.getAnnotation(PlanningScore.class) != null) {
-                    var propertyName = method.getName().substring(3);
-                    propertyName = propertyName.substring(0, 1).toLowerCase() + propertyName.substring(1);
-                    ReflectionHelper.getSetterMethod(solutionClass, propertyName).invoke(out, method.invoke(original));
-                    return out;
-                }
+            var accessors = SOLUTION_CLASS_ACCESSORS.get(original.getClass());
+            var out = (WasmObject) accessors.constructor().newInstance(wasmInstance, outMemoryLocation);
+            // The cleaner only queues the free: the instance and its caches are used by the
+            // solver thread, which frees the copy at its next clone
+            if (graphPointers != null) {
+                // The cached wrappers and results of other solutions, including the working
+                // solution, stay valid; only those of this copy are dropped, before its
+                // addresses can be reused
+                solutionCleaner.register(out, () -> allocator.deferFreeSolution(outMemoryLocation, () -> {
+                    WasmObject.evictFromCache(wasmInstance, graphPointers);
+                    WasmList.evictFromCache(wasmInstance, graphPointers);
+                    functionCache.invalidateEntities(graphPointers);
+                }));
+            } else {
+                solutionCleaner.register(out, () -> allocator.deferFreeSolution(outMemoryLocation, () -> {}));
             }
-            throw new IllegalStateException("Impossible state: solution class does not have a PlanningScore annotation");
-        } catch (NoSuchMethodException | InvocationTargetException | InstantiationException | IllegalAccessException e) {
+            accessors.scoreSetter().invoke(out, accessors.scoreGetter().invoke(original));
+            return out;
+        } catch (InvocationTargetException | InstantiationException | IllegalAccessException e) {
             throw new RuntimeException(e);
         }
     }
+
+    private static void clearCaches(Instance wasmInstance, FunctionCache functionCache) {
+        WasmObject.clearCacheForInstance(wasmInstance);
+        WasmList.clearCacheForInstance(wasmInstance);
+        functionCache.clear();
+    }
 }
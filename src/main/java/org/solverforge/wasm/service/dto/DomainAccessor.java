@@ -1,7 +1,18 @@
 package org.solverforge.wasm.service.dto;
 
+import org.jspecify.annotations.Nullable;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+/**
+ * The exports that get and set a field. If {@code offset} is given, the field is stored
+ * at that many bytes from the object's memory pointer, and generated classes read and
+ * write it in linear memory directly instead of calling the exports.
+ */
 public record DomainAccessor(@JsonProperty("getter") String getterFunctionName,
-                             @JsonProperty("setter") String setterFunctionName) {
+                             @JsonProperty("setter") String setterFunctionName,
+                             @JsonProperty("offset") @Nullable Integer offset) {
+    public DomainAccessor(String getterFunctionName, String setterFunctionName) {
+        this(getterFunctionName, setterFunctionName, null);
+    }
 }
@@ -1,7 +1,18 @@
 package org.solverforge.wasm.service.dto;
 
+import org.jspecify.annotations.Nullable;
+
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+/**
+ * @param cloneFunction optional exported function {@code (solution: i32) -> i32} returning a
+ *        deep copy of a solution; when absent, solutions are copied in linear memory by the
+ *        host, using the host memory layout
+ */
 public record DomainObjectMapper(@JsonProperty("fromString") String stringToInstanceFunction,
-                                 @JsonProperty("toString") String instanceToStringFunction) {
+                                 @JsonProperty("toString") String instanceToStringFunction,
+                                 @Nullable @JsonProperty("clone") String cloneFunction) {
+    public DomainObjectMapper(String stringToInstanceFunction, String instanceToStringFunction) {
+        this(stringToInstanceFunction, instanceToStringFunction, null);
+    }
 }
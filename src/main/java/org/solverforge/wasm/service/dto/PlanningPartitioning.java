@@ -0,0 +1,30 @@
+package org.solverforge.wasm.service.dto;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * Solves the problem in independent parts, each on its own WASM instance and thread, and
+ * merges the solved parts into one solution.
+ *
+ * @param groupBy the field whose value decides the part of an entity or fact, such as a
+ *        department id (see {@code ProblemPartitioner})
+ * @param threadLimit the maximum number of parts solved at the same time; if null, the
+ *        number of available processors
+ */
+@NullMarked
+public record PlanningPartitioning(String groupBy, @Nullable Integer threadLimit) {
+
+    public PlanningPartitioning {
+        if (groupBy == null || groupBy.isBlank()) {
+            throw new IllegalArgumentException("A partitioning needs a groupBy field.");
+        }
+        if (threadLimit != null && threadLimit < 1) {
+            throw new IllegalArgumentException("The threadLimit must be positive, got %d.".formatted(threadLimit));
+        }
+    }
+
+    public int threadLimitOrDefault() {
+        return (threadLimit != null) ? threadLimit : Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,51 @@
+package org.solverforge.wasm.service.dto;
+
+import java.time.Duration;
+import java.util.List;
+
+import ai.timefold.solver.core.config.localsearch.LocalSearchType;
+
+import org.jspecify.annotations.NullMarked;
+import org.jspecify.annotations.Nullable;
+
+import io.quarkus.runtime.configuration.DurationConverter;
+
+/**
+ * Solves the problem with several solver replicas racing in parallel, each on its own
+ * WASM instance, and returns the best solution any of them found.
+ *
+ * @param replicas the number of solvers; each uses a different random seed
+ * @param localSearchTypes local search algorithms assigned to the replicas in turn; if
+ *        null or empty, every replica uses the default phases
+ * @param syncInterval if set, how often replicas cooperate: every interval, each replica
+ *        whose best score is behind the best one restarts from the best solution. Requires
+ *        a spent limit in the termination, which bounds the whole solve.
+ */
+@NullMarked
+public record PlanningPortfolio(int replicas,
+                                @Nullable List<LocalSearchType> localSearchTypes,
+                                @Nullable String syncInterval) {
+
+    public PlanningPortfolio {
+        if (replicas < 1) {
+            throw new IllegalArgumentException("A portfolio needs at least one replica, got %d.".formatted(replicas));
+        }
+    }
+
+    /**
+     * @return the local search algorithm of the replica, or null for the default phases
+     */
+    public @Nullable LocalSearchType localSearchType(int replicaIndex) {
+        if (localSearchTypes == null || localSearchTypes.isEmpty()) {
+            return null;
+        }
+        return localSearchTypes.get(replicaIndex % localSearchTypes.size());
+    }
+
+    /**
+     * @return the sync interval, or null if the replicas do not cooperate
+     */
+    public @Nullable Duration syncIntervalDuration() {
+        return (syncInterval != null) ? DurationConverter.parseDuration(syncInterval) : null;
+    }
+}
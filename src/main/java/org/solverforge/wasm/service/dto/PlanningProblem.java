@@ -30,7 +30,13 @@ public class PlanningProblem {
 
     EnvironmentMode environmentMode;
 
-    byte[] wasm;
+    byte @Nullable [] wasm;
+
+    /**
+     * Hash of a module previously registered via {@code POST /modules},
+     * used instead of embedding the module in {@code wasm}.
+     */
+    @Nullable String wasmHash;
 
     String allocator;
 
@@ -53,11 +59,45 @@ public class PlanningProblem {
     @JsonProperty("precomputed")
     @Nullable Map<Integer, Map<String, Integer>> precomputed;
 
+    /**
+     * Races several solver replicas on the problem; null to solve it once.
+     */
+    @JsonProperty("portfolio")
+    @Nullable PlanningPortfolio portfolio;
+
+    /**
+     * Solves the problem in independent parts; null to solve it whole.
+     */
+    @JsonProperty("partitioning")
+    @Nullable PlanningPartitioning partitioning;
+
+    /**
+     * Solves with a higher priority leave the solve queue first.
+     */
+    @JsonProperty("priority")
+    int priority;
+
+    public PlanningProblem(Map<String, DomainObject> domainObjectMap,
+            Map<String, WasmConstraint> constraintList,
+            @Nullable EnvironmentMode environmentMode,
+            String wasm,
+            String allocator,
+            String deallocator,
+            @Nullable String solutionDeallocator,
+            DomainListAccessor listAccessor,
+            String problem,
+            @Nullable PlanningTermination terminationConfig,
+            @Nullable Map<Integer, Map<String, Integer>> precomputed) {
+        this(domainObjectMap, constraintList, environmentMode, wasm, null, allocator, deallocator,
+                solutionDeallocator, listAccessor, problem, terminationConfig, precomputed);
+    }
+
     @JsonCreator
     public PlanningProblem(@JsonProperty("domain")  Map<String, DomainObject> domainObjectMap,
             @JsonProperty("constraints") Map<String, WasmConstraint> constraintList,
             @Nullable@JsonProperty("environmentMode") EnvironmentMode environmentMode,
-            @JsonProperty("wasm") String wasm,
+            @Nullable @JsonProperty("wasm") String wasm,
+            @Nullable @JsonProperty("wasmHash") String wasmHash,
             @JsonProperty("allocator") String allocator,
             @JsonProperty("deallocator") String deallocator,
             @Nullable @JsonProperty("solutionDeallocator") String solutionDeallocator,
@@ -76,7 +116,11 @@ public class PlanningProblem {
                 : List.of();
         this.environmentMode = (environmentMode != null)? environmentMode : EnvironmentMode.PHASE_ASSERT;
         this.problem = problem;
-        this.wasm = Base64.getDecoder().decode(wasm);
+        if (wasm == null && wasmHash == null) {
+            throw new IllegalStateException("Either wasm or wasmHash must be specified.");
+        }
+        this.wasm = (wasm != null)? Base64.getDecoder().decode(wasm) : null;
+        this.wasmHash = wasmHash;
         this.allocator = allocator;
         this.deallocator = deallocator;
         this.solutionDeallocator = (solutionDeallocator != null)? solutionDeallocator : deallocator;
@@ -162,10 +206,17 @@ public class PlanningProblem {
         this.problem = problem;
     }
 
-    public byte[] getWasm() {
+    /**
+     * @return the embedded WASM module, or null if the module is referenced by {@link #getWasmHash()}
+     */
+    public byte @Nullable [] getWasm() {
         return wasm;
     }
 
+    public @Nullable String getWasmHash() {
+        return wasmHash;
+    }
+
     public String getAllocator() {
         return allocator;
     }
@@ -190,6 +241,30 @@ public class PlanningProblem {
         return environmentMode;
     }
 
+    public @Nullable PlanningPortfolio getPortfolio() {
+        return portfolio;
+    }
+
+    public void setPortfolio(@Nullable PlanningPortfolio portfolio) {
+        this.portfolio = portfolio;
+    }
+
+    public @Nullable PlanningPartitioning getPartitioning() {
+        return partitioning;
+    }
+
+    public void setPartitioning(@Nullable PlanningPartitioning partitioning) {
+        this.partitioning = partitioning;
+    }
+
+    public int getPriority() {
+        return priority;
+    }
+
+    public void setPriority(int priority) {
+        this.priority = priority;
+    }
+
     /**
      * Get pre-computed method results for methods that couldn't be inlined.
      * @return Map from method_hash to (object_key -> result), or null if none
@@ -2,5 +2,5 @@ package org.solverforge.wasm.service.dto;
 
 import ai.timefold.solver.core.api.score.Score;
 
-public record SolveResult(String solution, Score<?> score, SolverStats stats) {
+public record SolveResult(RawJson solution, Score<?> score, SolverStats stats) {
 }
@@ -1,8 +1,15 @@
 package org.solverforge.wasm.service.dto;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
@@ -22,9 +29,11 @@ import ai.timefold.solver.core.api.function.ToLongQuadFunction;
 import ai.timefold.solver.core.api.function.ToLongTriFunction;
 import ai.timefold.solver.core.api.function.TriFunction;
 import ai.timefold.solver.core.api.function.TriPredicate;
-import org.solverforge.wasm.service.ExportCache;
 import org.solverforge.wasm.service.FunctionCache;
-import org.solverforge.wasm.service.SolverResource;
+import org.solverforge.wasm.service.SolveContext;
+import org.solverforge.wasm.service.WasmCall;
+import org.solverforge.wasm.service.classgen.CallSiteClassGenerator;
+import org.solverforge.wasm.service.classgen.CallSiteClassGenerator.CallSiteClass;
 import org.solverforge.wasm.service.classgen.WasmList;
 import org.solverforge.wasm.service.classgen.WasmListAccessor;
 import org.solverforge.wasm.service.classgen.WasmObject;
@@ -32,7 +41,6 @@ import org.solverforge.wasm.service.classgen.WasmObject;
 import org.jspecify.annotations.NullMarked;
 import org.jspecify.annotations.Nullable;
 
-import com.dylibso.chicory.runtime.ExportFunction;
 import com.dylibso.chicory.runtime.Instance;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -50,137 +58,263 @@ public class WasmFunction {
     @Nullable
     String comparatorFunctionName;
 
+    /**
+     * ID of the function in the {@link FunctionCache}, assigned when the constraint
+     * provider is generated.
+     */
+    int functionId = FunctionCache.NO_FUNCTION_ID;
+
     @JsonCreator
     public WasmFunction(String functionName) {
         this.wasmFunctionName = functionName;
     }
 
-    private ExportFunction getExport(String name, Instance instance) {
-        ExportCache cache = SolverResource.EXPORT_CACHE.get();
-        if (cache != null) {
-            return cache.get(name);
+    /**
+     * Recreates a function from its names; used by generated constraint providers,
+     * which only embed the names so their bytecode does not depend on a WASM instance.
+     */
+    public static WasmFunction of(String functionName,
+            @Nullable String relationFunctionName,
+            @Nullable String hashFunctionName,
+            @Nullable String comparatorFunctionName,
+            int functionId) {
+        var out = new WasmFunction(functionName);
+        out.relationFunctionName = relationFunctionName;
+        out.hashFunctionName = hashFunctionName;
+        out.comparatorFunctionName = comparatorFunctionName;
+        out.functionId = functionId;
+        return out;
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle GET_MEMORY_POINTER;
+    private static final MethodHandle IS_TRUE;
+    private static final MethodHandle TO_OBJECT;
+    private static final MethodHandle TO_OBJECT_WITH_COMPARATOR;
+    private static final MethodHandle TO_OBJECT_WITH_RELATION;
+    private static final MethodHandle TO_LIST;
+    private static final MethodHandle TO_INT_LIST;
+
+    static {
+        try {
+            GET_MEMORY_POINTER = LOOKUP.findVirtual(WasmObject.class, "getMemoryPointer",
+                    MethodType.methodType(int.class));
+            IS_TRUE = LOOKUP.findStatic(WasmFunction.class, "isTrue",
+                    MethodType.methodType(boolean.class, long.class));
+            TO_OBJECT = LOOKUP.findStatic(WasmFunction.class, "toObject",
+                    MethodType.methodType(WasmObject.class, Instance.class, long.class));
+            TO_OBJECT_WITH_COMPARATOR = LOOKUP.findStatic(WasmFunction.class, "toObject",
+                    MethodType.methodType(WasmObject.class, Instance.class, Comparator.class, long.class));
+            TO_OBJECT_WITH_RELATION = LOOKUP.findStatic(WasmFunction.class, "toObject",
+                    MethodType.methodType(WasmObject.class, Instance.class, BiPredicate.class, ToIntFunction.class,
+                            long.class));
+            TO_LIST = LOOKUP.findStatic(WasmFunction.class, "toList",
+                    MethodType.methodType(WasmList.class, Instance.class, long.class));
+            TO_INT_LIST = LOOKUP.findStatic(WasmFunction.class, "readIntListWrapped",
+                    MethodType.methodType(List.class, WasmListAccessor.class, long.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
         }
-        return instance.export(name);
     }
 
-    // ========== PREDICATES (Boolean) ==========
+    private enum Memoization {
+        NONE,
+        PURE_ON_FACTS,
+        // The function cache tracks the memory each call reads
+        TRACKED
+    }
 
-    public Object asPredicate(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        // NO CACHING - test if cache is the problem
-        return switch (tupleSize) {
-            case 1 -> (Predicate<WasmObject>) a -> wasmFunction.apply(a.getMemoryPointer())[0] != 0;
-            case 2 -> (BiPredicate<WasmObject, WasmObject>) (a, b) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0] != 0;
-            case 3 -> (TriPredicate<WasmObject, WasmObject, WasmObject>) (a, b, c) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0] != 0;
-            case 4 -> (QuadPredicate<WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0] != 0;
-            case 5 -> (PentaPredicate<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d, e) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer(), e.getMemoryPointer())[0] != 0;
-            default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
-        };
+    private enum ResultType {
+        BOOLEAN,
+        OBJECT,
+        OBJECT_WITH_COMPARATOR,
+        OBJECT_WITH_RELATION,
+        LIST,
+        INT_LIST,
+        INT,
+        LONG
     }
 
-    // ========== MAPPERS (return WasmObject pointer) ==========
+    /**
+     * The target of a call site class: a method handle whose leading arguments are the values
+     * {@code bound} to the solve, followed by the function's arguments.
+     */
+    private record BoundTarget(MethodHandle handle, List<Object> bound) {
+        /**
+         * Pass the result to the filter, after the filter's own bound values.
+         */
+        BoundTarget andThen(MethodHandle filter, Object... filterBound) {
+            var out = new ArrayList<Object>(filterBound.length + bound.size());
+            out.addAll(Arrays.asList(filterBound));
+            out.addAll(bound);
+            return new BoundTarget(MethodHandles.collectArguments(filter, filterBound.length, handle), out);
+        }
+    }
 
-    public Object asFunction(int tupleSize, Instance instance) {
-        if (comparatorFunctionName == null) {
-            if (relationFunctionName == null) {
-                return asFunctionWithDefaultEqualsAndComparator(tupleSize, instance);
-            } else {
-                return asFunctionWithCustomEquals(tupleSize, instance);
-            }
+    /**
+     * Everything the target of a call site class depends on besides its bound values, within
+     * one compiled module.
+     */
+    private record CallSiteKey(Class<?> functionClass, String wasmFunctionName, int tupleSize, int functionId,
+            Memoization memoization, ResultType resultType) {}
+
+    // Call site classes of each compiled module, keyed by its machine class, so they are
+    // reused by every solve of the module and unloaded with it
+    private static final ClassValue<Map<CallSiteKey, CallSiteClass<?>>> CALL_SITE_CLASSES = new ClassValue<>() {
+        @Override
+        protected Map<CallSiteKey, CallSiteClass<?>> computeValue(Class<?> machineClass) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private Memoization getMemoization(FunctionCache cache) {
+        if (functionId == FunctionCache.NO_FUNCTION_ID) {
+            return Memoization.NONE;
+        }
+        if (cache.isPureOnFacts(wasmFunctionName)) {
+            return Memoization.PURE_ON_FACTS;
+        }
+        return cache.isMemoizing() ? Memoization.TRACKED : Memoization.NONE;
+    }
+
+    /**
+     * A target of type {@code (bound..., WasmObject...)long} calling the function's export with
+     * the memory pointers of its arguments, memoizing results in the function cache if the
+     * function is pure on facts or the cache tracks the memory each call reads.
+     *
+     * The functions returned by the {@code as*} methods below are each implemented by a class of
+     * their own with such a target as a constant (see {@link CallSiteClassGenerator}), so the JIT
+     * can inline the export's compiled body into the constraint streams calling them. The
+     * instance, caches and calls of the solve are bound values rather than part of the
+     * constant, so the class is defined once per compiled module and shape of target.
+     */
+    private BoundTarget getExportCall(int tupleSize, SolveContext context) {
+        var function = context.exportCache().getCall(wasmFunctionName);
+        var cache = context.functionCache();
+        var pointerTypes = MethodType.methodType(long.class, Collections.nCopies(tupleSize, int.class));
+        var memoization = getMemoization(cache);
+        BoundTarget call;
+        if (memoization == Memoization.NONE) {
+            call = new BoundTarget(function.asUnboundMethodHandle(tupleSize)
+                    .asType(pointerTypes.insertParameterTypes(0, WasmCall.class)), List.of(function));
         } else {
-            return asFunctionWithCustomComparator(tupleSize, instance);
+            var methodName = (memoization == Memoization.PURE_ON_FACTS ? "callPure" : "call") + tupleSize;
+            MethodHandle handle;
+            try {
+                handle = LOOKUP.findVirtual(FunctionCache.class, methodName,
+                        pointerTypes.insertParameterTypes(0, int.class, WasmCall.class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException(e);
+            }
+            call = new BoundTarget(MethodHandles.insertArguments(handle, 1, functionId), List.of(cache, function));
         }
+        var argumentFilters = new MethodHandle[tupleSize];
+        Arrays.fill(argumentFilters, GET_MEMORY_POINTER);
+        return new BoundTarget(MethodHandles.filterArguments(call.handle(), call.bound().size(), argumentFilters),
+                call.bound());
     }
 
-    // NO CACHING - mappers read mutable fields (planning variables)
-    private Object asFunctionWithCustomComparator(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        var comparator = getComparator(instance);
-        return switch (tupleSize) {
-            case 1 -> (Function<WasmObject, WasmObject>) a -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer())[0], comparator);
-            case 2 -> (BiFunction<WasmObject, WasmObject, WasmObject>) (a, b) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0], comparator);
-            case 3 -> (TriFunction<WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0], comparator);
-            case 4 -> (QuadFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0], comparator);
-            case 5 -> (PentaFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d, e) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer(), e.getMemoryPointer())[0], comparator);
-            default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
-        };
+    /**
+     * Implement the functional interface with the target, reusing the call site class of the
+     * module for the same shape of target.
+     */
+    private Object implement(Class<?> functionClass, ResultType resultType, int tupleSize, SolveContext context,
+            BoundTarget target) {
+        var key = new CallSiteKey(functionClass, wasmFunctionName, tupleSize, functionId,
+                getMemoization(context.functionCache()), resultType);
+        var callSiteClass = CALL_SITE_CLASSES.get(context.instance().getMachine().getClass())
+                .computeIfAbsent(key, _ -> CallSiteClassGenerator.define(functionClass, target.handle(),
+                        target.bound().size()));
+        return callSiteClass.newInstance(target.bound().toArray());
     }
 
-    // NO CACHING - mappers read mutable fields (planning variables)
-    private Object asFunctionWithCustomEquals(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        var relation = getRelation(instance);
-        var hasher = getHasher(instance);
-        return switch (tupleSize) {
-            case 1 -> (Function<WasmObject, WasmObject>) a -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer())[0], relation, hasher);
-            case 2 -> (BiFunction<WasmObject, WasmObject, WasmObject>) (a, b) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0], relation, hasher);
-            case 3 -> (TriFunction<WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0], relation, hasher);
-            case 4 -> (QuadFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0], relation, hasher);
-            case 5 -> (PentaFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d, e) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer(), e.getMemoryPointer())[0], relation, hasher);
-            default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
-        };
+    private static boolean isTrue(long result) {
+        return result != 0;
     }
 
-    // NO CACHING - mappers read mutable fields (planning variables)
     // Returns null for pointer 0 to avoid all nulls being "equal" in joiners
-    private Object asFunctionWithDefaultEqualsAndComparator(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        return switch (tupleSize) {
-            case 1 -> (Function<WasmObject, WasmObject>) a -> {
-                int ptr = (int) wasmFunction.apply(a.getMemoryPointer())[0];
-                return ptr == 0 ? null : WasmObject.ofExisting(instance, ptr);
-            };
-            case 2 -> (BiFunction<WasmObject, WasmObject, WasmObject>) (a, b) -> {
-                int ptr = (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0];
-                return ptr == 0 ? null : WasmObject.ofExisting(instance, ptr);
-            };
-            case 3 -> (TriFunction<WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c) -> {
-                int ptr = (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0];
-                return ptr == 0 ? null : WasmObject.ofExisting(instance, ptr);
-            };
-            case 4 -> (QuadFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d) -> {
-                int ptr = (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0];
-                return ptr == 0 ? null : WasmObject.ofExisting(instance, ptr);
-            };
-            case 5 -> (PentaFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d, e) -> {
-                int ptr = (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer(), e.getMemoryPointer())[0];
-                return ptr == 0 ? null : WasmObject.ofExisting(instance, ptr);
-            };
-            default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
-        };
+    private static @Nullable WasmObject toObject(Instance instance, long pointer) {
+        return pointer == 0 ? null : WasmObject.ofExisting(instance, (int) pointer);
     }
 
-    // NO CACHING - these read mutable fields via navigation (e.g., shift.employee.dates)
-    public Object asToListFunction(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        return switch (tupleSize) {
-            case 1 -> (Function<WasmObject, WasmList<WasmObject>>) a -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer())[0]).asList();
-            case 2 -> (BiFunction<WasmObject, WasmObject, WasmList<WasmObject>>) (a, b) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0]).asList();
-            case 3 -> (TriFunction<WasmObject, WasmObject, WasmObject, WasmList<WasmObject>>) (a, b, c) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0]).asList();
-            case 4 -> (QuadFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmList<WasmObject>>) (a, b, c, d) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0]).asList();
-            case 5 -> (PentaFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject, WasmList<WasmObject>>) (a, b, c, d, e) -> WasmObject.ofExisting(instance, (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer(), e.getMemoryPointer())[0]).asList();
+    private static WasmObject toObject(Instance instance, Comparator<Integer> comparator, long pointer) {
+        return WasmObject.ofExisting(instance, (int) pointer, comparator);
+    }
+
+    private static WasmObject toObject(Instance instance, BiPredicate<Integer, Integer> relation,
+            ToIntFunction<Integer> hasher, long pointer) {
+        return WasmObject.ofExisting(instance, (int) pointer, relation, hasher);
+    }
+
+    private static WasmList<WasmObject> toList(Instance instance, long pointer) {
+        return WasmObject.ofExisting(instance, (int) pointer).asList();
+    }
+
+    // ========== PREDICATES (Boolean) ==========
+
+    public Object asPredicate(int tupleSize, SolveContext context) {
+        var functionClass = switch (tupleSize) {
+            case 1 -> Predicate.class;
+            case 2 -> BiPredicate.class;
+            case 3 -> TriPredicate.class;
+            case 4 -> QuadPredicate.class;
+            case 5 -> PentaPredicate.class;
             default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
         };
+        // Memoized if the function is pure on facts or the function cache tracks the memory each call reads
+        return implement(functionClass, ResultType.BOOLEAN, tupleSize, context,
+                getExportCall(tupleSize, context).andThen(IS_TRUE));
     }
 
-    // NO CACHING - these read mutable fields via navigation
-    public Object asToIntListFunction(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
+    // ========== MAPPERS (return WasmObject pointer) ==========
+
+    private static Class<?> getFunctionClass(int tupleSize) {
         return switch (tupleSize) {
-            case 1 -> (Function<WasmObject, List<WasmObject>>) a -> readIntListWrapped((int) wasmFunction.apply(a.getMemoryPointer())[0]);
-            case 2 -> (BiFunction<WasmObject, WasmObject, List<WasmObject>>) (a, b) -> readIntListWrapped((int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0]);
-            case 3 -> (TriFunction<WasmObject, WasmObject, WasmObject, List<WasmObject>>) (a, b, c) -> readIntListWrapped((int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0]);
-            case 4 -> (QuadFunction<WasmObject, WasmObject, WasmObject, WasmObject, List<WasmObject>>) (a, b, c, d) -> readIntListWrapped((int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0]);
-            case 5 -> (PentaFunction<WasmObject, WasmObject, WasmObject, WasmObject, WasmObject, List<WasmObject>>) (a, b, c, d, e) -> readIntListWrapped((int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer(), e.getMemoryPointer())[0]);
+            case 1 -> Function.class;
+            case 2 -> BiFunction.class;
+            case 3 -> TriFunction.class;
+            case 4 -> QuadFunction.class;
+            case 5 -> PentaFunction.class;
             default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
         };
     }
 
-    private static List<WasmObject> readIntListWrapped(int listPtr) {
+    // Memoized if pure on facts, or with dependency tracking - mappers may read planning variables
+    public Object asFunction(int tupleSize, SolveContext context) {
+        var functionClass = getFunctionClass(tupleSize);
+        var call = getExportCall(tupleSize, context);
+        if (comparatorFunctionName != null) {
+            return implement(functionClass, ResultType.OBJECT_WITH_COMPARATOR, tupleSize, context,
+                    call.andThen(TO_OBJECT_WITH_COMPARATOR, context.instance(), getComparator(context)));
+        } else if (relationFunctionName != null) {
+            return implement(functionClass, ResultType.OBJECT_WITH_RELATION, tupleSize, context,
+                    call.andThen(TO_OBJECT_WITH_RELATION, context.instance(), getRelation(context), getHasher(context)));
+        } else {
+            return implement(functionClass, ResultType.OBJECT, tupleSize, context,
+                    call.andThen(TO_OBJECT, context.instance()));
+        }
+    }
+
+    // Memoized if pure on facts, or with dependency tracking - these may read mutable fields via navigation (e.g., shift.employee.dates)
+    public Object asToListFunction(int tupleSize, SolveContext context) {
+        var functionClass = getFunctionClass(tupleSize);
+        return implement(functionClass, ResultType.LIST, tupleSize, context,
+                getExportCall(tupleSize, context).andThen(TO_LIST, context.instance()));
+    }
+
+    // Memoized if pure on facts, or with dependency tracking - these may read mutable fields via navigation
+    public Object asToIntListFunction(int tupleSize, SolveContext context) {
+        var functionClass = getFunctionClass(tupleSize);
+        return implement(functionClass, ResultType.INT_LIST, tupleSize, context,
+                getExportCall(tupleSize, context).andThen(TO_INT_LIST, context.listAccessor()));
+    }
+
+    private static List<WasmObject> readIntListWrapped(WasmListAccessor listAccessor, long pointer) {
+        int listPtr = (int) pointer;
         if (listPtr == 0) {
             return List.of();
         }
-        var listAccessor = SolverResource.LIST_ACCESSOR.get();
         var listObj = WasmObject.ofExisting(listAccessor.getWasmInstance(), listPtr);
         int size = listAccessor.getLength(listObj);
         List<WasmObject> result = new ArrayList<>(size);
@@ -191,53 +325,72 @@ public class WasmFunction {
         return result;
     }
 
-    // ========== TO INT (weighers) - NO CACHING ==========
+    // ========== TO INT (weighers) ==========
 
-    public Object asToIntFunction(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        return switch (tupleSize) {
-            case 1 -> (ToIntFunction<WasmObject>) a -> (int) wasmFunction.apply(a.getMemoryPointer())[0];
-            case 2 -> (ToIntBiFunction<WasmObject, WasmObject>) (a, b) -> (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0];
-            case 3 -> (ToIntTriFunction<WasmObject, WasmObject, WasmObject>) (a, b, c) -> (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0];
-            case 4 -> (ToIntQuadFunction<WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d) -> (int) wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0];
+    public Object asToIntFunction(int tupleSize, SolveContext context) {
+        var functionClass = switch (tupleSize) {
+            case 1 -> ToIntFunction.class;
+            case 2 -> ToIntBiFunction.class;
+            case 3 -> ToIntTriFunction.class;
+            case 4 -> ToIntQuadFunction.class;
             default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
         };
+        var call = getExportCall(tupleSize, context);
+        return implement(functionClass, ResultType.INT, tupleSize, context, new BoundTarget(
+                MethodHandles.explicitCastArguments(call.handle(), call.handle().type().changeReturnType(int.class)),
+                call.bound()));
     }
 
-    // ========== TO LONG - NO CACHING ==========
+    // ========== TO LONG ==========
 
-    public Object asToLongFunction(int tupleSize, Instance instance) {
-        var wasmFunction = getExport(wasmFunctionName, instance);
-        return switch (tupleSize) {
-            case 1 -> (ToLongFunction<WasmObject>) a -> wasmFunction.apply(a.getMemoryPointer())[0];
-            case 2 -> (ToLongBiFunction<WasmObject, WasmObject>) (a, b) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer())[0];
-            case 3 -> (ToLongTriFunction<WasmObject, WasmObject, WasmObject>) (a, b, c) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer())[0];
-            case 4 -> (ToLongQuadFunction<WasmObject, WasmObject, WasmObject, WasmObject>) (a, b, c, d) -> wasmFunction.apply(a.getMemoryPointer(), b.getMemoryPointer(), c.getMemoryPointer(), d.getMemoryPointer())[0];
+    public Object asToLongFunction(int tupleSize, SolveContext context) {
+        var functionClass = switch (tupleSize) {
+            case 1 -> ToLongFunction.class;
+            case 2 -> ToLongBiFunction.class;
+            case 3 -> ToLongTriFunction.class;
+            case 4 -> ToLongQuadFunction.class;
             default -> throw new IllegalArgumentException("Unexpected value: " + tupleSize);
         };
+        return implement(functionClass, ResultType.LONG, tupleSize, context, getExportCall(tupleSize, context));
     }
 
     // ========== COMPARATOR/RELATION/HASHER - NO CACHING ==========
 
-    private Comparator<Integer> getComparator(Instance instance) {
-        var wasmComparator = getExport(comparatorFunctionName, instance);
-        return (a, b) -> (int) wasmComparator.apply(a, b)[0];
+    private Comparator<Integer> getComparator(SolveContext context) {
+        var wasmComparator = context.exportCache().getCall(comparatorFunctionName);
+        return (a, b) -> (int) wasmComparator.call2(a, b);
     }
 
-    private BiPredicate<Integer, Integer> getRelation(Instance instance) {
-        var wasmRelation = getExport(relationFunctionName, instance);
-        return (a, b) -> wasmRelation.apply(a, b)[0] != 0;
+    private BiPredicate<Integer, Integer> getRelation(SolveContext context) {
+        var wasmRelation = context.exportCache().getCall(relationFunctionName);
+        return (a, b) -> wasmRelation.call2(a, b) != 0;
     }
 
-    private ToIntFunction<Integer> getHasher(Instance instance) {
-        var wasmHasher = getExport(hashFunctionName, instance);
-        return a -> (int) wasmHasher.apply(a)[0];
+    private ToIntFunction<Integer> getHasher(SolveContext context) {
+        var wasmHasher = context.exportCache().getCall(hashFunctionName);
+        return a -> (int) wasmHasher.call1(a);
     }
 
     public String getWasmFunctionName() {
         return wasmFunctionName;
     }
 
+    public @Nullable String getRelationFunctionName() {
+        return relationFunctionName;
+    }
+
+    public @Nullable String getHashFunctionName() {
+        return hashFunctionName;
+    }
+
+    public @Nullable String getComparatorFunctionName() {
+        return comparatorFunctionName;
+    }
+
+    public int getFunctionId() {
+        return functionId;
+    }
+
     public void setRelationFunctionName(@Nullable String relationFunctionName) {
         this.relationFunctionName = relationFunctionName;
     }
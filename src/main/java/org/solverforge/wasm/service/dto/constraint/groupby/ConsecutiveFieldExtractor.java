@@ -4,20 +4,28 @@ import java.lang.ref.Cleaner;
 import java.util.function.Function;
 
 import ai.timefold.solver.core.api.score.stream.common.SequenceChain;
-import org.solverforge.wasm.service.SolverResource;
+import org.solverforge.wasm.service.SolveContext;
 import org.solverforge.wasm.service.classgen.WasmList;
+import org.solverforge.wasm.service.classgen.WasmListAccessor;
 import org.solverforge.wasm.service.classgen.WasmObject;
 
-public record ConsecutiveFieldExtractor(ConsecutiveSequenceField[] fields)
+/**
+ * @param listAccessor the list accessor of the solve, bound when the constraints are defined
+ */
+public record ConsecutiveFieldExtractor(ConsecutiveSequenceField[] fields, WasmListAccessor listAccessor)
         implements Function<SequenceChain<Integer, Integer>, WasmObject> {
     private static final Cleaner CLEANER = Cleaner.create();
 
+    // Called by generated constraint providers
+    public ConsecutiveFieldExtractor(ConsecutiveSequenceField[] fields) {
+        this(fields, SolveContext.requireCurrent().listAccessor());
+    }
+
     @Override
     public WasmObject apply(SequenceChain<Integer, Integer> sequenceChain) {
-        var listAccessor = SolverResource.LIST_ACCESSOR.get();
-        var out = WasmList.createNew(WasmObject.class);
+        var out = WasmList.createNew(listAccessor, WasmObject.class);
         for (var sequence : sequenceChain.getConsecutiveSequences()) {
-            var fieldList = WasmList.createNew(WasmObject.class);
+            var fieldList = WasmList.createNew(listAccessor, WasmObject.class);
             for (var field : fields) {
                 fieldList.add(WasmObject.wrappingInt(field.extractField(sequence)));
             }
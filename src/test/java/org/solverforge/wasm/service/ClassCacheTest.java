@@ -0,0 +1,149 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+
+public class ClassCacheTest {
+    private static final String WAT = """
+            (module
+                (func (export "add") (param $a i32) (param $b i32) (result i32)
+                    (i32.add (local.get $a) (local.get $b))
+                )
+            )
+            """;
+
+    private static final byte[] WASM = Wat2Wasm.parse(WAT);
+    private static final String HASH = ModuleCache.computeWasmHash(WASM);
+
+    private static Map<String, byte[]> classes(String... names) {
+        var out = new LinkedHashMap<String, byte[]>();
+        for (var name : names) {
+            out.put(name, name.getBytes(StandardCharsets.UTF_8));
+        }
+        return out;
+    }
+
+    // Runs the module's add export, returning the machine that ran it
+    private static Machine runAdd(ModuleCache.CompiledModule compiledModule) {
+        var machine = new AtomicReference<Machine>();
+        var instance = Instance.builder(compiledModule.module())
+                .withMachineFactory(i -> {
+                    machine.set(compiledModule.machineFactory().apply(i));
+                    return machine.get();
+                })
+                .build();
+        assertThat(instance.export("add").apply(2, 3)[0]).isEqualTo(5);
+        return machine.get();
+    }
+
+    @Test
+    void storesAndLoadsClassesInDefinitionOrder(@TempDir Path root) {
+        var classCache = new ClassCache(root);
+        classCache.storeGeneratedClasses("fingerprint", classes("b.Second", "a.First"));
+
+        var loaded = classCache.loadGeneratedClasses("fingerprint").orElseThrow();
+        assertThat(loaded.keySet()).containsExactly("b.Second", "a.First");
+        assertThat(loaded.get("a.First")).isEqualTo("a.First".getBytes(StandardCharsets.UTF_8));
+        assertThat(classCache.loadGeneratedClasses("other")).isEmpty();
+    }
+
+    @Test
+    void ignoresEntryWithoutIndex(@TempDir Path root) throws Exception {
+        var entry = Files.createDirectories(root.resolve("generated").resolve("fingerprint"));
+        Files.write(entry.resolve("a.First.class"), new byte[] { 1 });
+
+        assertThat(new ClassCache(root).loadGeneratedClasses("fingerprint")).isEmpty();
+    }
+
+    @Test
+    void discardsEntryWithMissingClassAndStoresItAgain(@TempDir Path root) throws Exception {
+        var classCache = new ClassCache(root);
+        classCache.storeGeneratedClasses("fingerprint", classes("a.First", "b.Second"));
+        var entry = root.resolve("generated").resolve("fingerprint");
+        Files.delete(entry.resolve("b.Second.class"));
+
+        assertThat(classCache.loadGeneratedClasses("fingerprint")).isEmpty();
+        assertThat(entry).doesNotExist();
+
+        classCache.storeGeneratedClasses("fingerprint", classes("a.First", "b.Second"));
+        assertThat(classCache.loadGeneratedClasses("fingerprint").orElseThrow()).containsOnlyKeys("a.First", "b.Second");
+    }
+
+    @Test
+    void fingerprintCoversModuleAndModel() {
+        var planningProblem = TestUtils.getPlanningProblem();
+        var fingerprint = ClassCache.fingerprint(HASH, planningProblem).orElseThrow();
+        assertThat(ClassCache.fingerprint(HASH, TestUtils.getPlanningProblem())).contains(fingerprint);
+        assertThat(ClassCache.fingerprint("0".repeat(64), planningProblem)).isNotEqualTo(Optional.of(fingerprint));
+
+        planningProblem.setConstraints(Map.of("onlyConstraint", planningProblem.getConstraintList().getFirst()));
+        assertThat(ClassCache.fingerprint(HASH, planningProblem)).isNotEqualTo(Optional.of(fingerprint));
+    }
+
+    @Test
+    void reloadsCompiledModuleFromCache(@TempDir Path root) {
+        var classCache = Optional.of(new ClassCache(root));
+        var compiled = ModuleCache.load(HASH, WASM, classCache);
+        var compiledMachine = runAdd(compiled);
+        assertThat(root.resolve("modules").resolve(HASH).resolve("index")).exists();
+
+        var reloaded = ModuleCache.load(HASH, WASM, classCache);
+        var reloadedMachine = runAdd(reloaded);
+        assertThat(reloadedMachine.getClass().getName()).isEqualTo(compiledMachine.getClass().getName());
+        assertThat(reloadedMachine.getClass().getClassLoader()).isNotSameAs(compiledMachine.getClass().getClassLoader());
+    }
+
+    @Test
+    void recompilesCorruptModuleClasses(@TempDir Path root) throws Exception {
+        var classCache = Optional.of(new ClassCache(root));
+        ModuleCache.load(HASH, WASM, classCache);
+        var entry = root.resolve("modules").resolve(HASH);
+        List<String> classNames = Files.readAllLines(entry.resolve("index"));
+        for (var className : classNames) {
+            Files.write(entry.resolve(className + ".class"), new byte[] { 0, 1, 2 });
+        }
+
+        runAdd(ModuleCache.load(HASH, WASM, classCache));
+        // The broken entry was replaced by the recompiled classes
+        var stored = classCache.get().loadModuleClasses(HASH).orElseThrow();
+        assertThat(stored.keySet()).containsExactlyElementsOf(classNames);
+        assertThat(stored.values()).allSatisfy(bytes -> assertThat(bytes.length).isGreaterThan(3));
+        runAdd(ModuleCache.load(HASH, WASM, classCache));
+    }
+
+    @Test
+    void reportsBrokenRegisteredModules(@TempDir Path root) {
+        var classCache = Optional.of(new ClassCache(root));
+        var notWasm = "not a WASM module".getBytes(StandardCharsets.UTF_8);
+        var notWasmHash = ModuleCache.computeWasmHash(notWasm);
+        classCache.get().storeModule(notWasmHash, notWasm);
+        var mismatchedHash = ModuleCache.computeWasmHash(new byte[] { 1 });
+        classCache.get().storeModule(mismatchedHash, WASM);
+
+        assertThat(ModuleCache.get(ModuleCache.computeWasmHash(new byte[] { 2 }), classCache, 8)).isEmpty();
+        assertThatThrownBy(() -> ModuleCache.get(notWasmHash, classCache, 8))
+                .isInstanceOfSatisfying(ModuleCache.UnusableModuleException.class,
+                        e -> assertThat(e.getResponse().getStatus()).isEqualTo(422))
+                .hasMessageContaining("failed to compile");
+        assertThatThrownBy(() -> ModuleCache.get(mismatchedHash, classCache, 8))
+                .isInstanceOfSatisfying(ModuleCache.UnusableModuleException.class,
+                        e -> assertThat(e.getResponse().getStatus()).isEqualTo(500))
+                .hasMessageContaining("does not match its hash");
+    }
+}
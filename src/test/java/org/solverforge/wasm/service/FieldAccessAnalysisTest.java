@@ -0,0 +1,69 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.solverforge.wasm.service.FieldAccessAnalysis.FieldAccess;
+import org.solverforge.wasm.service.FieldAccessAnalysis.ValueType;
+
+import org.junit.jupiter.api.Test;
+
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+
+public class FieldAccessAnalysisTest {
+    // Shifts are (start: i64, employee: i32, duration: f64)
+    private static final String WAT = """
+            (module
+                (import "host" "hgetEmployee" (func $hgetEmployee (param i32) (result i32)))
+                (memory (export "memory") 1)
+                (func (export "getStart") (param $shift i32) (result i64)
+                    (i64.load (local.get $shift))
+                )
+                (func (export "getEmployee") (param $shift i32) (result i32)
+                    (i32.load offset=8 (local.get $shift))
+                )
+                (func (export "setEmployee") (param $shift i32) (param $employee i32)
+                    (i32.store offset=8 (local.get $shift) (local.get $employee))
+                )
+                (func (export "getDuration") (param $shift i32) (result f64)
+                    (f64.load offset=12 (local.get $shift))
+                )
+                (func (export "setDuration") (param $shift i32) (param $duration f64)
+                    (f64.store offset=12 (local.get $shift) (local.get $duration))
+                )
+                (func (export "getEnd") (param $shift i32) (result i64)
+                    (i64.add (i64.load (local.get $shift)) (i64.trunc_f64_s (f64.load offset=12 (local.get $shift))))
+                )
+                (func (export "getFlag") (param $shift i32) (result i32)
+                    (i32.load8_u offset=8 (local.get $shift))
+                )
+                (func (export "setEmployeeSwapped") (param $employee i32) (param $shift i32)
+                    (i32.store offset=8 (local.get $shift) (local.get $employee))
+                )
+                (export "hostGetEmployee" (func $hgetEmployee))
+            )
+            """;
+
+    private final FieldAccessAnalysis analysis = FieldAccessAnalysis.analyze(Parser.parse(Wat2Wasm.parse(WAT)));
+
+    @Test
+    void matchesAccessorsOfSingleFields() {
+        assertThat(analysis.getLoad("getStart")).contains(new FieldAccess(0, ValueType.I64));
+        assertThat(analysis.getLoad("getEmployee")).contains(new FieldAccess(8, ValueType.I32));
+        assertThat(analysis.getStore("setEmployee")).contains(new FieldAccess(8, ValueType.I32));
+        assertThat(analysis.getLoad("getDuration")).contains(new FieldAccess(12, ValueType.F64));
+        assertThat(analysis.getStore("setDuration")).contains(new FieldAccess(12, ValueType.F64));
+    }
+
+    @Test
+    void doesNotMatchComputedOrPartialAccessors() {
+        assertThat(analysis.getLoad("getEnd")).isEmpty();
+        assertThat(analysis.getLoad("getFlag")).isEmpty();
+        assertThat(analysis.getStore("setEmployeeSwapped")).isEmpty();
+        assertThat(analysis.getLoad("hostGetEmployee")).isEmpty();
+        assertThat(analysis.getLoad("setEmployee")).isEmpty();
+        assertThat(analysis.getStore("getEmployee")).isEmpty();
+        assertThat(analysis.getLoad("missing")).isEmpty();
+        assertThat(FieldAccessAnalysis.empty().getLoad("getEmployee")).isEmpty();
+    }
+}
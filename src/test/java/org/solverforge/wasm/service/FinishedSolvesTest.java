@@ -0,0 +1,60 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import ai.timefold.solver.core.api.score.buildin.simple.SimpleScore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.solverforge.wasm.service.dto.RawJson;
+
+public class FinishedSolvesTest {
+    private static final String SOLUTION = "{\"employees\":[{\"id\":0}],\"shifts\":[{\"employee\":{\"id\":0}}]}";
+
+    @Test
+    void keepsSmallSolutionsInMemory(@TempDir Path spillPath) throws Exception {
+        var finishedSolves = new FinishedSolves(0, Optional.of(spillPath), 1024);
+        var finished = finishedSolves.put("a", RawJson.of(SOLUTION), SimpleScore.of(18), null, 120, 5);
+
+        assertThat(finished.spillFile()).isNull();
+        assertThat(finishedSolves.get("a").getSolution().toString()).isEqualTo(SOLUTION);
+        assertThat(finishedSolves.get("a").score()).isEqualTo(SimpleScore.of(18));
+        assertThat(finishedSolves.getStats().inMemoryBytes()).isEqualTo(SOLUTION.length());
+        try (var files = Files.list(spillPath)) {
+            assertThat(files).isEmpty();
+        }
+    }
+
+    @Test
+    void spillsLargeSolutionsAndDeletesThemOnRemove(@TempDir Path spillPath) {
+        var finishedSolves = new FinishedSolves(0, Optional.of(spillPath), 16);
+        var finished = finishedSolves.put("a", RawJson.of(SOLUTION), SimpleScore.of(18), null, 120, 5);
+
+        assertThat(finished.solution()).isNull();
+        assertThat(finished.spillFile()).exists();
+        assertThat(finishedSolves.get("a").getSolution().toString()).isEqualTo(SOLUTION);
+        assertThat(finishedSolves.getStats().spilled()).isEqualTo(1);
+        assertThat(finishedSolves.getStats().spilledBytes()).isEqualTo(SOLUTION.length());
+
+        assertThat(finishedSolves.remove("a")).isTrue();
+        assertThat(finished.spillFile()).doesNotExist();
+        assertThat(finishedSolves.get("a")).isNull();
+        assertThat(finishedSolves.remove("a")).isFalse();
+    }
+
+    @Test
+    void evictsAfterTtl() throws Exception {
+        var finishedSolves = new FinishedSolves(50, Optional.empty(), 0);
+        finishedSolves.put("a", RawJson.of(SOLUTION), null, "java.lang.IllegalStateException: failed", 0, 0);
+        assertThat(finishedSolves.get("a").error()).startsWith("java.lang.IllegalStateException");
+
+        for (int i = 0; i < 100 && finishedSolves.get("a") != null; i++) {
+            Thread.sleep(20);
+        }
+        assertThat(finishedSolves.get("a")).isNull();
+        assertThat(finishedSolves.getStats().evicted()).isEqualTo(1);
+    }
+}
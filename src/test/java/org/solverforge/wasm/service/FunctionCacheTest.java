@@ -0,0 +1,231 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+
+public class FunctionCacheTest {
+    // Shifts are (employee), employees are (id); employeeId navigates shift.employee.id
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (global $calls (export "calls") (mut i32) (i32.const 0))
+                (func (export "employeeId") (param $shift i32) (result i32)
+                    (global.set $calls (i32.add (global.get $calls) (i32.const 1)))
+                    (i32.load (i32.load (local.get $shift)))
+                )
+            )
+            """;
+
+    private static final int SHIFT = 1024;
+    private static final int ANN = 2048;
+    private static final int BETH = 4096;
+
+    @Test
+    void keysIncludeFunctionAndAllArguments() {
+        var cache = new FunctionCache();
+        cache.put5(0, 1, 2, 3, 4, 5, 12345L);
+        cache.put3(1, 1, 2, 3, -7L);
+
+        assertThat(cache.get5(0, 1, 2, 3, 4, 5)).isEqualTo(12345L);
+        assertThat(cache.get5(0, 1, 2, 3, 4, 6)).isEqualTo(FunctionCache.MISS);
+        assertThat(cache.get5(1, 1, 2, 3, 4, 5)).isEqualTo(FunctionCache.MISS);
+        assertThat(cache.get3(1, 1, 2, 3)).isEqualTo(-7L);
+        assertThat(cache.get3(0, 1, 2, 3)).isEqualTo(FunctionCache.MISS);
+        assertThat(cache.get2(1, 1, 2)).isEqualTo(FunctionCache.MISS);
+    }
+
+    @Test
+    void keepsEntriesWhenGrowing() {
+        var cache = new FunctionCache();
+        for (int i = 0; i < 10_000; i++) {
+            cache.put2(i % 7, 8 * i, 8 * i + 4, i);
+        }
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(cache.get2(i % 7, 8 * i, 8 * i + 4)).isEqualTo(i);
+        }
+    }
+
+    @Test
+    void invalidatesEntriesOfEntity() {
+        var cache = new FunctionCache();
+        cache.put2(0, 100, 200, 1);
+        cache.put1(0, 100, 2);
+        cache.put1(0, 300, 3);
+
+        cache.invalidateEntity(200);
+        assertThat(cache.get2(0, 100, 200)).isEqualTo(FunctionCache.MISS);
+        assertThat(cache.get1(0, 100)).isEqualTo(2);
+
+        // Pending invalidations take effect on the next access
+        cache.invalidateEntities(new int[] { 300, 400 });
+        assertThat(cache.get1(0, 300)).isEqualTo(FunctionCache.MISS);
+        assertThat(cache.get1(0, 100)).isEqualTo(2);
+
+        // Entries put after the invalidation are current
+        cache.put2(0, 100, 200, 4);
+        assertThat(cache.get2(0, 100, 200)).isEqualTo(4);
+    }
+
+    @Test
+    void evictsUnreadEntriesToStayWithinBudget() {
+        long budget = new FunctionCache().getMemoryBytes();
+        var cache = new FunctionCache(null, PurityAnalysis.empty(), budget);
+        cache.put1(0, 100, 42);
+        for (int i = 1; i < 10_000; i++) {
+            assertThat(cache.get1(0, 100)).isEqualTo(42);
+            cache.put1(i, 100, i);
+        }
+
+        var stats = cache.getStats();
+        assertThat(cache.getMemoryBytes()).isLessThanOrEqualTo(budget);
+        assertThat(stats.evictions()).isGreaterThan(9_000);
+        assertThat(stats.entries() + stats.evictions()).isEqualTo(10_000);
+        // Entries read since the hand last passed are kept
+        assertThat(cache.get1(0, 100)).isEqualTo(42);
+        assertThat(cache.get1(9_999, 100)).isEqualTo(9_999);
+    }
+
+    @Test
+    void purgesStaleEntriesInsteadOfGrowing() {
+        var cache = new FunctionCache();
+        for (int i = 1; i <= 128; i++) {
+            cache.put1(0, i, i);
+        }
+        for (int i = 1; i <= 128; i++) {
+            cache.invalidateEntity(i);
+        }
+        cache.put1(0, 1000, 1);
+
+        var stats = cache.getStats();
+        assertThat(stats.purged()).isEqualTo(128);
+        assertThat(stats.evictions()).isZero();
+        assertThat(stats.entries()).isEqualTo(1);
+        assertThat(cache.get1(0, 1000)).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotCacheUnidentifiedFunctionsOrMissValue() {
+        var cache = new FunctionCache();
+        cache.put1(FunctionCache.NO_FUNCTION_ID, 100, 1);
+        cache.put1(0, 100, FunctionCache.MISS);
+
+        assertThat(cache.get1(FunctionCache.NO_FUNCTION_ID, 100)).isEqualTo(FunctionCache.MISS);
+        assertThat(cache.get1(0, 100)).isEqualTo(FunctionCache.MISS);
+    }
+
+    private static Instance createTrackingInstance() {
+        var instance = Instance.builder(Parser.parse(Wat2Wasm.parse(WAT)))
+                .withMemoryFactory(limits -> new DependencyTrackingMemory(new ByteArrayMemory(limits)))
+                .build();
+        var memory = instance.memory();
+        memory.writeI32(ANN, 1);
+        memory.writeI32(BETH, 2);
+        memory.writeI32(SHIFT, ANN);
+        return instance;
+    }
+
+    @Test
+    void memoizesCallsUntilMemoryTheyReadIsWritten() {
+        var instance = createTrackingInstance();
+        var cache = FunctionCache.forInstance(instance);
+        var employeeId = WasmCall.of(instance, "employeeId");
+        var calls = instance.exports().global("calls");
+        assertThat(cache.isMemoizing()).isTrue();
+
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(calls.getValue()).isEqualTo(1);
+
+        // Memory the call did not read
+        instance.memory().writeI32(BETH, 3);
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(calls.getValue()).isEqualTo(1);
+
+        // The navigated entity changes
+        instance.memory().writeI32(ANN, 4);
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(4);
+        assertThat(calls.getValue()).isEqualTo(2);
+
+        // The argument's planning variable changes
+        instance.memory().writeI32(SHIFT, BETH);
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(3);
+        assertThat(calls.getValue()).isEqualTo(3);
+    }
+
+    @Test
+    void writesFromOtherThreadsInvalidateMemoizedCalls() throws Exception {
+        var instance = createTrackingInstance();
+        var cache = FunctionCache.forInstance(instance);
+        var employeeId = WasmCall.of(instance, "employeeId");
+        var calls = instance.exports().global("calls");
+
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(1);
+        // e.g. a cleaner freeing a solution clone
+        var writer = new Thread(() -> instance.memory().writeI32(ANN, 4));
+        writer.start();
+        writer.join();
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(4);
+        assertThat(calls.getValue()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotRecordReadsFromOtherThreads() throws Exception {
+        var memory = (DependencyTrackingMemory) createTrackingInstance().memory();
+        assertThat(memory.startRecording()).isTrue();
+        memory.readInt(SHIFT);
+        // e.g. the best solution being serialized while a call is memoized
+        var reader = new Thread(() -> memory.readInt(BETH));
+        reader.start();
+        reader.join();
+        var dependencies = memory.stopRecording();
+
+        memory.writeI32(BETH, 3);
+        assertThat(memory.isCurrent(dependencies)).isTrue();
+        memory.writeI32(SHIFT, BETH);
+        assertThat(memory.isCurrent(dependencies)).isFalse();
+    }
+
+    @Test
+    void memoizesPureCallsUntilArgumentIsFreed() {
+        var instance = Instance.builder(Parser.parse(Wat2Wasm.parse(WAT))).build();
+        instance.memory().writeI32(ANN, 1);
+        instance.memory().writeI32(SHIFT, ANN);
+        var cache = FunctionCache.forInstance(instance);
+        var employeeId = WasmCall.of(instance, "employeeId");
+        var calls = instance.exports().global("calls");
+
+        assertThat(cache.callPure1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(cache.callPure1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(calls.getValue()).isEqualTo(1);
+
+        // Planning variable changes do not affect pure functions
+        cache.invalidateEntity(SHIFT);
+        assertThat(cache.callPure1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(calls.getValue()).isEqualTo(1);
+
+        // The argument's memory is freed, so the pointer may now refer to another object
+        cache.invalidateEntities(new int[] { SHIFT });
+        assertThat(cache.callPure1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(calls.getValue()).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotMemoizeWithoutDependencyTracking() {
+        var instance = Instance.builder(Parser.parse(Wat2Wasm.parse(WAT))).build();
+        instance.memory().writeI32(ANN, 1);
+        instance.memory().writeI32(SHIFT, ANN);
+        var cache = FunctionCache.forInstance(instance);
+        var employeeId = WasmCall.of(instance, "employeeId");
+        assertThat(cache.isMemoizing()).isFalse();
+
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(cache.call1(0, employeeId, SHIFT)).isEqualTo(1);
+        assertThat(instance.exports().global("calls").getValue()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,239 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.solverforge.wasm.service.classgen.Allocator;
+import org.solverforge.wasm.service.dto.DomainListAccessor;
+import org.solverforge.wasm.service.dto.DomainObject;
+import org.solverforge.wasm.service.dto.DomainObjectMapper;
+import org.solverforge.wasm.service.dto.FieldDescriptor;
+import org.solverforge.wasm.service.dto.PlanningProblem;
+import org.solverforge.wasm.service.dto.annotation.DomainPlanningId;
+import org.solverforge.wasm.service.dto.annotation.DomainPlanningScore;
+import org.solverforge.wasm.service.dto.annotation.DomainValueRangeProvider;
+
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.ImportValues;
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class HostFunctionProviderTest {
+    private static final String ALLOC = """
+                (global $next (mut i32) (i32.const 16))
+                (func $alloc (export "alloc") (param $size i32) (result i32)
+                    (local $out i32)
+                    (local.set $out (global.get $next))
+                    (global.set $next (i32.add (global.get $next)
+                        (i32.and (i32.add (local.get $size) (i32.const 7)) (i32.const -8))))
+                    (local.get $out)
+                )
+                (func (export "dealloc") (param $pointer i32))
+            """;
+
+    // Lists are built with the host list functions
+    private static final String HOST_LAYOUT_WAT = """
+            (module
+                (import "host" "hparseSchedule" (func $hparseSchedule (param i32 i32) (result i32)))
+                (import "host" "hscheduleString" (func $hscheduleString (param i32) (result i32)))
+                (import "host" "hnewList" (func $hnewList (result i32)))
+                (import "host" "hgetItem" (func $hgetItem (param i32 i32) (result i32)))
+                (import "host" "hsize" (func $hsize (param i32) (result i32)))
+                (import "host" "happend" (func $happend (param i32 i32)))
+                (memory (export "memory") 2)
+            """ + ALLOC + """
+                (func (export "parseSchedule") (param $length i32) (param $json i32) (result i32)
+                    (call $hparseSchedule (local.get $length) (local.get $json))
+                )
+                (func (export "scheduleString") (param $schedule i32) (result i32)
+                    (call $hscheduleString (local.get $schedule))
+                )
+                (func (export "newList") (result i32) (call $hnewList))
+                (func (export "getItem") (param $list i32) (param $index i32) (result i32)
+                    (call $hgetItem (local.get $list) (local.get $index))
+                )
+                (func (export "size") (param $list i32) (result i32) (call $hsize (local.get $list)))
+                (func (export "append") (param $list i32) (param $item i32)
+                    (call $happend (local.get $list) (local.get $item))
+                )
+            )
+            """;
+
+    // Lists of its own: [items pointer: i32][size: i32], with room for 64 items
+    private static final String OWN_LAYOUT_WAT = """
+            (module
+                (import "host" "hparseSchedule" (func $hparseSchedule (param i32 i32) (result i32)))
+                (import "host" "hscheduleString" (func $hscheduleString (param i32) (result i32)))
+                (memory (export "memory") 2)
+            """ + ALLOC + """
+                (func (export "parseSchedule") (param $length i32) (param $json i32) (result i32)
+                    (call $hparseSchedule (local.get $length) (local.get $json))
+                )
+                (func (export "scheduleString") (param $schedule i32) (result i32)
+                    (call $hscheduleString (local.get $schedule))
+                )
+                (func (export "newList") (result i32)
+                    (local $list i32)
+                    (local.set $list (call $alloc (i32.const 8)))
+                    (i32.store (local.get $list) (call $alloc (i32.const 256)))
+                    (i32.store offset=4 (local.get $list) (i32.const 0))
+                    (local.get $list)
+                )
+                (func (export "getItem") (param $list i32) (param $index i32) (result i32)
+                    (i32.load (i32.add (i32.load (local.get $list)) (i32.mul (local.get $index) (i32.const 4))))
+                )
+                (func (export "size") (param $list i32) (result i32)
+                    (i32.load offset=4 (local.get $list))
+                )
+                (func (export "append") (param $list i32) (param $item i32)
+                    (i32.store (i32.add (i32.load (local.get $list)) (i32.mul (i32.load offset=4 (local.get $list)) (i32.const 4)))
+                        (local.get $item))
+                    (i32.store offset=4 (local.get $list) (i32.add (i32.load offset=4 (local.get $list)) (i32.const 1)))
+                )
+            )
+            """;
+
+    // Shifts come before the employees they reference; fields are out of order, and
+    // unknown fields hold nested values
+    private static final String PROBLEM = """
+            {
+                "shifts": [
+                    {"unknown": {"nested": [1, {"a": null}]}, "day": "2024-01-16", "employee": {"id": 1}},
+                    {"employee": {"name": "Ignored", "id": 0, "skills": ["x"]}, "day": 19738},
+                    {"employee": null}
+                ],
+                "label": "Tab\\t \\"quoted\\" \\\\ \\u00e9\\u4e2d \\ud83d\\ude00",
+                "extra": [[1, 2], {"x": []}],
+                "employees": [
+                    {"skills": ["a\\"b", "c\\\\d\\n", "\\u00fc"], "id": 0, "name": "Ann",
+                     "unavailable": ["2024-01-15", 19738], "start": "2024-01-15T08:30:00", "birthday": "1990-05-17"},
+                    {"id": 1, "name": "Beth", "start": null, "birthday": 7000}
+                ],
+                "score": "-5"
+            }
+            """;
+
+    private static final String ANN = """
+            {"id": 0, "name": "Ann", "skills": ["a\\"b", "c\\\\d\\n", "\\u00fc"],
+             "unavailable": [19737, 19738], "start": "2024-01-15T08:30", "birthday": "1990-05-17"}
+            """;
+
+    private static final String BETH = """
+            {"id": 1, "name": "Beth", "skills": [], "unavailable": [], "start": "1970-01-01T00:00",
+             "birthday": "1989-03-02"}
+            """;
+
+    // Dates in lists are written as epoch days; references are written in full
+    private static final String SOLUTION = """
+            {
+                "employees": [%s, %s],
+                "shifts": [
+                    {"employee": %s, "day": "2024-01-16"},
+                    {"employee": %s, "day": "2024-01-16"},
+                    {"employee": null, "day": "1970-01-01"}
+                ],
+                "label": "Tab\\t \\"quoted\\" \\\\ \\u00e9\\u4e2d \\ud83d\\ude00"
+            }
+            """.formatted(ANN, BETH, BETH, ANN);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static LinkedHashMap<String, DomainObject> getDomain() {
+        var employeeFields = new LinkedHashMap<String, FieldDescriptor>();
+        employeeFields.put("id", new FieldDescriptor("int", List.of(new DomainPlanningId())));
+        employeeFields.put("name", new FieldDescriptor("String", List.of()));
+        employeeFields.put("skills", new FieldDescriptor("String[]", List.of()));
+        employeeFields.put("unavailable", new FieldDescriptor("LocalDate[]", List.of()));
+        employeeFields.put("start", new FieldDescriptor("LocalDateTime", List.of()));
+        employeeFields.put("birthday", new FieldDescriptor("LocalDate", List.of()));
+
+        var shiftFields = new LinkedHashMap<String, FieldDescriptor>();
+        shiftFields.put("employee", new FieldDescriptor("Employee", List.of()));
+        shiftFields.put("day", new FieldDescriptor("LocalDate", List.of()));
+
+        var scheduleFields = new LinkedHashMap<String, FieldDescriptor>();
+        scheduleFields.put("employees", new FieldDescriptor("Employee[]", List.of(new DomainValueRangeProvider())));
+        scheduleFields.put("shifts", new FieldDescriptor("Shift[]", List.of()));
+        scheduleFields.put("label", new FieldDescriptor("String", List.of()));
+        scheduleFields.put("score", new FieldDescriptor("SimpleScore", List.of(new DomainPlanningScore())));
+
+        var domain = new LinkedHashMap<String, DomainObject>();
+        domain.put("Employee", new DomainObject(employeeFields, null, null));
+        domain.put("Shift", new DomainObject(shiftFields, null, null));
+        domain.put("Schedule", new DomainObject(scheduleFields,
+                new DomainObjectMapper("parseSchedule", "scheduleString"), null));
+        return domain;
+    }
+
+    private static Instance createInstance(String wat) {
+        byte[] wasm = Wat2Wasm.parse(wat);
+        var planningProblem = new PlanningProblem(getDomain(), Map.of(), null,
+                Base64.getEncoder().encodeToString(wasm), "alloc", "dealloc", null,
+                new DomainListAccessor("newList", "getItem", "setItem", "size", "append", "insert", "remove", "dealloc"),
+                PROBLEM, null, null);
+        var hostFunctions = new HostFunctionProvider(new ObjectMapper(), planningProblem).createHostFunctions();
+        return Instance.builder(Parser.parse(wasm))
+                .withImportValues(ImportValues.builder()
+                        .addFunction(hostFunctions.toArray(HostFunction[]::new))
+                        .build())
+                .build();
+    }
+
+    private static int parse(Instance instance, String json) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        int pointer = (int) instance.export("alloc").apply(bytes.length)[0];
+        instance.memory().write(pointer, bytes);
+        return (int) instance.export("parseSchedule").apply(bytes.length, pointer)[0];
+    }
+
+    private static String scheduleString(Instance instance, int schedule) {
+        return instance.memory().readCString((int) instance.export("scheduleString").apply(schedule)[0]);
+    }
+
+    private String write(Instance instance, int schedule) throws Exception {
+        var out = new ByteArrayOutputStream();
+        new SolutionJsonWriter(objectMapper.getFactory(), getDomain()).write(instance, schedule, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void parsesAndWritesHostLayoutLists() throws Exception {
+        var instance = createInstance(HOST_LAYOUT_WAT);
+        int schedule = parse(instance, PROBLEM);
+
+        assertThat(ModuleLists.hasHostLayout(instance)).isTrue();
+        assertThat(objectMapper.readTree(scheduleString(instance, schedule))).isEqualTo(objectMapper.readTree(SOLUTION));
+    }
+
+    @Test
+    void parsesAndWritesListsThroughExportsOfOtherLayouts() throws Exception {
+        var instance = createInstance(OWN_LAYOUT_WAT);
+        int schedule = parse(instance, PROBLEM);
+
+        assertThat(ModuleLists.hasHostLayout(instance)).isFalse();
+        assertThat(objectMapper.readTree(scheduleString(instance, schedule))).isEqualTo(objectMapper.readTree(SOLUTION));
+    }
+
+    @Test
+    void copiesListsThroughExportsOfOtherLayouts() throws Exception {
+        var instance = createInstance(OWN_LAYOUT_WAT);
+        int schedule = parse(instance, PROBLEM);
+        var allocator = new Allocator(instance, "alloc", "dealloc", "dealloc");
+
+        var copiedSolution = new SolutionGraphCopier(getDomain()).copy(instance, allocator, schedule);
+
+        assertThat(copiedSolution.pointer()).isNotEqualTo(schedule);
+        assertThat(objectMapper.readTree(write(instance, copiedSolution.pointer())))
+                .isEqualTo(objectMapper.readTree(SOLUTION));
+        assertThat(objectMapper.readTree(write(instance, schedule))).isEqualTo(objectMapper.readTree(SOLUTION));
+    }
+}
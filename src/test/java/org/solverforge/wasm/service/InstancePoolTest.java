@@ -0,0 +1,74 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.dylibso.chicory.wabt.Wat2Wasm;
+
+public class InstancePoolTest {
+    // Initialized memory, so a restore has more to bring back than zeroes
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (data (i32.const 16) "initial")
+                (global $next (export "next") (mut i32) (i32.const 1024))
+                (func (export "alloc") (param $size i32) (result i32)
+                    (local $pointer i32)
+                    (local.set $pointer (global.get $next))
+                    (global.set $next (i32.add (global.get $next) (local.get $size)))
+                    (local.get $pointer)
+                )
+            )
+            """;
+
+    private static final int PAGE_SIZE = 65536;
+
+    @Test
+    void restoredInstanceMatchesFreshOne() {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var used = InstancePool.acquire(compiledModule, List.of(), false);
+        var pointer = (int) used.instance().export("alloc").apply(8)[0];
+        used.instance().memory().writeI32(pointer, 42);
+        used.instance().memory().writeI32(16, 0);
+        used.instance().memory().grow(1);
+        used.instance().memory().writeI32(PAGE_SIZE + 16, 7);
+        InstancePool.release(used, 1, Long.MAX_VALUE);
+
+        var restored = InstancePool.acquire(compiledModule, List.of(), false);
+        assertThat(restored.instance()).isSameAs(used.instance());
+        var fresh = InstancePool.acquire(compiledModule, List.of(), false);
+        assertThat(fresh.instance()).isNotSameAs(restored.instance());
+
+        var restoredMemory = restored.instance().memory();
+        assertThat(restoredMemory.readBytes(0, PAGE_SIZE)).isEqualTo(fresh.instance().memory().readBytes(0, PAGE_SIZE));
+        assertThat(restoredMemory.readInt(pointer)).isZero();
+        // Memory cannot shrink, but grown pages are zeroed
+        assertThat(restoredMemory.pages()).isEqualTo(2);
+        assertThat(restoredMemory.readBytes(PAGE_SIZE, PAGE_SIZE)).isEqualTo(new byte[PAGE_SIZE]);
+        // Mutable globals are back to their initial values
+        assertThat(restored.instance().export("alloc").apply(8)[0])
+                .isEqualTo(fresh.instance().export("alloc").apply(8)[0])
+                .isEqualTo(1024L);
+
+        InstancePool.release(fresh, 0, Long.MAX_VALUE);
+        InstancePool.release(restored, 0, Long.MAX_VALUE);
+    }
+
+    @Test
+    void evictsInstancesOverMemoryLimit() {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var grown = InstancePool.acquire(compiledModule, List.of(), false);
+        grown.instance().memory().grow(1);
+        var evictions = InstancePool.getStats().evictions();
+        InstancePool.release(grown, 4, PAGE_SIZE);
+        assertThat(InstancePool.getStats().evictions()).isEqualTo(evictions + 1);
+
+        var next = InstancePool.acquire(compiledModule, List.of(), false);
+        assertThat(next.instance()).isNotSameAs(grown.instance());
+        assertThat(next.instance().memory().pages()).isEqualTo(1);
+        InstancePool.release(next, 0, Long.MAX_VALUE);
+    }
+}
@@ -0,0 +1,87 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.solverforge.wasm.service.classgen.DomainObjectClassLoader;
+
+import org.junit.jupiter.api.Test;
+
+public class ModelCacheTest {
+    private static ModelCache.GeneratedModel newModel() {
+        return new ModelCache.GeneratedModel(new DomainObjectClassLoader(), null, null);
+    }
+
+    private static String fingerprint() {
+        return UUID.randomUUID().toString();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedModel() {
+        var a = fingerprint();
+        var b = fingerprint();
+        var c = fingerprint();
+        var modelA = ModelCache.getOrDefine(a, 2, ModelCacheTest::newModel);
+        var modelB = ModelCache.getOrDefine(b, 2, ModelCacheTest::newModel);
+        assertThat(ModelCache.getOrDefine(a, 2, ModelCacheTest::newModel)).isSameAs(modelA);
+
+        var evictions = ModelCache.getStats().evictions();
+        ModelCache.getOrDefine(c, 2, ModelCacheTest::newModel);
+        assertThat(ModelCache.getStats().evictions()).isGreaterThan(evictions);
+
+        // b was used least recently, so it is defined again with a new class loader
+        assertThat(ModelCache.getOrDefine(a, 2, ModelCacheTest::newModel)).isSameAs(modelA);
+        assertThat(ModelCache.getOrDefine(b, 2, ModelCacheTest::newModel).classLoader())
+                .isNotSameAs(modelB.classLoader());
+    }
+
+    @Test
+    void definesOutsideTheCacheLock() throws Exception {
+        var slow = fingerprint();
+        var definitions = new AtomicInteger();
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var model = newModel();
+        var first = CompletableFuture.supplyAsync(() -> ModelCache.getOrDefine(slow, 64, () -> {
+            definitions.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return model;
+        }));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Other models are defined while the slow one is
+        assertThat(ModelCache.getOrDefine(fingerprint(), 64, ModelCacheTest::newModel)).isNotNull();
+        // A second request for the slow model waits for the first definition
+        var second = CompletableFuture.supplyAsync(() -> ModelCache.getOrDefine(slow, 64, () -> {
+            definitions.incrementAndGet();
+            return newModel();
+        }));
+        release.countDown();
+
+        assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(model);
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(model);
+        assertThat(definitions).hasValue(1);
+    }
+
+    @Test
+    void failedDefinitionIsNotCached() {
+        var key = fingerprint();
+        assertThatThrownBy(() -> ModelCache.getOrDefine(key, 64, () -> {
+            throw new IllegalArgumentException("bad model");
+        })).isInstanceOf(IllegalArgumentException.class);
+
+        var model = newModel();
+        assertThat(ModelCache.getOrDefine(key, 64, () -> model)).isSameAs(model);
+    }
+}
@@ -0,0 +1,64 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.solverforge.wasm.service.dto.RawJson;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ProblemPartitionerTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private ProblemPartitioner.Partitions partition(String problem) {
+        return new ProblemPartitioner(objectMapper, TestUtils.getPlanningProblem(), "team").partition(problem);
+    }
+
+    @Test
+    void splitsByGroupingField() throws Exception {
+        var partitions = partition("""
+                {"employees":[{"id":0,"team":1},{"id":1,"team":2},{"id":2}],"shifts":[{"team":2},{"team":1},{}],"name":"x"}
+                """);
+
+        // Employees are facts, so the one without a team is shared; the shift without one gets its own part
+        assertThat(partitions.getParts()).hasSize(3);
+        assertThat(objectMapper.readTree(partitions.getParts().get(0))).isEqualTo(objectMapper.readTree("""
+                {"employees":[{"id":0,"team":1},{"id":2}],"shifts":[{"team":1}],"name":"x"}
+                """));
+        assertThat(objectMapper.readTree(partitions.getParts().get(1))).isEqualTo(objectMapper.readTree("""
+                {"employees":[{"id":1,"team":2},{"id":2}],"shifts":[{"team":2}],"name":"x"}
+                """));
+        assertThat(objectMapper.readTree(partitions.getParts().get(2))).isEqualTo(objectMapper.readTree("""
+                {"employees":[{"id":2}],"shifts":[{}],"name":"x"}
+                """));
+    }
+
+    @Test
+    void mergesPartSolutionsInProblemOrder() throws Exception {
+        var partitions = partition("""
+                {"employees":[{"id":0,"team":1},{"id":1,"team":2},{"id":2}],"shifts":[{"team":2},{"team":1},{}]}
+                """);
+
+        var merged = partitions.merge(List.of(
+                RawJson.of("{\"employees\":[{\"id\":0},{\"id\":2}],\"shifts\":[{\"employee\":{\"id\":0}}]}"),
+                RawJson.of("{\"employees\":[{\"id\":1},{\"id\":2}],\"shifts\":[{\"employee\":{\"id\":1}}]}"),
+                RawJson.of("{\"employees\":[{\"id\":2}],\"shifts\":[{\"employee\":{\"id\":2}}]}")));
+        assertThat(objectMapper.readTree(merged)).isEqualTo(objectMapper.readTree("""
+                {"employees":[{"id":0},{"id":1},{"id":2}],
+                 "shifts":[{"employee":{"id":1}},{"employee":{"id":0}},{"employee":{"id":2}}]}
+                """));
+    }
+
+    @Test
+    void problemWithoutGroupsIsOnePart() {
+        var partitions = partition("""
+                {"employees":[{"id":0}],"shifts":[]}
+                """);
+
+        assertThat(partitions.getParts()).hasSize(1);
+        var solution = "{\"employees\":[{\"id\":0}],\"shifts\":[]}";
+        assertThat(partitions.merge(List.of(RawJson.of(solution)))).isEqualTo(solution);
+    }
+}
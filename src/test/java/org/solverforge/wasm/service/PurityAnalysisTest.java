@@ -0,0 +1,132 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.solverforge.wasm.service.PurityAnalysis.Purity;
+
+import org.junit.jupiter.api.Test;
+
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+
+public class PurityAnalysisTest {
+    // Shifts are (start, employee, previous); employee is a planning variable
+    private static final String WAT = """
+            (module
+                (import "host" "hsin" (func $hsin (param f64) (result f64)))
+                (import "host" "happend" (func $happend (param i32 i32)))
+                (import "host" "hgetEmployee" (func $hgetEmployee (param i32) (result i32)))
+                (memory (export "memory") 1)
+                (global $counter (mut i32) (i32.const 0))
+                (func $getEmployee (export "getEmployee") (param $shift i32) (result i32)
+                    (i32.load offset=4 (local.get $shift))
+                )
+                (func (export "setEmployee") (param $shift i32) (param $employee i32)
+                    (i32.store offset=4 (local.get $shift) (local.get $employee))
+                )
+                (func (export "isEarly") (param $shift i32) (result i32)
+                    (i32.lt_s (i32.load (local.get $shift)) (i32.const 8))
+                )
+                (func (export "isAssigned") (param $shift i32) (result i32)
+                    (i32.ne (call $getEmployee (local.get $shift)) (i32.const 0))
+                )
+                (func (export "employeeInlined") (param $shift i32) (result i32)
+                    (i32.load offset=4 (local.get $shift))
+                )
+                (func (export "countCalls") (param $shift i32) (result i32)
+                    (global.set $counter (i32.add (global.get $counter) (i32.const 1)))
+                    (i32.const 0)
+                )
+                (func (export "appendShift") (param $list i32) (param $shift i32)
+                    (call $happend (local.get $list) (local.get $shift))
+                )
+                (func (export "sine") (param $x f64) (result f64)
+                    (call $hsin (local.get $x))
+                )
+                (func $start (param $shift i32) (result i32)
+                    (i32.load (local.get $shift))
+                )
+                (func (export "isPreviousEarly") (param $shift i32) (result i32)
+                    (i32.lt_s (call $start (i32.load offset=8 (local.get $shift))) (i32.const 8))
+                )
+                (func (export "previousStart") (param $shift i32) (result i32)
+                    (local $previous i32)
+                    (local.set $previous (i32.load offset=8 (local.get $shift)))
+                    (i32.load (local.get $previous))
+                )
+                (func (export "employeeComputed") (param $shift i32) (result i32)
+                    (i32.load (i32.add (local.get $shift) (i32.const 4)))
+                )
+                (func (export "employeeThroughHelper") (param $shift i32) (result i32)
+                    (call $start (i32.add (local.get $shift) (i32.const 4)))
+                )
+                (func (export "getEmployeeFromHost") (param $shift i32) (result i32)
+                    (call $hgetEmployee (local.get $shift))
+                )
+            )
+            """;
+
+    @Test
+    void classifiesExportsUsingVariableAccessors() {
+        var module = Parser.parse(Wat2Wasm.parse(WAT));
+        var purity = PurityAnalysis.analyze(module, Set.of("getEmployee", "setEmployee"), Set.of());
+
+        assertThat(purity.get("isEarly")).isEqualTo(Purity.PURE_ON_FACTS);
+        assertThat(purity.get("sine")).isEqualTo(Purity.PURE_ON_FACTS);
+        assertThat(purity.get("getEmployee")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+        assertThat(purity.get("isAssigned")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+        // Reads the variable field without calling its getter
+        assertThat(purity.get("employeeInlined")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+        assertThat(purity.get("setEmployee")).isEqualTo(Purity.IMPURE);
+        assertThat(purity.get("countCalls")).isEqualTo(Purity.IMPURE);
+        assertThat(purity.get("appendShift")).isEqualTo(Purity.IMPURE);
+        assertThat(purity.get("notExported")).isEqualTo(Purity.IMPURE);
+    }
+
+    @Test
+    void followsPointersLoadedFromArguments() {
+        var module = Parser.parse(Wat2Wasm.parse(WAT));
+        var purity = PurityAnalysis.analyze(module, Set.of("getEmployee", "setEmployee"), Set.of());
+
+        assertThat(purity.get("isPreviousEarly")).isEqualTo(Purity.PURE_ON_FACTS);
+        assertThat(purity.get("previousStart")).isEqualTo(Purity.PURE_ON_FACTS);
+    }
+
+    @Test
+    void treatsComputedAddressesAsVariableReads() {
+        var module = Parser.parse(Wat2Wasm.parse(WAT));
+        var purity = PurityAnalysis.analyze(module, Set.of("getEmployee", "setEmployee"), Set.of());
+
+        // Both load the employee at offset 0 from an address past the shift's pointer
+        assertThat(purity.get("employeeComputed")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+        assertThat(purity.get("employeeThroughHelper")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+    }
+
+    @Test
+    void usesDeclaredOffsetsOfAccessors() {
+        var module = Parser.parse(Wat2Wasm.parse(WAT));
+        var accessors = Set.of("getEmployeeFromHost");
+
+        // The accessor's body does not show its field's offset, so any load may read it
+        var purity = PurityAnalysis.analyze(module, accessors, Set.of());
+        assertThat(purity.get("isEarly")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+
+        purity = PurityAnalysis.analyze(module, accessors, Map.of("getEmployeeFromHost", 4), Set.of());
+        assertThat(purity.get("isEarly")).isEqualTo(Purity.PURE_ON_FACTS);
+        assertThat(purity.get("employeeInlined")).isEqualTo(Purity.READS_PLANNING_VARIABLES);
+    }
+
+    @Test
+    void treatsAllLoadsAsVariableReadsWithoutAccessors() {
+        var module = Parser.parse(Wat2Wasm.parse(WAT));
+        var purity = PurityAnalysis.analyze(module, Set.of(), Set.of());
+
+        // Without variables, everything that does not write is pure
+        assertThat(purity.get("isEarly")).isEqualTo(Purity.PURE_ON_FACTS);
+        assertThat(purity.get("employeeInlined")).isEqualTo(Purity.PURE_ON_FACTS);
+        assertThat(purity.isPureOnFacts("countCalls")).isFalse();
+    }
+}
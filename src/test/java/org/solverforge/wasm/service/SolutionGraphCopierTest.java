@@ -0,0 +1,188 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.solverforge.wasm.service.classgen.Allocator;
+import org.solverforge.wasm.service.dto.DomainObject;
+import org.solverforge.wasm.service.dto.DomainObjectMapper;
+import org.solverforge.wasm.service.dto.FieldDescriptor;
+import org.solverforge.wasm.service.dto.annotation.DomainPlanningScore;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+
+public class SolutionGraphCopierTest {
+    // Bump allocator with 8-byte aligned allocations
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (global $next (mut i32) (i32.const 16))
+                (func (export "alloc") (param $size i32) (result i32)
+                    (local $out i32)
+                    (local.set $out (global.get $next))
+                    (global.set $next (i32.add (global.get $next)
+                        (i32.and (i32.add (local.get $size) (i32.const 7)) (i32.const -8))))
+                    (local.get $out)
+                )
+                (func (export "dealloc") (param $pointer i32))
+                (func (export "cloneSchedule") (param $schedule i32) (result i32)
+                    (i32.const 1234)
+                )
+            )
+            """;
+
+    private Instance instance;
+    private Memory memory;
+    private Allocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        instance = Instance.builder(Parser.parse(Wat2Wasm.parse(WAT))).build();
+        memory = instance.memory();
+        allocator = new Allocator(instance, "alloc", "dealloc", "dealloc");
+    }
+
+    private static LinkedHashMap<String, DomainObject> getDomain(DomainObjectMapper mapper) {
+        // Employee: id @ 0, name @ 4, start @ 8 (8-byte aligned), size 16
+        var employeeFields = new LinkedHashMap<String, FieldDescriptor>();
+        employeeFields.put("id", new FieldDescriptor("int", List.of()));
+        employeeFields.put("name", new FieldDescriptor("String", List.of()));
+        employeeFields.put("start", new FieldDescriptor("LocalDate", List.of()));
+
+        // Shift: employee @ 0, tags @ 4, size 8
+        var shiftFields = new LinkedHashMap<String, FieldDescriptor>();
+        shiftFields.put("employee", new FieldDescriptor("Employee", List.of()));
+        shiftFields.put("tags", new FieldDescriptor("String[]", List.of()));
+
+        // Schedule: employees @ 0, shifts @ 4, score @ 8, size 12
+        var scheduleFields = new LinkedHashMap<String, FieldDescriptor>();
+        scheduleFields.put("employees", new FieldDescriptor("Employee[]", List.of()));
+        scheduleFields.put("shifts", new FieldDescriptor("Shift[]", List.of()));
+        scheduleFields.put("score", new FieldDescriptor("SimpleScore", List.of(new DomainPlanningScore())));
+
+        var domain = new LinkedHashMap<String, DomainObject>();
+        domain.put("Employee", new DomainObject(employeeFields, null, null));
+        domain.put("Shift", new DomainObject(shiftFields, null, null));
+        domain.put("Schedule", new DomainObject(scheduleFields, mapper, null));
+        return domain;
+    }
+
+    private int newString(String value) {
+        int pointer = allocator.allocate(value.length() + 1);
+        memory.writeCString(pointer, value);
+        return pointer;
+    }
+
+    private int newList(int... items) {
+        int list = allocator.allocate(12);
+        int backingArray = allocator.allocate(4 * Math.max(items.length, 4));
+        memory.writeI32(list, items.length);
+        memory.writeI32(list + 4, Math.max(items.length, 4));
+        memory.writeI32(list + 8, backingArray);
+        for (int i = 0; i < items.length; i++) {
+            memory.writeI32(backingArray + 4 * i, items[i]);
+        }
+        return list;
+    }
+
+    private int getItem(int list, int index) {
+        return memory.readInt(memory.readInt(list + 8) + 4 * index);
+    }
+
+    private int newEmployee(int id, String name, long start) {
+        int employee = allocator.allocate(16);
+        memory.writeI32(employee, id);
+        memory.writeI32(employee + 4, newString(name));
+        memory.writeLong(employee + 8, start);
+        return employee;
+    }
+
+    private int newShift(int employee, String... tags) {
+        int shift = allocator.allocate(8);
+        var tagPointers = new int[tags.length];
+        for (int i = 0; i < tags.length; i++) {
+            tagPointers[i] = newString(tags[i]);
+        }
+        memory.writeI32(shift, employee);
+        memory.writeI32(shift + 4, newList(tagPointers));
+        return shift;
+    }
+
+    private int newSchedule() {
+        int ann = newEmployee(0, "Ann", 19000L);
+        int beth = newEmployee(1, "Beth", 19001L);
+        int schedule = allocator.allocate(12);
+        memory.writeI32(schedule, newList(ann, beth));
+        memory.writeI32(schedule + 4, newList(newShift(ann, "day"), newShift(ann), newShift(0, "night", "weekend")));
+        // Score pointer the copy does not own
+        memory.writeI32(schedule + 8, 0xDEAD);
+        return schedule;
+    }
+
+    @Test
+    void copiesObjectGraph() {
+        var copier = new SolutionGraphCopier(getDomain(new DomainObjectMapper("parseSchedule", "scheduleString")));
+        int original = newSchedule();
+        var copiedSolution = copier.copy(instance, allocator, original);
+        int copy = copiedSolution.pointer();
+
+        assertThat(copy).isNotEqualTo(original);
+        assertThat(memory.readInt(copy + 8)).isZero();
+
+        int originalEmployees = memory.readInt(original);
+        int employees = memory.readInt(copy);
+        assertThat(employees).isNotEqualTo(originalEmployees);
+        assertThat(memory.readInt(employees)).isEqualTo(2);
+        for (int i = 0; i < 2; i++) {
+            int originalEmployee = getItem(originalEmployees, i);
+            int employee = getItem(employees, i);
+            assertThat(employee).isNotEqualTo(originalEmployee);
+            assertThat(memory.readInt(employee)).isEqualTo(i);
+            assertThat(memory.readInt(employee + 4)).isNotEqualTo(memory.readInt(originalEmployee + 4));
+            assertThat(memory.readCString(memory.readInt(employee + 4)))
+                    .isEqualTo(memory.readCString(memory.readInt(originalEmployee + 4)));
+            assertThat(memory.readLong(employee + 8)).isEqualTo(19000L + i);
+        }
+
+        // References to the same object point to the same copy
+        int shifts = memory.readInt(copy + 4);
+        assertThat(memory.readInt(shifts)).isEqualTo(3);
+        assertThat(memory.readInt(getItem(shifts, 0))).isEqualTo(getItem(employees, 0));
+        assertThat(memory.readInt(getItem(shifts, 1))).isEqualTo(getItem(employees, 0));
+        assertThat(memory.readInt(getItem(shifts, 2))).isZero();
+
+        int tags = memory.readInt(getItem(shifts, 2) + 4);
+        int originalTags = memory.readInt(getItem(memory.readInt(original + 4), 2) + 4);
+        assertThat(tags).isNotEqualTo(originalTags);
+        assertThat(memory.readInt(tags)).isEqualTo(2);
+        assertThat(getItem(tags, 0)).isNotEqualTo(getItem(originalTags, 0));
+        assertThat(memory.readCString(getItem(tags, 0))).isEqualTo("night");
+        assertThat(memory.readCString(getItem(tags, 1))).isEqualTo("weekend");
+        assertThat(memory.readInt(memory.readInt(getItem(shifts, 1) + 4))).isZero();
+
+        // Objects and lists of the copy are reported, so their caches can be scoped to it
+        assertThat(copiedSolution.memoryPointers())
+                .contains(copy, employees, getItem(employees, 0), getItem(employees, 1), shifts, tags)
+                .doesNotContain(original, originalEmployees, getItem(tags, 0));
+
+        // The copy is independent of the original
+        memory.writeI32(getItem(shifts, 0), 0);
+        assertThat(memory.readInt(getItem(memory.readInt(original + 4), 0))).isEqualTo(getItem(originalEmployees, 0));
+    }
+
+    @Test
+    void usesCloneFunctionWhenDeclared() {
+        var copier = new SolutionGraphCopier(getDomain(
+                new DomainObjectMapper("parseSchedule", "scheduleString", "cloneSchedule")));
+        var copiedSolution = copier.copy(instance, allocator, newSchedule());
+        assertThat(copiedSolution.pointer()).isEqualTo(1234);
+        assertThat(copiedSolution.memoryPointers()).isNull();
+    }
+}
@@ -0,0 +1,55 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+import org.solverforge.wasm.service.classgen.WasmObject;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wasm.Parser;
+
+public class SolveContextTest {
+    // Minimal valid WASM module (empty module)
+    private static final byte[] MINIMAL_WASM = new byte[] {
+        0x00, 0x61, 0x73, 0x6d, // magic number
+        0x01, 0x00, 0x00, 0x00  // version
+    };
+
+    private static SolveContext newContext(Instance instance) {
+        return new SolveContext(instance, null, null, new FunctionCache(), null, null, null);
+    }
+
+    @Test
+    void callBindsContextAndRestoresPreviousOne() {
+        var outer = newContext(Instance.builder(Parser.parse(MINIMAL_WASM)).build());
+        var inner = newContext(Instance.builder(Parser.parse(MINIMAL_WASM)).build());
+
+        assertThat(SolveContext.current()).isNull();
+        outer.run(() -> {
+            assertThat(SolveContext.requireCurrent()).isSameAs(outer);
+            assertThat(inner.call(SolveContext::current)).isSameAs(inner);
+            assertThat(SolveContext.current()).isSameAs(outer);
+        });
+        assertThat(SolveContext.current()).isNull();
+        assertThatThrownBy(SolveContext::requireCurrent).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void contextIsFoundByInstanceWhileOpen() {
+        var instance = Instance.builder(Parser.parse(MINIMAL_WASM)).build();
+        var context = newContext(instance);
+
+        assertThat(SolveContext.of(instance)).isNull();
+        context.open();
+        assertThat(SolveContext.of(instance)).isSameAs(context);
+        assertThat(WasmObject.ofExisting(instance, 8).getSolveContext()).isSameAs(context);
+
+        // Closing a context no longer registered keeps the one of the next solve
+        var next = newContext(instance).open();
+        context.close();
+        assertThat(SolveContext.of(instance)).isSameAs(next);
+        next.close();
+        assertThat(SolveContext.of(instance)).isNull();
+    }
+}
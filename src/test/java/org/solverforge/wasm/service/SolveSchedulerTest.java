@@ -0,0 +1,156 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.core.HttpHeaders;
+
+import org.junit.jupiter.api.Test;
+
+public class SolveSchedulerTest {
+    private static final long MB = 1024 * 1024;
+
+    private static SolveScheduler.Request request(int priority, int slots) {
+        return new SolveScheduler.Request(priority, slots, MB);
+    }
+
+    @Test
+    void queuesByPriorityWhileSlotsAreTaken() throws Exception {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(1, 10, 100 * MB, 0));
+        var release = new CompletableFuture<Void>();
+        var blocker = scheduler.submit(request(0, 1), release::join);
+
+        var order = new ArrayList<String>();
+        var low = scheduler.submit(request(0, 1), () -> order.add("low"));
+        var high = scheduler.submit(request(5, 1), () -> order.add("high"));
+        assertThat(low.isQueued()).isTrue();
+        assertThat(high.getQueuePosition()).isEqualTo(1);
+        assertThat(low.getQueuePosition()).isEqualTo(2);
+        assertThat(scheduler.getStats().queued()).isEqualTo(2);
+
+        release.complete(null);
+        blocker.result().get(5, TimeUnit.SECONDS);
+        low.result().get(5, TimeUnit.SECONDS);
+        assertThat(order).containsExactly("high", "low");
+        assertThat(low.getQueuePosition()).isZero();
+        assertThat(scheduler.getStats().usedSlots()).isZero();
+        assertThat(scheduler.getStats().reservedBytes()).isZero();
+    }
+
+    @Test
+    void solveTakesSlotPerThread() throws Exception {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(4, 10, 100 * MB, 0));
+        var release = new CompletableFuture<Void>();
+        var first = scheduler.submit(request(0, 3), release::join);
+        var second = scheduler.submit(request(0, 2), () -> "second");
+        // Slots beyond the limit are capped, so a large solve can still run, with fewer threads
+        var third = scheduler.submit(request(0, 16), slots -> "third on " + slots);
+        assertThat(third.getSlots()).isEqualTo(4);
+
+        assertThat(scheduler.getStats().usedSlots()).isEqualTo(3);
+        assertThat(second.isQueued()).isTrue();
+        assertThat(third.isQueued()).isTrue();
+
+        release.complete(null);
+        first.result().get(5, TimeUnit.SECONDS);
+        assertThat(second.result().get(5, TimeUnit.SECONDS)).isEqualTo("second");
+        assertThat(third.result().get(5, TimeUnit.SECONDS)).isEqualTo("third on 4");
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(1, 1, 100 * MB, 0));
+        var release = new CompletableFuture<Void>();
+        scheduler.submit(request(0, 1), release::join);
+        scheduler.submit(request(0, 1), () -> null);
+
+        assertThatThrownBy(() -> scheduler.submit(request(0, 1), () -> null))
+                .isInstanceOfSatisfying(SolveScheduler.RejectedException.class, e -> {
+                    assertThat(e.getResponse().getStatus()).isEqualTo(429);
+                    assertThat(e.getResponse().getHeaderString(HttpHeaders.RETRY_AFTER)).isNotNull();
+                });
+        assertThat(scheduler.getStats().rejected()).isEqualTo(1);
+        release.complete(null);
+    }
+
+    @Test
+    void rejectsBeyondMemoryBudget() {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(1, 10, 3 * MB, 0));
+        var release = new CompletableFuture<Void>();
+        scheduler.submit(new SolveScheduler.Request(0, 1, 2 * MB), release::join);
+
+        assertThatThrownBy(() -> scheduler.submit(new SolveScheduler.Request(0, 1, 2 * MB), () -> null))
+                .isInstanceOf(SolveScheduler.RejectedException.class);
+        // A solve that can never fit is a bad request rather than a reason to retry
+        assertThatThrownBy(() -> scheduler.submit(new SolveScheduler.Request(0, 1, 4 * MB), () -> null))
+                .isInstanceOf(BadRequestException.class);
+        release.complete(null);
+    }
+
+    @Test
+    void queuedSolveExpiresOrIsCancelled() throws Exception {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(1, 10, 100 * MB, 100));
+        var release = new CompletableFuture<Void>();
+        scheduler.submit(request(0, 1), release::join);
+        var expiring = scheduler.submit(request(0, 1), () -> null);
+        var cancelled = scheduler.submit(request(0, 1), () -> null);
+
+        assertThat(cancelled.cancel()).isTrue();
+        assertThatThrownBy(() -> cancelled.result().get()).isInstanceOf(CancellationException.class);
+        assertThatThrownBy(() -> expiring.result().get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasCauseInstanceOf(SolveScheduler.RejectedException.class);
+        assertThat(expiring.getQueueTimeMillis()).isGreaterThanOrEqualTo(100);
+        assertThat(scheduler.getStats().expired()).isEqualTo(1);
+        assertThat(scheduler.getStats().reservedBytes()).isEqualTo(MB);
+        release.complete(null);
+    }
+
+    @Test
+    void resultCompletesWithTaskOutcome() throws Exception {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(2, 10, 100 * MB, 0));
+        assertThat(scheduler.submit(request(0, 1), () -> List.of(1, 2)).result().get(5, TimeUnit.SECONDS))
+                .containsExactly(1, 2);
+        var failing = scheduler.submit(request(0, 1), () -> {
+            throw new IllegalArgumentException("bad problem");
+        });
+        assertThatThrownBy(() -> failing.result().get(5, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class)
+                .hasRootCauseInstanceOf(IllegalArgumentException.class)
+                .hasRootCauseMessage("bad problem");
+    }
+
+    @Test
+    void queueChangesWakeWaitingThreads() throws Exception {
+        var scheduler = new SolveScheduler(new SolveScheduler.Limits(1, 10, 100 * MB, 0));
+        var release = new CompletableFuture<Void>();
+        var blocker = scheduler.submit(request(0, 1), release::join);
+        var first = scheduler.submit(request(0, 1), () -> null);
+        var second = scheduler.submit(request(0, 1), () -> null);
+
+        var phase = scheduler.getQueuePhase();
+        var moved = CompletableFuture.runAsync(() -> {
+            try {
+                scheduler.awaitQueueChange(phase);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        assertThat(first.cancel()).isTrue();
+        moved.get(5, TimeUnit.SECONDS);
+        assertThat(second.getQueuePosition()).isEqualTo(1);
+        assertThat(scheduler.getQueuePhase()).isNotEqualTo(phase);
+
+        release.complete(null);
+        blocker.result().get(5, TimeUnit.SECONDS);
+        second.result().get(5, TimeUnit.SECONDS);
+    }
+}
@@ -1,19 +1,45 @@
 package org.solverforge.wasm.service;
 
+import static io.restassured.RestAssured.given;
 import static org.assertj.core.api.Assertions.assertThat;
-
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import jakarta.inject.Inject;
 
 import ai.timefold.solver.core.api.score.buildin.simple.SimpleScore;
+import ai.timefold.solver.core.config.localsearch.LocalSearchType;
+import org.solverforge.wasm.service.dto.PlanningPartitioning;
+import org.solverforge.wasm.service.dto.PlanningPortfolio;
+import org.solverforge.wasm.service.dto.PlanningProblem;
+import org.solverforge.wasm.service.dto.PlanningTermination;
+import org.solverforge.wasm.service.dto.WasmConstraint;
 
 import org.junit.jupiter.api.Test;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import io.quarkus.test.common.http.TestHTTPResource;
 import io.quarkus.test.junit.QuarkusTest;
 
 @QuarkusTest
@@ -24,43 +50,154 @@ public class SolverResourceTest {
     @Inject
     SolverResource solverResource;
 
+    @Inject
+    ModuleResource moduleResource;
+
+    @TestHTTPResource("/")
+    URI baseUri;
+
     @Test
-    public void solveTest() throws JsonProcessingException {
+    public void solveTest() throws IOException {
         var planningProblem = TestUtils.getPlanningProblem();
-        var out = solverResource.solve(planningProblem);
-        var solution = (Map) objectMapper.readerFor(Map.class).readValue(out.solution());
+        var out = solverResource.solve(planningProblem).await().indefinitely();
+        var solution = (Map) objectMapper.readerFor(Map.class).readValue(out.solution().bytes());
         assertThat(solution).containsKeys("employees", "shifts");
         assertThat(solution.get("shifts")).usingRecursiveComparison().ignoringCollectionOrder().isEqualTo(List.of(
                 Map.of("employee", Map.of("id", 0)), Map.of("employee", Map.of("id", 1))
         ));
         assertThat(out.score()).isEqualTo(SimpleScore.of(18));
+
+        // The solution is embedded as JSON, not as a string
+        var response = objectMapper.readTree(objectMapper.writeValueAsBytes(out));
+        assertThat(response.get("solution").isObject()).isTrue();
+        assertThat(objectMapper.convertValue(response.get("solution"), Map.class)).isEqualTo(solution);
+    }
+
+    private static PlanningProblem withWasmHash(PlanningProblem embeddedProblem, String wasmHash) {
+        return new PlanningProblem(
+                embeddedProblem.getDomainObjectMap(),
+                embeddedProblem.getConstraintList().stream()
+                        .collect(Collectors.toMap(WasmConstraint::getName, Function.identity())),
+                embeddedProblem.getEnvironmentMode(),
+                null,
+                wasmHash,
+                embeddedProblem.getAllocator(),
+                embeddedProblem.getDeallocator(),
+                null,
+                embeddedProblem.getListAccessor(),
+                embeddedProblem.getProblem(),
+                new PlanningTermination(null, null, null, null, null, 10, null, null, null),
+                null);
+    }
+
+    @Test
+    public void solveRegisteredModuleTest() {
+        var embeddedProblem = TestUtils.getPlanningProblem();
+        var registeredModule = moduleResource.register(embeddedProblem.getWasm());
+        assertThat(registeredModule.wasmHash()).isEqualTo(ModuleCache.computeWasmHash(embeddedProblem.getWasm()));
+        assertThat(moduleResource.get(registeredModule.wasmHash())).isEqualTo(registeredModule);
+
+        var planningProblem = withWasmHash(embeddedProblem, registeredModule.wasmHash());
+        var out = solverResource.solve(planningProblem).await().indefinitely();
+        assertThat(out.score()).isEqualTo(SimpleScore.of(18));
+    }
+
+    @Test
+    public void deletedModuleTest() {
+        var embeddedProblem = TestUtils.getPlanningProblem();
+        var wasmHash = moduleResource.register(embeddedProblem.getWasm()).wasmHash();
+        moduleResource.delete(wasmHash);
+
+        assertThatThrownBy(() -> moduleResource.get(wasmHash)).isInstanceOf(jakarta.ws.rs.NotFoundException.class);
+        assertThatThrownBy(() -> solverResource.solve(withWasmHash(embeddedProblem, wasmHash)).await().indefinitely())
+                .isInstanceOf(jakarta.ws.rs.NotFoundException.class);
+        given().when().delete("/modules/{hash}", wasmHash).then().statusCode(404);
+    }
+
+    @Test
+    public void evictedModuleTest() {
+        var embeddedProblem = TestUtils.getPlanningProblem();
+        var wasmHash = ModuleCache.register(embeddedProblem.getWasm(), Optional.empty(), 1).hash();
+        // Registering another module beyond the limit drops the least recently used one
+        ModuleCache.register(Wat2Wasm.parse("(module)"), Optional.empty(), 1);
+
+        assertThat(ModuleCache.get(wasmHash, Optional.empty(), 1)).isEmpty();
+        assertThatThrownBy(() -> solverResource.solve(withWasmHash(embeddedProblem, wasmHash)).await().indefinitely())
+                .isInstanceOf(jakarta.ws.rs.NotFoundException.class);
     }
 
     @Test
-    public void analyseTest() {
+    public void partitionedSolveTest() {
+        var planningProblem = TestUtils.getPlanningProblem();
+        planningProblem.setProblem("""
+                {"employees": [{"id": 0, "team": 0}, {"id": 1, "team": 1}], "shifts": [{"team": 0}, {"team": 1}]}
+                """);
+        planningProblem.setPartitioning(new PlanningPartitioning("team", null));
+        var out = solverResource.solve(planningProblem).await().indefinitely();
+        assertThat(out.score()).isEqualTo(SimpleScore.of(18));
+        assertThat(out.stats().scoreCalculationCount()).isPositive();
+    }
+
+    @Test
+    public void portfolioRunsAtMostMaxSlotsReplicas() {
+        // solveMaxConcurrent is not set, so there is a slot per processor
+        var planningProblem = TestUtils.getPlanningProblem();
+        planningProblem.setPortfolio(new PlanningPortfolio(Runtime.getRuntime().availableProcessors() + 2, null, null));
+
+        var solve = solverResource.solve(planningProblem).subscribeAsCompletionStage();
+        var maxSlots = SolverResource.getAsyncSolveStats().scheduler().maxSlots();
+        int maxThreads = 0;
+        while (!solve.isDone()) {
+            var threads = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().startsWith("portfolio-replica-"))
+                    .count();
+            maxThreads = Math.max(maxThreads, (int) threads);
+        }
+        assertThat(maxThreads).isBetween(1, maxSlots);
+        assertThat(solve.join().score()).isEqualTo(SimpleScore.of(18));
+    }
+
+    @Test
+    public void unknownModuleTest() {
+        assertThatThrownBy(() -> moduleResource.get("0".repeat(64)))
+                .isInstanceOf(jakarta.ws.rs.NotFoundException.class);
+    }
+
+    private static JsonNode getConstraintAnalysis(JsonNode analysis, String name) {
+        for (var constraint : analysis.get("constraints")) {
+            if (constraint.get("name").asText().equals(name)) {
+                return constraint;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void analyseTest() throws IOException {
         var planningProblem = TestUtils.getPlanningProblem();
         planningProblem.setProblem("""
                 {"employees": [{"id": 0}, {"id": 1}], "shifts": [{}, {}]}
                 """);
-        var analysis = solverResource.analyze(planningProblem);
-        assertThat(analysis.score()).isEqualTo(SimpleScore.ZERO);
+        var analysis = objectMapper.readTree(solverResource.analyze(planningProblem).await().indefinitely().bytes());
+        assertThat(analysis.get("score").asText()).isEqualTo("0");
 
         planningProblem.setProblem("""
                 {"employees": [{"id": 0}, {"id": 1}], "shifts": [{"employee": {"id": 0}}, {"employee": {"id": 1}}]}
                 """);
-        analysis = solverResource.analyze(planningProblem);
-        assertThat(analysis.score()).isEqualTo(SimpleScore.of(18));
+        analysis = objectMapper.readTree(solverResource.analyze(planningProblem).await().indefinitely().bytes());
+        assertThat(analysis.get("score").asText()).isEqualTo("18");
 
-        var constraintAnalysis = analysis.getConstraintAnalysis("penalizeId0");
+        // Matches are serialized while their domain objects can still read the instance's memory
+        var constraintAnalysis = getConstraintAnalysis(analysis, "penalizeId0");
         assertThat(constraintAnalysis).isNotNull();
-        assertThat(constraintAnalysis.matchCount()).isEqualTo(2);
-        assertThat(constraintAnalysis.score()).isEqualTo(SimpleScore.of(-2));
+        assertThat(constraintAnalysis.get("matchCount").asInt()).isEqualTo(2);
+        assertThat(constraintAnalysis.get("matches")).hasSize(2);
+        assertThat(constraintAnalysis.get("score").asText()).isEqualTo("-2");
 
-        constraintAnalysis = analysis.getConstraintAnalysis("distinctIds");
+        constraintAnalysis = getConstraintAnalysis(analysis, "distinctIds");
         assertThat(constraintAnalysis).isNotNull();
-        assertThat(constraintAnalysis.matchCount()).isEqualTo(1);
-        assertThat(constraintAnalysis.score()).isEqualTo(SimpleScore.of(20));
-
+        assertThat(constraintAnalysis.get("matchCount").asInt()).isEqualTo(1);
+        assertThat(constraintAnalysis.get("score").asText()).isEqualTo("20");
     }
 
     @Test
@@ -72,12 +209,12 @@ public class SolverResourceTest {
         assertThat(asyncResponse.solveId()).isNotNull();
         String solveId = asyncResponse.solveId();
 
-        // Check status - should be running or already terminated
+        // Check status - should be queued, running or already terminated
         var statusResponse = solverResource.getSolveStatus(solveId);
-        assertThat(statusResponse.state()).isIn("RUNNING", "TERMINATED");
+        assertThat(statusResponse.state()).isIn("QUEUED", "RUNNING", "TERMINATED");
 
         // Wait for solve to complete (max 10 seconds)
-        for (int i = 0; i < 100 && "RUNNING".equals(statusResponse.state()); i++) {
+        for (int i = 0; i < 100 && !"TERMINATED".equals(statusResponse.state()); i++) {
             Thread.sleep(100);
             statusResponse = solverResource.getSolveStatus(solveId);
         }
@@ -92,13 +229,31 @@ public class SolverResourceTest {
         assertThat(bestResponse.score()).isNotNull();
 
         // Parse and verify solution
-        var solution = (Map) objectMapper.readerFor(Map.class).readValue(bestResponse.solution());
+        var solution = (Map) objectMapper.readerFor(Map.class).readValue(bestResponse.solution().bytes());
         assertThat(solution).containsKeys("employees", "shifts");
 
         // Clean up
         solverResource.deleteSolve(solveId);
     }
 
+    @Test
+    public void asyncSolveEventsTest() {
+        String solveId = solverResource.solveAsync(TestUtils.getPlanningProblem()).solveId();
+
+        // The stream completes after the solve ends
+        var events = given()
+                .queryParam("solution", true)
+                .when().get("/solve/{id}/events", solveId)
+                .then().statusCode(200)
+                .extract().asString();
+
+        assertThat(events).contains("event:end");
+        assertThat(events).contains("\"state\":\"TERMINATED\"");
+        assertThat(events).contains("\"employees\"");
+
+        solverResource.deleteSolve(solveId);
+    }
+
     @Test
     public void asyncSolveStopTest() throws Exception {
         // Use a problem that takes longer to solve - increase termination time
@@ -125,6 +280,48 @@ public class SolverResourceTest {
         solverResource.deleteSolve(solveId);
     }
 
+    @Test
+    public void statusIsAnsweredWhileSolveBodyUploads() throws Exception {
+        String solveId = solverResource.solveAsync(TestUtils.getPlanningProblem()).solveId();
+
+        // A large body whose upload stalls until released
+        var release = new CountDownLatch(1);
+        var head = new ByteArrayInputStream(("{\"padding\":\"" + "x".repeat(1 << 20)).getBytes(StandardCharsets.UTF_8));
+        var tail = new ByteArrayInputStream("\"}".getBytes(StandardCharsets.UTF_8));
+        InputStream body = new SequenceInputStream(head, new InputStream() {
+            @Override
+            public int read() throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException();
+                }
+                return tail.read();
+            }
+        });
+
+        var client = HttpClient.newHttpClient();
+        try {
+            var upload = client.sendAsync(HttpRequest.newBuilder(baseUri.resolve("solve"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofInputStream(() -> body))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+
+            var status = client.send(HttpRequest.newBuilder(baseUri.resolve("solve/" + solveId + "/status"))
+                    .timeout(Duration.ofSeconds(5))
+                    .build(), HttpResponse.BodyHandlers.ofString());
+            assertThat(status.statusCode()).isEqualTo(200);
+            assertThat(upload).isNotDone();
+
+            // The body is not a problem, so the solve is rejected once it is read
+            release.countDown();
+            assertThat(upload.get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(400);
+        } finally {
+            release.countDown();
+            solverResource.deleteSolve(solveId);
+        }
+    }
+
     @Test
     public void asyncSolveNotFoundTest() {
         // Test with non-existent solve ID
@@ -0,0 +1,81 @@
+package org.solverforge.wasm.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+
+public class WasmCallTest {
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (func (export "add") (param $a i32) (param $b i32) (result i32)
+                    (i32.add (local.get $a) (local.get $b))
+                )
+                (func (export "mul") (param $a i64) (param $b i64) (result i64)
+                    (i64.mul (local.get $a) (local.get $b))
+                )
+                (func (export "half") (param $a f32) (result f32)
+                    (f32.div (local.get $a) (f32.const 2))
+                )
+                (func (export "scale") (param $a f64) (param $b i32) (result f64)
+                    (f64.mul (local.get $a) (f64.convert_i32_s (local.get $b)))
+                )
+                (func (export "store") (param $pointer i32) (param $value i32)
+                    (i32.store (local.get $pointer) (local.get $value))
+                )
+                (func (export "answer") (result i32)
+                    (i32.const 42)
+                )
+            )
+            """;
+
+    private static Instance createCompiledInstance() {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        return Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+    }
+
+    private static void assertCallsMatchApply(Instance instance) {
+        assertThat(WasmCall.of(instance, "add").call2(-3, 5))
+                .isEqualTo(instance.export("add").apply(-3, 5)[0])
+                .isEqualTo(2);
+        assertThat((int) WasmCall.of(instance, "add").call2(-3, -5)).isEqualTo(-8);
+        assertThat(WasmCall.of(instance, "mul").call2(1L << 40, 3)).isEqualTo(3L << 40);
+        assertThat(Float.intBitsToFloat((int) WasmCall.of(instance, "half").call1(Float.floatToRawIntBits(5.0f))))
+                .isEqualTo(2.5f);
+        assertThat(Double.longBitsToDouble(WasmCall.of(instance, "scale").call2(Double.doubleToRawLongBits(1.5), -2)))
+                .isEqualTo(-3.0);
+        assertThat(WasmCall.of(instance, "answer").call0()).isEqualTo(42);
+
+        assertThat(WasmCall.of(instance, "store").call2(64, 7)).isZero();
+        assertThat(instance.memory().readInt(64)).isEqualTo(7);
+    }
+
+    @Test
+    void callsCompiledFunctionsDirectly() {
+        var instance = createCompiledInstance();
+        assertThat(WasmCall.of(instance, "add").isDirect()).isTrue();
+        assertThat(WasmCall.of(instance, "store").isDirect()).isTrue();
+        assertCallsMatchApply(instance);
+    }
+
+    @Test
+    void fallsBackToApplyForInterpretedInstances() {
+        var instance = Instance.builder(Parser.parse(Wat2Wasm.parse(WAT))).build();
+        assertThat(WasmCall.of(instance, "add").isDirect()).isFalse();
+        assertCallsMatchApply(instance);
+    }
+
+    @Test
+    void ofExportAlwaysUsesApply() {
+        var instance = createCompiledInstance();
+        var add = WasmCall.ofExport(instance, "add");
+        assertThat(add.isDirect()).isFalse();
+        assertThat(add.call2(2, 3)).isEqualTo(5);
+    }
+}
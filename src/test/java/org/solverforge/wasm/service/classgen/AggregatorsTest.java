@@ -77,7 +77,7 @@ public class AggregatorsTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("count").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -85,7 +85,7 @@ public class AggregatorsTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("count").score())
                 .isEqualTo(SimpleScore.of(3));
     }
@@ -109,7 +109,7 @@ public class AggregatorsTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("countDistinct").score())
                 .isEqualTo(SimpleScore.of(3));
 
@@ -119,7 +119,7 @@ public class AggregatorsTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("countDistinct").score())
                 .isEqualTo(SimpleScore.of(2));
     }
@@ -139,7 +139,7 @@ public class AggregatorsTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("sum").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -147,7 +147,7 @@ public class AggregatorsTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("sum").score())
                 .isEqualTo(SimpleScore.of(6));
     }
@@ -167,7 +167,7 @@ public class AggregatorsTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("average").score())
                 .isEqualTo(SimpleScore.of(10));
 
@@ -175,7 +175,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("average").score())
                 .isEqualTo(SimpleScore.of(15));
 
@@ -183,7 +183,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("average").score())
                 .isEqualTo(SimpleScore.of(20));
     }
@@ -203,7 +203,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("min").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -211,7 +211,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("min").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -219,7 +219,7 @@ public class AggregatorsTest {
                 List.of(e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("min").score())
                 .isEqualTo(SimpleScore.of(2));
     }
@@ -239,7 +239,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("max").score())
                 .isEqualTo(SimpleScore.of(2));
 
@@ -247,7 +247,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("max").score())
                 .isEqualTo(SimpleScore.of(3));
 
@@ -255,7 +255,7 @@ public class AggregatorsTest {
                 List.of(e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("max").score())
                 .isEqualTo(SimpleScore.of(3));
     }
@@ -278,7 +278,7 @@ public class AggregatorsTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("loadBalance").score())
                 .isEqualTo(SimpleScore.of(0));
 
@@ -289,7 +289,7 @@ public class AggregatorsTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("loadBalance").score())
                 .isEqualTo(SimpleScore.of(7));
     }
@@ -312,7 +312,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("consecutive").score())
                 .isEqualTo(SimpleScore.of(2));
 
@@ -320,7 +320,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("consecutive").score())
                 .isEqualTo(SimpleScore.of(4));
 
@@ -328,7 +328,7 @@ public class AggregatorsTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("consecutive").score())
                 .isEqualTo(SimpleScore.of(9));
     }
@@ -354,7 +354,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("connectedRanges").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -362,7 +362,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("connectedRanges").score())
                 .isEqualTo(SimpleScore.of(4));
 
@@ -370,7 +370,7 @@ public class AggregatorsTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("connectedRanges").score())
                 .isEqualTo(SimpleScore.of(4));
 
@@ -378,7 +378,7 @@ public class AggregatorsTest {
                 List.of(e1, e2, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("connectedRanges").score())
                 .isEqualTo(SimpleScore.of(9));
     }
@@ -406,7 +406,7 @@ public class AggregatorsTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("conditionally").score())
                 .isEqualTo(SimpleScore.of(0));
 
@@ -417,7 +417,7 @@ public class AggregatorsTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("conditionally").score())
                 .isEqualTo(SimpleScore.of(8));
     }
@@ -444,7 +444,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("compose").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -452,7 +452,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("compose").score())
                 .isEqualTo(SimpleScore.of(2));
 
@@ -460,7 +460,7 @@ public class AggregatorsTest {
                 List.of(e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("compose").score())
                 .isEqualTo(SimpleScore.of(1));
     }
@@ -484,7 +484,7 @@ public class AggregatorsTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("collectAndThen").score())
                 .isEqualTo(SimpleScore.of(15));
 
@@ -492,7 +492,7 @@ public class AggregatorsTest {
                 List.of(e1, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("collectAndThen").score())
                 .isEqualTo(SimpleScore.of(20));
 
@@ -500,7 +500,7 @@ public class AggregatorsTest {
                 List.of(e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("collectAndThen").score())
                 .isEqualTo(SimpleScore.of(25));
     }
@@ -0,0 +1,72 @@
+package org.solverforge.wasm.service.classgen;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+
+public class AllocatorTest {
+    // dealloc counts its calls at address 0
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (func (export "alloc") (param $size i32) (result i32)
+                    (i32.const 16)
+                )
+                (func (export "dealloc") (param $pointer i32)
+                    (i32.store (i32.const 0) (i32.add (i32.load (i32.const 0)) (i32.const 1)))
+                )
+            )
+            """;
+
+    private Instance instance;
+    private Allocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        instance = Instance.builder(Parser.parse(Wat2Wasm.parse(WAT))).build();
+        allocator = new Allocator(instance, "alloc", "dealloc", "dealloc");
+    }
+
+    private int deallocations() {
+        return instance.memory().readInt(0);
+    }
+
+    @Test
+    void deferredFreesRunOnTheDrainingThread() throws Exception {
+        var beforeFree = new AtomicInteger();
+        var cleaner = new Thread(() -> allocator.deferFreeSolution(16, beforeFree::incrementAndGet));
+        cleaner.start();
+        cleaner.join();
+
+        // Deferring does not touch the instance
+        assertThat(deallocations()).isZero();
+        assertThat(beforeFree).hasValue(0);
+
+        allocator.freeDeferredSolutions();
+        assertThat(deallocations()).isEqualTo(1);
+        assertThat(beforeFree).hasValue(1);
+
+        // Each free runs once
+        allocator.freeDeferredSolutions();
+        assertThat(deallocations()).isEqualTo(1);
+    }
+
+    @Test
+    void closedAllocatorFreesNothing() {
+        var beforeFree = new AtomicInteger();
+        allocator.deferFreeSolution(16, beforeFree::incrementAndGet);
+        allocator.close();
+
+        allocator.freeDeferredSolutions();
+        allocator.free(16);
+        assertThat(deallocations()).isZero();
+        assertThat(beforeFree).hasValue(0);
+    }
+}
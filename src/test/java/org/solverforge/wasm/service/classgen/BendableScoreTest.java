@@ -132,7 +132,7 @@ public class BendableScoreTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("countEmployees").score())
                 .isEqualTo(BendableScore.of(new int[]{0, 0}, new int[]{2}));
     }
@@ -151,7 +151,7 @@ public class BendableScoreTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         // 3 employees, each penalized by [1/0]hard/[0]soft
         assertThat(analysis.getConstraintAnalysis("hardConstraint").score())
                 .isEqualTo(BendableScore.of(new int[]{-3, 0}, new int[]{0}));
@@ -177,7 +177,7 @@ public class BendableScoreTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
 
         assertThat(analysis.getConstraintAnalysis("level0Hard").score())
                 .isEqualTo(BendableScore.of(new int[]{-2, 0, 0}, new int[]{0, 0}));
@@ -200,7 +200,7 @@ public class BendableScoreTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         var score = (BendableScore) analysis.getConstraintAnalysis("feasible").score();
 
         // Score is [0]hard/[1]soft - feasible because hard >= 0
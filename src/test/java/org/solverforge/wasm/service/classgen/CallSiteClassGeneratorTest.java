@@ -0,0 +1,120 @@
+package org.solverforge.wasm.service.classgen;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+import ai.timefold.solver.core.api.function.TriPredicate;
+import org.junit.jupiter.api.Test;
+import org.solverforge.wasm.service.ModuleCache;
+import org.solverforge.wasm.service.WasmCall;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.wabt.Wat2Wasm;
+
+public class CallSiteClassGeneratorTest {
+    private static final String WAT = """
+            (module
+                (memory (export "memory") 1)
+                (func (export "lessThan") (param $a i32) (param $b i32) (result i32)
+                    (i32.lt_s (local.get $a) (local.get $b))
+                )
+                (func (export "between") (param $a i32) (param $b i32) (param $c i32) (result i32)
+                    (i32.and (i32.lt_s (local.get $a) (local.get $b)) (i32.lt_s (local.get $b) (local.get $c)))
+                )
+                (func (export "load") (param $pointer i32) (result i32)
+                    (i32.load (local.get $pointer))
+                )
+            )
+            """;
+
+    private static MethodHandle isTrue() throws ReflectiveOperationException {
+        return MethodHandles.lookup().findStatic(CallSiteClassGeneratorTest.class, "isTrue",
+                MethodType.methodType(boolean.class, long.class));
+    }
+
+    private static boolean isTrue(long result) {
+        return result != 0;
+    }
+
+    @Test
+    public void implementsFunctionsWithDedicatedClasses() throws ReflectiveOperationException {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var instance = Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+
+        var lessThanHandle = MethodHandles.filterReturnValue(
+                WasmCall.of(instance, "lessThan").asMethodHandle(2), isTrue());
+        BiPredicate<Long, Long> lessThan = CallSiteClassGenerator.implement(BiPredicate.class, lessThanHandle);
+        BiPredicate<Long, Long> otherLessThan = CallSiteClassGenerator.implement(BiPredicate.class, lessThanHandle);
+        TriPredicate<Long, Long, Long> between = CallSiteClassGenerator.implement(TriPredicate.class,
+                MethodHandles.filterReturnValue(WasmCall.of(instance, "between").asMethodHandle(3), isTrue()));
+
+        assertThat(lessThan.test(1L, 2L)).isTrue();
+        assertThat(lessThan.test(2L, 1L)).isFalse();
+        assertThat(between.test(1L, 2L, 3L)).isTrue();
+        assertThat(between.test(1L, 3L, 2L)).isFalse();
+
+        assertThat(lessThan.getClass()).isNotSameAs(otherLessThan.getClass());
+        assertThat(lessThan.getClass().isHidden()).isTrue();
+    }
+
+    @Test
+    public void reusesClassesWithBoundValues() throws ReflectiveOperationException {
+        var compiledModule = ModuleCache.getOrCompile(Wat2Wasm.parse(WAT));
+        var instance = Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+        var otherInstance = Instance.builder(compiledModule.module())
+                .withMachineFactory(compiledModule.machineFactory())
+                .build();
+        instance.memory().writeI32(16, 1);
+        otherInstance.memory().writeI32(16, 2);
+
+        var call = WasmCall.of(instance, "load");
+        var otherCall = WasmCall.of(otherInstance, "load");
+        assertThat(call.isDirect()).isTrue();
+
+        // Defined from the first instance's call, used with the other's
+        CallSiteClassGenerator.CallSiteClass<ToLongFunction> load =
+                CallSiteClassGenerator.define(ToLongFunction.class, call.asUnboundMethodHandle(1), 1);
+        ToLongFunction<Long> loadFromInstance = load.newInstance(call);
+        ToLongFunction<Long> loadFromOtherInstance = load.newInstance(otherCall);
+
+        assertThat(loadFromInstance.applyAsLong(16L)).isEqualTo(1);
+        assertThat(loadFromOtherInstance.applyAsLong(16L)).isEqualTo(2);
+        assertThat(loadFromInstance.getClass()).isSameAs(loadFromOtherInstance.getClass());
+
+        assertThatThrownBy(() -> load.newInstance("call")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> load.newInstance()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void convertsArgumentsAndResults() throws ReflectiveOperationException {
+        ToIntFunction<String> length = CallSiteClassGenerator.implement(ToIntFunction.class,
+                MethodHandles.publicLookup().findVirtual(String.class, "length", MethodType.methodType(int.class)));
+        Function<String, Object> trim = CallSiteClassGenerator.implement(Function.class,
+                MethodHandles.publicLookup().findVirtual(String.class, "trim", MethodType.methodType(String.class)));
+
+        assertThat(length.applyAsInt("four")).isEqualTo(4);
+        assertThat(trim.apply(" a ")).isEqualTo("a");
+    }
+
+    @Test
+    public void rejectsClassesAndNonFunctionalInterfaces() {
+        var handle = MethodHandles.constant(Object.class, "value");
+        assertThatThrownBy(() -> CallSiteClassGenerator.implement(Object.class, handle))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CallSiteClassGenerator.implement(List.class, handle))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -75,7 +75,7 @@ public class ComponentTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("thereABetterEmployee").score())
                 .isEqualTo(SimpleScore.of(0));
 
@@ -83,7 +83,7 @@ public class ComponentTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("thereABetterEmployee").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -91,7 +91,7 @@ public class ComponentTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("thereABetterEmployee").score())
                 .isEqualTo(SimpleScore.of(2));
     }
@@ -114,7 +114,7 @@ public class ComponentTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("thereNotABetterEmployee").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -122,7 +122,7 @@ public class ComponentTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("thereNotABetterEmployee").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -130,7 +130,7 @@ public class ComponentTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("thereNotABetterEmployee").score())
                 .isEqualTo(SimpleScore.of(1));
     }
@@ -150,7 +150,7 @@ public class ComponentTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("employeeId").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -158,7 +158,7 @@ public class ComponentTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("employeeId").score())
                 .isEqualTo(SimpleScore.of(3));
 
@@ -166,7 +166,7 @@ public class ComponentTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("employeeId").score())
                 .isEqualTo(SimpleScore.of(6));
     }
@@ -188,7 +188,7 @@ public class ComponentTest {
                 List.of(e0, e1, e2, e3), List.of(shift)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("isEmployeeId0").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -197,7 +197,7 @@ public class ComponentTest {
                 List.of(e0, e1, e2, e3), List.of(shift)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("isEmployeeId0").score())
                 .isEqualTo(SimpleScore.of(0));
     }
@@ -226,7 +226,7 @@ public class ComponentTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3, s4)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("loadBalance").score())
                 .isEqualTo(SimpleScore.of(0));
 
@@ -236,7 +236,7 @@ public class ComponentTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3, s4)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("loadBalance").score())
                 .isEqualTo(SimpleScore.of(20));
     }
@@ -255,7 +255,7 @@ public class ComponentTest {
                 List.of(e1), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("employeeId").score())
                 .isEqualTo(SimpleScore.of(0));
 
@@ -263,7 +263,7 @@ public class ComponentTest {
                 List.of(e1, e2), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("employeeId").score())
                 .isEqualTo(SimpleScore.of(1));
 
@@ -271,7 +271,7 @@ public class ComponentTest {
                 List.of(e1, e2, e3), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("employeeId").score())
                 .isEqualTo(SimpleScore.of(3));
     }
@@ -79,7 +79,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("sameEmployee").score())
                 .isEqualTo(SimpleScore.of(3));
 
@@ -89,7 +89,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("sameEmployee").score())
                 .isEqualTo(SimpleScore.of(5));
     }
@@ -115,7 +115,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("sameParity").score())
                 .isEqualTo(SimpleScore.of(8));
 
@@ -125,7 +125,7 @@ public class JoinerTest {
                 List.of(e1, e2, e4), Collections.emptyList()
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("sameParity").score())
                 .isEqualTo(SimpleScore.of(5));
     }
@@ -154,7 +154,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("smallerEmployee").score())
                 .isEqualTo(SimpleScore.of(3));
 
@@ -164,7 +164,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("smallerEmployee").score())
                 .isEqualTo(SimpleScore.of(2));
     }
@@ -193,7 +193,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("biggerEmployee").score())
                 .isEqualTo(SimpleScore.of(3));
 
@@ -203,7 +203,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("biggerEmployee").score())
                 .isEqualTo(SimpleScore.of(2));
     }
@@ -232,7 +232,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("smallerOrEqualEmployee").score())
                 .isEqualTo(SimpleScore.of(6));
 
@@ -242,7 +242,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("smallerOrEqualEmployee").score())
                 .isEqualTo(SimpleScore.of(7));
     }
@@ -271,7 +271,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("biggerOrEqualEmployee").score())
                 .isEqualTo(SimpleScore.of(6));
 
@@ -281,7 +281,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(s1, s2, s3)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("biggerOrEqualEmployee").score())
                 .isEqualTo(SimpleScore.of(7));
     }
@@ -309,7 +309,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), Collections.emptyList()
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("overlapping").score())
                 .isEqualTo(SimpleScore.of(10));
     }
@@ -333,7 +333,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(shift)
         )));
 
-        var analysis = solverResource.analyze(problem);
+        var analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("filtering").score())
                 .isEqualTo(SimpleScore.of(4));
 
@@ -343,7 +343,7 @@ public class JoinerTest {
                 List.of(e0, e1, e2, e3), List.of(shift)
         )));
 
-        analysis = solverResource.analyze(problem);
+        analysis = solverResource.analyze(problem).await().indefinitely();
         assertThat(analysis.getConstraintAnalysis("filtering").score())
                 .isEqualTo(SimpleScore.of(0));
     }
@@ -8,10 +8,8 @@ import java.lang.reflect.ParameterizedType;
 import java.util.LinkedHashMap;
 import java.util.List;
 
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.solverforge.wasm.service.SolverResource;
 import org.solverforge.wasm.service.dto.DomainAccessor;
 import org.solverforge.wasm.service.dto.DomainObject;
 import org.solverforge.wasm.service.dto.FieldDescriptor;
@@ -40,14 +38,8 @@ public class PlanningListVariableTest {
 
     @BeforeEach
     void setUp() {
-        classGenerator = new DomainObjectClassGenerator();
         classLoader = new DomainObjectClassLoader();
-        SolverResource.GENERATED_CLASS_LOADER.set(classLoader);
-    }
-
-    @AfterEach
-    void tearDown() {
-        SolverResource.GENERATED_CLASS_LOADER.remove();
+        classGenerator = new DomainObjectClassGenerator(classLoader);
     }
 
     /**
@@ -10,10 +10,8 @@ import ai.timefold.solver.core.api.domain.variable.CascadingUpdateShadowVariable
 import ai.timefold.solver.core.api.domain.variable.InverseRelationShadowVariable;
 import ai.timefold.solver.core.api.domain.variable.PreviousElementShadowVariable;
 
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.solverforge.wasm.service.SolverResource;
 import org.solverforge.wasm.service.dto.DomainAccessor;
 import org.solverforge.wasm.service.dto.DomainObject;
 import org.solverforge.wasm.service.dto.FieldDescriptor;
@@ -45,14 +43,8 @@ public class ShadowVariableEntityTest {
 
     @BeforeEach
     void setUp() {
-        classGenerator = new DomainObjectClassGenerator();
         classLoader = new DomainObjectClassLoader();
-        SolverResource.GENERATED_CLASS_LOADER.set(classLoader);
-    }
-
-    @AfterEach
-    void tearDown() {
-        SolverResource.GENERATED_CLASS_LOADER.remove();
+        classGenerator = new DomainObjectClassGenerator(classLoader);
     }
 
     @Test
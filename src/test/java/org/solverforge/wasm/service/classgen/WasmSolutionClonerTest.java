@@ -2,11 +2,9 @@ package org.solverforge.wasm.service.classgen;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.solverforge.wasm.service.FunctionCache;
-import org.solverforge.wasm.service.SolverResource;
 
 import com.dylibso.chicory.runtime.Instance;
 import com.dylibso.chicory.wasm.Parser;
@@ -14,8 +12,10 @@ import com.dylibso.chicory.wasm.Parser;
 /**
  * Tests for WasmSolutionCloner cache clearing behavior.
  *
- * During solution cloning, all caches (entity, list, function) must be cleared
- * to prevent stale shadow variable state that causes "Unexpected unassigned position" errors.
+ * Caches (entity, list, function) must not return entries for freed objects, to prevent
+ * stale shadow variable state that causes "Unexpected unassigned position" errors.
+ * When a solution copy is freed only its own entries are dropped; when the copied
+ * objects are unknown, all caches are cleared.
  */
 public class WasmSolutionClonerTest {
 
@@ -24,6 +24,10 @@ public class WasmSolutionClonerTest {
         0x01, 0x00, 0x00, 0x00  // version
     };
 
+    private static final int FUNC = 0;
+    private static final int FUNC2 = 1;
+    private static final int INT_FUNC = 2;
+
     private Instance wasmInstance;
     private FunctionCache functionCache;
 
@@ -31,63 +35,75 @@ public class WasmSolutionClonerTest {
     void setUp() {
         wasmInstance = Instance.builder(Parser.parse(MINIMAL_WASM)).build();
         functionCache = new FunctionCache();
-        SolverResource.INSTANCE.set(wasmInstance);
-        SolverResource.FUNCTION_CACHE.set(functionCache);
-    }
-
-    @AfterEach
-    void tearDown() {
-        SolverResource.INSTANCE.remove();
-        SolverResource.FUNCTION_CACHE.remove();
     }
 
     @Test
     void cloningClearsFunctionCache() {
         // Populate the function cache with some entries
-        functionCache.putBool1("testFunc", 100, true);
-        functionCache.putBool2("testFunc2", 100, 200, false);
-        functionCache.putInt1("intFunc", 300, 42);
+        functionCache.put1(FUNC, 100, 1);
+        functionCache.put2(FUNC2, 100, 200, 0);
+        functionCache.put1(INT_FUNC, 300, 42);
 
         // Verify cache has entries
-        assertThat(functionCache.getBool1("testFunc", 100)).isTrue();
-        assertThat(functionCache.getBool2("testFunc2", 100, 200)).isFalse();
-        assertThat(functionCache.getInt1("intFunc", 300)).isEqualTo(42);
+        assertThat(functionCache.get1(FUNC, 100)).isEqualTo(1);
+        assertThat(functionCache.get2(FUNC2, 100, 200)).isZero();
+        assertThat(functionCache.get1(INT_FUNC, 300)).isEqualTo(42);
 
         // Clear caches as WasmSolutionCloner does
         WasmObject.clearCacheForInstance(wasmInstance);
         WasmList.clearCacheForInstance(wasmInstance);
-        FunctionCache cache = SolverResource.FUNCTION_CACHE.get();
-        if (cache != null) {
-            cache.clear();
-        }
+        functionCache.clear();
 
         // Verify function cache is cleared
-        assertThat(functionCache.getBool1("testFunc", 100)).isNull();
-        assertThat(functionCache.getBool2("testFunc2", 100, 200)).isNull();
-        assertThat(functionCache.getInt1("intFunc", 300)).isNull();
+        assertThat(functionCache.get1(FUNC, 100)).isEqualTo(FunctionCache.MISS);
+        assertThat(functionCache.get2(FUNC2, 100, 200)).isEqualTo(FunctionCache.MISS);
+        assertThat(functionCache.get1(INT_FUNC, 300)).isEqualTo(FunctionCache.MISS);
     }
 
     @Test
     void functionCacheClearResetsEntityVersions() {
         // Populate cache entries for a pointer
         int pointer = 100;
-        functionCache.putBool1("func", pointer, true);
+        functionCache.put1(FUNC, pointer, 1);
 
         // Invalidate entity (bumps version)
         functionCache.invalidateEntity(pointer);
 
         // Entry should now be stale
-        assertThat(functionCache.getBool1("func", pointer)).isNull();
+        assertThat(functionCache.get1(FUNC, pointer)).isEqualTo(FunctionCache.MISS);
 
         // Add new entry with current version
-        functionCache.putBool1("func", pointer, false);
-        assertThat(functionCache.getBool1("func", pointer)).isFalse();
+        functionCache.put1(FUNC, pointer, 0);
+        assertThat(functionCache.get1(FUNC, pointer)).isZero();
 
         // Clear cache
         functionCache.clear();
 
         // After clear, versions are reset - new entries work fresh
-        functionCache.putBool1("func", pointer, true);
-        assertThat(functionCache.getBool1("func", pointer)).isTrue();
+        functionCache.put1(FUNC, pointer, 1);
+        assertThat(functionCache.get1(FUNC, pointer)).isEqualTo(1);
+    }
+
+    @Test
+    void evictingSolutionGraphKeepsOtherEntries() {
+        var working = WasmObject.ofExistingOrCreate(wasmInstance, 100, p -> new WasmObject(wasmInstance, p));
+        var freed = WasmObject.ofExistingOrCreate(wasmInstance, 200, p -> new WasmObject(wasmInstance, p));
+        functionCache.put1(FUNC, 100, 1);
+        functionCache.put2(FUNC2, 100, 200, 1);
+        functionCache.put1(INT_FUNC, 200, 42);
+
+        // Free the graph containing pointer 200, as the cloner does for a copy
+        WasmObject.evictFromCache(wasmInstance, new int[] { 200 });
+        WasmList.evictFromCache(wasmInstance, new int[] { 200 });
+        functionCache.invalidateEntities(new int[] { 200 });
+
+        // Entries of other graphs are kept
+        assertThat((Object) WasmObject.ofExistingOrCreate(wasmInstance, 100, p -> new WasmObject(wasmInstance, p))).isSameAs(working);
+        assertThat(functionCache.get1(FUNC, 100)).isEqualTo(1);
+
+        // Entries involving the freed graph are gone
+        assertThat((Object) WasmObject.ofExistingOrCreate(wasmInstance, 200, p -> new WasmObject(wasmInstance, p))).isNotSameAs(freed);
+        assertThat(functionCache.get2(FUNC2, 100, 200)).isEqualTo(FunctionCache.MISS);
+        assertThat(functionCache.get1(INT_FUNC, 200)).isEqualTo(FunctionCache.MISS);
     }
 }
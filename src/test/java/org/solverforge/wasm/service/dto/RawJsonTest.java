@@ -0,0 +1,66 @@
+package org.solverforge.wasm.service.dto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class RawJsonTest {
+    // One, two, three and four byte UTF-8 sequences
+    private static final String JSON = "{\"name\":\"a\\\"b\",\"text\":\"é中😀\"}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void writtenAsRawValue() throws Exception {
+        var value = Map.of("solution", RawJson.of(JSON));
+        var expected = "{\"solution\":" + JSON + "}";
+
+        // Char and byte based generators
+        assertThat(objectMapper.writeValueAsString(value)).isEqualTo(expected);
+        assertThat(objectMapper.writeValueAsBytes(value)).isEqualTo(expected.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void countsCharsFromBytes() {
+        assertThat(RawJson.of(JSON).asSerializableString().charLength()).isEqualTo(JSON.length());
+        assertThat(RawJson.of("").asSerializableString().charLength()).isZero();
+    }
+
+    @Test
+    void quotesLikeSerializedString() throws Exception {
+        var value = RawJson.of(JSON).asSerializableString();
+        var expected = new SerializedString(JSON);
+
+        assertThat(value.getValue()).isEqualTo(JSON);
+        assertThat(value.asQuotedChars()).isEqualTo(expected.asQuotedChars());
+        assertThat(value.asQuotedUTF8()).isEqualTo(expected.asQuotedUTF8());
+
+        int quotedLength = expected.asQuotedUTF8().length;
+        var bytes = new byte[quotedLength + 1];
+        assertThat(value.appendQuotedUTF8(bytes, 1)).isEqualTo(quotedLength);
+        assertThat(value.appendQuotedUTF8(bytes, 2)).isEqualTo(-1);
+
+        int quotedCharLength = expected.asQuotedChars().length;
+        var chars = new char[quotedCharLength];
+        assertThat(value.appendQuoted(chars, 0)).isEqualTo(quotedCharLength);
+        assertThat(chars).isEqualTo(expected.asQuotedChars());
+        assertThat(value.appendQuoted(chars, 1)).isEqualTo(-1);
+
+        var out = new ByteArrayOutputStream();
+        assertThat(value.writeQuotedUTF8(out)).isEqualTo(quotedLength);
+        assertThat(out.toByteArray()).isEqualTo(expected.asQuotedUTF8());
+
+        var buffer = ByteBuffer.allocate(quotedLength);
+        assertThat(value.putQuotedUTF8(buffer)).isEqualTo(quotedLength);
+        assertThat(buffer.array()).isEqualTo(expected.asQuotedUTF8());
+        assertThat(value.putQuotedUTF8(buffer)).isEqualTo(-1);
+    }
+}